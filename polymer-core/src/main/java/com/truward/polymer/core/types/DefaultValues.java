@@ -13,12 +13,17 @@ public final class DefaultValues {
   public static final Set<Class<?>> NUMERIC_PRIMITIVES = ImmutableSet.<Class<?>>of(byte.class, char.class,
       short.class, int.class, long.class, double.class, float.class);
 
+  public static final Set<Class<?>> BOXED_PRIMITIVES = ImmutableSet.<Class<?>>of(Boolean.class, Byte.class,
+      Character.class, Short.class, Integer.class, Long.class, Double.class, Float.class);
+
   private DefaultValues() {}
 
   @SuppressWarnings("UnnecessaryBoxing")
   public static Object getDefaultValueFor(Class<?> clazz) {
     if (clazz.isPrimitive()) {
-      if (int.class.equals(clazz)) {
+      if (boolean.class.equals(clazz)) {
+        return Boolean.FALSE;
+      } else if (int.class.equals(clazz)) {
         return Integer.valueOf(0);
       } else if (byte.class.equals(clazz)) {
         return Byte.valueOf((byte) 0);
@@ -0,0 +1,29 @@
+package com.truward.polymer.it.model;
+
+public interface Account {
+  enum Tier {
+    FREE,
+    BASIC,
+    PREMIUM
+  }
+
+  enum Region {
+    AMERICAS,
+    EUROPE,
+    ASIA
+  }
+
+  long getId();
+
+  String getLogin();
+
+  boolean isActive();
+
+  boolean isVerified();
+
+  boolean isLocked();
+
+  Tier getTier();
+
+  Region getRegion();
+}
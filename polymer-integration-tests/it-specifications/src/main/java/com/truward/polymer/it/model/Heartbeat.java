@@ -0,0 +1,5 @@
+package com.truward.polymer.it.model;
+
+public interface Heartbeat extends Message {
+  String getSource();
+}
@@ -0,0 +1,5 @@
+package com.truward.polymer.it.model;
+
+public interface Message {
+  long getSequence();
+}
@@ -0,0 +1,11 @@
+package com.truward.polymer.it.model;
+
+public interface Meter {
+  long getHits();
+
+  int getInFlight();
+
+  String getState();
+
+  String getSummary();
+}
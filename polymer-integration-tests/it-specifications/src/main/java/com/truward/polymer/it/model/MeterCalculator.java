@@ -0,0 +1,26 @@
+package com.truward.polymer.it.model;
+
+/**
+ * Calculates the derived fields of {@link Meter}
+ */
+public final class MeterCalculator {
+  private MeterCalculator() {}
+
+  /**
+   * Runs after the summary is calculated, so that the tests can interleave the calculation with the updates
+   */
+  private static volatile Runnable calculationListener;
+
+  public static void setCalculationListener(Runnable listener) {
+    calculationListener = listener;
+  }
+
+  public static String getSummary(Meter meter) {
+    final String result = meter.getState() + ": " + meter.getHits();
+    final Runnable listener = calculationListener;
+    if (listener != null) {
+      listener.run();
+    }
+    return result;
+  }
+}
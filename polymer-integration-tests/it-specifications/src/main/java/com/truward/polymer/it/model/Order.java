@@ -0,0 +1,27 @@
+package com.truward.polymer.it.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface Order {
+  long getId();
+
+  int getQuantity();
+
+  double getPrice();
+
+  boolean isActive();
+
+  String getCustomer();
+
+  String getStatus();
+
+  List<String> getTags();
+
+  List<Integer> getRatings();
+
+  Set<Long> getRelatedIds();
+
+  Map<String, String> getAttributes();
+}
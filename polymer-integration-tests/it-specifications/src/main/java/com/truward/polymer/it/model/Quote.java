@@ -0,0 +1,9 @@
+package com.truward.polymer.it.model;
+
+public interface Quote {
+  String getSymbol();
+
+  double getPrice();
+
+  long getSize();
+}
@@ -0,0 +1,11 @@
+package com.truward.polymer.it.model;
+
+public interface Scratch {
+  long getRequestId();
+
+  int getAttempts();
+
+  double getElapsed();
+
+  String getPath();
+}
@@ -0,0 +1,9 @@
+package com.truward.polymer.it.model;
+
+public interface Signal {
+  String getName();
+
+  double[] getSamples();
+
+  byte[] getPayload();
+}
@@ -0,0 +1,11 @@
+package com.truward.polymer.it.model;
+
+import java.util.List;
+
+public interface Team {
+  String getName();
+
+  User getLead();
+
+  List<User> getMembers();
+}
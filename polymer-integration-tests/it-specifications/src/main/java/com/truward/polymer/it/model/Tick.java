@@ -0,0 +1,15 @@
+package com.truward.polymer.it.model;
+
+public interface Tick {
+  long getTimestamp();
+
+  double getPrice();
+
+  int getVolume();
+
+  char getSide();
+
+  boolean isSettled();
+
+  double getNotional();
+}
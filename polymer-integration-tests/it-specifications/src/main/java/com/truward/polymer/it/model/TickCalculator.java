@@ -0,0 +1,12 @@
+package com.truward.polymer.it.model;
+
+/**
+ * Calculates the derived fields of {@link Tick}
+ */
+public final class TickCalculator {
+  private TickCalculator() {}
+
+  public static double getNotional(Tick tick) {
+    return tick.getPrice() * tick.getVolume();
+  }
+}
@@ -0,0 +1,7 @@
+package com.truward.polymer.it.model;
+
+public interface Trade extends Message {
+  String getSymbol();
+
+  int getQuantity();
+}
@@ -6,4 +6,6 @@ public interface User {
   String getName();
 
   int getAge();
+
+  String getDisplayName();
 }
@@ -0,0 +1,12 @@
+package com.truward.polymer.it.model;
+
+/**
+ * Calculates the derived fields of {@link User}
+ */
+public final class UserCalculator {
+  private UserCalculator() {}
+
+  public static String getDisplayName(User user) {
+    return user.getName() + " (" + user.getAge() + ")";
+  }
+}
@@ -0,0 +1,32 @@
+package com.truward.polymer.it.specification;
+
+import com.truward.polymer.annotation.Specification;
+import com.truward.polymer.domain.DomainObject;
+import com.truward.polymer.domain.DomainObjectSpecifier;
+import com.truward.polymer.it.model.Order;
+import com.truward.polymer.naming.FqName;
+
+import javax.annotation.Resource;
+
+/**
+ * Domain object specification with the default generation settings, used as a baseline in benchmarks
+ */
+public final class BaselineSpecification {
+  @Resource
+  private DomainObjectSpecifier specifier;
+
+  private final FqName targetPackage = FqName.valueOf("com.truward.polymer.generated.baseline");
+
+  @Specification
+  public void globalSettings() {
+    specifier.getImplementerSettings().setTargetPackageName(targetPackage);
+  }
+
+  @Specification
+  public void orderModel(@DomainObject Order order) {
+    specifier
+        .target(order)
+        .assignBuilder(order)
+    ;
+  }
+}
@@ -0,0 +1,33 @@
+package com.truward.polymer.it.specification;
+
+import com.truward.polymer.annotation.Specification;
+import com.truward.polymer.it.model.Account;
+import com.truward.polymer.it.model.Tick;
+import com.truward.polymer.it.model.User;
+import com.truward.polymer.marshal.binary.BinaryMarshallingSpecifier;
+import com.truward.polymer.naming.FqName;
+
+import javax.annotation.Resource;
+
+/**
+ * Binary serializer specification
+ *
+ * @author Alexander Shabanov
+ */
+public final class BinarySpecification {
+
+  @Resource
+  private BinaryMarshallingSpecifier binaryMarshallingSpecifier;
+
+  @Specification
+  public void binarySpecification() {
+    binaryMarshallingSpecifier
+        .addDomainEntity(User.class)
+        .addDomainEntity(Tick.class)
+        .addDomainEntity(Account.class)
+        .setFieldNumber(User.class, "id", 1)
+        .addFlyweightReader(User.class)
+        .addFlyweightReader(Account.class)
+        .setTargetClassName(FqName.valueOf("com.truward.polymer.generated.binary.BinaryMarshallers"));
+  }
+}
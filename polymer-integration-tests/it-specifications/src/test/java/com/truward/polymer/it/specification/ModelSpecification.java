@@ -3,7 +3,21 @@ package com.truward.polymer.it.specification;
 import com.truward.polymer.annotation.Specification;
 import com.truward.polymer.domain.DomainObject;
 import com.truward.polymer.domain.DomainObjectSpecifier;
+import com.truward.polymer.it.model.Account;
+import com.truward.polymer.it.model.Heartbeat;
+import com.truward.polymer.it.model.Message;
+import com.truward.polymer.it.model.Meter;
+import com.truward.polymer.it.model.MeterCalculator;
+import com.truward.polymer.it.model.Order;
+import com.truward.polymer.it.model.Quote;
+import com.truward.polymer.it.model.Scratch;
+import com.truward.polymer.it.model.Signal;
+import com.truward.polymer.it.model.Team;
+import com.truward.polymer.it.model.Tick;
+import com.truward.polymer.it.model.Trade;
+import com.truward.polymer.it.model.TickCalculator;
 import com.truward.polymer.it.model.User;
+import com.truward.polymer.it.model.UserCalculator;
 import com.truward.polymer.naming.FqName;
 
 import javax.annotation.Resource;
@@ -20,6 +34,9 @@ public final class ModelSpecification {
   @Specification
   public void globalSettings() {
     specifier.getImplementerSettings().setTargetPackageName(targetPackage);
+    specifier.getImplementerSettings().setHashCodeCachingEnabled(true);
+    specifier.getImplementerSettings().setFootprintEstimationEnabled(true);
+    specifier.getImplementerSettings().setSerializationProxyEnabled(true);
   }
 
   @Specification
@@ -27,9 +44,139 @@ public final class ModelSpecification {
     specifier
         .target(user)
         .assignBuilder(user)
+        .assignBatchFactory(user)
+        .assignWithers(user)
         .isNonNull(user.getName())
         .isNullable(user.getId())
+        .isUnboxed(user.getId())
         .isNonNegative(user.getAge())
+        .isCalculated(user.getDisplayName(), UserCalculator.class)
+        .isMemoized(user.getDisplayName())
     ;
   }
+
+  @Specification
+  public void orderModel(@DomainObject Order order) {
+    specifier
+        .target(order)
+        .assignBuilder(order)
+        .assignWithers(order)
+        .isNonNegative(order.getQuantity())
+        .isLowCardinality(order.getStatus())
+        .isSortKey(order.isActive())
+        .isSortKey(order.getQuantity())
+        .isSortKey(order.getPrice())
+        .isSortKey(order.getCustomer())
+        .hasPrimitiveElements(order.getRatings())
+        .hasPrimitiveElements(order.getRelatedIds())
+        .hasExpectedSize(order.getTags(), 8)
+        .hasExpectedSize(order.getRatings(), 8)
+        .hasExpectedSize(order.getAttributes(), 8)
+    ;
+  }
+
+  @Specification
+  public void tickModel(@DomainObject Tick tick) {
+    specifier
+        .target(tick)
+        .assignBuilder(tick)
+        .assignStore(tick)
+        .isCalculated(tick.getNotional(), TickCalculator.class)
+    ;
+  }
+
+  @Specification
+  public void teamModel(@DomainObject Team team) {
+    specifier
+        .target(team)
+        .assignBuilder(team)
+        .isNullable(team.getLead())
+    ;
+  }
+
+  @Specification
+  public void scratchModel(@DomainObject Scratch scratch) {
+    specifier
+        .target(scratch)
+        .assignBuilder(scratch)
+        .assignPool(scratch)
+        .isMutable(scratch.getRequestId())
+        .isMutable(scratch.getAttempts())
+        .isMutable(scratch.getElapsed())
+        .isMutable(scratch.getPath())
+        .isNullable(scratch.getPath())
+    ;
+  }
+
+  @Specification
+  public void meterModel(@DomainObject Meter meter) {
+    specifier
+        .target(meter)
+        .assignBuilder(meter)
+        .isMutable(meter.getHits())
+        .isAtomic(meter.getHits())
+        .isMutable(meter.getInFlight())
+        .isAtomic(meter.getInFlight())
+        .isMutable(meter.getState())
+        .isAtomic(meter.getState())
+        .isCalculated(meter.getSummary(), MeterCalculator.class)
+        .isMemoized(meter.getSummary())
+    ;
+  }
+
+  @Specification
+  public void quoteModel(@DomainObject Quote quote) {
+    specifier
+        .target(quote)
+        .assignBuilder(quote)
+        .assignSeqlock(quote)
+        .isMutable(quote.getPrice())
+        .isMutable(quote.getSize())
+    ;
+  }
+
+  @Specification
+  public void accountModel(@DomainObject Account account) {
+    specifier
+        .target(account)
+        .assignBuilder(account)
+        .assignWithers(account)
+        .assignPackedFlags(account)
+        .isNullable(account.getRegion())
+        .isSortKey(account.getTier())
+        .isSortKey(account.getRegion())
+        .isSortKey(account.getId())
+    ;
+  }
+
+  @Specification
+  public void signalModel(@DomainObject Signal signal) {
+    specifier
+        .target(signal)
+        .assignBuilder(signal)
+        .isNullable(signal.getPayload())
+    ;
+  }
+
+  @Specification
+  public void tradeModel(@DomainObject Trade trade) {
+    specifier
+        .target(trade)
+        .assignBuilder(trade)
+        .isNonNegative(trade.getQuantity())
+    ;
+  }
+
+  @Specification
+  public void heartbeatModel(@DomainObject Heartbeat heartbeat) {
+    specifier
+        .target(heartbeat)
+        .assignBuilder(heartbeat)
+    ;
+  }
+
+  @Specification
+  public void messageModel(@DomainObject Message message) {
+    specifier.assignDispatch(message);
+  }
 }
@@ -0,0 +1,81 @@
+package com.truward.polymer.it.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs the benchmark tasks: warms all of them up first, then measures them one after another.
+ * Results of the tasks are accumulated in the volatile sink, so that the measured work is not eliminated.
+ *
+ * @author Alexander Shabanov
+ */
+final class Benchmarks {
+  private Benchmarks() {}
+
+  private static volatile long sink;
+
+  /**
+   * Measured piece of work
+   */
+  interface Task {
+    /**
+     * @param round Index of the round
+     * @return Value, derived from the results of the work
+     */
+    long run(int round) throws Exception;
+  }
+
+  /**
+   * Quantity, that is measured over the rounds of the task
+   */
+  enum Metric {
+    NANOS {
+      @Override
+      long read() {
+        return System.nanoTime();
+      }
+    },
+
+    ALLOCATED_BYTES {
+      @Override
+      long read() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    };
+
+    abstract long read();
+  }
+
+  /**
+   * @param metric Measured quantity
+   * @param warmupRounds Number of the rounds, each task is run before the measurement
+   * @param measuredRounds Number of the measured rounds
+   * @param tasks Tasks to measure
+   * @return Measured quantity per round of each of the given tasks
+   */
+  static double[] measure(Metric metric, int warmupRounds, int measuredRounds, Task... tasks) throws Exception {
+    for (final Task task : tasks) {
+      run(task, warmupRounds);
+    }
+
+    final double[] result = new double[tasks.length];
+    for (int i = 0; i < tasks.length; ++i) {
+      final long start = metric.read();
+      run(tasks[i], measuredRounds);
+      result[i] = ((double) (metric.read() - start)) / measuredRounds;
+    }
+    return result;
+  }
+
+  //
+  // Private
+  //
+
+  private static void run(Task task, int rounds) throws Exception {
+    long result = 0;
+    for (int round = 0; round < rounds; ++round) {
+      result += task.run(round);
+    }
+    sink += result;
+  }
+}
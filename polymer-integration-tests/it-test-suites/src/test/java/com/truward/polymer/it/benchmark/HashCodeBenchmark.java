@@ -0,0 +1,71 @@
+package com.truward.polymer.it.benchmark;
+
+import com.truward.polymer.generated.model.OrderImpl;
+import com.truward.polymer.it.model.Order;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures per-call cost of {@link Object#hashCode()} for the wide domain objects that hold collections,
+ * generated with and without hash code caching.
+ * Not a part of the regular test run, use <code>mvn test -Dtest=HashCodeBenchmark</code> to run it.
+ *
+ * @author Alexander Shabanov
+ */
+public final class HashCodeBenchmark {
+  private static final int OBJECT_COUNT = 1024;
+  private static final int COLLECTION_SIZE = 32;
+  private static final int WARMUP_ROUNDS = 2000;
+  private static final int MEASURED_ROUNDS = 10000;
+
+  @Test
+  public void measureHashCode() throws Exception {
+    final Order[] cached = new Order[OBJECT_COUNT];
+    final Order[] baseline = new Order[OBJECT_COUNT];
+    for (int i = 0; i < OBJECT_COUNT; ++i) {
+      cached[i] = newOrder(i);
+      baseline[i] = com.truward.polymer.generated.baseline.OrderImpl.newBuilder(cached[i]).build();
+      assertEquals("Cached and calculated hash codes should match", baseline[i].hashCode(), cached[i].hashCode());
+    }
+
+    final double[] costs = Benchmarks.measure(Benchmarks.Metric.NANOS, WARMUP_ROUNDS, MEASURED_ROUNDS,
+        newTask(baseline), newTask(cached));
+
+    System.out.println(String.format("hashCode() without caching: %.2f ns/call", costs[0] / OBJECT_COUNT));
+    System.out.println(String.format("hashCode() with caching: %.2f ns/call", costs[1] / OBJECT_COUNT));
+  }
+
+  //
+  // Private
+  //
+
+  private static Benchmarks.Task newTask(final Order[] orders) {
+    return new Benchmarks.Task() {
+      @Override
+      public long run(int round) {
+        long result = 0;
+        for (final Order order : orders) {
+          result += order.hashCode();
+        }
+        return result;
+      }
+    };
+  }
+
+  private static Order newOrder(int index) {
+    final OrderImpl.Builder builder = OrderImpl.newBuilder()
+        .setId(index)
+        .setQuantity(index % 100)
+        .setPrice(index * 0.25)
+        .setActive(index % 2 == 0)
+        .setCustomer("customer" + index)
+        .setStatus("status" + (index % 5));
+    for (int i = 0; i < COLLECTION_SIZE; ++i) {
+      builder.addToTags("tag" + i);
+      builder.addToRelatedIds((long) (index + i));
+      builder.putToAttributes("key" + i, "value" + (index + i));
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,57 @@
+package com.truward.polymer.it.benchmark;
+
+import com.truward.polymer.generated.model.ScratchImpl;
+import com.truward.polymer.generated.model.ScratchPool;
+import org.junit.Test;
+
+/**
+ * Measures heap allocation of the short-lived mutable domain objects, created via constructor
+ * and obtained from the generated thread-local pool.
+ * Not a part of the regular test run, use <code>mvn test -Dtest=PoolBenchmark</code> to run it.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PoolBenchmark {
+  private static final int WARMUP_ROUNDS = 100000;
+  private static final int MEASURED_ROUNDS = 1000000;
+
+  private static volatile ScratchImpl last; // keeps objects escaping, so that allocation is not eliminated
+
+  @Test
+  public void measureAllocation() throws Exception {
+    final double[] allocated = Benchmarks.measure(Benchmarks.Metric.ALLOCATED_BYTES, WARMUP_ROUNDS, MEASURED_ROUNDS,
+        new Benchmarks.Task() {
+          @Override
+          public long run(int round) {
+            final ScratchImpl scratch = new ScratchImpl(round, round % 3, round * 0.5, "/");
+            last = scratch;
+            return scratch.getRequestId() + scratch.getAttempts();
+          }
+        },
+        new Benchmarks.Task() {
+          @Override
+          public long run(int round) {
+            final ScratchImpl scratch = ScratchPool.acquire();
+            fill(scratch, round);
+            last = scratch;
+            final long result = scratch.getRequestId() + scratch.getAttempts();
+            ScratchPool.release(scratch);
+            return result;
+          }
+        });
+
+    System.out.println(String.format("constructor: %.2f bytes/object", allocated[0]));
+    System.out.println(String.format("pool: %.2f bytes/object", allocated[1]));
+  }
+
+  //
+  // Private
+  //
+
+  private static void fill(ScratchImpl scratch, int index) {
+    scratch.setRequestId(index);
+    scratch.setAttempts(index % 3);
+    scratch.setElapsed(index * 0.5);
+    scratch.setPath("/");
+  }
+}
@@ -0,0 +1,127 @@
+package com.truward.polymer.it.benchmark;
+
+import com.truward.polymer.generated.model.OrderImpl;
+import com.truward.polymer.it.model.Order;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures round trip cost and size of the Java serialization of the wide domain objects, that are written
+ * by the generated serialization proxy and by the default reflective serialization of the equivalent class.
+ * Not a part of the regular test run, use <code>mvn test -Dtest=SerializationBenchmark</code> to run it.
+ *
+ * @author Alexander Shabanov
+ */
+public final class SerializationBenchmark {
+  private static final int OBJECT_COUNT = 256;
+  private static final int COLLECTION_SIZE = 8;
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int MEASURED_ROUNDS = 100;
+
+  @Test
+  public void measureRoundTrip() throws Exception {
+    final Order[] generated = new Order[OBJECT_COUNT];
+    final DefaultSerializableOrder[] baseline = new DefaultSerializableOrder[OBJECT_COUNT];
+    for (int i = 0; i < OBJECT_COUNT; ++i) {
+      generated[i] = newOrder(i);
+      baseline[i] = new DefaultSerializableOrder(generated[i]);
+      assertEquals(generated[i], roundTrip(generated[i]));
+    }
+
+    final double[] costs = Benchmarks.measure(Benchmarks.Metric.NANOS, WARMUP_ROUNDS, MEASURED_ROUNDS,
+        newTask(baseline), newTask(generated));
+
+    System.out.println(String.format("default serialization: %.2f us/round trip, %d bytes/object",
+        costs[0] / 1000.0 / OBJECT_COUNT, serialize(baseline[0]).length));
+    System.out.println(String.format("serialization proxy: %.2f us/round trip, %d bytes/object",
+        costs[1] / 1000.0 / OBJECT_COUNT, serialize(generated[0]).length));
+  }
+
+  //
+  // Private
+  //
+
+  private static Benchmarks.Task newTask(final Object[] objects) {
+    return new Benchmarks.Task() {
+      @Override
+      public long run(int round) throws Exception {
+        long result = 0;
+        for (final Object object : objects) {
+          result += roundTrip(object).hashCode();
+        }
+        return result;
+      }
+    };
+  }
+
+  private static Object roundTrip(Object value) throws IOException, ClassNotFoundException {
+    try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(value)))) {
+      return in.readObject();
+    }
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Order newOrder(int index) {
+    final OrderImpl.Builder builder = OrderImpl.newBuilder()
+        .setId(index)
+        .setQuantity(index % 100)
+        .setPrice(index * 0.25)
+        .setActive(index % 2 == 0)
+        .setCustomer("customer" + index)
+        .setStatus(index % 3 == 0 ? "new" : "filled");
+    for (int i = 0; i < COLLECTION_SIZE; ++i) {
+      builder.addToTags("tag" + (index + i));
+      builder.addToRatings(i % 5);
+      builder.addToRelatedIds((long) index * COLLECTION_SIZE + i);
+      builder.putToAttributes("key" + i, "value" + (index + i));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Holds the same values as {@link Order}, written by the default serialization
+   */
+  private static final class DefaultSerializableOrder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final int quantity;
+    private final double price;
+    private final boolean active;
+    private final String customer;
+    private final String status;
+    private final List<String> tags;
+    private final List<Integer> ratings;
+    private final Set<Long> relatedIds;
+    private final Map<String, String> attributes;
+
+    DefaultSerializableOrder(Order order) {
+      this.id = order.getId();
+      this.quantity = order.getQuantity();
+      this.price = order.getPrice();
+      this.active = order.isActive();
+      this.customer = order.getCustomer();
+      this.status = order.getStatus();
+      this.tags = new ArrayList<>(order.getTags());
+      this.ratings = new ArrayList<>(order.getRatings());
+      this.relatedIds = new HashSet<>(order.getRelatedIds());
+      this.attributes = new HashMap<>(order.getAttributes());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(id, quantity, price, active, customer, status, tags, ratings, relatedIds, attributes);
+    }
+  }
+}
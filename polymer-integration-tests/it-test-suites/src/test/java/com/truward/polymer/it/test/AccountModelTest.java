@@ -0,0 +1,94 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.AccountImpl;
+import com.truward.polymer.it.model.Account;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AccountModelTest {
+
+  @Test
+  public void shouldDecodePackedFlags() {
+    for (final Account.Tier tier : Account.Tier.values()) {
+      for (int flags = 0; flags < 8; ++flags) {
+        final Account account = newAccount(tier, Account.Region.EUROPE, flags);
+        assertEquals(tier, account.getTier());
+        assertEquals(Account.Region.EUROPE, account.getRegion());
+        assertEquals((flags & 1) != 0, account.isActive());
+        assertEquals((flags & 2) != 0, account.isVerified());
+        assertEquals((flags & 4) != 0, account.isLocked());
+        assertEquals(1L, account.getId());
+        assertEquals("login", account.getLogin());
+      }
+    }
+  }
+
+  @Test
+  public void shouldPackNullEnum() {
+    final Account account = newAccount(Account.Tier.FREE, null, 0);
+    assertNull(account.getRegion());
+    assertEquals(Account.Tier.FREE, account.getTier());
+    assertTrue(account.toString().contains("region: null"));
+  }
+
+  @Test
+  public void shouldCompareByPackedFlags() {
+    final Account account = newAccount(Account.Tier.BASIC, Account.Region.ASIA, 5);
+    assertEquals(account, newAccount(Account.Tier.BASIC, Account.Region.ASIA, 5));
+    assertEquals(account.hashCode(), newAccount(Account.Tier.BASIC, Account.Region.ASIA, 5).hashCode());
+    assertFalse(account.equals(newAccount(Account.Tier.BASIC, Account.Region.ASIA, 4)));
+    assertFalse(account.equals(newAccount(Account.Tier.PREMIUM, Account.Region.ASIA, 5)));
+    assertFalse(account.equals(newAccount(Account.Tier.BASIC, null, 5)));
+  }
+
+  @Test
+  public void shouldReplacePackedField() {
+    final AccountImpl account = (AccountImpl) newAccount(Account.Tier.BASIC, Account.Region.ASIA, 5);
+    assertSame(account, account.withTier(Account.Tier.BASIC));
+
+    final AccountImpl premium = account.withTier(Account.Tier.PREMIUM);
+    assertEquals(Account.Tier.PREMIUM, premium.getTier());
+    assertEquals(newAccount(Account.Tier.PREMIUM, Account.Region.ASIA, 5), premium);
+
+    final AccountImpl unlocked = account.withLocked(false);
+    assertFalse(unlocked.isLocked());
+    assertTrue(unlocked.isActive());
+    assertEquals(newAccount(Account.Tier.BASIC, Account.Region.ASIA, 1), unlocked);
+  }
+
+  @Test
+  public void shouldCompareBySortKeys() {
+    final Account free = newAccount(Account.Tier.FREE, Account.Region.ASIA, 0);
+    final Account basic = newAccount(Account.Tier.BASIC, null, 0);
+    final Account basicEurope = newAccount(Account.Tier.BASIC, Account.Region.EUROPE, 0);
+    final Account basicEuropeNext = ((AccountImpl) basicEurope).withId(2L);
+
+    assertTrue(AccountImpl.COMPARATOR.compare(free, basic) < 0);
+    assertTrue("Null should come first", AccountImpl.COMPARATOR.compare(basic, basicEurope) < 0);
+    assertTrue(AccountImpl.COMPARATOR.compare(basicEurope, basicEuropeNext) < 0);
+    assertEquals(0, AccountImpl.COMPARATOR.compare(basicEurope, newAccount(Account.Tier.BASIC,
+        Account.Region.EUROPE, 7)));
+
+    assertTrue(((AccountImpl) free).sortKey() < ((AccountImpl) basic).sortKey());
+    assertTrue(((AccountImpl) basic).sortKey() < ((AccountImpl) basicEurope).sortKey());
+    assertTrue(((AccountImpl) basicEurope).sortKey() <= ((AccountImpl) basicEuropeNext).sortKey());
+    assertTrue(((AccountImpl) basicEurope).withId(-1L).sortKey() < ((AccountImpl) basicEurope).sortKey());
+  }
+
+  //
+  // Private
+  //
+
+  private static Account newAccount(Account.Tier tier, Account.Region region, int flags) {
+    return AccountImpl.newBuilder()
+        .setId(1L)
+        .setLogin("login")
+        .setActive((flags & 1) != 0)
+        .setVerified((flags & 2) != 0)
+        .setLocked((flags & 4) != 0)
+        .setTier(tier)
+        .setRegion(region)
+        .build();
+  }
+}
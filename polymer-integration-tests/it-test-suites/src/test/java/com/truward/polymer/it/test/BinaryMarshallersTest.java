@@ -0,0 +1,174 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.binary.BinaryMarshallers;
+import com.truward.polymer.generated.model.AccountImpl;
+import com.truward.polymer.generated.model.TickImpl;
+import com.truward.polymer.generated.model.UserImpl;
+import com.truward.polymer.it.model.Account;
+import com.truward.polymer.it.model.Tick;
+import com.truward.polymer.it.model.User;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests generated binary marshaller
+ *
+ * @author Alexander Shabanov
+ */
+public final class BinaryMarshallersTest {
+  private final User user = UserImpl.newBuilder()
+      .setId(1L)
+      .setName("bob")
+      .setAge(10)
+      .build();
+
+  private final Tick tick = TickImpl.newBuilder()
+      .setTimestamp(-1L)
+      .setPrice(-0.5)
+      .setVolume(Integer.MIN_VALUE)
+      .setSide('\u00e9')
+      .setSettled(true)
+      .build();
+
+  private final Account account = AccountImpl.newBuilder()
+      .setId(Long.MAX_VALUE)
+      .setLogin("\u043b\u043e\u0433\u0438\u043d")
+      .setActive(true)
+      .setTier(Account.Tier.PREMIUM)
+      .build();
+
+  @Test
+  public void shouldRoundTripThroughByteBuffer() {
+    final ByteBuffer buffer = ByteBuffer.allocate(256);
+    BinaryMarshallers.writeUser(user, buffer);
+    BinaryMarshallers.writeTick(tick, buffer);
+    BinaryMarshallers.writeAccount(account, buffer);
+    buffer.flip();
+
+    assertEquals(user, BinaryMarshallers.readUser(buffer));
+    assertEquals(tick, BinaryMarshallers.readTick(buffer));
+    assertEquals(account, BinaryMarshallers.readAccount(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test
+  public void shouldRoundTripThroughDirectLittleEndianBuffer() {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+    BinaryMarshallers.writeTick(tick, buffer);
+    BinaryMarshallers.writeAccount(account, buffer);
+    buffer.flip();
+
+    assertEquals(tick, BinaryMarshallers.readTick(buffer));
+    assertEquals(account, BinaryMarshallers.readAccount(buffer));
+  }
+
+  @Test
+  public void shouldRoundTripThroughStream() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      BinaryMarshallers.writeUser(user, out);
+      BinaryMarshallers.writeTick(tick, out);
+    }
+
+    final byte[] array = bytes.toByteArray();
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(array));
+    assertEquals(user, BinaryMarshallers.readUser(in));
+    assertEquals(tick, BinaryMarshallers.readTick(in));
+
+    // stream and buffer encodings are the same
+    final ByteBuffer buffer = ByteBuffer.wrap(array);
+    assertEquals(user, BinaryMarshallers.readUser(buffer));
+    assertEquals(tick, BinaryMarshallers.readTick(buffer));
+  }
+
+  @Test
+  public void shouldOmitNullAndDefaultFields() {
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    BinaryMarshallers.writeUser(UserImpl.newBuilder().setName("").build(), buffer);
+
+    // name tag, zero length and end tag
+    assertEquals(3, buffer.position());
+    buffer.flip();
+    final User deserialized = BinaryMarshallers.readUser(buffer);
+    assertNull(deserialized.getId());
+    assertEquals(0, deserialized.getAge());
+  }
+
+  @Test
+  public void shouldDecodeFieldsOnDemand() {
+    final ByteBuffer buffer = ByteBuffer.allocate(256);
+    BinaryMarshallers.writeAccount(account, buffer);
+    BinaryMarshallers.writeUser(user, buffer);
+    buffer.flip();
+
+    final Account accountView = BinaryMarshallers.wrapAccount(buffer);
+    final User userView = BinaryMarshallers.wrapUser(buffer);
+    assertEquals(0, buffer.remaining());
+
+    assertEquals(Account.Tier.PREMIUM, accountView.getTier());
+    assertNull(accountView.getRegion());
+    assertEquals(Long.MAX_VALUE, accountView.getId());
+    assertEquals(account, AccountImpl.newBuilder(accountView).build());
+
+    assertEquals("bob", userView.getName());
+    assertEquals(Long.valueOf(1L), userView.getId());
+    assertEquals(user.getDisplayName(), userView.getDisplayName());
+    assertEquals(user, UserImpl.newBuilder(userView).build());
+  }
+
+  @Test
+  public void shouldReturnDefaultsForAbsentFieldsOfView() {
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    BinaryMarshallers.writeUser(UserImpl.newBuilder().setName("").build(), buffer);
+    buffer.flip();
+
+    final User userView = BinaryMarshallers.wrapUser(buffer);
+    assertNull(userView.getId());
+    assertEquals(0, userView.getAge());
+    assertEquals("", userView.getName());
+  }
+
+  @Test
+  public void shouldSkipUnknownFields() {
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    buffer.put((byte) ((10 << 3) | 2)).put((byte) 3).put(new byte[] { 1, 2, 3 }); // length-delimited
+    buffer.put((byte) ((11 << 3) | 5)).putInt(42); // fixed32
+    buffer.put((byte) ((12 << 3) | 1)).putLong(42L); // fixed64
+    buffer.put((byte) ((13 << 3) | 0)).put((byte) 0x80).put((byte) 1); // varint
+    final int unknownFieldsLength = buffer.position();
+
+    BinaryMarshallers.writeUser(user, buffer);
+    buffer.flip();
+
+    // move the known fields in front of the unknown ones, so that unknown fields are read in the middle
+    final byte[] message = new byte[buffer.limit()];
+    buffer.get(message);
+    final ByteBuffer reordered = ByteBuffer.allocate(message.length);
+    reordered.put(message, unknownFieldsLength, message.length - unknownFieldsLength - 1);
+    reordered.put(message, 0, unknownFieldsLength);
+    reordered.put((byte) 0);
+    reordered.flip();
+
+    assertEquals(user, BinaryMarshallers.readUser(reordered));
+  }
+
+  @Test
+  public void shouldReadUnknownEnumConstantAsNull() {
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    BinaryMarshallers.writeAccount(account, buffer);
+
+    // replace end tag by the region, that has been appended by the newer writer
+    buffer.position(buffer.position() - 1);
+    buffer.put((byte) (5 << 3)).put((byte) Account.Region.values().length).put((byte) 0);
+    buffer.flip();
+
+    assertNull(BinaryMarshallers.wrapAccount(buffer.duplicate()).getRegion());
+    assertEquals(account, BinaryMarshallers.readAccount(buffer));
+  }
+}
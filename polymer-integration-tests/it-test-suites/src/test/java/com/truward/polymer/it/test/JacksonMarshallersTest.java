@@ -11,6 +11,7 @@ import org.junit.Test;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Tests generated marshaller
@@ -42,6 +43,19 @@ public final class JacksonMarshallersTest {
     assertEquals(user, mapper.readValue(userJson, User.class));
   }
 
+  @Test
+  public void shouldSerializeNullUnboxedField() {
+    assertEquivalentJson("{ \"id\": null, \"name\": \"bob\", \"age\": 10 }",
+        UserImpl.newBuilder().setName("bob").setAge(10).build());
+  }
+
+  @Test
+  public void shouldDeserializeNullUnboxedField() throws IOException {
+    final User deserialized = mapper.readValue("{ \"id\": null, \"name\": \"bob\", \"age\": 10 }", User.class);
+    assertNull(deserialized.getId());
+    assertEquals("bob", deserialized.getName());
+  }
+
   //
   // Private
   //
@@ -0,0 +1,74 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.HeartbeatImpl;
+import com.truward.polymer.generated.model.MessageDispatch;
+import com.truward.polymer.generated.model.TradeImpl;
+import com.truward.polymer.it.model.Heartbeat;
+import com.truward.polymer.it.model.Message;
+import com.truward.polymer.it.model.Trade;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatchTest {
+  final Trade trade = TradeImpl.newBuilder().setSequence(1L).setSymbol("ABC").setQuantity(100).build();
+  final Heartbeat heartbeat = HeartbeatImpl.newBuilder().setSequence(2L).setSource("feed").build();
+
+  final MessageDispatch.Visitor<String> visitor = new MessageDispatch.Visitor<String>() {
+    @Override
+    public String visitHeartbeat(Heartbeat value) {
+      return "heartbeat from " + value.getSource();
+    }
+
+    @Override
+    public String visitTrade(Trade value) {
+      return "trade of " + value.getQuantity() + ' ' + value.getSymbol();
+    }
+  };
+
+  @Test
+  public void shouldAssignDenseTypeIds() {
+    assertEquals(0, HeartbeatImpl.TYPE_ID);
+    assertEquals(1, TradeImpl.TYPE_ID);
+    assertEquals(TradeImpl.TYPE_ID, MessageDispatch.typeId(trade));
+    assertEquals(HeartbeatImpl.TYPE_ID, MessageDispatch.typeId(heartbeat));
+  }
+
+  @Test
+  public void shouldDispatchGeneratedClasses() {
+    assertEquals("trade of 100 ABC", MessageDispatch.dispatch(trade, visitor));
+    assertEquals("heartbeat from feed", MessageDispatch.dispatch(heartbeat, visitor));
+  }
+
+  @Test
+  public void shouldDispatchOtherImplementations() {
+    final Trade other = new Trade() {
+      @Override
+      public String getSymbol() {
+        return "XYZ";
+      }
+
+      @Override
+      public int getQuantity() {
+        return 5;
+      }
+
+      @Override
+      public long getSequence() {
+        return 3L;
+      }
+    };
+    assertEquals(TradeImpl.TYPE_ID, MessageDispatch.typeId(other));
+    assertEquals("trade of 5 XYZ", MessageDispatch.dispatch(other, visitor));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectUnknownMessages() {
+    MessageDispatch.dispatch(new Message() {
+      @Override
+      public long getSequence() {
+        return 4L;
+      }
+    }, visitor);
+  }
+}
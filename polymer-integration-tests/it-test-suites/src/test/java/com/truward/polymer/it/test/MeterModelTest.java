@@ -0,0 +1,140 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.MeterImpl;
+import com.truward.polymer.it.model.MeterCalculator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MeterModelTest {
+  final MeterImpl meter = (MeterImpl) MeterImpl.newBuilder().setHits(1L).setInFlight(2).setState("idle").build();
+
+  @Test
+  public void shouldCompareAndSet() {
+    assertTrue(meter.compareAndSetInFlight(2, 3));
+    assertFalse(meter.compareAndSetInFlight(2, 4));
+    assertEquals(3, meter.getInFlight());
+
+    assertTrue(meter.compareAndSetState("idle", "busy"));
+    assertFalse(meter.compareAndSetState("idle", "stopped"));
+    assertEquals("busy", meter.getState());
+  }
+
+  @Test
+  public void shouldGetAndSet() {
+    assertEquals(1L, meter.getAndSetHits(10L));
+    assertEquals("idle", meter.getAndSetState("busy"));
+    assertEquals(10L, meter.getHits());
+    assertEquals("busy", meter.getState());
+  }
+
+  @Test
+  public void shouldAdd() {
+    assertEquals(1L, meter.getAndAddHits(5L));
+    assertEquals(8L, meter.addAndGetHits(2L));
+    assertEquals(1, meter.addAndGetInFlight(-1));
+    assertEquals(MeterImpl.newBuilder().setHits(8L).setInFlight(1).setState("idle").build(), meter);
+  }
+
+  @Test
+  public void shouldAddConcurrently() throws InterruptedException {
+    final int threadCount = 4;
+    final int incrementCount = 10000;
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; ++i) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < incrementCount; ++j) {
+            meter.getAndAddHits(1L);
+            meter.addAndGetInFlight(1);
+            meter.addAndGetInFlight(-1);
+          }
+        }
+      }));
+    }
+    for (final Thread thread : threads) {
+      thread.start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1L + threadCount * incrementCount, meter.getHits());
+    assertEquals(2, meter.getInFlight());
+  }
+
+  @Test
+  public void shouldDiscardMemoizedValueOnAtomicUpdate() {
+    assertEquals("idle: 1", meter.getSummary());
+    meter.addAndGetHits(2L);
+    assertEquals("idle: 3", meter.getSummary());
+    meter.compareAndSetState("idle", "busy");
+    assertEquals("busy: 3", meter.getSummary());
+  }
+
+  @Test
+  public void shouldKeepMemoizedValueOnFailedCompareAndSet() {
+    final AtomicInteger calculationCount = new AtomicInteger();
+    MeterCalculator.setCalculationListener(new Runnable() {
+      @Override
+      public void run() {
+        calculationCount.incrementAndGet();
+      }
+    });
+    try {
+      assertEquals("idle: 1", meter.getSummary());
+      assertFalse(meter.compareAndSetState("busy", "stopped"));
+      assertFalse(meter.compareAndSetInFlight(3, 4));
+      assertEquals("idle: 1", meter.getSummary());
+      assertEquals(1, calculationCount.get());
+
+      assertTrue(meter.compareAndSetState("idle", "busy"));
+      assertEquals("busy: 1", meter.getSummary());
+      assertEquals(2, calculationCount.get());
+    } finally {
+      MeterCalculator.setCalculationListener(null);
+    }
+  }
+
+  @Test
+  public void shouldNotKeepMemoizedValueCalculatedDuringConcurrentUpdate() throws InterruptedException {
+    final CountDownLatch calculated = new CountDownLatch(1);
+    final CountDownLatch updated = new CountDownLatch(1);
+    MeterCalculator.setCalculationListener(new Runnable() {
+      @Override
+      public void run() {
+        calculated.countDown();
+        try {
+          updated.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    final Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        meter.getSummary();
+      }
+    });
+    try {
+      reader.start();
+      // reader publishes the value, calculated before the update, after the update discards the memoized values
+      calculated.await();
+      meter.getAndAddHits(1L);
+    } finally {
+      MeterCalculator.setCalculationListener(null);
+      updated.countDown();
+    }
+    reader.join();
+
+    assertEquals("idle: 2", meter.getSummary());
+  }
+}
@@ -0,0 +1,234 @@
+package com.truward.polymer.it.test;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.generated.model.OrderImpl;
+import com.truward.polymer.it.model.Order;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OrderModelTest {
+  final Order order = OrderImpl.newBuilder()
+      .setId(1L)
+      .setQuantity(2)
+      .setPrice(3.5)
+      .setActive(true)
+      .setCustomer("customer")
+      .setStatus("new")
+      .addAllToTags(Arrays.asList("a", "b"))
+      .addAllToRatings(Arrays.asList(5, 4, 5))
+      .addAllToRelatedIds(new HashSet<>(Arrays.asList(20L, 10L)))
+      .putAllToAttributes(Collections.singletonMap("k", "v"))
+      .build();
+
+  @Test
+  public void shouldCacheHashCode() {
+    final int hashCode = order.hashCode();
+    assertEquals(hashCode, order.hashCode());
+    assertEquals(hashCode, OrderImpl.newBuilder(order).build().hashCode());
+    assertEquals(hashCode, com.truward.polymer.generated.baseline.OrderImpl.newBuilder(order).build().hashCode());
+  }
+
+  @Test
+  public void shouldMatchDefaultFields() {
+    assertEquals(order, OrderImpl.newBuilder(order).build());
+    assertFalse(order.equals(OrderImpl.newBuilder(order).setQuantity(3).build()));
+    assertFalse(order.equals(OrderImpl.newBuilder(order).addToTags("c").build()));
+  }
+
+  @Test
+  public void shouldStorePrimitiveElements() {
+    final List<Integer> ratings = order.getRatings();
+    assertTrue(ratings instanceof OrderImpl.IntList);
+    assertEquals(Arrays.asList(5, 4, 5), ratings);
+    assertEquals(ratings, Arrays.asList(5, 4, 5));
+    assertEquals(Arrays.asList(5, 4, 5).hashCode(), ratings.hashCode());
+    assertEquals(4, ((OrderImpl.IntList) ratings).getInt(1));
+    assertEquals(1, ratings.indexOf(4));
+    assertFalse(ratings.contains(3));
+
+    final Set<Long> relatedIds = order.getRelatedIds();
+    assertTrue(relatedIds instanceof OrderImpl.LongSet);
+    assertEquals(new HashSet<>(Arrays.asList(10L, 20L)), relatedIds);
+    assertEquals(relatedIds, new HashSet<>(Arrays.asList(10L, 20L)));
+    assertEquals(new HashSet<>(Arrays.asList(10L, 20L)).hashCode(), relatedIds.hashCode());
+    assertTrue(((OrderImpl.LongSet) relatedIds).containsLong(20L));
+    assertFalse(relatedIds.contains(20));
+    assertArrayEquals(new long[] {10L, 20L}, ((OrderImpl.LongSet) relatedIds).toLongArray());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotModifyPrimitiveElements() {
+    order.getRatings().add(1);
+  }
+
+  @Test
+  public void shouldCopyCollectionsOnBuilderReuse() {
+    final OrderImpl.Builder builder = OrderImpl.newBuilder(order);
+    final Order first = builder.build();
+    final Order second = builder.addToTags("c").putToAttributes("k2", "v2").build();
+
+    assertEquals(order, first);
+    assertEquals(Arrays.asList("a", "b"), first.getTags());
+    assertEquals(Arrays.asList("a", "b", "c"), second.getTags());
+    assertEquals(1, first.getAttributes().size());
+    assertEquals(2, second.getAttributes().size());
+  }
+
+  @Test
+  public void shouldResetBuilder() {
+    final OrderImpl.Builder builder = OrderImpl.newBuilder(order);
+    final Order first = builder.build();
+
+    // collections of the reset builder are no longer shared with the built object
+    final Order second = builder.reset()
+        .setId(2L)
+        .setCustomer("other")
+        .setStatus("filled")
+        .addToTags("c")
+        .addToRatings(1)
+        .build();
+    assertEquals(order, first);
+    assertEquals(2L, second.getId());
+    assertEquals(0, second.getQuantity());
+    assertFalse(second.isActive());
+    assertEquals(Collections.singletonList("c"), second.getTags());
+    assertEquals(Collections.singletonList(1), second.getRatings());
+    assertTrue(second.getRelatedIds().isEmpty());
+    assertTrue(second.getAttributes().isEmpty());
+
+    // builder that has not built anything yet clears its own collections
+    final Order third = OrderImpl.newBuilder(order).reset().setCustomer("third").setStatus("new").build();
+    assertTrue(third.getTags().isEmpty());
+    assertTrue(third.getRatings().isEmpty());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotModifyBuiltCollections() {
+    OrderImpl.newBuilder(order).build().getTags().add("c");
+  }
+
+  @Test
+  public void shouldCompareDoublesConsistentlyWithHashCode() {
+    final Order nan = OrderImpl.newBuilder(order).setPrice(Double.NaN).build();
+    assertEquals(nan, OrderImpl.newBuilder(nan).build());
+    assertFalse(order.equals(OrderImpl.newBuilder(order).setPrice(4.5).build()));
+  }
+
+  @Test
+  public void shouldShareUnchangedFieldsInWithers() {
+    final OrderImpl source = (OrderImpl) order;
+    final OrderImpl changed = source.withQuantity(5);
+
+    assertEquals(2, source.getQuantity());
+    assertEquals(5, changed.getQuantity());
+    assertSame(source.getTags(), changed.getTags());
+    assertSame(source.getAttributes(), changed.getAttributes());
+    assertEquals(OrderImpl.newBuilder(order).setQuantity(5).build(), changed);
+    assertSame(source, source.withQuantity(2));
+  }
+
+  @Test
+  public void shouldCompareFloatingPointValuesInWithers() {
+    final OrderImpl positiveZero = ((OrderImpl) order).withPrice(0.0);
+    final OrderImpl negativeZero = positiveZero.withPrice(-0.0);
+    assertNotSame(positiveZero, negativeZero);
+    assertFalse(positiveZero.equals(negativeZero));
+
+    final OrderImpl nan = positiveZero.withPrice(Double.NaN);
+    assertSame(nan, nan.withPrice(Double.NaN));
+  }
+
+  @Test
+  public void shouldCopyNewCollectionInWithers() {
+    final List<String> tags = new ArrayList<>(Arrays.asList("x", "y"));
+    final Order changed = ((OrderImpl) order).withTags(tags);
+    tags.add("z");
+    assertEquals(Arrays.asList("x", "y"), changed.getTags());
+  }
+
+  @Test
+  public void shouldShareImmutableCollectionsInWithers() {
+    final Order other = OrderImpl.newBuilder(order).addToTags("x").putToAttributes("k2", "v2").build();
+
+    final List<String> tags = other.getTags();
+    assertSame(tags, ((OrderImpl) order).withTags(tags).getTags());
+
+    final Map<String, String> attributes = other.getAttributes();
+    assertSame(attributes, ((OrderImpl) order).withAttributes(attributes).getAttributes());
+
+    // unmodifiable view may still be changed through the original collection
+    final List<String> source = new ArrayList<>(Arrays.asList("x", "y"));
+    final Order changed = ((OrderImpl) order).withTags(Collections.unmodifiableList(source));
+    source.add("z");
+    assertEquals(Arrays.asList("x", "y"), changed.getTags());
+  }
+
+  @Test
+  public void shouldShareKnownImmutableCollections() {
+    final List<String> tags = ImmutableList.of("x", "y");
+    assertSame(tags, ((OrderImpl) order).withTags(tags).getTags());
+
+    final Map<String, String> attributes = Collections.singletonMap("k2", "v2");
+    assertSame(attributes, ((OrderImpl) order).withAttributes(attributes).getAttributes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldCheckNewValueInWithers() {
+    ((OrderImpl) order).withQuantity(-1);
+  }
+
+  @Test
+  public void shouldCanonicalizeStatus() {
+    final String status = new String("new");
+    assertNotSame(order.getStatus(), status);
+
+    final Order other = OrderImpl.newBuilder(order).setStatus(status).build();
+    assertSame(order.getStatus(), other.getStatus());
+    assertSame(order.getStatus(), ((OrderImpl) order).withStatus(new String("new")).getStatus());
+    assertEquals(order, other);
+  }
+
+  @Test
+  public void shouldSortBySortKeys() {
+    final List<Order> orders = new ArrayList<>();
+    final Random random = new Random(42L);
+    for (int i = 0; i < 1000; ++i) {
+      orders.add(OrderImpl.newBuilder(order)
+          .setActive(random.nextBoolean())
+          .setQuantity(random.nextInt(5))
+          .setPrice((random.nextInt(7) - 3) * 0.5)
+          .setCustomer("customer" + random.nextInt(3))
+          .build());
+    }
+    Collections.sort(orders, OrderImpl.COMPARATOR);
+
+    for (int i = 1; i < orders.size(); ++i) {
+      final Order prev = orders.get(i - 1);
+      final Order next = orders.get(i);
+      assertTrue(OrderImpl.COMPARATOR.compare(prev, next) <= 0);
+      assertTrue(!prev.isActive() || next.isActive());
+      assertTrue("Sort keys should keep the comparator's order",
+          ((OrderImpl) prev).sortKey() <= ((OrderImpl) next).sortKey());
+    }
+  }
+
+  @Test
+  public void shouldOrderSortKeysOfSignedValues() {
+    final OrderImpl source = (OrderImpl) order;
+    assertTrue(source.withPrice(-1.5).sortKey() < source.withPrice(-0.5).sortKey());
+    assertTrue(source.withPrice(-0.5).sortKey() < source.withPrice(0.0).sortKey());
+    assertTrue(source.withPrice(0.0).sortKey() < source.withPrice(Double.POSITIVE_INFINITY).sortKey());
+    assertTrue(source.withQuantity(0).sortKey() < source.withQuantity(Integer.MAX_VALUE).sortKey());
+    assertTrue(source.withActive(false).withQuantity(Integer.MAX_VALUE).sortKey() < source.sortKey());
+  }
+}
@@ -0,0 +1,81 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.QuoteImpl;
+import com.truward.polymer.it.model.Quote;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class QuoteModelTest {
+  final QuoteImpl quote = (QuoteImpl) QuoteImpl.newBuilder().setSymbol("ABC").setPrice(1.0).setSize(1L).build();
+
+  @Test
+  public void shouldUpdateAllMutableFields() {
+    // same int argument fits both fields regardless of their order
+    quote.update(10, 10);
+    assertEquals(10.0, quote.getPrice(), 0.0);
+    assertEquals(10L, quote.getSize());
+    assertEquals("ABC", quote.getSymbol());
+  }
+
+  @Test
+  public void shouldTakeIndependentSnapshot() {
+    final Quote snapshot = quote.snapshot();
+    assertEquals(quote, snapshot);
+    assertNotSame(quote, snapshot);
+
+    quote.setSize(2L);
+    assertEquals(1L, snapshot.getSize());
+    assertEquals(2L, quote.snapshot().getSize());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotSetSnapshotField() {
+    ((QuoteImpl) quote.snapshot()).setSize(2L);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldNotUpdateSnapshot() {
+    ((QuoteImpl) quote.snapshot()).update(2, 2);
+  }
+
+  @Test
+  public void shouldTakeSnapshotOfSnapshot() {
+    final Quote snapshot = ((QuoteImpl) quote.snapshot()).snapshot();
+    assertEquals(quote, snapshot);
+  }
+
+  @Test
+  public void shouldReadConsistentSnapshotsWhileUpdating() throws InterruptedException {
+    final AtomicBoolean inconsistent = new AtomicBoolean();
+    final AtomicBoolean done = new AtomicBoolean();
+    final Thread[] readers = new Thread[3];
+    for (int i = 0; i < readers.length; ++i) {
+      readers[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (!done.get()) {
+            final Quote snapshot = quote.snapshot();
+            // writer always assigns the same value to both fields
+            if (snapshot.getPrice() != snapshot.getSize()) {
+              inconsistent.set(true);
+            }
+          }
+        }
+      });
+      readers[i].start();
+    }
+
+    for (int i = 0; i < 100000; ++i) {
+      quote.update(i, i);
+    }
+    done.set(true);
+    for (final Thread reader : readers) {
+      reader.join();
+    }
+
+    assertFalse("Snapshot should never observe partial update", inconsistent.get());
+  }
+}
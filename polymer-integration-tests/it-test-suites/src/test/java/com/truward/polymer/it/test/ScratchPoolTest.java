@@ -0,0 +1,56 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.ScratchImpl;
+import com.truward.polymer.generated.model.ScratchPool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScratchPoolTest {
+
+  @Test
+  public void shouldReuseReleasedObjects() {
+    final ScratchImpl scratch = ScratchPool.acquire();
+    scratch.setRequestId(1L);
+    scratch.setAttempts(2);
+    scratch.setElapsed(3.5);
+    scratch.setPath("/path");
+    ScratchPool.release(scratch);
+
+    final ScratchImpl reused = ScratchPool.acquire();
+    assertSame(scratch, reused);
+    assertEquals(0L, reused.getRequestId());
+    assertEquals(0, reused.getAttempts());
+    assertEquals(0.0, reused.getElapsed(), 0.0);
+    assertNull(reused.getPath());
+  }
+
+  @Test
+  public void shouldAllocateWhenPoolIsEmpty() {
+    assertNotSame(ScratchPool.acquire(), ScratchPool.acquire());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotReleaseObjectTwice() {
+    final ScratchImpl scratch = ScratchPool.acquire();
+    ScratchPool.release(scratch);
+    ScratchPool.release(scratch);
+  }
+
+  @Test
+  public void shouldReleaseReacquiredObject() {
+    final ScratchImpl scratch = ScratchPool.acquire();
+    ScratchPool.release(scratch);
+    assertSame(scratch, ScratchPool.acquire());
+    ScratchPool.release(scratch);
+    assertSame(scratch, ScratchPool.acquire());
+  }
+
+  @Test
+  public void shouldResetToBlankInstance() {
+    final ScratchImpl scratch = ScratchImpl.newBuilder().setRequestId(1L).setAttempts(2).setElapsed(3.5)
+        .setPath("/path").build();
+    scratch.reset();
+    assertEquals(ScratchPool.acquire(), scratch);
+  }
+}
@@ -0,0 +1,101 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.AccountImpl;
+import com.truward.polymer.generated.model.OrderImpl;
+import com.truward.polymer.generated.model.TeamImpl;
+import com.truward.polymer.generated.model.UserImpl;
+import com.truward.polymer.it.model.Account;
+import com.truward.polymer.it.model.Order;
+import com.truward.polymer.it.model.Team;
+import com.truward.polymer.it.model.User;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests generated serialization proxies
+ *
+ * @author Alexander Shabanov
+ */
+public final class SerializationProxyTest {
+  private final User lead = UserImpl.newBuilder().setId(1L).setName("lead").setAge(40).build();
+
+  private final Order order = OrderImpl.newBuilder()
+      .setId(1L)
+      .setQuantity(2)
+      .setPrice(3.5)
+      .setActive(true)
+      .setCustomer("customer")
+      .setStatus("new")
+      .addAllToTags(Arrays.asList("a", "b"))
+      .addAllToRatings(Arrays.asList(5, 4, 5))
+      .addAllToRelatedIds(new HashSet<>(Arrays.asList(20L, 10L)))
+      .putAllToAttributes(Collections.singletonMap("k", "v"))
+      .build();
+
+  @Test
+  public void shouldRoundTripCollections() throws Exception {
+    final Order deserialized = roundTrip(order);
+    assertEquals(order, deserialized);
+    assertTrue(deserialized.getRatings() instanceof OrderImpl.IntList);
+    assertSame("Low cardinality values should be canonicalized", order.getStatus(), deserialized.getStatus());
+  }
+
+  @Test
+  public void shouldRoundTripNestedObjects() throws Exception {
+    final Team team = TeamImpl.newBuilder()
+        .setName("team")
+        .setLead(lead)
+        .addAllToMembers(Arrays.asList(lead, UserImpl.newBuilder().setName("member").build()))
+        .build();
+    assertEquals(team, roundTrip(team));
+    assertEquals(TeamImpl.newBuilder(team).setLead(null).build(), roundTrip(TeamImpl.newBuilder(team).setLead(null).build()));
+  }
+
+  @Test
+  public void shouldRoundTripPackedAndUnboxedFields() throws Exception {
+    final Account account = AccountImpl.newBuilder()
+        .setId(3L)
+        .setLogin("login")
+        .setVerified(true)
+        .setTier(Account.Tier.BASIC)
+        .build();
+    assertEquals(account, roundTrip(account));
+    assertEquals(lead, roundTrip(lead));
+    final User noId = UserImpl.newBuilder().setName("bob").build();
+    assertNull(roundTrip(noId).getId());
+  }
+
+  @Test
+  public void shouldWriteCompactForm() throws Exception {
+    // no class descriptors of the fields or of the collection classes
+    final byte[] bytes = serialize(order);
+    final String content = new String(bytes, "ISO-8859-1");
+    assertFalse(content.contains("java.util"));
+    assertTrue(content.contains(OrderImpl.class.getName() + "$SerializationProxy"));
+  }
+
+  //
+  // Private
+  //
+
+  @SuppressWarnings("unchecked")
+  private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+    try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(value)))) {
+      return (T) in.readObject();
+    }
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,52 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.SignalImpl;
+import com.truward.polymer.it.model.Signal;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SignalModelTest {
+  final double[] samples = {1.0, 2.5, -3.0};
+  final Signal signal = SignalImpl.newBuilder().setName("signal").setSamples(samples).setPayload(new byte[] {1, 2})
+      .build();
+
+  @Test
+  public void shouldCompareArraysByContent() {
+    final Signal other = SignalImpl.newBuilder().setName("signal").setSamples(new double[] {1.0, 2.5, -3.0})
+        .setPayload(new byte[] {1, 2}).build();
+    assertEquals(signal, other);
+    assertEquals(signal.hashCode(), other.hashCode());
+
+    final Signal changed = SignalImpl.newBuilder(signal).setSamples(new double[] {1.0, 2.5, 3.0}).build();
+    assertFalse(signal.equals(changed));
+  }
+
+  @Test
+  public void shouldCopyArrays() {
+    final int hashCode = signal.hashCode();
+
+    samples[0] = 10.0;
+    signal.getSamples()[1] = 20.0;
+    signal.getPayload()[0] = 30;
+
+    assertArrayEquals(new double[] {1.0, 2.5, -3.0}, signal.getSamples(), 0.0);
+    assertArrayEquals(new byte[] {1, 2}, signal.getPayload());
+    assertNotSame(signal.getSamples(), signal.getSamples());
+    assertEquals(hashCode, signal.hashCode());
+  }
+
+  @Test
+  public void shouldAllowNullableArrays() {
+    final Signal empty = SignalImpl.newBuilder().setName("empty").setSamples(new double[0]).build();
+    assertNull(empty.getPayload());
+    assertEquals(empty, SignalImpl.newBuilder(empty).build());
+  }
+
+  @Test
+  public void shouldAppendArrayElements() {
+    final String str = signal.toString();
+    assertTrue(str.contains("samples: [1.0, 2.5, -3.0]"));
+    assertTrue(str.contains("payload: [1, 2]"));
+  }
+}
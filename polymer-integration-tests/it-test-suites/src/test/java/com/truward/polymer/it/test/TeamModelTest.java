@@ -0,0 +1,66 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.TeamImpl;
+import com.truward.polymer.generated.model.UserImpl;
+import com.truward.polymer.it.model.Team;
+import com.truward.polymer.it.model.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TeamModelTest {
+  final User lead = UserImpl.newBuilder().setId(1L).setName("lead").setAge(40).build();
+  final User member = UserImpl.newBuilder().setId(2L).setName("member").setAge(20).build();
+
+  final Team team = TeamImpl.newBuilder()
+      .setName("team")
+      .setLead(lead)
+      .addAllToMembers(Arrays.asList(lead, member))
+      .build();
+
+  @Test
+  public void shouldAppendNestedObjects() {
+    final String str = team.toString();
+    assertTrue(str.startsWith("TeamImpl#{"));
+    assertTrue(str.endsWith("}"));
+    assertTrue(str.contains("name: team"));
+    assertTrue(str.contains("lead: " + lead.toString()));
+    assertTrue(str.contains("members: [" + lead.toString() + ", " + member.toString() + "]"));
+  }
+
+  @Test
+  public void shouldAppendToExistingBuilder() {
+    final StringBuilder builder = new StringBuilder("team=");
+    ((TeamImpl) team).appendTo(builder);
+    assertEquals("team=" + team.toString(), builder.toString());
+  }
+
+  @Test
+  public void shouldAppendNullableNestedObject() {
+    final Team noLead = TeamImpl.newBuilder(team).setLead(null).build();
+    assertTrue(noLead.toString().contains("lead: null"));
+  }
+
+  @Test
+  public void shouldAppendCollectionsLikeJdk() {
+    final String str = team.toString();
+    assertTrue(str.contains("members: " + Arrays.asList(lead, member)));
+  }
+
+  @Test
+  public void shouldEstimateRetainedBytesOfNestedObjects() {
+    // 40 bytes of UserImpl and 48 bytes of the 4-character name
+    final long leadBytes = ((UserImpl) lead).estimatedRetainedBytes();
+    assertEquals(88, leadBytes);
+    final long memberBytes = ((UserImpl) member).estimatedRetainedBytes();
+    assertEquals(96, memberBytes);
+
+    // 32 bytes of TeamImpl, name, lead, list with two elements and the elements themselves
+    assertEquals(32 + 48 + leadBytes + 64 + leadBytes + memberBytes, ((TeamImpl) team).estimatedRetainedBytes());
+
+    final Team noLead = TeamImpl.newBuilder(team).setLead(null).build();
+    assertEquals(((TeamImpl) team).estimatedRetainedBytes() - leadBytes, ((TeamImpl) noLead).estimatedRetainedBytes());
+  }
+}
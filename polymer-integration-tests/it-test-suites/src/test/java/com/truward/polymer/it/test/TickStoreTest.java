@@ -0,0 +1,84 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.TickImpl;
+import com.truward.polymer.generated.model.TickStore;
+import com.truward.polymer.it.model.Tick;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TickStoreTest {
+
+  @Test
+  public void shouldStoreRecords() {
+    final TickStore store = TickStore.allocateDirect(2);
+    assertEquals(2, store.getCapacity());
+    assertEquals(0, store.getSize());
+
+    assertEquals(0, store.add(newTick(1000L, 1.5, 10, 'B', true)));
+    assertEquals(1, store.add(newTick(2000L, 2.5, 20, 'S', false)));
+    assertEquals(2, store.getSize());
+
+    final TickStore.View view = store.newView();
+    final Tick first = view.moveTo(0);
+    assertEquals(1000L, first.getTimestamp());
+    assertEquals(1.5, first.getPrice(), 0.0);
+    assertEquals(10, first.getVolume());
+    assertEquals('B', first.getSide());
+    assertTrue(first.isSettled());
+    assertEquals(15.0, first.getNotional(), 0.0);
+
+    // the same view is reused for the other record
+    assertSame(first, view.moveTo(1));
+    assertEquals(1, view.getIndex());
+    assertEquals(2000L, view.getTimestamp());
+    assertEquals('S', view.getSide());
+    assertFalse(view.isSettled());
+
+    store.set(1, newTick(3000L, 3.5, 30, 'B', true));
+    assertEquals(3000L, view.getTimestamp());
+    assertEquals(105.0, view.getNotional(), 0.0);
+    assertTrue(view.isSettled());
+  }
+
+  @Test
+  public void shouldWrapExistingBuffer() {
+    final ByteBuffer buffer = ByteBuffer.allocate(TickStore.RECORD_SIZE * 4);
+    new TickStore(buffer).add(newTick(1000L, 1.5, 10, 'B', true));
+
+    final TickStore store = new TickStore(buffer, 1);
+    assertEquals(4, store.getCapacity());
+    assertEquals(1000L, store.newView().moveTo(0).getTimestamp());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotAddToFullStore() {
+    final TickStore store = TickStore.allocateDirect(1);
+    store.add(newTick(1000L, 1.5, 10, 'B', true));
+    store.add(newTick(2000L, 2.5, 20, 'S', false));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void shouldNotMoveOutOfBounds() {
+    TickStore.allocateDirect(1).newView().moveTo(0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotReadUnpositionedView() {
+    final TickStore store = TickStore.allocateDirect(1);
+    store.add(newTick(1000L, 1.5, 10, 'B', true));
+    // field at non-zero offset would otherwise be silently read from the first record
+    store.newView().getVolume();
+  }
+
+  //
+  // Private
+  //
+
+  private static Tick newTick(long timestamp, double price, int volume, char side, boolean settled) {
+    return TickImpl.newBuilder().setTimestamp(timestamp).setPrice(price).setVolume(volume).setSide(side)
+        .setSettled(settled).build();
+  }
+}
@@ -0,0 +1,83 @@
+package com.truward.polymer.it.test;
+
+import com.truward.polymer.generated.model.UserImpl;
+import com.truward.polymer.it.model.User;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+public class UserBatchTest {
+  private final Long[] ids = { 1L, null, 3L };
+  private final String[] names = { "alice", "bob", "carol" };
+  private final int[] ages = { 30, 40, 50 };
+
+  @Test
+  public void shouldCreateBatch() throws Exception {
+    final UserImpl[] batch = newBatch(ids, names, ages);
+    assertEquals(3, batch.length);
+    for (int i = 0; i < batch.length; ++i) {
+      final User expected = UserImpl.newBuilder().setId(ids[i]).setName(names[i]).setAge(ages[i]).build();
+      assertEquals(expected, batch[i]);
+      assertEquals(expected.hashCode(), batch[i].hashCode());
+    }
+    assertFalse(batch[1].hasId());
+  }
+
+  @Test
+  public void shouldCreateEmptyBatch() throws Exception {
+    assertEquals(0, newBatch(new Long[0], new String[0], new int[0]).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldCheckNullColumnValues() throws Exception {
+    newBatch(ids, new String[] { "alice", null, "carol" }, ages);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldCheckNegativeColumnValues() throws Exception {
+    newBatch(ids, names, new int[] { 30, -40, 50 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectColumnsOfDifferentSize() throws Exception {
+    newBatch(ids, names, new int[] { 30 });
+  }
+
+  //
+  // Private
+  //
+
+  /**
+   * Parameters of the batch factory follow the order of the reflected methods of the domain interface, which is not
+   * defined, so that the columns are matched to the parameters by their types.
+   */
+  private static UserImpl[] newBatch(Object... columns) throws Exception {
+    Method factory = null;
+    for (final Method method : UserImpl.class.getMethods()) {
+      if (method.getName().equals("newBatch")) {
+        factory = method;
+      }
+    }
+    assertNotNull("Batch factory is not generated", factory);
+
+    final Class<?>[] parameterTypes = factory.getParameterTypes();
+    final Object[] args = new Object[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; ++i) {
+      for (final Object column : columns) {
+        if (parameterTypes[i].equals(column.getClass())) {
+          args[i] = column;
+        }
+      }
+      assertNotNull("No column of type " + parameterTypes[i], args[i]);
+    }
+
+    try {
+      return (UserImpl[]) factory.invoke(null, args);
+    } catch (InvocationTargetException e) {
+      throw (Exception) e.getCause();
+    }
+  }
+}
@@ -52,4 +52,48 @@ public class UserModelTest {
         .setAge(age + 1)
         .build()));
   }
+
+  @Test
+  public void shouldStoreUnboxedId() {
+    final UserImpl impl = (UserImpl) user;
+    assertTrue(impl.hasId());
+    assertEquals(1L, impl.getIdAsLong());
+
+    final UserImpl noId = (UserImpl) UserImpl.newBuilder().setName(name).setAge(age).build();
+    assertFalse(noId.hasId());
+    assertNull(noId.getId());
+    assertTrue(noId.toString().contains("id: null"));
+    assertFalse("Absent id should differ from zero id", noId.equals(UserImpl.newBuilder()
+        .setId(0L)
+        .setName(name)
+        .setAge(age)
+        .build()));
+  }
+
+  @Test
+  public void shouldCompareUnboxedIdInWithers() {
+    final UserImpl impl = (UserImpl) user;
+    assertSame(impl, impl.withId(Long.valueOf(1000L + id) - 1000L));
+
+    final UserImpl noId = impl.withId(null);
+    assertNotSame(impl, noId);
+    assertFalse(noId.hasId());
+    assertSame(noId, noId.withId(null));
+
+    final UserImpl zeroId = noId.withId(0L);
+    assertNotSame(noId, zeroId);
+    assertEquals(Long.valueOf(0L), zeroId.getId());
+  }
+
+  @Test
+  public void shouldMemoizeDisplayName() {
+    assertEquals("name (12)", user.getDisplayName());
+    assertSame("Calculated value should be kept", user.getDisplayName(), user.getDisplayName());
+
+    // calculated value takes no part in comparison
+    final User other = UserImpl.newBuilder(user).build();
+    assertEquals(user, other);
+    assertEquals(user.hashCode(), other.hashCode());
+    assertFalse(user.toString().contains("name (12)"));
+  }
 }
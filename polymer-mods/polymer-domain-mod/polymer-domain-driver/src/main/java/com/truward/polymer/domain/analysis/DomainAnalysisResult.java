@@ -25,6 +25,14 @@ public interface DomainAnalysisResult extends AnalysisResult {
   @Nonnull
   List<DomainField> getFields();
 
+  /**
+   * Returns the fields, that are kept in the domain objects, i.e. all the fields except the calculated ones
+   *
+   * @return List of fields
+   */
+  @Nonnull
+  List<DomainField> getStoredFields();
+
   @Nonnull
   List<DomainAnalysisResult> getParents();
 
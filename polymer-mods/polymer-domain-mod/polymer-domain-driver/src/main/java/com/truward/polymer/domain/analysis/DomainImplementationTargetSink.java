@@ -1,5 +1,6 @@
 package com.truward.polymer.domain.analysis;
 
+import com.truward.polymer.domain.analysis.support.GenDispatchClass;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
 
 import javax.annotation.Nonnull;
@@ -15,4 +16,13 @@ public interface DomainImplementationTargetSink {
 
   @Nullable
   GenDomainClass getTarget(@Nonnull DomainAnalysisResult analysisResult);
+
+  /**
+   * Registers the hierarchy of the targets, that should be dispatched by their type ids.
+   *
+   * @param rootAnalysisResult Common parent of the dispatched targets
+   * @return Dispatch class of the hierarchy
+   */
+  @Nonnull
+  GenDispatchClass submitDispatch(@Nonnull DomainAnalysisResult rootAnalysisResult);
 }
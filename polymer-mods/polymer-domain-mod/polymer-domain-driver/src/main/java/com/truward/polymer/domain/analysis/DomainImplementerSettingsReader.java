@@ -20,4 +20,10 @@ public interface DomainImplementerSettingsReader {
 
   @Nonnull
   String getDefaultImplClassSuffix();
+
+  boolean isHashCodeCachingEnabled();
+
+  boolean isFootprintEstimationEnabled();
+
+  boolean isSerializationProxyEnabled();
 }
@@ -15,6 +15,7 @@ public enum FieldTrait {
     @Override
     public void verifyCompatibility(@Nonnull DomainField field) {
       incompatibleWith(field, NONNULL);
+      incompatibleWith(field, PRIMITIVE_ELEMENTS);
     }
   },
 
@@ -25,6 +26,7 @@ public enum FieldTrait {
     @Override
     public void verifyCompatibility(@Nonnull DomainField field) {
       incompatibleWith(field, NULLABLE);
+      incompatibleWith(field, UNBOXED);
     }
   },
 
@@ -37,6 +39,8 @@ public enum FieldTrait {
     @Override
     public void verifyCompatibility(@Nonnull DomainField field) {
       incompatibleWith(field, IMMUTABLE);
+      incompatibleWith(field, CALCULATED);
+      incompatibleWith(field, PRIMITIVE_ELEMENTS);
     }
   },
 
@@ -79,6 +83,126 @@ public enum FieldTrait {
 
       incompatibleWith(field, NULLABLE);
     }
+  },
+
+  /**
+   * Designates a collection of boxed numbers, e.g. <code>List&lt;Integer&gt;</code> or <code>Set&lt;Long&gt;</code>,
+   * to be stored in the primitive array-backed immutable collection that still exposes the declared interface.
+   * Such fields are neither nullable nor mutable, so that each value is copied into the primitive collection.
+   */
+  PRIMITIVE_ELEMENTS {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (PrimitiveCollectionType.from(field.getFieldType()) == null) {
+        throw new RuntimeException("Only lists and sets of integers or longs can be associated with " +
+            "PRIMITIVE_ELEMENTS trait");
+      }
+
+      incompatibleWith(field, NULLABLE);
+      incompatibleWith(field, MUTABLE);
+    }
+  },
+
+  /**
+   * Designates a nullable boxed primitive, e.g. <code>Integer</code>, to be stored as the primitive value and
+   * the presence bit. Implies nullability.
+   */
+  UNBOXED {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (!DefaultValues.BOXED_PRIMITIVES.contains(field.getFieldTypeAsClass())) {
+        throw new RuntimeException("Only boxed primitives can be associated with UNBOXED trait");
+      }
+
+      incompatibleWith(field, NONNULL);
+      incompatibleWith(field, ATOMIC);
+    }
+  },
+
+  /**
+   * Designates a string field, that has few distinct values, e.g. country code or status name. Values of such fields
+   * are canonicalized via the bounded dictionary, so that equal values share the same instance.
+   */
+  LOW_CARDINALITY {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (!String.class.equals(field.getFieldType())) {
+        throw new RuntimeException("Only string fields can be associated with LOW_CARDINALITY trait");
+      }
+
+      incompatibleWith(field, ATOMIC);
+    }
+  },
+
+  /**
+   * Designates a field, that takes part in the natural ordering of the domain objects.
+   * For primitives, enums and other comparable types only.
+   */
+  SORT_KEY {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      if (fieldClass == null || (!fieldClass.isPrimitive() && !Comparable.class.isAssignableFrom(fieldClass))) {
+        throw new RuntimeException("Only primitive and comparable fields can be associated with SORT_KEY trait");
+      }
+
+      incompatibleWith(field, CALCULATED);
+    }
+  },
+
+  /**
+   * Designates a field, that is not kept in the domain object, but calculated from its other fields.
+   * Calculated fields take no part in construction, comparison and marshalling of the domain objects.
+   */
+  CALCULATED {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (field.getOriginMethod(OriginMethodRole.SETTER) != null) {
+        throw new RuntimeException("Field " + field + " has setter and can not be associated with CALCULATED trait");
+      }
+
+      incompatibleWith(field, MUTABLE);
+      incompatibleWith(field, SORT_KEY);
+      incompatibleWith(field, UNBOXED);
+      incompatibleWith(field, PRIMITIVE_ELEMENTS);
+      incompatibleWith(field, LOW_CARDINALITY);
+    }
+  },
+
+  /**
+   * Designates a calculated field, which value is calculated once and then kept in the domain object.
+   */
+  MEMOIZED {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (!field.hasTrait(CALCULATED)) {
+        throw new RuntimeException("Only calculated fields can be associated with MEMOIZED trait");
+      }
+    }
+  },
+
+  /**
+   * Designates a mutable field, that can be updated atomically, i.e. compared and set or incremented without locking.
+   * For <code>int</code>, <code>long</code> and non-generic reference types only.
+   */
+  ATOMIC {
+    @Override
+    public void verifyCompatibility(@Nonnull DomainField field) {
+      if (!field.hasTrait(MUTABLE)) {
+        throw new RuntimeException("Only mutable fields can be associated with ATOMIC trait");
+      }
+
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      if (fieldClass == null || (fieldClass.isPrimitive() && !int.class.equals(fieldClass) &&
+          !long.class.equals(fieldClass))) {
+        throw new RuntimeException("Only int, long and non-generic reference fields can be associated with " +
+            "ATOMIC trait");
+      }
+
+      incompatibleWith(field, UNBOXED);
+      incompatibleWith(field, LOW_CARDINALITY);
+      incompatibleWith(field, PRIMITIVE_ELEMENTS);
+    }
   };
 
   //
@@ -1,5 +1,8 @@
 package com.truward.polymer.domain.analysis;
 
+import com.google.common.primitives.Primitives;
+import com.truward.polymer.domain.analysis.support.Names;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
@@ -18,11 +21,44 @@ public final class FieldUtil {
   }
 
   public static boolean isNullable(@Nonnull DomainField field) {
-    return !field.isPrimitive() && field.hasTrait(FieldTrait.NULLABLE);
+    return !field.isPrimitive() && (field.hasTrait(FieldTrait.NULLABLE) || field.hasTrait(FieldTrait.UNBOXED));
 
   }
 
   public static boolean isNullCheckRequired(@Nonnull DomainField field) {
-    return !field.isPrimitive() && (field.hasTrait(FieldTrait.NONNULL) || !field.hasTrait(FieldTrait.NULLABLE));
+    return !field.isPrimitive() && (field.hasTrait(FieldTrait.NONNULL) || !isNullable(field));
+  }
+
+  /**
+   * @param field Domain field
+   * @return Primitive type, that stores the value of the given {@link FieldTrait#UNBOXED} field or null if
+   * the given field is stored as is.
+   */
+  @Nullable
+  public static Class<?> getUnboxedType(@Nonnull DomainField field) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    return fieldClass != null && field.hasTrait(FieldTrait.UNBOXED) ? Primitives.unwrap(fieldClass) : null;
+  }
+
+  /**
+   * @return Name of the method, that tells whether the given unboxed field is present, e.g. <code>hasCount</code>
+   */
+  @Nonnull
+  public static String getPresenceMethodName(@Nonnull DomainField field) {
+    return Names.createPrefixedName(Names.HAS_PREFIX, field.getFieldName());
+  }
+
+  /**
+   * @return Name of the method, that returns primitive value of the given unboxed field,
+   * e.g. <code>getCountAsInt</code>
+   */
+  @Nonnull
+  public static String getUnboxedGetterName(@Nonnull DomainField field) {
+    final Class<?> unboxedType = getUnboxedType(field);
+    if (unboxedType == null) {
+      throw new IllegalArgumentException("Field " + field + " is not unboxed");
+    }
+    return Names.createPrefixedName(Names.GET_PREFIX, field.getFieldName()) +
+        Names.createPrefixedName("As", unboxedType.getName());
   }
 }
@@ -0,0 +1,99 @@
+package com.truward.polymer.domain.analysis;
+
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes collections of boxed numbers that can be stored in the primitive arrays.
+ *
+ * @author Alexander Shabanov
+ */
+public enum PrimitiveCollectionType {
+  INT_LIST(List.class, int.class, Integer.class),
+
+  LONG_LIST(List.class, long.class, Long.class),
+
+  INT_SET(Set.class, int.class, Integer.class),
+
+  LONG_SET(Set.class, long.class, Long.class);
+
+  private final Class<?> collectionClass;
+  private final Class<?> primitiveClass;
+  private final Class<?> boxedClass;
+
+  PrimitiveCollectionType(@Nonnull Class<?> collectionClass, @Nonnull Class<?> primitiveClass,
+                          @Nonnull Class<?> boxedClass) {
+    this.collectionClass = collectionClass;
+    this.primitiveClass = primitiveClass;
+    this.boxedClass = boxedClass;
+  }
+
+  @Nonnull
+  public Class<?> getCollectionClass() {
+    return collectionClass;
+  }
+
+  @Nonnull
+  public Class<?> getPrimitiveClass() {
+    return primitiveClass;
+  }
+
+  @Nonnull
+  public Class<?> getBoxedClass() {
+    return boxedClass;
+  }
+
+  public boolean isSet() {
+    return Set.class.equals(collectionClass);
+  }
+
+  /**
+   * @return Name of the primitive type, suitable for use in the method names, e.g. <code>Int</code>
+   */
+  @Nonnull
+  public String getPrimitiveName() {
+    return Names.createPrefixedName("", primitiveClass.getSimpleName());
+  }
+
+  /**
+   * @return Simple name of the generated collection class, e.g. <code>IntList</code>
+   */
+  @Nonnull
+  public String getClassName() {
+    return getPrimitiveName() + collectionClass.getSimpleName();
+  }
+
+  /**
+   * Finds primitive collection type that corresponds to the given field type.
+   *
+   * @param type Field type, e.g. <code>List&lt;Integer&gt;</code>
+   * @return Matching primitive collection type or null if the given type can not be stored in the primitive array
+   */
+  @Nullable
+  public static PrimitiveCollectionType from(@Nonnull Type type) {
+    if (!(type instanceof ParameterizedType)) {
+      return null;
+    }
+
+    final ParameterizedType parameterizedType = (ParameterizedType) type;
+    final Type[] args = parameterizedType.getActualTypeArguments();
+    if (args.length != 1) {
+      return null;
+    }
+
+    for (final PrimitiveCollectionType collectionType : values()) {
+      if (collectionType.getCollectionClass().equals(parameterizedType.getRawType()) &&
+          collectionType.getBoxedClass().equals(args[0])) {
+        return collectionType;
+      }
+    }
+
+    return null;
+  }
+}
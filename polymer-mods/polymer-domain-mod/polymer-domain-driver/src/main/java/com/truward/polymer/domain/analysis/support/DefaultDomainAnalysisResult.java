@@ -3,6 +3,7 @@ package com.truward.polymer.domain.analysis.support;
 import com.google.common.collect.ImmutableList;
 import com.truward.polymer.domain.analysis.DomainAnalysisResult;
 import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
 
 import javax.annotation.Nonnull;
 import java.util.List;
@@ -50,6 +51,19 @@ public final class DefaultDomainAnalysisResult implements DomainAnalysisResult {
     return fields;
   }
 
+  @Nonnull
+  @Override
+  public List<DomainField> getStoredFields() {
+    // calculated trait is assigned after analysis, so that the stored fields can't be cached
+    final ImmutableList.Builder<DomainField> builder = ImmutableList.builder();
+    for (final DomainField field : fields) {
+      if (!field.hasTrait(FieldTrait.CALCULATED)) {
+        builder.add(field);
+      }
+    }
+    return builder.build();
+  }
+
   @Override
   public boolean isStub() {
     return false;
@@ -0,0 +1,60 @@
+package com.truward.polymer.domain.analysis.support;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.typed.GenEmergentClass;
+import com.truward.polymer.domain.analysis.DomainAnalysisResult;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents top-level class, that dispatches domain objects of the same hierarchy by their type ids.
+ * Type id of the member is its index in the list of members, so that type ids are dense and start with zero.
+ *
+ * @author Alexander Shabanov
+ */
+public final class GenDispatchClass extends GenEmergentClass {
+  private final DomainAnalysisResult root;
+  private List<GenDomainClass> members = new ArrayList<>();
+
+  public GenDispatchClass(@Nonnull DomainAnalysisResult root) {
+    this.root = root;
+  }
+
+  /**
+   * @return Common parent of the dispatched domain classes
+   */
+  @Nonnull
+  public DomainAnalysisResult getRoot() {
+    return root;
+  }
+
+  /**
+   * @return Dispatched domain classes, ordered by their type ids
+   */
+  @Nonnull
+  public List<GenDomainClass> getMembers() {
+    return members;
+  }
+
+  /**
+   * @param member Domain class, that belongs to the hierarchy
+   * @return Type id, assigned to the given domain class
+   */
+  public int addMember(@Nonnull GenDomainClass member) {
+    checkNonFrozen();
+    if (!root.getOriginClass().isAssignableFrom(member.getOrigin().getOriginClass())) {
+      throw new IllegalStateException("Domain class " + member.getOrigin().getOriginClass() +
+          " does not belong to the hierarchy of " + root.getOriginClass());
+    }
+    members.add(member);
+    return members.size() - 1;
+  }
+
+  @Override
+  protected void setFrozen() {
+    members = ImmutableList.copyOf(members);
+    super.setFrozen();
+  }
+}
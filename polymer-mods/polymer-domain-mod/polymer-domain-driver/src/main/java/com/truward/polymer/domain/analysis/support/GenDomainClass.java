@@ -1,11 +1,20 @@
 package com.truward.polymer.domain.analysis.support;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.truward.polymer.core.code.analysis.GenResultClass;
 import com.truward.polymer.core.code.typed.GenEmergentClass;
 import com.truward.polymer.domain.DomainObjectBuilderSettings;
 import com.truward.polymer.domain.analysis.DomainAnalysisResult;
+import com.truward.polymer.domain.analysis.DomainField;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a domain class
@@ -14,6 +23,16 @@ import javax.annotation.Nonnull;
  */
 public final class GenDomainClass extends GenResultClass<DomainAnalysisResult> {
   private final GenBuilderClass genBuilderClass = new GenBuilderClass();
+  private final GenCompanionClass genStoreClass = new GenCompanionClass();
+  private final GenCompanionClass genPoolClass = new GenCompanionClass();
+  private boolean withersSupported;
+  private boolean flagsPacked;
+  private boolean batchFactorySupported;
+  private boolean seqlockSupported;
+  private GenDispatchClass dispatchClass;
+  private int typeId = -1;
+  private List<DomainField> sortKeys = new ArrayList<>();
+  private Map<DomainField, Class<?>> calculators = new LinkedHashMap<>();
 
   public GenDomainClass(@Nonnull DomainAnalysisResult origin) {
     super(origin);
@@ -24,9 +43,124 @@ public final class GenDomainClass extends GenResultClass<DomainAnalysisResult> {
     return genBuilderClass;
   }
 
+  @Nonnull
+  public GenCompanionClass getGenStoreClass() {
+    return genStoreClass;
+  }
+
+  @Nonnull
+  public GenCompanionClass getGenPoolClass() {
+    return genPoolClass;
+  }
+
+  public boolean isWithersSupported() {
+    return withersSupported;
+  }
+
+  public void setWithersSupported(boolean withersSupported) {
+    checkNonFrozen();
+    this.withersSupported = withersSupported;
+  }
+
+  public boolean isFlagsPacked() {
+    return flagsPacked;
+  }
+
+  public void setFlagsPacked(boolean flagsPacked) {
+    checkNonFrozen();
+    this.flagsPacked = flagsPacked;
+  }
+
+  public boolean isBatchFactorySupported() {
+    return batchFactorySupported;
+  }
+
+  public void setBatchFactorySupported(boolean batchFactorySupported) {
+    checkNonFrozen();
+    this.batchFactorySupported = batchFactorySupported;
+  }
+
+  public boolean isSeqlockSupported() {
+    return seqlockSupported;
+  }
+
+  public void setSeqlockSupported(boolean seqlockSupported) {
+    checkNonFrozen();
+    this.seqlockSupported = seqlockSupported;
+  }
+
+  /**
+   * @return Dispatch class of the hierarchy, this domain class belongs to or null if it is not dispatched
+   */
+  @Nullable
+  public GenDispatchClass getDispatchClass() {
+    return dispatchClass;
+  }
+
+  /**
+   * @return Type id of this domain class within the dispatched hierarchy
+   */
+  public int getTypeId() {
+    if (dispatchClass == null) {
+      throw new IllegalStateException("Domain class " + getOrigin().getOriginClass() + " is not dispatched");
+    }
+    return typeId;
+  }
+
+  public void setDispatchClass(@Nonnull GenDispatchClass dispatchClass) {
+    checkNonFrozen();
+    if (this.dispatchClass != null) {
+      throw new IllegalStateException("Domain class " + getOrigin().getOriginClass() + " is already dispatched by " +
+          this.dispatchClass.getFqName());
+    }
+    this.typeId = dispatchClass.addMember(this);
+    this.dispatchClass = dispatchClass;
+  }
+
+  /**
+   * @return Fields, that define the natural ordering of the domain objects, in the order of comparison
+   */
+  @Nonnull
+  public List<DomainField> getSortKeys() {
+    return sortKeys;
+  }
+
+  public void addSortKey(@Nonnull DomainField field) {
+    checkNonFrozen();
+    if (sortKeys.contains(field)) {
+      throw new IllegalStateException("Field " + field + " is already a sort key");
+    }
+    sortKeys.add(field);
+  }
+
+  /**
+   * @param field Calculated field
+   * @return Class, that has static method, that calculates value of the given field
+   */
+  @Nonnull
+  public Class<?> getCalculator(@Nonnull DomainField field) {
+    final Class<?> calculator = calculators.get(field);
+    if (calculator == null) {
+      throw new IllegalStateException("Field " + field + " has no calculator");
+    }
+    return calculator;
+  }
+
+  public void putCalculator(@Nonnull DomainField field, @Nonnull Class<?> calculator) {
+    checkNonFrozen();
+    if (calculators.containsKey(field)) {
+      throw new IllegalStateException("Field " + field + " is already calculated");
+    }
+    calculators.put(field, calculator);
+  }
+
   @Override
   protected void setFrozen() {
+    sortKeys = ImmutableList.copyOf(sortKeys);
+    calculators = ImmutableMap.copyOf(calculators);
     genBuilderClass.freeze();
+    genStoreClass.freeze();
+    genPoolClass.freeze();
     super.setFrozen();
   }
 
@@ -36,6 +170,46 @@ public final class GenDomainClass extends GenResultClass<DomainAnalysisResult> {
 
   public static final class GenBuilderClass extends GenEmergentClass implements DomainObjectBuilderSettings {
     private boolean supported;
+    private Map<DomainField, Integer> expectedSizes = new HashMap<>();
+
+    public boolean isSupported() {
+      return supported;
+    }
+
+    public void setSupported(boolean supported) {
+      checkNonFrozen();
+      this.supported = supported;
+    }
+
+    /**
+     * @param field Collection field
+     * @return Typical number of elements of the given collection field or null if it is not known
+     */
+    @Nullable
+    public Integer getExpectedSize(@Nonnull DomainField field) {
+      return expectedSizes.get(field);
+    }
+
+    public void setExpectedSize(@Nonnull DomainField field, int expectedSize) {
+      checkNonFrozen();
+      if (expectedSize <= 0) {
+        throw new IllegalArgumentException("Expected size of " + field + " should be positive");
+      }
+      expectedSizes.put(field, expectedSize);
+    }
+
+    @Override
+    protected void setFrozen() {
+      expectedSizes = ImmutableMap.copyOf(expectedSizes);
+      super.setFrozen();
+    }
+  }
+
+  /**
+   * Represents optional top-level class, generated along with the domain class, e.g. off-heap store or object pool.
+   */
+  public static final class GenCompanionClass extends GenEmergentClass {
+    private boolean supported;
 
     public boolean isSupported() {
       return supported;
@@ -19,6 +19,8 @@ public final class Names {
   public static final String KEY = "key";
   public static final String VALUE = "value";
   public static final String RESULT = "result";
+  public static final String CACHED_HASH_CODE = "cachedHashCode";
+  public static final String POOLED = "pooled";
 
 
   //
@@ -28,6 +30,7 @@ public final class Names {
   public static final String GET_PREFIX = "get";
   public static final String IS_PREFIX = "is";
   public static final String SET_PREFIX = "set";
+  public static final String HAS_PREFIX = "has";
 
   public static boolean isJavaBeanGetter(@Nonnull String methodName) {
     return methodName.startsWith(GET_PREFIX) || methodName.startsWith(IS_PREFIX);
@@ -59,6 +62,26 @@ public final class Names {
         (originName.length() > 1 ? originName.substring(1) : "");
   }
 
+  /**
+   * Creates the name of the static constant, e.g. <code>REQUEST_ID_VALUES</code> for <code>requestId</code>
+   *
+   * @param originName Name in camel case, e.g. field name
+   * @param suffix Suffix, appended to the constant name
+   * @return Constant name in upper case
+   */
+  @Nonnull
+  public static String createConstantName(@Nonnull String originName, @Nonnull String suffix) {
+    final StringBuilder result = new StringBuilder(originName.length() + suffix.length() + 4);
+    for (int i = 0; i < originName.length(); ++i) {
+      final char ch = originName.charAt(i);
+      if (Character.isUpperCase(ch) && i > 0) {
+        result.append('_');
+      }
+      result.append(Character.toUpperCase(ch));
+    }
+    return result.append(suffix).toString();
+  }
+
   //
   // Private
   //
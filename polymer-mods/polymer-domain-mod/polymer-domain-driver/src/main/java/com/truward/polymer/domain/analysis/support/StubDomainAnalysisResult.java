@@ -30,6 +30,12 @@ public final class StubDomainAnalysisResult implements DomainAnalysisResult {
     throw new UnsupportedOperationException();
   }
 
+  @Nonnull
+  @Override
+  public List<DomainField> getStoredFields() {
+    throw new UnsupportedOperationException();
+  }
+
   @Nonnull
   @Override
   public List<DomainField> getDeclaredFields() {
@@ -8,6 +8,7 @@ import com.truward.polymer.core.types.DefaultValues;
 import com.truward.polymer.domain.*;
 import com.truward.polymer.domain.analysis.*;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.implementer.AbstractDomainImplementer;
 import com.truward.polymer.naming.FqName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,7 +18,9 @@ import javax.annotation.Resource;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -63,6 +66,55 @@ public final class DefaultDomainObjectSpecifier implements DomainObjectSpecifier
     return this;
   }
 
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignStore(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignStore();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignWithers(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignWithers();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignPool(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignPool();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignPackedFlags(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignPackedFlags();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignBatchFactory(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignBatchFactory();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignSeqlock(@Nonnull Object domainObjectInstance) {
+    getObjectSettings(getOriginClass(domainObjectInstance)).assignSeqlock();
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier assignDispatch(@Nonnull Object hierarchyRoot) {
+    targetSink.submitDispatch(analysisContext.analyze(getOriginClass(hierarchyRoot)));
+    return this;
+  }
+
   @Nonnull
   @Override
   public DomainObjectSpecifier setTargetName(@Nonnull Object domainObjectInstance, @Nonnull FqName targetName) {
@@ -109,6 +161,18 @@ public final class DefaultDomainObjectSpecifier implements DomainObjectSpecifier
     return putFieldTrait(FieldTrait.NULLABLE);
   }
 
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier isLowCardinality(String field) {
+    return putFieldTrait(FieldTrait.LOW_CARDINALITY);
+  }
+
+  @Nonnull
+  @Override
+  public DomainObjectSpecifier isUnboxed(Object field) {
+    return putFieldTrait(FieldTrait.UNBOXED);
+  }
+
   @Nonnull
   @Override
   public DomainObjectSpecifier isNonNull(Object field) {
@@ -121,12 +185,87 @@ public final class DefaultDomainObjectSpecifier implements DomainObjectSpecifier
     return putFieldTrait(FieldTrait.HAS_LENGTH);
   }
 
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier isSortKey(Object field) {
+    checkRecordingStateAndField();
+    final GenDomainClass target = targetSink.getTarget(currentAnalysisResult);
+    if (target == null) {
+      throw new IllegalStateException("Can't assign sort key: it is not known whether the class has " +
+          "the corresponding generation target or not");
+    }
+    target.addSortKey(currentField);
+    return putFieldTrait(FieldTrait.SORT_KEY);
+  }
+
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier isCalculated(Object field, @Nonnull Class<?> calculatorClass) {
+    checkRecordingStateAndField();
+    final GenDomainClass target = targetSink.getTarget(currentAnalysisResult);
+    if (target == null) {
+      throw new IllegalStateException("Can't assign calculator: it is not known whether the class has " +
+          "the corresponding generation target or not");
+    }
+    final DomainField calculatedField = currentField;
+    checkCalculator(calculatedField, calculatorClass);
+    putFieldTrait(FieldTrait.CALCULATED);
+    target.putCalculator(calculatedField, calculatorClass);
+    return this;
+  }
+
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier isMemoized(Object field) {
+    return putFieldTrait(FieldTrait.MEMOIZED);
+  }
+
   @Override
   @Nonnull
   public DomainObjectSpecifier isNonNegative(int field) {
     return putFieldTrait(FieldTrait.NON_NEGATIVE);
   }
 
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier isMutable(Object field) {
+    return putFieldTrait(FieldTrait.MUTABLE);
+  }
+
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier isAtomic(Object field) {
+    return putFieldTrait(FieldTrait.ATOMIC);
+  }
+
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier hasPrimitiveElements(Collection<?> field) {
+    return putFieldTrait(FieldTrait.PRIMITIVE_ELEMENTS);
+  }
+
+  @Override
+  @Nonnull
+  public DomainObjectSpecifier hasExpectedSize(Object field, int expectedSize) {
+    checkRecordingStateAndField();
+    try {
+      if (AbstractDomainImplementer.getCollectionClass(currentField) == null) {
+        throw new RuntimeException("Only list, set and map fields can have expected size, field " + currentField +
+            " is not a collection");
+      }
+      final GenDomainClass target = targetSink.getTarget(currentAnalysisResult);
+      if (target == null) {
+        throw new IllegalStateException("Can't assign expected size: it is not known whether the class has " +
+            "the corresponding generation target or not");
+      }
+      target.getGenBuilderClass().setExpectedSize(currentField, expectedSize);
+    } finally {
+      currentField = null;
+    }
+
+    return this;
+  }
+
   @Override
   public void setState(@Nonnull SpecificationState state) {
     this.state = state;
@@ -158,6 +297,26 @@ public final class DefaultDomainObjectSpecifier implements DomainObjectSpecifier
     return originClassHolder.getOriginClass(this);
   }
 
+  private void checkCalculator(@Nonnull DomainField field, @Nonnull Class<?> calculatorClass) {
+    final Method getter = field.getOriginMethod(OriginMethodRole.GETTER);
+    if (getter == null) {
+      throw new IllegalStateException("Field " + field + " has no getter");
+    }
+
+    final Method method;
+    try {
+      method = calculatorClass.getMethod(getter.getName(), getter.getDeclaringClass());
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException("Calculator " + calculatorClass + " has no public method " + getter.getName() +
+          " that takes " + getter.getDeclaringClass(), e);
+    }
+
+    if (!Modifier.isStatic(method.getModifiers()) || !getter.getReturnType().equals(method.getReturnType())) {
+      throw new RuntimeException("Calculator method " + method + " is expected to be static and return " +
+          getter.getReturnType());
+    }
+  }
+
   private DomainObjectSpecifier putFieldTrait(@Nonnull FieldTrait fieldTrait) {
     checkRecordingStateAndField();
     try {
@@ -201,6 +360,36 @@ public final class DefaultDomainObjectSpecifier implements DomainObjectSpecifier
       return settings;
     }
 
+    @Override
+    public void assignStore() {
+      getDomainClass().getGenStoreClass().setSupported(true);
+    }
+
+    @Override
+    public void assignWithers() {
+      getDomainClass().setWithersSupported(true);
+    }
+
+    @Override
+    public void assignPool() {
+      getDomainClass().getGenPoolClass().setSupported(true);
+    }
+
+    @Override
+    public void assignPackedFlags() {
+      getDomainClass().setFlagsPacked(true);
+    }
+
+    @Override
+    public void assignBatchFactory() {
+      getDomainClass().setBatchFactorySupported(true);
+    }
+
+    @Override
+    public void assignSeqlock() {
+      getDomainClass().setSeqlockSupported(true);
+    }
+
     @Override
     public void setTargetName(@Nonnull FqName implementationName) {
       getDomainClass().setFqName(implementationName);
@@ -17,6 +17,9 @@ public final class DomainImplementerSettingsProvider extends FreezableSupport
   private FqName defaultTargetPackageName = FqName.valueOf("generated");
   private String defaultImplClassPrefix = "";
   private String defaultImplClassSuffix = "Impl";
+  private boolean hashCodeCachingEnabled = false;
+  private boolean footprintEstimationEnabled = false;
+  private boolean serializationProxyEnabled = false;
 
   @Override
   public void setDefensiveCopyStyle(@Nonnull DefensiveCopyStyle defensiveCopyStyle) {
@@ -48,6 +51,24 @@ public final class DomainImplementerSettingsProvider extends FreezableSupport
     this.defaultImplClassSuffix = suffix;
   }
 
+  @Override
+  public void setHashCodeCachingEnabled(boolean enabled) {
+    checkNonFrozen();
+    this.hashCodeCachingEnabled = enabled;
+  }
+
+  @Override
+  public void setFootprintEstimationEnabled(boolean enabled) {
+    checkNonFrozen();
+    this.footprintEstimationEnabled = enabled;
+  }
+
+  @Override
+  public void setSerializationProxyEnabled(boolean enabled) {
+    checkNonFrozen();
+    this.serializationProxyEnabled = enabled;
+  }
+
   @Nonnull
   @Override
   public FqName getDefaultTargetPackageName() {
@@ -65,4 +86,19 @@ public final class DomainImplementerSettingsProvider extends FreezableSupport
   public String getDefaultImplClassSuffix() {
     return defaultImplClassSuffix;
   }
+
+  @Override
+  public boolean isHashCodeCachingEnabled() {
+    return hashCodeCachingEnabled;
+  }
+
+  @Override
+  public boolean isFootprintEstimationEnabled() {
+    return footprintEstimationEnabled;
+  }
+
+  @Override
+  public boolean isSerializationProxyEnabled() {
+    return serializationProxyEnabled;
+  }
 }
@@ -4,12 +4,21 @@ import com.truward.polymer.core.code.builder.CodeStream;
 import com.truward.polymer.core.code.builder.CodeStreamSupport;
 import com.truward.polymer.domain.analysis.DomainAnalysisResult;
 import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.lang.model.element.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Alexander Shabanov
@@ -48,6 +57,89 @@ public abstract class AbstractDomainImplementer extends CodeStreamSupport {
     return getDomainClass().getOrigin();
   }
 
+  /**
+   * @return True, if at least one of the fields of the generated class can be modified after construction.
+   */
+  public final boolean hasMutableFields() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.MUTABLE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Fields, that are calculated by their calculators rather than kept in the generated class
+   */
+  @Nonnull
+  public final List<DomainField> getCalculatedFields() {
+    final List<DomainField> result = new ArrayList<>();
+    for (final DomainField field : getAnalysisResult().getFields()) {
+      if (field.hasTrait(FieldTrait.CALCULATED)) {
+        result.add(field);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return True, if at least one of the calculated fields keeps its value once it is calculated
+   */
+  public final boolean hasMemoizedFields() {
+    for (final DomainField field : getCalculatedFields()) {
+      if (field.hasTrait(FieldTrait.MEMOIZED)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Generates expression, that calculates value of the given calculated field of this object,
+   * e.g. <code>UserCalculator.getFullName(this)</code>
+   *
+   * @param field Calculated field
+   * @return Current code stream
+   */
+  @Nonnull
+  public final CodeStreamSupport calculate(@Nonnull DomainField field) {
+    return t(getDomainClass().getCalculator(field)).dot(FieldUtil.getMethodName(field, OriginMethodRole.GETTER))
+        .c('(').s("this").c(')');
+  }
+
+  /**
+   * Generates getter of the given calculated field, that calculates the value on each invocation.
+   *
+   * @param field Calculated field
+   */
+  public final void generateCalculatedGetter(@Nonnull DomainField field) {
+    // @Override public final {FieldType} get{FieldName}() { return {Calculator}.get{FieldName}(this); }
+    c('\n');
+    annotate(Override.class).s("public").sp().s("final").sp().t(field.getFieldType()).sp()
+        .s(FieldUtil.getMethodName(field, OriginMethodRole.GETTER)).c('(', ')', ' ', '{');
+    s("return").sp();
+    calculate(field).c(';');
+    c('}');
+  }
+
+  /**
+   * @param field Domain field
+   * @return Collection interface, i.e. {@link List}, {@link Set} or {@link Map} that corresponds to the field type or
+   * null if the given field is not a collection.
+   */
+  @Nullable
+  public static Class<?> getCollectionClass(@Nonnull DomainField field) {
+    final Type fieldType = field.getFieldType();
+    if (fieldType instanceof ParameterizedType) {
+      final Type rawType = ((ParameterizedType) fieldType).getRawType();
+      if (List.class.equals(rawType) || Set.class.equals(rawType) || Map.class.equals(rawType)) {
+        return (Class<?>) rawType;
+      }
+    }
+    return null;
+  }
+
   @Nonnull
   public final CodeStreamSupport field(@Nonnull DomainField field, @Nonnull List<Modifier> mods) {
     return this.var(field.getFieldType(), field.getFieldName(), mods).c(';');
@@ -0,0 +1,49 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.domain.DefensiveCopyStyle;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldUtil;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Helpers for the array fields of the generated class. Arrays are copied on the way in and out of the domain object
+ * unless defensive copies are disabled, while hash code, equals and string representation of the arrays
+ * are delegated to {@link Arrays}.
+ *
+ * @author Alexander Shabanov
+ */
+final class ArrayFields {
+  private ArrayFields() {}
+
+  /**
+   * @return True, if the given field is an array, that is copied on the way in and out of the domain object
+   */
+  public static boolean isCopied(@Nonnull DomainField field, @Nonnull DefensiveCopyStyle defensiveCopyStyle) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    return fieldClass != null && fieldClass.isArray() && defensiveCopyStyle != DefensiveCopyStyle.NONE;
+  }
+
+  /**
+   * @return Expression, that evaluates to the shallow copy of the given array value
+   */
+  @Nonnull
+  public static String getCopy(@Nonnull DomainField field, @Nonnull String value) {
+    if (FieldUtil.isNullable(field)) {
+      return value + " != null ? " + value + ".clone() : null";
+    }
+    return value + ".clone()";
+  }
+
+  /**
+   * @return Name of the {@link Arrays} method, that handles the given array type, nested arrays need deep methods
+   */
+  @Nonnull
+  public static String getArraysMethod(@Nonnull Class<?> arrayClass, @Nonnull String method) {
+    if (arrayClass.getComponentType().isArray()) {
+      return "deep" + Character.toUpperCase(method.charAt(0)) + method.substring(1);
+    }
+    return method;
+  }
+}
@@ -0,0 +1,167 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Encapsulates generation of the static field updaters and of the methods, that atomically update the fields
+ * with {@link FieldTrait#ATOMIC} trait through them, e.g. <code>compareAndSet{FieldName}</code>.
+ *
+ * @author Alexander Shabanov
+ */
+final class AtomicImplementer extends AbstractDomainImplementer {
+  private static final String UPDATER_SUFFIX = "_UPDATER";
+  private static final String NEW_UPDATER = "newUpdater";
+  private static final String EXPECT = "expect";
+  private static final String UPDATE = "update";
+  private static final String DELTA = "delta";
+
+  private final ClassImplementer classImplementer;
+
+  AtomicImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                    @Nonnull ClassImplementer classImplementer) {
+    super(codeStream, domainClass);
+    this.classImplementer = classImplementer;
+  }
+
+  /**
+   * Generates static field updaters of all the atomic fields.
+   */
+  public void generateUpdaters() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.ATOMIC)) {
+        final Class<?> fieldClass = field.getFieldTypeAsClass();
+        assert fieldClass != null;
+        generateUpdater(field.getFieldName(), fieldClass);
+      }
+    }
+  }
+
+  /**
+   * Generates static field updater of the given volatile field, e.g.
+   * <code>AtomicLongFieldUpdater.newUpdater({TargetClass}.class, "{fieldName}")</code>.
+   *
+   * @param fieldName Name of the field
+   * @param fieldClass Type of the field
+   */
+  public void generateUpdater(@Nonnull String fieldName, @Nonnull Class<?> fieldClass) {
+    final Class<?> updaterClass = getUpdaterClass(fieldClass);
+
+    // private static final {Updater}<{TargetClass}[, {FieldType}]> {FIELD_NAME}_UPDATER =
+    s("private").sp().s("static").sp().s("final").sp().t(updaterClass).c('<').t(getDomainClass());
+    if (AtomicReferenceFieldUpdater.class.equals(updaterClass)) {
+      c(',').sp().t(fieldClass);
+    }
+    c('>').sp().s(getUpdaterName(fieldName)).spc('=');
+
+    // {Updater}.newUpdater({TargetClass}.class[, {FieldType}.class], "{fieldName}");
+    t(updaterClass).dot(NEW_UPDATER).c('(').t(getDomainClass()).dot("class");
+    if (AtomicReferenceFieldUpdater.class.equals(updaterClass)) {
+      c(',').sp().t(fieldClass).dot("class");
+    }
+    c(',').sp().val(fieldName).c(')', ';');
+  }
+
+  /**
+   * Generates methods, that atomically update the given field through its field updater:
+   * <code>compareAndSet{FieldName}</code>, <code>getAndSet{FieldName}</code> and, for the numeric fields,
+   * <code>getAndAdd{FieldName}</code> and <code>addAndGet{FieldName}</code>.
+   */
+  public void generateAtomicUpdates(@Nonnull DomainField field) {
+    final Type fieldType = field.getFieldType();
+
+    // public final boolean compareAndSet{FieldName}({FieldType} expect, {FieldType} update) {
+    c('\n');
+    s("public").sp().s("final").sp().t(boolean.class).sp()
+        .s(Names.createPrefixedName("compareAndSet", field.getFieldName())).c('(')
+        .var(fieldType, EXPECT).c(',').sp().var(fieldType, UPDATE).c(')', ' ', '{');
+    generateAtomicUpdate(field, boolean.class, "compareAndSet", EXPECT, UPDATE);
+    c('}');
+
+    // public final {FieldType} getAndSet{FieldName}({FieldType} value) {
+    c('\n');
+    s("public").sp().s("final").sp().t(fieldType).sp()
+        .s(Names.createPrefixedName("getAndSet", field.getFieldName())).c('(')
+        .var(fieldType, Names.VALUE).c(')', ' ', '{');
+    generateAtomicUpdate(field, fieldType, "getAndSet", Names.VALUE);
+    c('}');
+
+    if (!field.isPrimitive()) {
+      return;
+    }
+
+    // public final {FieldType} getAndAdd{FieldName}({FieldType} delta) { ... }
+    // public final {FieldType} addAndGet{FieldName}({FieldType} delta) { ... }
+    for (final String method : ImmutableList.of("getAndAdd", "addAndGet")) {
+      c('\n');
+      s("public").sp().s("final").sp().t(fieldType).sp()
+          .s(Names.createPrefixedName(method, field.getFieldName())).c('(')
+          .var(fieldType, DELTA).c(')', ' ', '{');
+      generateAtomicUpdate(field, fieldType, method, DELTA);
+      c('}');
+    }
+  }
+
+  /**
+   * @return Name of the static field updater of the given field, e.g. <code>COUNT_UPDATER</code>
+   */
+  @Nonnull
+  public static String getUpdaterName(@Nonnull String fieldName) {
+    return Names.createConstantName(fieldName, UPDATER_SUFFIX);
+  }
+
+  //
+  // Private
+  //
+
+  private void generateAtomicUpdate(DomainField field, Type resultType, String updaterMethod, String... args) {
+    // {FIELD_NAME}_UPDATER.{updaterMethod}(this, {args})
+    final boolean memoized = hasMemoizedFields();
+    if (memoized) {
+      // final {ResultType} result = ...
+      var(resultType, Names.RESULT, ImmutableList.of(Modifier.FINAL)).spc('=');
+    } else {
+      // return ...
+      s("return").sp();
+    }
+    s(getUpdaterName(field.getFieldName())).dot(updaterMethod).c('(').s("this");
+    for (final String arg : args) {
+      c(',').sp().s(arg);
+    }
+    c(')', ';');
+
+    if (memoized) {
+      if ("compareAndSet".equals(updaterMethod)) {
+        // failed compare-and-set changes nothing, so that the memoized values are kept
+        s("if").sp().c('(').s(Names.RESULT).c(')', ' ', '{');
+        classImplementer.generateMemoizedReset();
+        c('}');
+      } else {
+        // memoized values are discarded even if the value has not been changed
+        classImplementer.generateMemoizedReset();
+      }
+      s("return").sp().s(Names.RESULT).c(';');
+    }
+  }
+
+  @Nonnull
+  private static Class<?> getUpdaterClass(Class<?> fieldClass) {
+    if (int.class.equals(fieldClass)) {
+      return AtomicIntegerFieldUpdater.class;
+    } else if (long.class.equals(fieldClass)) {
+      return AtomicLongFieldUpdater.class;
+    }
+    return AtomicReferenceFieldUpdater.class;
+  }
+}
@@ -0,0 +1,156 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Encapsulates generation of the batch factory, that creates many domain objects at once from the columns of their
+ * field values, and of the private constructor, that the factory uses to create each object.
+ *
+ * @author Alexander Shabanov
+ */
+final class BatchFactoryImplementer extends AbstractDomainImplementer {
+  private static final String COLUMN_SUFFIX = "Column";
+  private static final String BATCH = "batch";
+  private static final String BATCH_SIZE = "batchSize";
+  private static final String INDEX = "index";
+
+  private final ClassImplementer classImplementer;
+
+  BatchFactoryImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                          @Nonnull ClassImplementer classImplementer) {
+    super(codeStream, domainClass);
+    this.classImplementer = classImplementer;
+  }
+
+  /**
+   * Generates constructor, that takes the given element of each column and assigns it the same way the public one
+   * does, but does not check it, so that the batch factory can check the values column by column.
+   */
+  public void generateColumnConstructor() {
+    // private {TargetClass}({FieldType1}[] {fieldName1}Column, ..., int index) {
+    c('\n');
+    s("private").sp().t(getDomainClass()).c('(');
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      var(getColumnType(field), getColumnName(field)).c(',', ' ');
+    }
+    var(int.class, INDEX).c(')', ' ', '{');
+
+    // final {FieldType1} {fieldName1} = {fieldName1}Column[index];
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      s("final").sp().var(field.getFieldType(), field.getFieldName()).spc('=')
+          .s(getColumnElement(field, getColumnName(field))).c(';');
+    }
+    classImplementer.generateAssignments();
+    c('}');
+  }
+
+  /**
+   * Generates static factory, that creates objects from the columns of their field values, i.e. i-th object takes
+   * i-th element of each column. Columns of the fields, that have non-generic type, are arrays, e.g.
+   * <code>int[]</code> or <code>String[]</code>, columns of the collection fields are lists.
+   * Each column is checked in a separate loop before any object is created.
+   */
+  public void generateBatchFactory() {
+    final List<DomainField> fields = getAnalysisResult().getStoredFields();
+    if (fields.isEmpty()) {
+      throw new RuntimeException("Batch factory can't be generated for " + getOriginClass() + " as it has no fields");
+    }
+
+    // public static {TargetClass}[] newBatch({FieldType1}[] {fieldName1}, List<{FieldType2}> {fieldName2}, ...) {
+    c('\n').s("public").sp().s("static").sp().t(getDomainClass()).s("[]").sp().s("newBatch").c('(');
+    boolean next = false;
+    for (final DomainField field : fields) {
+      if (next) {
+        c(',', ' ');
+      } else {
+        next = true;
+      }
+      var(getColumnType(field), field.getFieldName());
+    }
+    c(')', ' ', '{');
+
+    // final int batchSize = {fieldName1}.length;
+    s("final").sp().t(int.class).sp().s(BATCH_SIZE).spc('=').s(getColumnSize(fields.get(0))).c(';');
+    for (final DomainField field : fields.subList(1, fields.size())) {
+      // if ({fieldName}.length != batchSize) { throw new IllegalArgumentException(...); }
+      s("if").sp().c('(').s(getColumnSize(field)).sps("!=").s(BATCH_SIZE).c(')', ' ', '{');
+      s("throw").sp().newType(IllegalArgumentException.class).c('(')
+          .val("Column '" + field.getFieldName() + "' has unexpected size").c(')', ';');
+      c('}');
+    }
+
+    // column by column checks
+    for (final DomainField field : fields) {
+      if (!hasChecks(field)) {
+        continue;
+      }
+      generateBatchLoop();
+      classImplementer.generateChecks(field, getColumnElement(field));
+      c('}');
+    }
+
+    // final {TargetClass}[] batch = new {TargetClass}[batchSize];
+    s("final").sp().t(getDomainClass()).s("[]").sp().s(BATCH).spc('=').s("new").sp().t(getDomainClass())
+        .c('[').s(BATCH_SIZE).c(']', ';');
+    generateBatchLoop();
+    // batch[index] = new {TargetClass}({fieldName1}, ..., index);
+    s(BATCH).c('[').s(INDEX).c(']').spc('=').newType(getDomainClass()).c('(');
+    for (final DomainField field : fields) {
+      s(field.getFieldName()).c(',', ' ');
+    }
+    s(INDEX).c(')', ';');
+    c('}');
+
+    s("return").sp().s(BATCH).c(';');
+    c('}');
+  }
+
+  //
+  // Private
+  //
+
+  private void generateBatchLoop() {
+    // for (int index = 0; index < batchSize; ++index) {
+    s("for").sp().c('(').t(int.class).sp().s(INDEX).spc('=').c('0').s("; " + INDEX + " < " + BATCH_SIZE + "; ++" +
+        INDEX).c(')', ' ', '{');
+  }
+
+  /**
+   * @return Type of the batch factory parameter, that holds values of the given field
+   */
+  private static Type getColumnType(DomainField field) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    return fieldClass != null ? Array.newInstance(fieldClass, 0).getClass() :
+        SynteticParameterizedType.from(List.class, field.getFieldType());
+  }
+
+  private static String getColumnSize(DomainField field) {
+    return field.getFieldName() + (field.getFieldTypeAsClass() != null ? ".length" : ".size()");
+  }
+
+  private static String getColumnElement(DomainField field) {
+    return getColumnElement(field, field.getFieldName());
+  }
+
+  private static String getColumnElement(DomainField field, String column) {
+    return column + (field.getFieldTypeAsClass() != null ? "[" + INDEX + "]" : ".get(" + INDEX + ")");
+  }
+
+  private static String getColumnName(DomainField field) {
+    return field.getFieldName() + COLUMN_SUFFIX;
+  }
+
+  private static boolean hasChecks(DomainField field) {
+    return FieldUtil.isNullCheckRequired(field) || field.hasTrait(FieldTrait.NON_NEGATIVE);
+  }
+}
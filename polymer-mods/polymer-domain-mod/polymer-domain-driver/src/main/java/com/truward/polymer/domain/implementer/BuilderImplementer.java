@@ -1,10 +1,10 @@
 package com.truward.polymer.domain.implementer;
 
 import com.truward.polymer.core.code.builder.CodeStream;
-import com.truward.polymer.core.code.typed.GenClass;
 import com.truward.polymer.core.code.typed.TypeVisitor;
 import com.truward.polymer.core.types.SynteticParameterizedType;
 import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
 import com.truward.polymer.domain.analysis.FieldUtil;
 import com.truward.polymer.domain.analysis.OriginMethodRole;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
@@ -22,6 +22,13 @@ import java.util.*;
  * @author Alexander Shabanov
  */
 public final class BuilderImplementer extends AbstractDomainImplementer {
+  private static final String COLLECTIONS_SHARED = "collectionsShared";
+  private static final String UNSHARE_COLLECTIONS = "unshareCollections";
+
+  /**
+   * Default load factor of the hash-based collections
+   */
+  private static final float HASH_LOAD_FACTOR = 0.75f;
 
   public BuilderImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
     super(codeStream, domainClass);
@@ -34,12 +41,12 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
   }
 
   @Nonnull
-  public GenClass getBuilderClass() {
+  public GenDomainClass.GenBuilderClass getBuilderClass() {
     return getDomainClass().getGenBuilderClass();
   }
 
   public void generateInnerBuilder() {
-    final List<DomainField> fields = getAnalysisResult().getFields();
+    final List<DomainField> fields = getAnalysisResult().getStoredFields();
 
     generateEmptyNewBuilderMethod();
     generateNewBuilderMethod(fields);
@@ -54,6 +61,12 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
       field(field, Modifier.PRIVATE);
     }
 
+    // collections are shared with the last built object until the next modification
+    final boolean hasCollections = hasCollectionFields(fields);
+    if (hasCollections) {
+      var(boolean.class, COLLECTIONS_SHARED, Arrays.asList(Modifier.PRIVATE)).c(';');
+    }
+
     // private constructor
     eol().s("private").sp().t(getBuilderClass()).c('(').c(')', ' ', '{');
     // we need to initialize certain fields
@@ -67,7 +80,12 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
       generateSettersForBuilder(field);
     }
 
-    generateBuildMethod(fields);
+    generateBuildMethod(hasCollections);
+    generateResetMethod(fields, hasCollections);
+
+    if (hasCollections) {
+      generateUnshareCollectionsMethod(fields);
+    }
 
     c('}'); // end of 'class Builder'
   }
@@ -128,23 +146,99 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
         .c('}');
   }
 
-  private void generateBuildMethod(List<DomainField> fields) {
-    c('\n').s("public").sp().t(getDomainClass()).sp().s("build")
-        .c('(', ')', ' ', '{').s("return").sp().newType(getDomainClass()).c('(');
-    boolean next = false;
+  private void generateBuildMethod(boolean hasCollections) {
+    // public {TargetClass} build() {
+    c('\n').s("public").sp().t(getDomainClass()).sp().s("build").c('(', ')', ' ', '{');
+    if (hasCollections) {
+      // built object takes ownership over the collections, so the builder copies them on the next modification
+      s("final").sp().t(getDomainClass()).sp().s(Names.RESULT).spc('=').newType(getDomainClass()).c('(')
+          .s("this").c(')', ';');
+      thisDot(COLLECTIONS_SHARED).spc('=').val(true).c(';');
+      s("return").sp().s(Names.RESULT).c(';');
+    } else {
+      s("return").sp().newType(getDomainClass()).c('(').s("this").c(')', ';');
+    }
+    c('}');
+  }
+
+  /**
+   * Generates method, that returns builder to its initial state, so that the same builder can be used to build
+   * the next object. Collections, that are owned by the builder, are cleared and keep their capacity, the ones, that
+   * are shared with the last built object, are replaced.
+   */
+  private void generateResetMethod(List<DomainField> fields, boolean hasCollections) {
+    // public Builder reset() {
+    c('\n').s("public").sp().t(getBuilderClass()).sp().s("reset").c('(', ')', ' ', '{');
     for (final DomainField field : fields) {
-      if (next) {
-        c(',', ' ');
+      if (getCollectionClass(field) != null) {
+        continue;
+      }
+      // this.{fieldName} = {DefaultValue};
+      final Type fieldType = field.getFieldType();
+      thisDot(field.getFieldName()).spc('=');
+      if (boolean.class.equals(fieldType)) {
+        val(false);
+      } else if (field.isPrimitive()) {
+        c('0');
       } else {
-        next = true;
+        s("null");
+      }
+      c(';');
+    }
+
+    if (hasCollections) {
+      // if (this.collectionsShared) { this.{fieldName} = new ArrayList<{Type}>(); ... } else { ... }
+      s("if").sp().c('(').thisDot(COLLECTIONS_SHARED).c(')', ' ', '{');
+      for (final DomainField field : fields) {
+        if (!field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+          generateBuilderCollection(field, false);
+        }
+      }
+      thisDot(COLLECTIONS_SHARED).spc('=').val(false).c(';');
+      c('}').s("else").sp().c('{');
+      for (final DomainField field : fields) {
+        if (getCollectionClass(field) != null && !field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+          thisDot(field.getFieldName()).dot("clear").c('(', ')', ';');
+        }
+      }
+      c('}');
+
+      // primitive collections are copied by the built object, so that builder always owns them
+      for (final DomainField field : fields) {
+        if (field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+          thisDot(field.getFieldName()).dot("clear").c('(', ')', ';');
+        }
       }
-      s(field.getFieldName());
     }
-    c(')', ';', '}');
+
+    // return this;
+    s("return").sp().s("this").c(';');
+    c('}');
+  }
+
+  private static boolean hasCollectionFields(List<DomainField> fields) {
+    for (final DomainField field : fields) {
+      if (getCollectionClass(field) != null) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private void generateInitializerForBuilderField(DomainField field) {
+    generateBuilderCollection(field, false);
+  }
+
+  /**
+   * Generates builder's collection: <code>this.{fieldName} = new ArrayList&lt;{Type}&gt;();</code>
+   * New empty collection is given the capacity, that corresponds to the expected size of the field, if it is known.
+   *
+   * @param field Domain field, nothing is generated if it is not a collection
+   * @param copy Whether the current content of the collection should be copied
+   */
+  private void generateBuilderCollection(DomainField field, final boolean copy) {
     final String fieldName = field.getFieldName();
+    final Integer expectedSize = copy ? null : getBuilderClass().getExpectedSize(field);
     TypeVisitor.apply(new TypeVisitor<Void>() {
       @Override
       public Void visitType(@Nonnull Type sourceType) {
@@ -166,10 +260,17 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
           rawTypeForCopy = HashSet.class;
         }
 
-        // generate copy: new RawType<{Args..}>(fieldName); - e.g. new ArrayList<{Type}(fieldName);
+        // generate collection: new RawType<{Args..}>(); - e.g. new ArrayList<{Type}>();
         if (rawTypeForCopy != null) {
           thisDot(fieldName).c(' ', '=', ' ')
-              .newType(SynteticParameterizedType.from(rawTypeForCopy, args)).c('(').s(fieldName).c(')', ';');
+              .newType(SynteticParameterizedType.from(rawTypeForCopy, args)).c('(');
+          if (copy) {
+            thisDot(fieldName);
+          } else if (expectedSize != null) {
+            // hash-based collections should not exceed their load factor
+            val(ArrayList.class.equals(rawTypeForCopy) ? expectedSize : (int) (expectedSize / HASH_LOAD_FACTOR) + 1);
+          }
+          c(')', ';');
           return null;
         }
 
@@ -178,6 +279,21 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
     }, field.getFieldType());
   }
 
+  private void generateUnshareCollectionsMethod(List<DomainField> fields) {
+    // private void unshareCollections() {
+    c('\n').s("private").sp().t(void.class).sp().s(UNSHARE_COLLECTIONS).c('(', ')', ' ', '{');
+    s("if").sp().c('(').thisDot(COLLECTIONS_SHARED).c(')', ' ', '{');
+    for (final DomainField field : fields) {
+      if (!field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+        // primitive collections are always copied, so that builder keeps ownership over them
+        generateBuilderCollection(field, true);
+      }
+    }
+    thisDot(COLLECTIONS_SHARED).spc('=').val(false).c(';');
+    c('}');
+    c('}');
+  }
+
   private void generateSettersForBuilder(DomainField field) {
     final String fieldName = field.getFieldName();
     TypeVisitor.apply(new TypeVisitor<Void>() {
@@ -244,6 +360,7 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
     // arg - ({ElementType} element)
     var(elementType, elementParam);
     c(')', ' ', '{');
+    s(UNSHARE_COLLECTIONS).c('(', ')', ';');
     // this.{fieldName}.add(element);
     thisDot(fieldName).dot("add").c('(').s(elementParam).c(')', ';');
     // return this;
@@ -284,6 +401,7 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
     // arg - ({FieldType} elements)
     var(parameterType, paramName);
     c(')', ' ', '{');
+    s(UNSHARE_COLLECTIONS).c('(', ')', ';');
     // this.{fieldName}.addAll(elements);
     thisDot(fieldName).dot("addAll").c('(').s(paramName).c(')', ';');
     // return this;
@@ -301,6 +419,7 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
     // arg - ({KeyType} key, {ValueType} value)
     var(keyType, keyParam).c(',', ' ').var(valueType, valueParam);
     c(')', ' ', '{');
+    s(UNSHARE_COLLECTIONS).c('(', ')', ';');
     // this.{fieldName}.put(key, value);
     thisDot(fieldName).dot("put").c('(').s(keyParam).c(',', ' ').s(valueParam).c(')', ';');
     // return this;
@@ -317,6 +436,7 @@ public final class BuilderImplementer extends AbstractDomainImplementer {
     // arg - ({FieldType} elements)
     var(fieldType, elementsName);
     c(')', ' ', '{');
+    s(UNSHARE_COLLECTIONS).c('(', ')', ';');
     // this.{fieldName}.putAll(elements);
     thisDot(fieldName).dot("putAll").c('(').s(elementsName).c(')', ';');
     // return this;
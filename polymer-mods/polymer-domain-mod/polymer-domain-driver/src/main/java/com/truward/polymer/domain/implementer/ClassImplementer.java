@@ -6,11 +6,18 @@ import com.google.common.collect.ImmutableSet;
 import com.truward.polymer.core.code.builder.CodeStream;
 import com.truward.polymer.core.code.typed.TypeVisitor;
 import com.truward.polymer.core.types.DefaultValues;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.DefensiveCopyStyle;
 import com.truward.polymer.domain.analysis.*;
+import com.truward.polymer.domain.analysis.support.GenDispatchClass;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.lang.model.element.Modifier;
+import java.io.Serializable;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
 
@@ -20,83 +27,395 @@ import java.util.*;
  * @author Alexander Shabanov
  */
 public final class ClassImplementer extends AbstractDomainImplementer {
+  private static final String APPEND_TO = "appendTo";
+  private static final String NEXT = "next";
+  private static final String CALCULATED_SUFFIX = "Calculated";
+  private static final String MEMO_STAMP = "memoStamp";
+
+  /**
+   * Typical lengths of the string representations, used for pre-sizing string builder in toString
+   */
+  private static final Map<Class<?>, Integer> ESTIMATED_LENGTHS = ImmutableMap.<Class<?>, Integer>builder()
+      .put(boolean.class, 5).put(Boolean.class, 5)
+      .put(byte.class, 4).put(Byte.class, 4)
+      .put(char.class, 1).put(Character.class, 1)
+      .put(short.class, 6).put(Short.class, 6)
+      .put(int.class, 11).put(Integer.class, 11)
+      .put(long.class, 20).put(Long.class, 20)
+      .put(float.class, 15).put(Float.class, 15)
+      .put(double.class, 24).put(Double.class, 24)
+      .put(String.class, 16)
+      .build();
+  private static final int ESTIMATED_OBJECT_LENGTH = 32;
+  private static final int ESTIMATED_COLLECTION_LENGTH = 64;
+
   // current generator
   private final DomainImplementerSettingsReader implementerSettings;
-
+  private final Map<Class<?>, GenDomainClass> domainTargets;
+  private final boolean hashCodeCached;
+  private final PackedFlags packedFlags;
+  private final PackedFlagsImplementer packedFlagsImplementer;
+  private final FrozenCollectionImplementer frozenCollections;
+  private final PrimitiveCollectionImplementer primitiveCollections;
+  private final DictionaryImplementer dictionary;
+  private final AtomicImplementer atomicImplementer;
+  private final SeqlockImplementer seqlock;
+  private final boolean memoStamped;
+
+  /**
+   * @param codeStream Target code stream
+   * @param domainClass Domain class to be generated
+   * @param implementerSettings Global settings
+   * @param domainTargets All the domain classes, generated along with the given one, mapped to their origin classes
+   */
   public ClassImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
-                          @Nonnull DomainImplementerSettingsReader implementerSettings) {
+                          @Nonnull DomainImplementerSettingsReader implementerSettings,
+                          @Nonnull Map<Class<?>, GenDomainClass> domainTargets) {
     super(codeStream, domainClass);
     this.implementerSettings = implementerSettings;
+    this.domainTargets = domainTargets;
+    // hash code can only be cached if none of the fields can change after construction
+    this.hashCodeCached = implementerSettings.isHashCodeCachingEnabled() && !hasMutableFields();
+    this.memoStamped = hasMemoizedFields() && hasMutableFields();
+    this.packedFlags = PackedFlags.of(getAnalysisResult().getStoredFields(), domainClass.isFlagsPacked());
+    this.packedFlagsImplementer = new PackedFlagsImplementer(codeStream, domainClass, packedFlags);
+    this.frozenCollections = new FrozenCollectionImplementer(codeStream, domainClass, implementerSettings,
+        domainTargets);
+    this.primitiveCollections = new PrimitiveCollectionImplementer(codeStream, domainClass, domainTargets);
+    this.dictionary = new DictionaryImplementer(codeStream, domainClass);
+    this.atomicImplementer = new AtomicImplementer(codeStream, domainClass, this);
+    this.seqlock = domainClass.isSeqlockSupported() ? new SeqlockImplementer(codeStream, domainClass, this) : null;
   }
 
   public void generateHead() {
     publicFinalClass().s(getDomainClass().getFqName().getName());
 
     // implements
-    sp().s("implements").sp().t(getAnalysisResult().getOriginClass()).c(' ', '{');
+    sp().s("implements").sp().t(getAnalysisResult().getOriginClass());
+    if (implementerSettings.isSerializationProxyEnabled()) {
+      c(',').sp().t(Serializable.class);
+    }
+    final GenDispatchClass dispatchClass = getDomainClass().getDispatchClass();
+    if (dispatchClass != null) {
+      c(',').sp().t(dispatchClass).dot(DispatchImplementer.TYPED);
+    }
+    c(' ', '{');
+
+    if (dispatchClass != null) {
+      // public static final int TYPE_ID = {TypeId};
+      s("public").sp().s("static").sp()
+          .var(int.class, DispatchImplementer.TYPE_ID_CONSTANT, ImmutableList.of(Modifier.FINAL))
+          .spc('=').val(getDomainClass().getTypeId()).c(';');
+    }
+
+    // packed enum values
+    packedFlagsImplementer.generateValues();
+
+    if (dictionary.isDictionaryNeeded()) {
+      dictionary.generateDictionary();
+    }
+    frozenCollections.generateImmutableTypes();
+
+    atomicImplementer.generateUpdaters();
+    if (memoStamped) {
+      // memo stamp is incremented through the updater, so that the concurrent modifications never lose increments
+      atomicImplementer.generateUpdater(MEMO_STAMP, int.class);
+    }
 
     // fields
-    for (final DomainField field : getAnalysisResult().getFields()) {
-      final List<Modifier> modifiers = field.hasTrait(FieldTrait.MUTABLE) ? ImmutableList.<Modifier>of() :
-          ImmutableList.of(Modifier.FINAL);
-      field(field, modifiers);
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field)) {
+        continue;
+      }
+      final List<Modifier> modifiers;
+      if (field.hasTrait(FieldTrait.ATOMIC) ||
+          (field.hasTrait(FieldTrait.MUTABLE) && getDomainClass().isSeqlockSupported())) {
+        modifiers = ImmutableList.of(Modifier.VOLATILE);
+      } else {
+        modifiers = field.hasTrait(FieldTrait.MUTABLE) ? ImmutableList.<Modifier>of() :
+            ImmutableList.of(Modifier.FINAL);
+      }
+      var(getStorageType(field), field.getFieldName(), modifiers).c(';');
+    }
+    packedFlagsImplementer.generateWords();
+    if (seqlock != null) {
+      seqlock.generateFields();
+    }
+
+    if (getDomainClass().getGenPoolClass().isSupported()) {
+      // transient boolean pooled; - guarded by the pool, that lives in the same package
+      var(boolean.class, Names.POOLED, ImmutableList.of(Modifier.TRANSIENT)).c(';');
+    }
+
+    if (hashCodeCached) {
+      // private int cachedHashCode;
+      var(int.class, Names.CACHED_HASH_CODE, ImmutableList.of(Modifier.PRIVATE)).c(';');
+    }
+    for (final DomainField field : getCalculatedFields()) {
+      if (field.hasTrait(FieldTrait.MEMOIZED)) {
+        generateMemoizedFields(field);
+      }
+    }
+    if (memoStamped) {
+      // private transient volatile int memoStamp;
+      var(int.class, MEMO_STAMP, ImmutableList.of(Modifier.PRIVATE, Modifier.TRANSIENT, Modifier.VOLATILE)).c(';');
     }
 
     // ctor
     generateConstructor();
+    if (getDomainClass().getGenBuilderClass().isSupported()) {
+      generateTrustedConstructor();
+    }
+    if (getDomainClass().getGenPoolClass().isSupported()) {
+      generateRecyclingConstructor();
+    }
+    // withers make sense for the immutable objects only
+    final WitherImplementer witherImplementer = getDomainClass().isWithersSupported() && !hasMutableFields() ?
+        new WitherImplementer(getRootCodeStream(), getDomainClass(), this) : null;
+    if (witherImplementer != null) {
+      witherImplementer.generateSharingConstructor();
+    }
+    if (getDomainClass().isBatchFactorySupported()) {
+      final BatchFactoryImplementer batchFactoryImplementer = new BatchFactoryImplementer(getRootCodeStream(),
+          getDomainClass(), this);
+      batchFactoryImplementer.generateColumnConstructor();
+      batchFactoryImplementer.generateBatchFactory();
+    }
 
     // getters
-    for (final DomainField field : getAnalysisResult().getFields()) {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
       generateFinalGetter(field);
+      if (packedFlags.hasPresenceBit(field)) {
+        packedFlagsImplementer.generatePresenceGetters(field);
+      }
+    }
+    for (final DomainField field : getCalculatedFields()) {
+      if (field.hasTrait(FieldTrait.MEMOIZED)) {
+        generateMemoizedGetter(field);
+      } else {
+        generateCalculatedGetter(field);
+      }
+    }
+
+    if (getDomainClass().getDispatchClass() != null) {
+      // @Override public int typeId() { return TYPE_ID; }
+      annotate(Override.class).s("public").sp().t(int.class).sp().s(DispatchImplementer.TYPE_ID).c('(', ')', ' ', '{')
+          .s("return").sp().s(DispatchImplementer.TYPE_ID_CONSTANT).c(';')
+          .c('}');
     }
 
     // setters
-    for (final DomainField field : getAnalysisResult().getFields()) {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
       generateFinalSetter(field);
+      if (field.hasTrait(FieldTrait.ATOMIC)) {
+        atomicImplementer.generateAtomicUpdates(field);
+      }
+    }
+    if (seqlock != null) {
+      seqlock.generateUpdate();
+      seqlock.generateSnapshot();
+    }
+
+    if (getDomainClass().getGenPoolClass().isSupported()) {
+      generateReset();
+    }
+
+    // withers
+    if (witherImplementer != null) {
+      witherImplementer.generateWithers();
     }
 
     // toString
     c('\n');
-    generateToString(getAnalysisResult().getFields());
+    generateToString(getAnalysisResult().getStoredFields());
+
+    c('\n');
+    generateAppendTo(getAnalysisResult().getStoredFields());
 
     // hashCode
     c('\n');
-    generateHashCode(getAnalysisResult().getFields());
+    generateHashCode(getAnalysisResult().getStoredFields());
 
     // equals
     c('\n');
-    generateEquals(getAnalysisResult().getFields());
+    generateEquals(getAnalysisResult().getStoredFields());
+
+    if (dictionary.isDictionaryNeeded()) {
+      c('\n');
+      dictionary.generateCanonicalize();
+    }
   }
 
   public void generateEpilogue() {
     c('}'); // end of class body
   }
 
+  @Nonnull
+  PackedFlags getPackedFlags() {
+    return packedFlags;
+  }
+
   //
   // Private
   //
 
   private void generateFinalSetter(DomainField field) {
-    final String setterName = FieldUtil.getMethodName(field, OriginMethodRole.SETTER);
-    if (setterName == null) {
-      // no setter
-      return;
-    }
-
     final String fieldName = field.getFieldName();
+    String setterName = FieldUtil.getMethodName(field, OriginMethodRole.SETTER);
+    final boolean overridden = setterName != null;
+    if (!overridden) {
+      if (!field.hasTrait(FieldTrait.MUTABLE)) {
+        // no setter
+        return;
+      }
+      // mutable field with no setter in the origin interface
+      setterName = Names.createPrefixedName(Names.SET_PREFIX, fieldName);
+    }
 
     // @Override public void set{FieldName}
     c('\n');
-    annotate(Override.class).s("public").sp().s("final").sp().t(void.class).sp();
+    if (overridden) {
+      annotate(Override.class);
+    }
+    s("public").sp().s("final").sp();
+    if (getDomainClass().isSeqlockSupported()) {
+      s("synchronized").sp();
+    }
+    t(void.class).sp();
     s(setterName).c('(');
     // arg - ({FieldType} {FieldName})
     var(field.getFieldType(), fieldName);
     c(')', ' ', '{');
-    // impl { this.{FieldName} = {FieldName}; }
-    thisDot(fieldName).c(' ', '=', ' ').s(fieldName).c(';');
+    if (seqlock != null) {
+      seqlock.generateUpdateBegin();
+    }
+    generateFieldUpdate(field);
+    generateMemoizedReset();
+    if (seqlock != null) {
+      seqlock.generateUpdateEnd();
+    }
     c('}');
   }
 
+  /**
+   * Generates assignment of the given field from the same-named variable
+   */
+  void generateFieldUpdate(@Nonnull DomainField field) {
+    final String fieldName = field.getFieldName();
+    if (packedFlags.hasPresenceBit(field)) {
+      // impl { this.{FieldName} = {FieldName} != null ? {FieldName} : 0; this.packedFlags = ...; }
+      thisDot(fieldName).spc('=').s(getUnboxedValue(field, fieldName)).c(';');
+      thisDot(packedFlags.getWordName(field)).spc('=').s(packedFlags.replace(field, fieldName)).c(';');
+    } else if (packedFlags.isPacked(field)) {
+      // impl { this.packedFlags = (this.packedFlags & ~{Mask}) | {EncodedValue}; }
+      thisDot(packedFlags.getWordName(field)).spc('=').s(packedFlags.replace(field, fieldName)).c(';');
+    } else {
+      // impl { this.{FieldName} = {FieldName}; }
+      thisDot(fieldName).c(' ', '=', ' ').s(DictionaryImplementer.getCanonicalValue(field, fieldName)).c(';');
+    }
+  }
+
+  /**
+   * Generates transient fields, that keep the value of the given memoized field once it is calculated.
+   * Reference value is kept in the volatile field, so that the calculated object is safely published, and null value
+   * means that the value is not calculated yet. Primitive value is followed by the volatile calculated flag.
+   */
+  private void generateMemoizedFields(DomainField field) {
+    final List<Modifier> modifiers = ImmutableList.of(Modifier.PRIVATE, Modifier.TRANSIENT, Modifier.VOLATILE);
+    // private transient volatile {FieldType} {fieldName};
+    var(field.getFieldType(), field.getFieldName(), modifiers).c(';');
+    if (field.isPrimitive()) {
+      // private transient volatile boolean {fieldName}Calculated;
+      var(boolean.class, field.getFieldName() + CALCULATED_SUFFIX, modifiers).c(';');
+    }
+  }
+
+  private void generateMemoizedGetter(DomainField field) {
+    final String fieldName = field.getFieldName();
+
+    // @Override public final {FieldType} get{FieldName}() {
+    c('\n');
+    annotate(Override.class).s("public").sp().s("final").sp().t(field.getFieldType()).sp()
+        .s(FieldUtil.getMethodName(field, OriginMethodRole.GETTER)).c('(', ')', ' ', '{');
+
+    if (field.isPrimitive()) {
+      // if (!this.{fieldName}Calculated) {
+      s("if").sp().c('(', '!').thisDot(fieldName + CALCULATED_SUFFIX).c(')', ' ', '{');
+      generateMemoStampRead();
+      // final {FieldType} result = {Calculator}.get{FieldName}(this);
+      var(field.getFieldType(), Names.RESULT, ImmutableList.of(Modifier.FINAL)).spc('=');
+      calculate(field).c(';');
+      // this.{fieldName} = result; this.{fieldName}Calculated = true;
+      thisDot(fieldName).spc('=').s(Names.RESULT).c(';');
+      thisDot(fieldName + CALCULATED_SUFFIX).spc('=').val(true).c(';');
+      generateMemoStampCheck(fieldName + CALCULATED_SUFFIX, "false");
+      // return result; }
+      s("return").sp().s(Names.RESULT).c(';');
+      c('}');
+      // return this.{fieldName};
+      s("return").sp().thisDot(fieldName).c(';');
+    } else {
+      // {FieldType} result = this.{fieldName};
+      t(field.getFieldType()).sp().s(Names.RESULT).spc('=').thisDot(fieldName).c(';');
+      // if (result == null) { result = {Calculator}.get{FieldName}(this); this.{fieldName} = result; }
+      s("if").sp().c('(').s(Names.RESULT).sps("==").s("null").c(')', ' ', '{');
+      generateMemoStampRead();
+      s(Names.RESULT).spc('=');
+      calculate(field).c(';');
+      thisDot(fieldName).spc('=').s(Names.RESULT).c(';');
+      generateMemoStampCheck(fieldName, "null");
+      c('}');
+      // return result;
+      s("return").sp().s(Names.RESULT).c(';');
+    }
+
+    c('}');
+  }
+
+  private void generateMemoStampRead() {
+    if (!memoStamped) {
+      return;
+    }
+    // final int memoStamp = this.memoStamp;
+    var(int.class, MEMO_STAMP, ImmutableList.of(Modifier.FINAL)).spc('=').thisDot(MEMO_STAMP).c(';');
+  }
+
+  /**
+   * Generates statement, that discards the value just memoized by the getter if the object has been modified while
+   * the value was calculated. The modification advances the stamp before it discards the memoized values itself, so
+   * that either the modification or the getter discards the stale value, whichever of them is the last one.
+   */
+  private void generateMemoStampCheck(String memoName, String discardedValue) {
+    if (!memoStamped) {
+      return;
+    }
+    // if (memoStamp != this.memoStamp) { this.{memoName} = {discardedValue}; }
+    s("if").sp().c('(').s(MEMO_STAMP).sps("!=").thisDot(MEMO_STAMP).c(')', ' ', '{');
+    thisDot(memoName).spc('=').s(discardedValue).c(';');
+    c('}');
+  }
+
+  /**
+   * Generates statements, that discard the memoized values after modification of the object
+   */
+  void generateMemoizedReset() {
+    if (memoStamped) {
+      // MEMO_STAMP_UPDATER.incrementAndGet(this);
+      s(AtomicImplementer.getUpdaterName(MEMO_STAMP)).dot("incrementAndGet").c('(').s("this").c(')', ';');
+    }
+    for (final DomainField field : getCalculatedFields()) {
+      if (!field.hasTrait(FieldTrait.MEMOIZED)) {
+        continue;
+      }
+      if (field.isPrimitive()) {
+        // this.{fieldName}Calculated = false;
+        thisDot(field.getFieldName() + CALCULATED_SUFFIX).spc('=').val(false).c(';');
+      } else {
+        // this.{fieldName} = null;
+        thisDot(field.getFieldName()).spc('=').s("null").c(';');
+      }
+    }
+  }
 
   private void generateFinalGetter(DomainField field) {
     final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
@@ -107,7 +426,12 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     c('\n');
     annotate(Override.class).s("public").sp().s("final").sp().t(field.getFieldType()).sp();
     s(getterName).c('(', ')', ' ', '{');
-    s("return").sp().thisDot(field.getFieldName()).c(';');
+    if (isArrayCopied(field) && !field.hasTrait(FieldTrait.MUTABLE)) {
+      // arrays can't be read-only, so that caller gets its own copy
+      s("return").sp().s(ArrayFields.getCopy(field, getFieldValue(field))).c(';');
+    } else {
+      s("return").sp().s(getFieldValue(field)).c(';');
+    }
     c('}');
   }
 
@@ -115,7 +439,7 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     c('\n');
     s("public").sp().t(getDomainClass()).c('(');
     boolean next = false;
-    for (final DomainField field : getAnalysisResult().getFields()) {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
       if (next) {
         c(',', ' ');
       } else {
@@ -131,25 +455,176 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     c(')', ' ', '{');
 
     // verification of the input arguments
-    for (final DomainField field : getAnalysisResult().getFields()) {
-      generateChecks(field);
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      generateChecks(field, field.getFieldName());
     }
 
     // body
-    for (final DomainField field : getAnalysisResult().getFields()) {
-      generateAssignment(field);
+    generateAssignments();
+    c('}');
+  }
+
+  /**
+   * Generates assignments of all the stored fields from the same-named local values, that are already checked.
+   */
+  void generateAssignments() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (!packedFlags.isPacked(field)) {
+        generateAssignment(field);
+      }
+    }
+    packedFlagsImplementer.generateAssignments("");
+  }
+
+  /**
+   * Generates constructor, that takes ownership over the builder's state. Builder never exposes its collections,
+   * so that they are wrapped rather than copied. Guava copy style is the exception: its immutable collections
+   * can't wrap foreign ones, so builder collections are copied to keep the runtime type and null-hostility
+   * of the constructor-built objects.
+   */
+  private void generateTrustedConstructor() {
+    final String builderParam = "builder";
+
+    // private {TargetClass}({Builder} builder) {
+    c('\n');
+    s("private").sp().t(getDomainClass()).c('(').t(getDomainClass().getGenBuilderClass()).sp().s(builderParam)
+        .c(')', ' ', '{');
+
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      generateChecks(field, builderParam + '.' + field.getFieldName());
+    }
+
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field)) {
+        continue;
+      }
+      final String value = builderParam + '.' + field.getFieldName();
+      final Class<?> collectionClass = getCollectionClass(field);
+      thisDot(field.getFieldName()).spc('=');
+      if (packedFlags.hasPresenceBit(field)) {
+        // builder.{fieldName} != null ? builder.{fieldName} : 0
+        s(getUnboxedValue(field, value));
+      } else if (field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+        // IntList.copyOf(builder.{fieldName})
+        primitiveCollections.generateCopy(field, value);
+      } else if (collectionClass != null && implementerSettings.getDefensiveCopyStyle() == DefensiveCopyStyle.GUAVA) {
+        // Immutable{List|Set|Map}.copyOf(builder.{fieldName}) - same type and null checks as the constructor
+        generateCopy(value, field);
+      } else if (collectionClass != null && implementerSettings.getDefensiveCopyStyle() != DefensiveCopyStyle.NONE) {
+        // new Frozen{List|Set|Map}<...>(builder.{fieldName})
+        frozenCollections.generateWrap(value, collectionClass,
+            Arrays.asList(((ParameterizedType) field.getFieldType()).getActualTypeArguments()));
+      } else if (isArrayCopied(field)) {
+        // builder.{fieldName}.clone() - builder doesn't own arrays, passed to its setters
+        s(ArrayFields.getCopy(field, value));
+      } else {
+        s(DictionaryImplementer.getCanonicalValue(field, value));
+      }
+      c(';');
     }
+    packedFlagsImplementer.generateAssignments(builderParam + '.');
+
     c('}');
   }
 
+  /**
+   * Generates package-private constructor, that creates blank instance for the object pool.
+   */
+  private void generateRecyclingConstructor() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (!field.hasTrait(FieldTrait.MUTABLE)) {
+        throw new RuntimeException("Only objects with mutable fields can be pooled, field " + field +
+            " is not mutable");
+      }
+    }
+
+    // {TargetClass}() {}
+    c('\n').t(getDomainClass()).c('(', ')', ' ', '{').c('}');
+  }
+
+  private void generateReset() {
+    // public void reset() {
+    c('\n').s("public").sp().t(void.class).sp().s("reset").c('(', ')', ' ', '{');
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field)) {
+        continue;
+      }
+      // this.{fieldName} = {DefaultValue};
+      final Type fieldType = getStorageType(field);
+      thisDot(field.getFieldName()).spc('=');
+      if (boolean.class.equals(fieldType)) {
+        val(false);
+      } else if (fieldType instanceof Class && ((Class<?>) fieldType).isPrimitive()) {
+        c('0');
+      } else {
+        s("null");
+      }
+      c(';');
+    }
+    packedFlagsImplementer.generateReset();
+    generateMemoizedReset();
+    c('}');
+  }
+
+  /**
+   * @return Expression, that evaluates to the value of the given field of this object
+   */
+  @Nonnull
+  String getFieldValue(@Nonnull DomainField field) {
+    return packedFlags.isPacked(field) || packedFlags.hasPresenceBit(field) ? packedFlags.decode(field, "this") :
+        "this." + field.getFieldName();
+  }
+
+  /**
+   * @return Type of the member, that holds value of the given field in the generated class
+   */
+  @Nonnull
+  static Type getStorageType(@Nonnull DomainField field) {
+    final Class<?> unboxedType = FieldUtil.getUnboxedType(field);
+    return unboxedType != null ? unboxedType : field.getFieldType();
+  }
+
+  @Nullable
+  private static Class<?> getStorageClass(DomainField field) {
+    final Class<?> unboxedType = FieldUtil.getUnboxedType(field);
+    return unboxedType != null ? unboxedType : field.getFieldTypeAsClass();
+  }
+
+  /**
+   * @return Expression, that unboxes the given value of the unboxed field, null is stored as default value
+   */
+  private static String getUnboxedValue(DomainField field, String value) {
+    final String defaultValue = boolean.class.equals(FieldUtil.getUnboxedType(field)) ? "false" : "0";
+    return value + " != null ? " + value + " : " + defaultValue;
+  }
+
   private void generateAssignment(DomainField field) {
     final String fieldName = field.getFieldName();
     thisDot(fieldName).spc('=');
-    generateCopy(fieldName, field.getFieldType());
+    generateValue(field, fieldName);
     c(';');
   }
 
-  private void generateCopy(final String var, Type type) {
+  /**
+   * Generates expression, that evaluates to the given value of the field the way it is stored in this object,
+   * i.e. unboxed, canonicalized or defensively copied.
+   */
+  void generateValue(@Nonnull DomainField field, @Nonnull String value) {
+    if (packedFlags.hasPresenceBit(field)) {
+      // value != null ? value : 0
+      s(getUnboxedValue(field, value));
+    } else if (field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+      // IntList.copyOf(value)
+      primitiveCollections.generateCopy(field, value);
+    } else if (field.hasTrait(FieldTrait.LOW_CARDINALITY)) {
+      // canonicalize(value)
+      s(DictionaryImplementer.getCanonicalValue(field, value));
+    } else {
+      generateCopy(value, field);
+    }
+  }
+
+  private void generateCopy(final String var, final DomainField field) {
     TypeVisitor.apply(new TypeVisitor<Void>() {
       @Override
       public Void visitType(@Nonnull Type sourceType) {
@@ -159,28 +634,24 @@ public final class ClassImplementer extends AbstractDomainImplementer {
 
       @Override
       public Void visitArray(@Nonnull Type sourceType, @Nonnull Type elementType) {
-        // TODO: warning - exposed arrays breaks immutability
-        // TODO: Array.copy(fieldName);
-        return visitType(sourceType);
+        if (!isArrayCopied(field)) {
+          return visitType(sourceType);
+        }
+        // var.clone()
+        s(ArrayFields.getCopy(field, var));
+        return null;
       }
 
       @Override
       public Void visitGenericType(@Nonnull Type sourceType, @Nonnull Type rawType, @Nonnull List<? extends Type> args) {
         switch (implementerSettings.getDefensiveCopyStyle()) {
           case JDK:
-            if (List.class.equals(rawType)) {
-              assert args.size() == 1;
-              generateListCopyJdk(var, args.get(0));
-            } else if (Map.class.equals(rawType)) {
-              assert args.size() == 2;
-              generateMapCopyJdk(var, args.get(0), args.get(1));
-            } else if (Set.class.equals(rawType)) {
-              assert args.size() == 1;
-              generateSetCopyJdk(var, args.get(0));
-            } else {
-              break;
+            if (List.class.equals(rawType) || Map.class.equals(rawType) || Set.class.equals(rawType)) {
+              // frozen collections of the generated classes are shared, there is nobody who can change them
+              frozenCollections.generateCopy(var, (Class<?>) rawType, args);
+              return null;
             }
-            return null;
+            break;
 
           case GUAVA:
             if (List.class.equals(rawType)) {
@@ -208,33 +679,11 @@ public final class ClassImplementer extends AbstractDomainImplementer {
       public Void visitClass(@Nonnull Type sourceType, @Nonnull Class<?> clazz) {
         return visitType(sourceType);
       }
-    }, type);
+    }, field.getFieldType());
   }
 
-  //
-  // JDK-style defensive copies
-  //
-
-  private void generateListCopyJdk(String var, Type elementType) {
-    // Collections.unmodifiableList(Arrays.asList($listVar.toArray(new String[$listVar.size()])))
-    t(Collections.class).dot("unmodifiableList").c('(')
-        .t(Arrays.class).dot("asList").c('(').s(var).dot("toArray").c('(')
-        .newType(elementType).c('[').s(var).dot("size").c('(', ')', ']')
-        .c(')').c(')').c(')');
-  }
-
-  private void generateMapCopyJdk(String var, Type keyType, Type valueType) {
-    // Collections.unmodifiableMap(new HashMap<{KeyType}, {ValueType}>(var))
-    t(Collections.class).dot("unmodifiableMap").c('(')
-        .newType(HashMap.class).c('<').t(keyType).c(',', ' ').t(valueType).c('>').c('(').s(var).c(')')
-        .c(')');
-  }
-
-  private void generateSetCopyJdk(String var, Type elementType) {
-    // Collections.unmodifiableSet(new HashSet<{ElementType}>(var))
-    t(Collections.class).dot("unmodifiableSet").c('(')
-        .newType(HashSet.class).c('<').t(elementType).c('>').c('(').s(var).c(')')
-        .c(')');
+  private boolean isArrayCopied(DomainField field) {
+    return ArrayFields.isCopied(field, implementerSettings.getDefensiveCopyStyle());
   }
 
   //
@@ -257,42 +706,160 @@ public final class ClassImplementer extends AbstractDomainImplementer {
   // equals/hashCode/toString
   //
 
-
-
   private void generateToString(Collection<? extends DomainField> fields) {
     annotate(Override.class).s("public").sp().t(String.class).sp().s("toString").c('(', ')', ' ', '{');
 
-    // ==> final StringBuilder result = new StringBuilder();
-    s("final").sp().t(StringBuilder.class).sp().s("result").c(' ', '=', ' ')
-        .newType(StringBuilder.class).c('(', ')', ';');
+    // ==> final StringBuilder result = new StringBuilder({EstimatedLength});
+    s("final").sp().t(StringBuilder.class).sp().s(Names.RESULT).c(' ', '=', ' ')
+        .newType(StringBuilder.class).c('(').val(estimateToStringLength(fields)).c(')', ';');
+
+    // ==> appendTo(result);
+    s(APPEND_TO).c('(').s(Names.RESULT).c(')', ';');
+
+    // ==> return result.toString();
+    s("return").sp().s(Names.RESULT).dot("toString").c('(', ')', ';');
+
+    c('}'); // end of function
+  }
+
+  private void generateAppendTo(Collection<? extends DomainField> fields) {
+    final String builder = "builder";
+
+    // public void appendTo(StringBuilder builder) {
+    s("public").sp().t(void.class).sp().s(APPEND_TO).c('(').var(StringBuilder.class, builder).c(')', ' ', '{');
+
+    // boolean next; - used for separating elements of the collections
+    for (final DomainField field : fields) {
+      if (getCollectionClass(field) != null) {
+        t(boolean.class).sp().s(NEXT).c(';');
+        break;
+      }
+    }
 
-    // ==> result.append("ClassName#{");
-    s("result").dot("append").c('(', '\"').t(getDomainClass()).s("#{").c('\"', ')', ';');
+    // ==> builder.append("ClassName#{");
+    s(builder).dot("append").c('(', '\"').t(getDomainClass()).s("#{").c('\"', ')', ';');
 
     // fields
     boolean next = false;
     for (final DomainField field : fields) {
-      s("result");
-      if (next) {
-        dot("append").c('(', '\"').s(", ").c('\"', ')');
-      } else {
-        next = true;
+      // ==> builder.append(", fieldName: ");
+      s(builder).dot("append").c('(', '\"').s((next ? ", " : "") + field.getFieldName() + ": ").c('\"', ')', ';');
+      next = true;
+
+      final String fieldName = field.getFieldName();
+      final Class<?> collectionClass = getCollectionClass(field);
+      if (packedFlags.hasPresenceBit(field)) {
+        // if ((this.packedFlags & {Mask}) != 0) { builder.append(this.field); } else { builder.append("null"); }
+        s("if").sp().c('(', '(').thisDot(packedFlags.getWordName(field)).sps("&").s(packedFlags.getMask(field))
+            .c(')').sps("!=").c('0', ')', ' ', '{')
+            .s(builder).dot("append").c('(').thisDot(fieldName).c(')', ';')
+            .c('}').s("else").sp().c('{')
+            .s(builder).dot("append").c('(').val("null").c(')', ';')
+            .c('}');
+        continue;
+      }
+      if (collectionClass == null) {
+        generateAppendValue(builder, getFieldValue(field), field.getFieldType());
+        continue;
       }
 
-      dot("append").c('(', '\"').s(field.getFieldName()).s(": ").c('\"', ')');
-      // TODO: another way to retrieve field - e.g. getter?
-      dot("append").c('(').thisDot(field.getFieldName()).c(')', ';');
+      final boolean nullable = FieldUtil.isNullable(field);
+      if (nullable) {
+        // if (this.field == null) { builder.append("null"); } else {
+        s("if").sp().c('(').thisDot(fieldName).sps("==").s("null").c(')', ' ', '{')
+            .s(builder).dot("append").c('(').val("null").c(')', ';')
+            .c('}').s("else").sp().c('{');
+      }
+      generateAppendCollection(builder, fieldName, collectionClass,
+          ((ParameterizedType) field.getFieldType()).getActualTypeArguments());
+      if (nullable) {
+        c('}');
+      }
     }
 
-    // ==> result.append('}');
-    s("result").dot("append").c('(', '\'').s("}").c('\'', ')', ';');
-
-    // ==> return result.toString();
-    s("return").sp().s("result").dot("toString").c('(', ')', ';');
+    // ==> builder.append('}');
+    s(builder).dot("append").c('(', '\'').s("}").c('\'', ')', ';');
 
     c('}'); // end of function
   }
 
+  private void generateAppendCollection(String builder, String fieldName, Class<?> collectionClass, Type[] args) {
+    final boolean map = Map.class.equals(collectionClass);
+
+    // ==> builder.append('[');
+    s(builder).dot("append").c('(').s(map ? "'{'" : "'['").c(')', ';');
+    s(NEXT).spc('=').val(false).c(';');
+
+    // ==> for (final {ElementType} element : this.field) {
+    final String element = map ? "entry" : Names.ELEMENT;
+    s("for").sp().c('(').s("final").sp()
+        .t(map ? SynteticParameterizedType.from(Map.Entry.class, Arrays.asList(args)) : args[0]).sp().s(element)
+        .spc(':').thisDot(fieldName);
+    if (map) {
+      dot("entrySet").c('(', ')');
+    }
+    c(')', ' ', '{');
+
+    // ==> if (next) { builder.append(", "); }
+    s("if").sp().c('(').s(NEXT).c(')', ' ', '{').s(builder).dot("append").c('(').val(", ").c(')', ';').c('}');
+    s(NEXT).spc('=').val(true).c(';');
+
+    if (map) {
+      generateAppendValue(builder, element + ".getKey()", args[0]);
+      s(builder).dot("append").c('(', '\'', '=', '\'', ')', ';');
+      generateAppendValue(builder, element + ".getValue()", args[1]);
+    } else {
+      generateAppendValue(builder, element, args[0]);
+    }
+    c('}'); // end of for
+
+    // ==> builder.append(']');
+    s(builder).dot("append").c('(').s(map ? "'}'" : "']'").c(')', ';');
+  }
+
+  private void generateAppendValue(String builder, String value, Type type) {
+    if (type instanceof Class && ((Class<?>) type).isArray()) {
+      // ==> builder.append(Arrays.toString(value));
+      s(builder).dot("append").c('(').t(Arrays.class).dot(ArrayFields.getArraysMethod((Class<?>) type, "toString"))
+          .c('(').s(value).c(')', ')', ';');
+      return;
+    }
+
+    final GenDomainClass target = type instanceof Class ? domainTargets.get(type) : null;
+    if (target == null) {
+      // ==> builder.append(value);
+      s(builder).dot("append").c('(').s(value).c(')', ';');
+      return;
+    }
+
+    // nested domain objects append themselves to the same builder
+    // ==> if (value instanceof Impl) { ((Impl) value).appendTo(builder); } else { builder.append(value); }
+    s("if").sp().c('(').s(value).sps("instanceof").t(target).c(')', ' ', '{')
+        .c('(', '(').t(target).c(')').sp().s(value).c(')').dot(APPEND_TO).c('(').s(builder).c(')', ';')
+        .c('}').s("else").sp().c('{')
+        .s(builder).dot("append").c('(').s(value).c(')', ';')
+        .c('}');
+  }
+
+  private int estimateToStringLength(Collection<? extends DomainField> fields) {
+    // class name, braces and separators
+    int result = getDomainClass().getFqName().getName().length() + 3;
+    for (final DomainField field : fields) {
+      result += field.getFieldName().length() + 4;
+
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      final Integer length = fieldClass != null ? ESTIMATED_LENGTHS.get(fieldClass) : null;
+      if (length != null) {
+        result += length;
+      } else if (getCollectionClass(field) != null) {
+        result += ESTIMATED_COLLECTION_LENGTH;
+      } else {
+        result += ESTIMATED_OBJECT_LENGTH;
+      }
+    }
+    return result;
+  }
+
   public void generateEquals(Collection<? extends DomainField> fields) {
     final String objectParam = "o";
     final String other = "other";
@@ -314,8 +881,24 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     s("final").sp().t(getDomainClass()).sp().s(other).c(' ', '=', ' ', '(')
         .t(getDomainClass()).c(')', ' ').s(objectParam).c(';');
 
-    // iterate over the given fields
-    for (final DomainField field : fields) {
+    // packed fields are compared by words
+    packedFlagsImplementer.generateEqualsChecks(other);
+
+    // compare cheap fields first, so that most of the mismatches are found before any deep comparison
+    boolean hashCodeGuardGenerated = !hashCodeCached;
+    for (final DomainField field : getFieldsInComparisonOrder(fields)) {
+      if (packedFlags.isPacked(field)) {
+        continue;
+      }
+      if (!hashCodeGuardGenerated && getComparisonCost(field) > 0) {
+        // if (this.cachedHashCode != 0 && other.cachedHashCode != 0 && this.cachedHashCode != other.cachedHashCode)
+        s("if").c(' ', '(').thisDot(Names.CACHED_HASH_CODE).sps("!=").c('0').sps("&&")
+            .dot(other, Names.CACHED_HASH_CODE).sps("!=").c('0').sps("&&")
+            .thisDot(Names.CACHED_HASH_CODE).sps("!=").dot(other, Names.CACHED_HASH_CODE)
+            .c(')', ' ', '{').s("return").sp().s("false").c(';', '}');
+        hashCodeGuardGenerated = true;
+      }
+
       // if (...) { return false; }
       s("if").c(' ', '(');
 
@@ -338,12 +921,20 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     annotate(Override.class).s("public").sp().t(int.class).sp().s("hashCode")
         .c('(', ')', ' ', '{');
 
-    // int result = 0
-    t(int.class).sp().s(result).sp().s("=").sp().c('0', ';');
+    if (hashCodeCached) {
+      // int result = this.cachedHashCode;
+      t(int.class).sp().s(result).spc('=').thisDot(Names.CACHED_HASH_CODE).c(';');
+      // if (result != 0) { return result; }
+      s("if").sp().c('(').s(result).sps("!=").c('0').c(')', ' ', '{')
+          .s("return").sp().s(result).c(';').c('}');
+    } else {
+      // int result = 0
+      t(int.class).sp().s(result).sp().s("=").sp().c('0', ';');
+    }
     // additional variable for calculating hash code for doubles
     boolean tempLongRequired = false;
     for (final DomainField field : fields) {
-      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      final Class<?> fieldClass = getStorageClass(field);
       if (Double.TYPE.equals(fieldClass)) {
         tempLongRequired = true;
         break;
@@ -357,7 +948,16 @@ public final class ClassImplementer extends AbstractDomainImplementer {
 
     // result calculation
     for (final DomainField field : fields) {
-      generateHashCodeAddition(field, result, temp);
+      if (!packedFlags.isPacked(field)) {
+        generateHashCodeAddition(field, result, temp);
+      }
+    }
+    packedFlagsImplementer.generateHashCodeAdditions(result);
+
+    if (hashCodeCached) {
+      // racy single-check: concurrent threads may recalculate the same value, which is harmless
+      // this.cachedHashCode = result;
+      thisDot(Names.CACHED_HASH_CODE).spc('=').s(result).c(';');
     }
 
     // return result;
@@ -366,13 +966,12 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     c('}'); // end of function
   }
 
-  private void generateChecks(DomainField field) {
-    // assuming param name equals to the field name
+  void generateChecks(@Nonnull DomainField field, @Nonnull String value) {
     final String paramName = field.getFieldName();
 
     // null check
     if (FieldUtil.isNullCheckRequired(field)) {
-      s("if").sp().c('(').s(paramName).sp().s("==").sp().s("null").c(')', ' ', '{');
+      s("if").sp().c('(').s(value).sp().s("==").sp().s("null").c(')', ' ', '{');
       s("throw").sp().newType(IllegalArgumentException.class).c('(', '\"')
           .s("Parameter '" + paramName + "' is null")
           .c('\"', ')', ';');
@@ -386,16 +985,16 @@ public final class ClassImplementer extends AbstractDomainImplementer {
         throw new UnsupportedOperationException("Only primitive types supported");
       }
 
-      s("if").sp().c('(').s(paramName).sp().s("<").sp().s("0").c(')', ' ', '{');
+      s("if").sp().c('(').s(value).sp().s("<").sp().s("0").c(')', ' ', '{');
       s("throw").sp().newType(IllegalArgumentException.class).c('(', '\"')
-          .s("Parameter '" + paramName + "' is null")
+          .s("Parameter '" + paramName + "' is negative")
           .c('\"', ')', ';');
       c('}');
     }
   }
 
   private void generateHashCodeAddition(DomainField field, String result, String temp) {
-    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    final Class<?> fieldClass = getStorageClass(field);
     final String fieldName = field.getFieldName();
 
     boolean doubleField = false;
@@ -435,6 +1034,9 @@ public final class ClassImplementer extends AbstractDomainImplementer {
       } else {
         throw new UnsupportedOperationException("Unsupported primitive type: " + fieldClass);
       }
+    } else if (fieldClass != null && fieldClass.isArray()) {
+      // ...=> Arrays.hashCode(this.field) - element-wise and null-safe
+      t(Arrays.class).dot(ArrayFields.getArraysMethod(fieldClass, "hashCode")).c('(').thisDot(fieldName).c(')');
     } else {
       // object case:
       if (FieldUtil.isNullable(field)) {
@@ -452,22 +1054,53 @@ public final class ClassImplementer extends AbstractDomainImplementer {
     c(';');
   }
 
+  /**
+   * Estimates relative cost of comparing the given field: primitives and enums are compared by value or reference,
+   * strings and boxed primitives are compared by the non-recursive equals, other objects might be arbitrarily
+   * expensive to compare and collections and arrays require element-wise comparison.
+   */
+  private static int getComparisonCost(DomainField field) {
+    final Class<?> fieldClass = getStorageClass(field);
+    if (fieldClass != null && (fieldClass.isPrimitive() || fieldClass.isEnum())) {
+      return 0;
+    }
+    if (fieldClass != null && (String.class.equals(fieldClass) || DefaultValues.BOXED_PRIMITIVES.contains(fieldClass))) {
+      return 1;
+    }
+    if (getCollectionClass(field) != null || (fieldClass != null && fieldClass.isArray())) {
+      return 3;
+    }
+    return 2;
+  }
+
+  private static List<DomainField> getFieldsInComparisonOrder(Collection<? extends DomainField> fields) {
+    final List<DomainField> result = new ArrayList<>(fields);
+    // stable sort, fields of the same cost remain in the declaration order
+    Collections.sort(result, new Comparator<DomainField>() {
+      @Override
+      public int compare(DomainField lhs, DomainField rhs) {
+        return getComparisonCost(lhs) - getComparisonCost(rhs);
+      }
+    });
+    return result;
+  }
+
   private void generateNonEqualsIfCondition(DomainField field, String other) {
     final String fieldName = field.getFieldName();
-    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    final Class<?> fieldClass = getStorageClass(field);
 
     // special logic for primitive members
     if (fieldClass != null && fieldClass.isPrimitive()) {
       // float and double require special comparison
-      if (fieldClass.equals(Float.class)) {
+      if (fieldClass.equals(float.class)) {
         // Float.compare(this.field, other.field) != 0
         t(Float.class).dot("compare").c('(').thisDot(fieldName).c(',', ' ');
         dot(other, fieldName);
         c(')').sps("!=").c('0');
         return;
-      } else if (fieldClass.equals(Double.class)) {
+      } else if (fieldClass.equals(double.class)) {
         // Double.compare(this.field, other.field) != 0
-        t(Float.class).dot("compare").c('(')
+        t(Double.class).dot("compare").c('(')
             .thisDot(fieldName).c(',', ' ').dot(other, fieldName)
             .c(')').sps("!=").c('0');
         return;
@@ -478,6 +1111,27 @@ public final class ClassImplementer extends AbstractDomainImplementer {
       return;
     }
 
+    // enum constants are singletons
+    if (fieldClass != null && fieldClass.isEnum()) {
+      // this.field != other.field
+      thisDot(fieldName).sps("!=").dot(other, fieldName);
+      return;
+    }
+
+    // canonical values are compared by reference first
+    if (field.hasTrait(FieldTrait.LOW_CARDINALITY)) {
+      dictionary.generateNonEqualsCondition(field, other);
+      return;
+    }
+
+    // arrays are compared element-wise
+    if (fieldClass != null && fieldClass.isArray()) {
+      // !Arrays.equals(this.field, other.field)
+      c('!').t(Arrays.class).dot(ArrayFields.getArraysMethod(fieldClass, "equals")).c('(').thisDot(fieldName)
+          .c(',', ' ').dot(other, fieldName).c(')');
+      return;
+    }
+
     // generic class case, use equals
     if (FieldUtil.isNullable(field)) {
       // this.field != null ? !this.field.equals(other.field) : other.field != null
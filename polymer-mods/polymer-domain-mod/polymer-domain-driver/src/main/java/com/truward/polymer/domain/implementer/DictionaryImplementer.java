@@ -0,0 +1,125 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encapsulates generation of the dictionary, that keeps canonical instances of the values of the low cardinality
+ * fields, so that equal values share the same instance and are compared by reference.
+ *
+ * @author Alexander Shabanov
+ */
+final class DictionaryImplementer extends AbstractDomainImplementer {
+  private static final String DICTIONARY = "DICTIONARY";
+  private static final String DICTIONARY_MAX_SIZE = "DICTIONARY_MAX_SIZE";
+  private static final String CANONICALIZE = "canonicalize";
+
+  /**
+   * Maximum number of the distinct values of the low cardinality fields, canonicalized by the generated class
+   */
+  private static final int DEFAULT_DICTIONARY_MAX_SIZE = 4096;
+
+  DictionaryImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
+    super(codeStream, domainClass);
+  }
+
+  /**
+   * @return True, if the generated class has at least one low cardinality field and thus needs the dictionary
+   */
+  public boolean isDictionaryNeeded() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.LOW_CARDINALITY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Expression, that evaluates to the canonical instance of the given value if the field has low cardinality
+   */
+  @Nonnull
+  public static String getCanonicalValue(@Nonnull DomainField field, @Nonnull String value) {
+    return field.hasTrait(FieldTrait.LOW_CARDINALITY) ? CANONICALIZE + '(' + value + ')' : value;
+  }
+
+  public void generateDictionary() {
+    final Type dictionaryType = SynteticParameterizedType.from(ConcurrentMap.class, String.class, String.class);
+
+    // private static final int DICTIONARY_MAX_SIZE = 4096;
+    s("private").sp().s("static").sp().var(int.class, DICTIONARY_MAX_SIZE, ImmutableList.of(Modifier.FINAL))
+        .spc('=').val(DEFAULT_DICTIONARY_MAX_SIZE).c(';');
+
+    // private static final ConcurrentMap<String, String> DICTIONARY = new ConcurrentHashMap<String, String>();
+    s("private").sp().s("static").sp().var(dictionaryType, DICTIONARY, ImmutableList.of(Modifier.FINAL))
+        .spc('=').newType(SynteticParameterizedType.from(ConcurrentHashMap.class, String.class, String.class))
+        .c('(', ')', ';');
+  }
+
+  /**
+   * Generates method, that returns canonical instance of the given low cardinality value. Once the dictionary is full,
+   * the new values are no longer canonicalized, so that the memory taken by the dictionary is bounded.
+   */
+  public void generateCanonicalize() {
+    final String existing = "existing";
+
+    // private static String canonicalize(String value) {
+    s("private").sp().s("static").sp().t(String.class).sp().s(CANONICALIZE).c('(').var(String.class, Names.VALUE)
+        .c(')', ' ', '{');
+    s("if").sp().c('(').s(Names.VALUE).sps("==").s("null").c(')', ' ', '{')
+        .s("return").sp().s("null").c(';')
+        .c('}');
+
+    // final String existing = DICTIONARY.get(value);
+    s("final").sp().t(String.class).sp().s(existing).spc('=').s(DICTIONARY).dot("get").c('(').s(Names.VALUE)
+        .c(')', ';');
+    s("if").sp().c('(').s(existing).sps("!=").s("null").c(')', ' ', '{')
+        .s("return").sp().s(existing).c(';')
+        .c('}');
+
+    // if (DICTIONARY.size() >= DICTIONARY_MAX_SIZE) { return value; }
+    s("if").sp().c('(').s(DICTIONARY).dot("size").c('(', ')').sps(">=").s(DICTIONARY_MAX_SIZE).c(')', ' ', '{')
+        .s("return").sp().s(Names.VALUE).c(';')
+        .c('}');
+
+    // final String result = DICTIONARY.putIfAbsent(value, value);
+    s("final").sp().t(String.class).sp().s(Names.RESULT).spc('=').s(DICTIONARY).dot("putIfAbsent").c('(')
+        .s(Names.VALUE).c(',', ' ').s(Names.VALUE).c(')', ';');
+    s("return").sp().s(Names.RESULT).sps("!=").s("null").spc('?').s(Names.RESULT).spc(':').s(Names.VALUE).c(';');
+
+    c('}');
+  }
+
+  /**
+   * Generates condition, that is true if the given low cardinality field differs from the one of the other object.
+   * Canonical values are compared by reference first, equals is only needed once the dictionary is full.
+   *
+   * @param field Low cardinality field
+   * @param other Name of the other object
+   */
+  public void generateNonEqualsCondition(@Nonnull DomainField field, @Nonnull String other) {
+    final String fieldName = field.getFieldName();
+
+    // this.field != other.field && (this.field == null || !this.field.equals(other.field))
+    thisDot(fieldName).sps("!=").dot(other, fieldName).sps("&&");
+    if (FieldUtil.isNullable(field)) {
+      c('(').thisDot(fieldName).sps("==").s("null").sps("||");
+    }
+    c('!').thisDot(fieldName).dot("equals").c('(').dot(other, fieldName).c(')');
+    if (FieldUtil.isNullable(field)) {
+      c(')');
+    }
+  }
+}
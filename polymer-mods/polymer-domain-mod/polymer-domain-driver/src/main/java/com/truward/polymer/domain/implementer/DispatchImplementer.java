@@ -0,0 +1,164 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.code.builder.CodeStreamSupport;
+import com.truward.polymer.domain.analysis.support.GenDispatchClass;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encapsulates generation of the class, that dispatches domain objects of the same hierarchy to the visitor.
+ * Generated domain classes report their type ids, so that dispatching is done by the single <code>switch</code>
+ * over the dense type ids, which is compiled to the table switch. Other implementations of the hierarchy, e.g.
+ * the hand-written ones, are recognized by the <code>instanceof</code> checks.
+ *
+ * @author Alexander Shabanov
+ */
+public final class DispatchImplementer extends CodeStreamSupport {
+  public static final String TYPED = "Typed";
+  public static final String TYPE_ID = "typeId";
+  public static final String TYPE_ID_CONSTANT = "TYPE_ID";
+
+  private static final String VISITOR = "Visitor";
+  private static final String VISITOR_PARAM = "visitor";
+  private static final String RESULT_TYPE = "R";
+  private static final int UNKNOWN_TYPE_ID = -1;
+
+  private final CodeStream codeStream;
+  private final GenDispatchClass dispatchClass;
+
+  public DispatchImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDispatchClass dispatchClass) {
+    if (!dispatchClass.isFrozen()) {
+      throw new IllegalStateException("Dispatch class is not frozen");
+    }
+
+    this.codeStream = codeStream;
+    this.dispatchClass = dispatchClass;
+  }
+
+  @Nonnull
+  @Override
+  protected CodeStream getRootCodeStream() {
+    return codeStream;
+  }
+
+  public void generateDispatch() {
+    final String className = dispatchClass.getFqName().getName();
+
+    publicFinalClass().s(className).sp().c('{');
+
+    // public interface Typed { int typeId(); }
+    s("public").sp().s("interface").sp().s(TYPED).sp().c('{')
+        .t(int.class).sp().s(TYPE_ID).c('(', ')', ';')
+        .c('}');
+
+    generateVisitor();
+
+    // private {Dispatch}() {} - hidden ctor
+    c('\n').s("private").sp().s(className).c('(', ')', ' ', '{').c('}');
+
+    generateTypeId();
+    generateDispatchMethod();
+
+    c('}'); // end of dispatch class
+  }
+
+  //
+  // Private
+  //
+
+  private void generateVisitor() {
+    // public interface Visitor<R> {
+    c('\n').s("public").sp().s("interface").sp().s(VISITOR).c('<').s(RESULT_TYPE).c('>').sp().c('{');
+    for (final GenDomainClass member : dispatchClass.getMembers()) {
+      // R visit{Member}({Member} value);
+      s(RESULT_TYPE).sp().s(getVisitMethodName(member)).c('(').var(getOriginClass(member), Names.VALUE)
+          .c(')', ';');
+    }
+    c('}');
+  }
+
+  private void generateTypeId() {
+    final Class<?> rootClass = dispatchClass.getRoot().getOriginClass();
+
+    // public static int typeId({Root} value) {
+    c('\n').s("public").sp().s("static").sp().t(int.class).sp().s(TYPE_ID).c('(').var(rootClass, Names.VALUE)
+        .c(')', ' ', '{');
+
+    // if (value instanceof Typed) { return ((Typed) value).typeId(); }
+    s("if").sp().c('(').s(Names.VALUE).sps("instanceof").s(TYPED).c(')', ' ', '{')
+        .s("return").sp().c('(', '(').s(TYPED).c(')').sp().s(Names.VALUE).c(')').dot(TYPE_ID).c('(', ')', ';')
+        .c('}');
+
+    // other implementations are checked starting from the most specific types
+    // if (value instanceof {Member}) { return {MemberImpl}.TYPE_ID; }
+    for (final GenDomainClass member : getMostSpecificFirst()) {
+      s("if").sp().c('(').s(Names.VALUE).sps("instanceof").t(getOriginClass(member)).c(')', ' ', '{')
+          .s("return").sp().t(member).dot(TYPE_ID_CONSTANT).c(';')
+          .c('}');
+    }
+
+    s("return").sp().val(UNKNOWN_TYPE_ID).c(';');
+    c('}');
+  }
+
+  private void generateDispatchMethod() {
+    final Class<?> rootClass = dispatchClass.getRoot().getOriginClass();
+
+    // public static <R> R dispatch({Root} value, Visitor<R> visitor) {
+    c('\n').s("public").sp().s("static").sp().c('<').s(RESULT_TYPE).c('>').sp().s(RESULT_TYPE).sp().s("dispatch")
+        .c('(').var(rootClass, Names.VALUE).c(',', ' ').s(VISITOR).c('<').s(RESULT_TYPE).c('>').sp().s(VISITOR_PARAM)
+        .c(')', ' ', '{');
+
+    // switch (typeId(value)) {
+    s("switch").sp().c('(').s(TYPE_ID).c('(').s(Names.VALUE).c(')', ')', ' ', '{');
+    for (final GenDomainClass member : dispatchClass.getMembers()) {
+      // case {MemberImpl}.TYPE_ID: return visitor.visit{Member}(({Member}) value);
+      s("case").sp().t(member).dot(TYPE_ID_CONSTANT).c(':', ' ')
+          .s("return").sp().s(VISITOR_PARAM).dot(getVisitMethodName(member)).c('(').cast(getOriginClass(member))
+          .sp().s(Names.VALUE).c(')', ';');
+    }
+    // default: throw new IllegalArgumentException("Value does not belong to the hierarchy: " + value);
+    s("default").c(':', ' ')
+        .s("throw").sp().newType(IllegalArgumentException.class).c('(')
+        .val("Value does not belong to the " + rootClass.getSimpleName() + " hierarchy: ").sps("+").s(Names.VALUE)
+        .c(')', ';');
+    c('}'); // end of switch
+
+    c('}');
+  }
+
+  /**
+   * @return Members, ordered so that every subtype precedes its parents
+   */
+  @Nonnull
+  private List<GenDomainClass> getMostSpecificFirst() {
+    final List<GenDomainClass> result = new ArrayList<>();
+    for (final GenDomainClass member : dispatchClass.getMembers()) {
+      // insert before the first parent
+      int index = result.size();
+      for (int i = 0; i < result.size(); ++i) {
+        if (getOriginClass(result.get(i)).isAssignableFrom(getOriginClass(member))) {
+          index = i;
+          break;
+        }
+      }
+      result.add(index, member);
+    }
+    return result;
+  }
+
+  @Nonnull
+  private static Class<?> getOriginClass(@Nonnull GenDomainClass member) {
+    return member.getOrigin().getOriginClass();
+  }
+
+  @Nonnull
+  private static String getVisitMethodName(@Nonnull GenDomainClass member) {
+    return "visit" + getOriginClass(member).getSimpleName();
+  }
+}
@@ -13,6 +13,7 @@ import com.truward.polymer.core.support.code.printer.DefaultCodePrinter;
 import com.truward.polymer.domain.analysis.DomainAnalysisResult;
 import com.truward.polymer.domain.analysis.DomainImplementationTargetSink;
 import com.truward.polymer.domain.analysis.DomainImplementerSettingsReader;
+import com.truward.polymer.domain.analysis.support.GenDispatchClass;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
 import com.truward.polymer.freezable.FreezableSupport;
 import com.truward.polymer.naming.FqName;
@@ -27,7 +28,12 @@ import javax.annotation.Resource;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,6 +50,7 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
   private OutputStreamProvider outputStreamProvider;
 
   private Map<DomainAnalysisResult, GenDomainClass> implementationTargets = new HashMap<>();
+  private Map<DomainAnalysisResult, GenDispatchClass> dispatchClasses = new LinkedHashMap<>();
 
   @Override
   public void generateImplementations() throws IOException {
@@ -70,6 +77,19 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
     return implementationTargets.get(analysisResult);
   }
 
+  @Nonnull
+  @Override
+  public GenDispatchClass submitDispatch(@Nonnull DomainAnalysisResult rootAnalysisResult) {
+    checkNonFrozen();
+    GenDispatchClass dispatchClass = dispatchClasses.get(rootAnalysisResult);
+    if (dispatchClass == null) {
+      dispatchClass = new GenDispatchClass(rootAnalysisResult);
+      dispatchClasses.put(rootAnalysisResult, dispatchClass);
+    }
+
+    return dispatchClass;
+  }
+
   @Override
   public void setState(@Nonnull SpecificationState state) {
     checkNonFrozen();
@@ -85,6 +105,10 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
   //
 
   private void finalizeTargets() {
+    for (final GenDispatchClass dispatchClass : dispatchClasses.values()) {
+      finalizeDispatch(dispatchClass);
+    }
+
     for (final GenDomainClass implementationTarget : implementationTargets.values()) {
       if (!implementationTarget.hasFqName()) {
         implementationTarget.setFqName(getTargetClassName(implementationTarget.getOrigin()));
@@ -95,11 +119,55 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
       if (builderClass.isSupported() && !builderClass.hasFqName()) {
         builderClass.setFqName(new FqName("Builder", implementationTarget.getFqName()));
       }
+
+      // generate companion class names (if none was set), companions are placed next to the implementation class
+      setCompanionName(implementationTarget, implementationTarget.getGenStoreClass(), "Store");
+      setCompanionName(implementationTarget, implementationTarget.getGenPoolClass(), "Pool");
+
       // freeze targets class
       implementationTarget.freeze();
     }
   }
 
+  private void finalizeDispatch(@Nonnull GenDispatchClass dispatchClass) {
+    final Class<?> rootClass = dispatchClass.getRoot().getOriginClass();
+    if (!dispatchClass.hasFqName()) {
+      dispatchClass.setFqName(new FqName(rootClass.getSimpleName() + "Dispatch",
+          implementerSettings.getDefaultTargetPackageName()));
+    }
+
+    final List<GenDomainClass> members = new ArrayList<>();
+    for (final GenDomainClass implementationTarget : implementationTargets.values()) {
+      if (rootClass.isAssignableFrom(implementationTarget.getOrigin().getOriginClass())) {
+        members.add(implementationTarget);
+      }
+    }
+    if (members.isEmpty()) {
+      throw new IllegalStateException("There are no targets in the dispatched hierarchy of " + rootClass);
+    }
+
+    // type ids should not depend on the order, in which targets were submitted
+    Collections.sort(members, new Comparator<GenDomainClass>() {
+      @Override
+      public int compare(GenDomainClass left, GenDomainClass right) {
+        return left.getOrigin().getOriginClass().getName().compareTo(right.getOrigin().getOriginClass().getName());
+      }
+    });
+    for (final GenDomainClass member : members) {
+      member.setDispatchClass(dispatchClass);
+    }
+    dispatchClass.freeze();
+  }
+
+  private static void setCompanionName(@Nonnull GenDomainClass implementationTarget,
+                                       @Nonnull GenDomainClass.GenCompanionClass companionClass,
+                                       @Nonnull String suffix) {
+    if (companionClass.isSupported() && !companionClass.hasFqName()) {
+      companionClass.setFqName(new FqName(implementationTarget.getOrigin().getOriginClass().getSimpleName() + suffix,
+          implementationTarget.getFqName().getParent()));
+    }
+  }
+
   private FqName getTargetClassName(@Nonnull DomainAnalysisResult result) {
     final String className = implementerSettings.getDefaultImplClassPrefix() +
         result.getOriginClass().getSimpleName() + implementerSettings.getDefaultImplClassSuffix();
@@ -107,21 +175,57 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
   }
 
   private void generateCode() throws IOException {
+    final Map<Class<?>, GenDomainClass> domainTargets = new HashMap<>();
+    for (final GenDomainClass implementationTarget : implementationTargets.values()) {
+      domainTargets.put(implementationTarget.getOrigin().getOriginClass(), implementationTarget);
+    }
+
     for (final GenDomainClass implementationTarget : implementationTargets.values()) {
-      generateCode(implementationTarget);
+      generateCode(implementationTarget, domainTargets);
+    }
+
+    for (final GenDispatchClass dispatchClass : dispatchClasses.values()) {
+      final TypeManager typeManager = new DefaultTypeManager();
+      final ModuleBuilder moduleBuilder = new DefaultModuleBuilder(dispatchClass.getFqName(), typeManager);
+      new DispatchImplementer(moduleBuilder.getStream(), dispatchClass).generateDispatch();
+      moduleBuilder.freeze();
+      writeModule(dispatchClass.getFqName(), moduleBuilder, typeManager);
     }
 
     log.info("Done with code generation");
   }
 
-  private void generateCode(@Nonnull GenDomainClass implementationTarget) throws IOException {
+  private void generateCode(@Nonnull GenDomainClass implementationTarget,
+                            @Nonnull Map<Class<?>, GenDomainClass> domainTargets) throws IOException {
     final FqName targetName = implementationTarget.getFqName();
-    log.info("Generating file for {}", targetName);
-
     final TypeManager typeManager = new DefaultTypeManager();
     final ModuleBuilder moduleBuilder = new DefaultModuleBuilder(targetName, typeManager);
-    generateCompilationUnit(moduleBuilder.getStream(), implementationTarget);
+    generateCompilationUnit(moduleBuilder.getStream(), implementationTarget, domainTargets);
     moduleBuilder.freeze();
+    writeModule(targetName, moduleBuilder, typeManager);
+
+    final GenDomainClass.GenCompanionClass storeClass = implementationTarget.getGenStoreClass();
+    if (storeClass.isSupported()) {
+      final TypeManager storeTypeManager = new DefaultTypeManager();
+      final ModuleBuilder storeModuleBuilder = new DefaultModuleBuilder(storeClass.getFqName(), storeTypeManager);
+      new StoreImplementer(storeModuleBuilder.getStream(), implementationTarget).generateStore();
+      storeModuleBuilder.freeze();
+      writeModule(storeClass.getFqName(), storeModuleBuilder, storeTypeManager);
+    }
+
+    final GenDomainClass.GenCompanionClass poolClass = implementationTarget.getGenPoolClass();
+    if (poolClass.isSupported()) {
+      final TypeManager poolTypeManager = new DefaultTypeManager();
+      final ModuleBuilder poolModuleBuilder = new DefaultModuleBuilder(poolClass.getFqName(), poolTypeManager);
+      new PoolImplementer(poolModuleBuilder.getStream(), implementationTarget).generatePool();
+      poolModuleBuilder.freeze();
+      writeModule(poolClass.getFqName(), poolModuleBuilder, poolTypeManager);
+    }
+  }
+
+  private void writeModule(@Nonnull FqName targetName, @Nonnull ModuleBuilder moduleBuilder,
+                           @Nonnull TypeManager typeManager) throws IOException {
+    log.info("Generating file for {}", targetName);
 
     try (final OutputStream stream = outputStreamProvider.createStreamForFile(targetName, StandardFileTypes.JAVA)) {
       try (final OutputStreamWriter writer = new OutputStreamWriter(stream, OutputStreamProvider.DEFAULT_CHARSET)) {
@@ -131,16 +235,32 @@ public final class DomainObjectImplementer extends FreezableSupport implements I
     }
   }
 
-  private void generateCompilationUnit(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
-    final ClassImplementer classImplementer = new ClassImplementer(codeStream, domainClass, implementerSettings);
+  private void generateCompilationUnit(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                                       @Nonnull Map<Class<?>, GenDomainClass> domainTargets) {
+    final ClassImplementer classImplementer = new ClassImplementer(codeStream, domainClass, implementerSettings,
+        domainTargets);
 
     // compilation unit generation
     classImplementer.generateHead();
+    if (!domainClass.getSortKeys().isEmpty()) {
+      new OrderingImplementer(codeStream, domainClass).generateOrdering();
+    }
+    if (implementerSettings.isFootprintEstimationEnabled()) {
+      new FootprintImplementer(codeStream, domainClass, implementerSettings, domainTargets).generateFootprint();
+    }
+    if (implementerSettings.isSerializationProxyEnabled()) {
+      new SerializationImplementer(codeStream, domainClass).generateSerializationProxy();
+    }
     if (domainClass.getGenBuilderClass().isSupported()) {
       final BuilderImplementer builderImplementer = new BuilderImplementer(codeStream, domainClass);
       builderImplementer.generateInnerBuilder();
     }
 
+    final PrimitiveCollectionImplementer collectionImplementer = new PrimitiveCollectionImplementer(codeStream,
+        domainClass, domainTargets);
+    collectionImplementer.generateInnerClasses();
+    new FrozenCollectionImplementer(codeStream, domainClass, implementerSettings, domainTargets).generateInnerClasses();
+
     classImplementer.generateEpilogue();
   }
 }
@@ -0,0 +1,304 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.DefaultValues;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.DomainImplementerSettingsReader;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encapsulates generation of the <code>estimatedRetainedBytes()</code> method, that estimates the deep size of
+ * the domain object. Shallow size of the object is calculated at generation time from the layout of the generated
+ * class, the sizes of strings, collections and nested generated objects are added at runtime.
+ * The estimate assumes 64-bit JVM with compressed references: 12-byte object headers, 16-byte array headers,
+ * 4-byte references and 8-byte alignment. Strings are assumed to take two bytes per character, which is an upper
+ * bound for compact strings. Enums and canonicalized low cardinality strings are shared, so they are not counted.
+ *
+ * @author Alexander Shabanov
+ */
+public final class FootprintImplementer extends AbstractDomainImplementer {
+  private static final String ESTIMATED_RETAINED_BYTES = "estimatedRetainedBytes";
+  private static final String ENTRY = "entry";
+
+  private static final int OBJECT_HEADER_BYTES = 12;
+  private static final int ARRAY_HEADER_BYTES = 16;
+  private static final int REFERENCE_BYTES = 4;
+  private static final int ALIGNMENT = 8;
+
+  private static final int STRING_BYTES = 24;
+  /** Unmodifiable wrapper around the array list */
+  private static final int LIST_BYTES = 40;
+  /** Generated collection, that wraps an array of primitives */
+  private static final int PRIMITIVE_COLLECTION_BYTES = 24;
+  /** Unmodifiable wrapper around the hash set or map */
+  private static final int HASH_COLLECTION_BYTES = 88;
+  /** Hash entry along with its share of the hash table */
+  private static final int HASH_ENTRY_BYTES = 48;
+  /** Object, that is neither a string nor a generated domain object */
+  private static final int UNKNOWN_OBJECT_BYTES = 16;
+
+  private static final Map<Class<?>, Integer> PRIMITIVE_SIZES = ImmutableMap.<Class<?>, Integer>builder()
+      .put(boolean.class, 1)
+      .put(byte.class, 1)
+      .put(char.class, 2)
+      .put(short.class, 2)
+      .put(int.class, 4)
+      .put(float.class, 4)
+      .put(long.class, 8)
+      .put(double.class, 8)
+      .build();
+
+  private final Map<Class<?>, GenDomainClass> domainTargets;
+  private final boolean hashCodeCached;
+  private final PackedFlags packedFlags;
+
+  /**
+   * @param codeStream Target code stream
+   * @param domainClass Domain class to be generated
+   * @param implementerSettings Global settings
+   * @param domainTargets All the domain classes, generated along with the given one, mapped to their origin classes
+   */
+  public FootprintImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                              @Nonnull DomainImplementerSettingsReader implementerSettings,
+                              @Nonnull Map<Class<?>, GenDomainClass> domainTargets) {
+    super(codeStream, domainClass);
+    this.domainTargets = domainTargets;
+    // should match the layout, chosen by ClassImplementer
+    this.hashCodeCached = implementerSettings.isHashCodeCachingEnabled() && !hasMutableFields();
+    this.packedFlags = PackedFlags.of(getAnalysisResult().getStoredFields(), domainClass.isFlagsPacked());
+  }
+
+  public void generateFootprint() {
+    // public long estimatedRetainedBytes() {
+    c('\n').s("public").sp().t(long.class).sp().s(ESTIMATED_RETAINED_BYTES).c('(', ')', ' ', '{');
+
+    // long result = {ShallowSize};
+    t(long.class).sp().s(Names.RESULT).spc('=').s(getConstantBytes() + "L").c(';');
+
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field) || packedFlags.hasPresenceBit(field)) {
+        continue; // stored as primitives
+      }
+      generateFieldBytes(field);
+    }
+
+    s("return").sp().s(Names.RESULT).c(';');
+    c('}');
+  }
+
+  //
+  // Private
+  //
+
+  /**
+   * @return Shallow size of the generated object along with the sizes of the non-null boxed primitives and unknown
+   * objects, that do not depend on the field values
+   */
+  private int getConstantBytes() {
+    int shallowBytes = OBJECT_HEADER_BYTES;
+    int deepBytes = 0;
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field)) {
+        continue;
+      }
+      if (packedFlags.hasPresenceBit(field)) {
+        shallowBytes += PRIMITIVE_SIZES.get(FieldUtil.getUnboxedType(field));
+        continue;
+      }
+
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      if (fieldClass != null && fieldClass.isPrimitive()) {
+        shallowBytes += PRIMITIVE_SIZES.get(fieldClass);
+        continue;
+      }
+      shallowBytes += REFERENCE_BYTES;
+      if (!FieldUtil.isNullable(field) && fieldClass != null && getCollectionClass(field) == null &&
+          !needsRuntimeEstimate(fieldClass)) {
+        deepBytes += getFixedBytes(fieldClass);
+      }
+    }
+    shallowBytes += packedFlags.getWordCount() * PRIMITIVE_SIZES.get(packedFlags.getWordType());
+    if (hashCodeCached) {
+      shallowBytes += PRIMITIVE_SIZES.get(int.class);
+    }
+    if (getDomainClass().isSeqlockSupported()) {
+      // sequence counter and frozen flag
+      shallowBytes += PRIMITIVE_SIZES.get(int.class) + PRIMITIVE_SIZES.get(boolean.class);
+    }
+    for (final DomainField field : getCalculatedFields()) {
+      if (!field.hasTrait(FieldTrait.MEMOIZED)) {
+        continue;
+      }
+      // memoized values are not counted as they are not necessarily calculated
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      shallowBytes += fieldClass != null && fieldClass.isPrimitive() ?
+          PRIMITIVE_SIZES.get(fieldClass) + PRIMITIVE_SIZES.get(boolean.class) : REFERENCE_BYTES;
+    }
+    return align(shallowBytes) + deepBytes;
+  }
+
+  private void generateFieldBytes(DomainField field) {
+    final String value = "this." + field.getFieldName();
+    final Class<?> collectionClass = getCollectionClass(field);
+    if (collectionClass == null) {
+      final Class<?> fieldClass = field.getFieldTypeAsClass();
+      if (fieldClass == null || fieldClass.isPrimitive() || field.hasTrait(FieldTrait.LOW_CARDINALITY)) {
+        return;
+      }
+      if (needsRuntimeEstimate(fieldClass) || FieldUtil.isNullable(field)) {
+        generateValueBytes(value, fieldClass, FieldUtil.isNullable(field));
+      }
+      return;
+    }
+
+    final boolean nullable = FieldUtil.isNullable(field);
+    if (nullable) {
+      // if (this.field != null) {
+      s("if").sp().c('(').s(value).sps("!=").s("null").c(')', ' ', '{');
+    }
+
+    final Type[] args = ((ParameterizedType) field.getFieldType()).getActualTypeArguments();
+    final boolean map = Map.class.equals(collectionClass);
+    final String size = value + ".size()";
+    int elementBytes = 0;
+    if (field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+      // result += 24 + ((16 + 4L * this.field.size() + 7) & ~7L);
+      final Class<?> elementClass = Primitives.unwrap((Class<?>) args[0]);
+      s(Names.RESULT).sps("+=").val(PRIMITIVE_COLLECTION_BYTES).sps("+")
+          .s(getAlignedArray(PRIMITIVE_SIZES.get(elementClass) + "L * " + size)).c(';');
+    } else if (List.class.equals(collectionClass)) {
+      s(Names.RESULT).sps("+=").val(LIST_BYTES).sps("+").s(getAlignedArray(REFERENCE_BYTES + "L * " + size))
+          .c(';');
+    } else {
+      elementBytes += HASH_ENTRY_BYTES;
+      s(Names.RESULT).sps("+=").val(HASH_COLLECTION_BYTES).c(';');
+    }
+
+    // elements, that take the same space regardless of their values
+    boolean loopNeeded = false;
+    if (!field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+      for (final Type arg : args) {
+        final Class<?> argClass = arg instanceof Class ? (Class<?>) arg : null;
+        if (argClass != null && needsRuntimeEstimate(argClass)) {
+          loopNeeded = true;
+        } else {
+          elementBytes += argClass != null ? getFixedBytes(argClass) : UNKNOWN_OBJECT_BYTES;
+        }
+      }
+    }
+    if (elementBytes > 0) {
+      // result += {ElementBytes}L * this.field.size();
+      s(Names.RESULT).sps("+=").s(elementBytes + "L").sps("*").s(size).c(';');
+    }
+
+    if (loopNeeded) {
+      if (map) {
+        // for (final Map.Entry<{KeyType}, {ValueType}> entry : this.field.entrySet()) {
+        s("for").sp().c('(').s("final").sp().t(SynteticParameterizedType.from(Map.Entry.class, Arrays.asList(args)))
+            .sp().s(ENTRY).spc(':').s(value).dot("entrySet").c('(', ')', ')', ' ', '{');
+        generateElementBytes(ENTRY + ".getKey()", args[0]);
+        generateElementBytes(ENTRY + ".getValue()", args[1]);
+      } else {
+        // for (final {ElementType} element : this.field) {
+        s("for").sp().c('(').s("final").sp().t(args[0]).sp().s(Names.ELEMENT).spc(':').s(value).c(')', ' ', '{');
+        generateElementBytes(Names.ELEMENT, args[0]);
+      }
+      c('}');
+    }
+
+    if (nullable) {
+      c('}');
+    }
+  }
+
+  private void generateElementBytes(String value, Type type) {
+    if (type instanceof Class && needsRuntimeEstimate((Class<?>) type)) {
+      generateValueBytes(value, (Class<?>) type, true);
+    }
+  }
+
+  private void generateValueBytes(String value, Class<?> valueClass, boolean nullable) {
+    if (valueClass.isEnum()) {
+      return; // shared
+    }
+
+    final GenDomainClass target = domainTargets.get(valueClass);
+    if (target != null) {
+      // if (value instanceof {Impl}) { result += ((Impl) value).estimatedRetainedBytes(); } else if (value != null) {
+      s("if").sp().c('(').s(value).sps("instanceof").t(target).c(')', ' ', '{')
+          .s(Names.RESULT).sps("+=").c('(', '(').t(target).c(')').sp().s(value).c(')').dot(ESTIMATED_RETAINED_BYTES)
+          .c('(', ')', ';')
+          .c('}').s("else").sp().s("if").sp().c('(').s(value).sps("!=").s("null").c(')', ' ', '{')
+          .s(Names.RESULT).sps("+=").val(UNKNOWN_OBJECT_BYTES).c(';')
+          .c('}');
+      return;
+    }
+
+    // if (value != null) {
+    if (nullable) {
+      s("if").sp().c('(').s(value).sps("!=").s("null").c(')', ' ', '{');
+    }
+    s(Names.RESULT).sps("+=");
+    if (String.class.equals(valueClass)) {
+      // result += 24 + ((16 + 2L * value.length() + 7) & ~7L);
+      val(STRING_BYTES).sps("+").s(getAlignedArray(PRIMITIVE_SIZES.get(char.class) + "L * " + value + ".length()"));
+    } else if (valueClass.isArray()) {
+      // result += ((16 + 8L * value.length + 7) & ~7L); - elements of the object arrays are not counted
+      final Class<?> componentClass = valueClass.getComponentType();
+      final int elementBytes = componentClass.isPrimitive() ? PRIMITIVE_SIZES.get(componentClass) : REFERENCE_BYTES;
+      s(getAlignedArray(elementBytes + "L * " + value + ".length"));
+    } else {
+      val(getFixedBytes(valueClass));
+    }
+    c(';');
+    if (nullable) {
+      c('}');
+    }
+  }
+
+  /**
+   * @return True, if size of the values of the given class can only be known at runtime
+   */
+  private boolean needsRuntimeEstimate(Class<?> valueClass) {
+    return String.class.equals(valueClass) || valueClass.isArray() || domainTargets.containsKey(valueClass);
+  }
+
+  /**
+   * @return Size of the given object that doesn't depend on its value
+   */
+  private static int getFixedBytes(@Nullable Class<?> valueClass) {
+    if (valueClass != null && valueClass.isEnum()) {
+      return 0;
+    }
+    if (valueClass != null && DefaultValues.BOXED_PRIMITIVES.contains(valueClass)) {
+      return align(OBJECT_HEADER_BYTES + PRIMITIVE_SIZES.get(Primitives.unwrap(valueClass)));
+    }
+    return UNKNOWN_OBJECT_BYTES;
+  }
+
+  /**
+   * @return Expression, that evaluates to the aligned size of the array, whose elements take the given number of bytes
+   */
+  private static String getAlignedArray(String elementsBytes) {
+    return "((" + ARRAY_HEADER_BYTES + " + " + elementsBytes + " + " + (ALIGNMENT - 1) + ") & ~" +
+        (ALIGNMENT - 1) + "L)";
+  }
+
+  private static int align(int bytes) {
+    return (bytes + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+  }
+}
@@ -0,0 +1,354 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.DefensiveCopyStyle;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.DomainImplementerSettingsReader;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Encapsulates generation of the immutable collections, that hold the JDK-style defensive copies of the collection
+ * fields. Each collection class is generated as a nested class of the domain class, so that the generated classes
+ * recognize each other's collections and share them instead of copying, e.g. when the collection, returned by the
+ * getter of one domain object, is passed to the constructor or wither of another one.
+ * Collections, that are known to be immutable, i.e. the empty and singleton JDK collections and, if Guava is available
+ * at runtime, the Guava immutable collections, are shared as well.
+ *
+ * @author Alexander Shabanov
+ */
+public final class FrozenCollectionImplementer extends AbstractDomainImplementer {
+  private static final String PREFIX = "Frozen";
+  private static final String ENTRIES = "entries";
+  private static final String INDEX = "index";
+  private static final String IMMUTABLE_TYPES = "IMMUTABLE_TYPES";
+  private static final String IS_IMMUTABLE = "isImmutable";
+  private static final String FIND_CLASS = "findClass";
+
+  private final DomainImplementerSettingsReader implementerSettings;
+  private final Map<Class<?>, GenDomainClass> domainTargets;
+
+  public FrozenCollectionImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                                     @Nonnull DomainImplementerSettingsReader implementerSettings,
+                                     @Nonnull Map<Class<?>, GenDomainClass> domainTargets) {
+    super(codeStream, domainClass);
+    this.implementerSettings = implementerSettings;
+    this.domainTargets = domainTargets;
+  }
+
+  /**
+   * @return Collection interfaces (list, set or map), whose frozen implementations are nested in the current
+   * domain class
+   */
+  @Nonnull
+  public Set<Class<?>> getCollectionClasses() {
+    final Set<Class<?>> result = new LinkedHashSet<>();
+    if (implementerSettings.getDefensiveCopyStyle() != DefensiveCopyStyle.JDK) {
+      return result;
+    }
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      final Class<?> collectionClass = getCollectionClass(field);
+      if (collectionClass != null && !field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS) &&
+          !field.hasTrait(FieldTrait.LOW_CARDINALITY)) {
+        result.add(collectionClass);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Generates static array of the known immutable collection types, that are shared rather than copied.
+   * Guava types are looked up by name, so that the generated class does not depend on Guava.
+   */
+  public void generateImmutableTypes() {
+    final Set<Class<?>> collectionClasses = getCollectionClasses();
+    if (collectionClasses.isEmpty()) {
+      return;
+    }
+
+    // private static final Class<?>[] IMMUTABLE_TYPES = { Collections.emptyList().getClass(), ... };
+    s("private").sp().s("static").sp().s("final").sp().t(Class.class).c('<', '?', '>', '[', ']').sp()
+        .s(IMMUTABLE_TYPES).spc('=').c('{');
+    if (collectionClasses.contains(List.class)) {
+      t(Collections.class).dot("emptyList").c('(', ')').dot("getClass").c('(', ')', ',', ' ');
+      t(Collections.class).dot("singletonList").c('(').s("null").c(')').dot("getClass").c('(', ')', ',', ' ');
+    }
+    if (collectionClasses.contains(Set.class)) {
+      t(Collections.class).dot("emptySet").c('(', ')').dot("getClass").c('(', ')', ',', ' ');
+      t(Collections.class).dot("singleton").c('(').s("null").c(')').dot("getClass").c('(', ')', ',', ' ');
+    }
+    if (collectionClasses.contains(Map.class)) {
+      t(Collections.class).dot("emptyMap").c('(', ')').dot("getClass").c('(', ')', ',', ' ');
+      t(Collections.class).dot("singletonMap").c('(').s("null").c(',', ' ').s("null").c(')').dot("getClass")
+          .c('(', ')', ',', ' ');
+    }
+    // Guava is optional for the JDK-style copies
+    if (collectionClasses.contains(List.class) || collectionClasses.contains(Set.class)) {
+      s(FIND_CLASS).c('(').val("com.google.common.collect.ImmutableCollection").c(')');
+      if (collectionClasses.contains(Map.class)) {
+        c(',', ' ');
+      }
+    }
+    if (collectionClasses.contains(Map.class)) {
+      s(FIND_CLASS).c('(').val("com.google.common.collect.ImmutableMap").c(')');
+    }
+    c('}', ';');
+  }
+
+  public void generateInnerClasses() {
+    final Set<Class<?>> collectionClasses = getCollectionClasses();
+    if (!collectionClasses.isEmpty()) {
+      c('\n');
+      generateIsImmutable();
+      c('\n');
+      generateFindClass();
+    }
+    if (collectionClasses.contains(List.class)) {
+      c('\n');
+      generateListClass();
+    }
+    if (collectionClasses.contains(Set.class)) {
+      c('\n');
+      generateSetClass();
+    }
+    if (collectionClasses.contains(Map.class)) {
+      c('\n');
+      generateMapClass();
+    }
+  }
+
+  /**
+   * Generates expression, that shares the given collection if it is frozen by any of the generated classes or known
+   * to be immutable and copies it otherwise.
+   *
+   * @param value Expression, that evaluates to the collection to be copied
+   * @param collectionClass Collection interface, one of list, set or map
+   * @param args Type arguments of the collection
+   */
+  public void generateCopy(@Nonnull String value, @Nonnull Class<?> collectionClass,
+                           @Nonnull List<? extends Type> args) {
+    // ==> value instanceof FrozenList || value instanceof OtherImpl.FrozenList || isImmutable(value) ? value : ...
+    final String className = getClassName(collectionClass);
+    s(value).sps("instanceof").s(className);
+    for (final GenDomainClass owner : getOwners(collectionClass)) {
+      if (owner != getDomainClass()) {
+        sps("||").s(value).sps("instanceof").t(owner).dot(className);
+      }
+    }
+    sps("||").s(IS_IMMUTABLE).c('(').s(value).c(')');
+    spc('?').s(value).spc(':');
+
+    final Class<?> copyClass = List.class.equals(collectionClass) ? ArrayList.class :
+        Set.class.equals(collectionClass) ? HashSet.class : HashMap.class;
+    generateNew(collectionClass, args);
+    newType(SynteticParameterizedType.from(copyClass, args))
+        .c('(').s(value).c(')', ')');
+  }
+
+  /**
+   * Generates expression, that freezes the given collection without copying it, so that the caller gives up
+   * the ownership over the collection.
+   *
+   * @param value Expression, that evaluates to the collection to be frozen
+   * @param collectionClass Collection interface, one of list, set or map
+   * @param args Type arguments of the collection
+   */
+  public void generateWrap(@Nonnull String value, @Nonnull Class<?> collectionClass,
+                           @Nonnull List<? extends Type> args) {
+    // new FrozenList<...>(value)
+    generateNew(collectionClass, args);
+    s(value).c(')');
+  }
+
+  @Nonnull
+  public static String getClassName(@Nonnull Class<?> collectionClass) {
+    return PREFIX + collectionClass.getSimpleName();
+  }
+
+  //
+  // Private
+  //
+
+  private void generateNew(Class<?> collectionClass, List<? extends Type> args) {
+    // new Frozen{List|Set|Map}<{Arg1}, ...>(
+    s("new").sp().s(getClassName(collectionClass)).c('<');
+    for (int i = 0; i < args.size(); ++i) {
+      if (i > 0) {
+        c(',', ' ');
+      }
+      t(args.get(i));
+    }
+    c('>', '(');
+  }
+
+  /**
+   * @return Domain classes, generated along with the current one, that nest the frozen collection of the given
+   * type, sorted by name to keep the generated code stable regardless of the targets order
+   */
+  @Nonnull
+  private List<GenDomainClass> getOwners(@Nonnull Class<?> collectionClass) {
+    final List<GenDomainClass> result = new ArrayList<>();
+    for (final GenDomainClass target : domainTargets.values()) {
+      final FrozenCollectionImplementer implementer = new FrozenCollectionImplementer(getRootCodeStream(), target,
+          implementerSettings, domainTargets);
+      if (implementer.getCollectionClasses().contains(collectionClass)) {
+        result.add(target);
+      }
+    }
+    Collections.sort(result, new Comparator<GenDomainClass>() {
+      @Override
+      public int compare(GenDomainClass left, GenDomainClass right) {
+        return left.getFqName().toString().compareTo(right.getFqName().toString());
+      }
+    });
+    return result;
+  }
+
+  private void generateIsImmutable() {
+    final String type = "type";
+
+    // private static boolean isImmutable(Object value) {
+    s("private").sp().s("static").sp().t(boolean.class).sp().s(IS_IMMUTABLE).c('(').var(Object.class, Names.VALUE)
+        .c(')', ' ', '{');
+    // for (final Class<?> type : IMMUTABLE_TYPES) { if (type != null && type.isInstance(value)) { return true; } }
+    s("for").sp().c('(').s("final").sp().t(Class.class).c('<', '?', '>').sp().s(type).spc(':').s(IMMUTABLE_TYPES)
+        .c(')', ' ', '{')
+        .s("if").sp().c('(').s(type).sps("!=").s("null").sps("&&").s(type).dot("isInstance").c('(').s(Names.VALUE)
+        .c(')', ')', ' ', '{')
+        .s("return").sp().val(true).c(';')
+        .c('}')
+        .c('}');
+    s("return").sp().val(false).c(';');
+    c('}');
+  }
+
+  private void generateFindClass() {
+    final String name = "name";
+
+    // private static Class<?> findClass(String name) {
+    s("private").sp().s("static").sp().t(Class.class).c('<', '?', '>').sp().s(FIND_CLASS).c('(')
+        .var(String.class, name).c(')', ' ', '{');
+    // try { return Class.forName(name); } catch (ClassNotFoundException e) { return null; }
+    s("try").sp().c('{')
+        .s("return").sp().t(Class.class).dot("forName").c('(').s(name).c(')', ';')
+        .c('}').s("catch").sp().c('(').t(ClassNotFoundException.class).sp().s("e").c(')', ' ', '{')
+        .s("return").sp().s("null").c(';')
+        .c('}');
+    c('}');
+  }
+
+  private void generateListClass() {
+    final String className = getClassName(List.class);
+
+    // public static final class FrozenList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+    publicStaticFinalClass().s(className).s("<E>").sp().s("extends").sp().t(AbstractList.class).s("<E>").sp()
+        .s("implements").sp().t(RandomAccess.class).c(',', ' ').t(Serializable.class).sp().c('{');
+    generateHead(className, List.class, "<E>", Names.ELEMENTS, false);
+
+    // @Override public E get(int index) { return this.elements.get(index); }
+    c('\n');
+    annotate(Override.class).s("public").sp().s("E").sp().s("get").c('(').var(int.class, INDEX).c(')', ' ', '{')
+        .s("return").sp().thisDot(Names.ELEMENTS).dot("get").c('(').s(INDEX).c(')', ';')
+        .c('}');
+
+    generateDelegate(int.class, "size", Names.ELEMENTS, ImmutableList.<String>of());
+    c('}'); // end of class
+  }
+
+  private void generateSetClass() {
+    final String className = getClassName(Set.class);
+
+    // public static final class FrozenSet<E> extends AbstractSet<E> implements Serializable {
+    publicStaticFinalClass().s(className).s("<E>").sp().s("extends").sp().t(AbstractSet.class).s("<E>").sp()
+        .s("implements").sp().t(Serializable.class).sp().c('{');
+    generateHead(className, Set.class, "<E>", Names.ELEMENTS, true);
+
+    generateDelegate(boolean.class, "contains", Names.ELEMENTS, ImmutableList.of("o"));
+
+    // @Override public Iterator<E> iterator() { return this.elements.iterator(); }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(Iterator.class).s("<E>").sp().s("iterator").c('(', ')', ' ', '{')
+        .s("return").sp().thisDot(Names.ELEMENTS).dot("iterator").c('(', ')', ';')
+        .c('}');
+
+    generateDelegate(int.class, "size", Names.ELEMENTS, ImmutableList.<String>of());
+    c('}'); // end of class
+  }
+
+  private void generateMapClass() {
+    final String className = getClassName(Map.class);
+
+    // public static final class FrozenMap<K, V> extends AbstractMap<K, V> implements Serializable {
+    publicStaticFinalClass().s(className).s("<K, V>").sp().s("extends").sp().t(AbstractMap.class).s("<K, V>").sp()
+        .s("implements").sp().t(Serializable.class).sp().c('{');
+    generateHead(className, Map.class, "<K, V>", ENTRIES, true);
+
+    // @Override public V get(Object key) { return this.entries.get(key); }
+    c('\n');
+    annotate(Override.class).s("public").sp().s("V").sp().s("get").c('(').var(Object.class, Names.KEY)
+        .c(')', ' ', '{')
+        .s("return").sp().thisDot(ENTRIES).dot("get").c('(').s(Names.KEY).c(')', ';')
+        .c('}');
+
+    generateDelegate(boolean.class, "containsKey", ENTRIES, ImmutableList.of(Names.KEY));
+
+    // @Override public Set<Map.Entry<K, V>> entrySet() { return this.entries.entrySet(); }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(Set.class).c('<').t(Map.class).s(".Entry<K, V>>").sp()
+        .s("entrySet").c('(', ')', ' ', '{')
+        .s("return").sp().thisDot(ENTRIES).dot("entrySet").c('(', ')', ';')
+        .c('}');
+
+    generateDelegate(int.class, "size", ENTRIES, ImmutableList.<String>of());
+    c('}'); // end of class
+  }
+
+  private void generateHead(String className, Class<?> collectionClass, String typeParameters, String fieldName,
+                            boolean unmodifiable) {
+    // private final {List|Set|Map}<...> {fieldName};
+    s("private").sp().s("final").sp().t(collectionClass).s(typeParameters).sp().s(fieldName).c(';');
+
+    // private Frozen{List|Set|Map}({List|Set|Map}<...> {fieldName}) { this.{fieldName} = {fieldName}; }
+    c('\n').s("private").sp().s(className).c('(').t(collectionClass).s(typeParameters).sp().s(fieldName)
+        .c(')', ' ', '{');
+    thisDot(fieldName).spc('=');
+    if (unmodifiable) {
+      // own collection is wrapped, so that its iterators and views can't change it either
+      t(Collections.class).dot("unmodifiable" + collectionClass.getSimpleName()).c('(').s(fieldName).c(')');
+    } else {
+      s(fieldName);
+    }
+    c(';');
+    c('}');
+  }
+
+  private void generateDelegate(Class<?> returnType, String methodName, String fieldName, List<String> params) {
+    // @Override public {ReturnType} {methodName}(Object param1, ...) { return this.{fieldName}.{methodName}(...); }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(returnType).sp().s(methodName).c('(');
+    for (int i = 0; i < params.size(); ++i) {
+      if (i > 0) {
+        c(',', ' ');
+      }
+      var(Object.class, params.get(i));
+    }
+    c(')', ' ', '{');
+    s("return").sp().thisDot(fieldName).dot(methodName).c('(');
+    for (int i = 0; i < params.size(); ++i) {
+      if (i > 0) {
+        c(',', ' ');
+      }
+      s(params.get(i));
+    }
+    c(')', ';');
+    c('}');
+  }
+}
@@ -0,0 +1,241 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.lang.reflect.Type;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Encapsulates generation of the natural ordering of the domain objects: the static comparator, that compares
+ * sort keys in the specified order, and the <code>sortKey()</code> method, that packs the leading primitive and
+ * enum sort keys into the single <code>long</code> value.
+ * Packed values are transformed so that their unsigned bit patterns keep the order of the original values, the sign
+ * bit of the result is flipped at the end, so that the sort keys can be compared as signed longs.
+ * The sort key that does not fit into the remaining bits is truncated to its high-order bits, so that the equal
+ * sort keys still have to be compared by the comparator.
+ *
+ * @author Alexander Shabanov
+ */
+public final class OrderingImplementer extends AbstractDomainImplementer {
+  private static final String COMPARATOR = "COMPARATOR";
+  private static final String SORT_KEY = "sortKey";
+  private static final String LHS = "lhs";
+  private static final String RHS = "rhs";
+  private static final String BITS_SUFFIX = "Bits";
+
+  /**
+   * Number of bits, taken by the packed primitive sort keys
+   */
+  private static final Map<Class<?>, Integer> WIDTHS = ImmutableMap.<Class<?>, Integer>builder()
+      .put(byte.class, Byte.SIZE)
+      .put(short.class, Short.SIZE)
+      .put(char.class, Character.SIZE)
+      .put(int.class, Integer.SIZE)
+      .put(float.class, Float.SIZE)
+      .put(long.class, Long.SIZE)
+      .put(double.class, Double.SIZE)
+      .build();
+
+  public OrderingImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
+    super(codeStream, domainClass);
+    if (domainClass.getSortKeys().isEmpty()) {
+      throw new IllegalStateException("Domain class has no sort keys");
+    }
+  }
+
+  public void generateOrdering() {
+    c('\n');
+    generateComparator();
+
+    if (isPackable(getDomainClass().getSortKeys().get(0))) {
+      c('\n');
+      generateSortKey();
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void generateComparator() {
+    final Type comparatorType = SynteticParameterizedType.from(Comparator.class, getOriginClass());
+
+    // public static final Comparator<{OriginClass}> COMPARATOR = new Comparator<{OriginClass}>() {
+    s("public").sp().s("static").sp().var(comparatorType, COMPARATOR, ImmutableList.of(Modifier.FINAL))
+        .spc('=').newType(comparatorType).c('(', ')', ' ', '{');
+
+    // @Override public int compare({OriginClass} lhs, {OriginClass} rhs) {
+    annotate(Override.class).s("public").sp().t(int.class).sp().s("compare").c('(')
+        .var(getOriginClass(), LHS).c(',', ' ').var(getOriginClass(), RHS).c(')', ' ', '{');
+    t(int.class).sp().s(Names.RESULT).c(';');
+
+    for (final DomainField field : getDomainClass().getSortKeys()) {
+      generateKeyComparison(field);
+    }
+
+    s("return").sp().c('0', ';');
+    c('}');
+
+    c('}').c(';');
+  }
+
+  private void generateKeyComparison(DomainField field) {
+    final String getter = getGetterName(field) + "()";
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    assert fieldClass != null;
+
+    if (fieldClass.isPrimitive()) {
+      // result = Integer.compare(lhs.get{FieldName}(), rhs.get{FieldName}());
+      s(Names.RESULT).spc('=').t(Primitives.wrap(fieldClass)).dot("compare").c('(')
+          .s(LHS).dot(getter).c(',', ' ').s(RHS).dot(getter).c(')', ';');
+      generateReturnIfNonZero();
+      return;
+    }
+
+    if (!FieldUtil.isNullable(field)) {
+      // result = lhs.get{FieldName}().compareTo(rhs.get{FieldName}());
+      s(Names.RESULT).spc('=').s(LHS).dot(getter).dot("compareTo").c('(').s(RHS).dot(getter).c(')', ';');
+      generateReturnIfNonZero();
+      return;
+    }
+
+    // nulls come first
+    final String lhsValue = Names.createPrefixedName(LHS, field.getFieldName());
+    final String rhsValue = Names.createPrefixedName(RHS, field.getFieldName());
+    s("final").sp().var(field.getFieldType(), lhsValue).spc('=').s(LHS).dot(getter).c(';');
+    s("final").sp().var(field.getFieldType(), rhsValue).spc('=').s(RHS).dot(getter).c(';');
+    s("if").sp().c('(').s(lhsValue).sps("!=").s(rhsValue).c(')', ' ', '{');
+    s("if").sp().c('(').s(lhsValue).sps("==").s("null").c(')', ' ', '{')
+        .s("return").sp().c('-', '1', ';')
+        .c('}');
+    s("if").sp().c('(').s(rhsValue).sps("==").s("null").c(')', ' ', '{')
+        .s("return").sp().c('1', ';')
+        .c('}');
+    s(Names.RESULT).spc('=').s(lhsValue).dot("compareTo").c('(').s(rhsValue).c(')', ';');
+    generateReturnIfNonZero();
+    c('}');
+  }
+
+  private void generateReturnIfNonZero() {
+    // if (result != 0) { return result; }
+    s("if").sp().c('(').s(Names.RESULT).sps("!=").c('0', ')', ' ', '{')
+        .s("return").sp().s(Names.RESULT).c(';')
+        .c('}');
+  }
+
+  private void generateSortKey() {
+    // public long sortKey() {
+    s("public").sp().t(long.class).sp().s(SORT_KEY).c('(', ')', ' ', '{');
+    t(long.class).sp().s(Names.RESULT).spc('=').c('0', ';');
+
+    int freeBits = Long.SIZE;
+    for (final DomainField field : getDomainClass().getSortKeys()) {
+      if (freeBits == 0 || !isPackable(field)) {
+        break;
+      }
+
+      final String value = getPackedValue(field);
+      final int width = getWidth(field);
+
+      // result |= {Value} << {Shift}; or result |= {Value} >>> {TruncatedBits}; if the value doesn't fit
+      s(Names.RESULT).sps("|=").s(value);
+      if (width > freeBits) {
+        sps(">>>").val(width - freeBits);
+        freeBits = 0;
+      } else {
+        freeBits -= width;
+        if (freeBits > 0) {
+          sps("<<").val(freeBits);
+        }
+      }
+      c(';');
+    }
+
+    // return result ^ Long.MIN_VALUE;
+    s("return").sp().s(Names.RESULT).spc('^').t(Long.class).dot("MIN_VALUE").c(';');
+    c('}');
+  }
+
+  /**
+   * Generates local variables, needed to pack the given field, if any, and returns expression, that evaluates to
+   * the unsigned order-preserving bits of the given field's value.
+   */
+  private String getPackedValue(DomainField field) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    assert fieldClass != null;
+    final String getter = getGetterName(field) + "()";
+
+    if (boolean.class.equals(fieldClass)) {
+      // (is{FieldName}() ? 1L : 0L)
+      return "(" + getter + " ? 1L : 0L)";
+    }
+
+    if (fieldClass.isEnum()) {
+      if (!FieldUtil.isNullable(field)) {
+        // ((long) get{FieldName}().ordinal())
+        return "((long) " + getter + ".ordinal())";
+      }
+      // final {Enum} {fieldName} = get{FieldName}(); ... (fieldName != null ? fieldName.ordinal() + 1L : 0L)
+      final String name = field.getFieldName();
+      s("final").sp().var(fieldClass, name).spc('=').s(getter).c(';');
+      return "(" + name + " != null ? " + name + ".ordinal() + 1L : 0L)";
+    }
+
+    if (char.class.equals(fieldClass)) {
+      return "((long) " + getter + ")";
+    }
+
+    if (long.class.equals(fieldClass)) {
+      // flipped sign bit makes negative values come first
+      return "(" + getter + " ^ Long.MIN_VALUE)";
+    }
+
+    if (float.class.equals(fieldClass) || double.class.equals(fieldClass)) {
+      // final long {fieldName}Bits = Double.doubleToLongBits(get{FieldName}());
+      // negative values have all the bits flipped, positive ones only have the sign bit flipped
+      final boolean single = float.class.equals(fieldClass);
+      final String bits = field.getFieldName() + BITS_SUFFIX;
+      s("final").sp().var(single ? int.class : long.class, bits).spc('=')
+          .t(Primitives.wrap(fieldClass)).dot(single ? "floatToIntBits" : "doubleToLongBits").c('(').s(getter)
+          .c(')', ';');
+      if (single) {
+        return "((" + bits + " ^ (" + bits + " >> 31 | Integer.MIN_VALUE)) & 0xffffffffL)";
+      }
+      return "(" + bits + " ^ (" + bits + " >> 63 | Long.MIN_VALUE))";
+    }
+
+    // byte, short and int: ((long) get{FieldName}() - Integer.MIN_VALUE)
+    return "((long) " + getter + " - " + Primitives.wrap(fieldClass).getSimpleName() + ".MIN_VALUE)";
+  }
+
+  private static boolean isPackable(DomainField field) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    return fieldClass != null && (boolean.class.equals(fieldClass) || WIDTHS.containsKey(fieldClass) ||
+        fieldClass.isEnum());
+  }
+
+  private static int getWidth(DomainField field) {
+    final Integer width = WIDTHS.get(field.getFieldTypeAsClass());
+    return width != null ? width : PackedFlags.getWidth(field);
+  }
+
+  private static String getGetterName(DomainField field) {
+    final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+    if (getterName == null) {
+      throw new RuntimeException("Sort key " + field + " has no getter");
+    }
+    return getterName;
+  }
+}
@@ -0,0 +1,264 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Layout of the flag words of the generated class, that hold the presence bits of the unboxed fields and,
+ * optionally, the packed boolean and enum fields.
+ * Each boolean takes one bit, each enum takes as many bits as needed to hold its ordinal, nullable enums
+ * reserve zero for null. All the flags fit into one <code>int</code> word if possible,
+ * otherwise they are packed into as many <code>long</code> words as needed, no field spans across the words.
+ *
+ * @author Alexander Shabanov
+ */
+final class PackedFlags {
+  private static final String WORD_NAME = "packedFlags";
+  private static final String VALUES_SUFFIX = "_VALUES";
+
+  private final Map<DomainField, Slot> slots = new LinkedHashMap<>();
+  private final Set<DomainField> presenceFields = new HashSet<>();
+  private final List<List<DomainField>> words = new ArrayList<>();
+  private final boolean longWords;
+  private boolean mutable;
+
+  private PackedFlags(@Nonnull Collection<? extends DomainField> fields, boolean valuesPacked) {
+    int totalWidth = 0;
+    final List<DomainField> packedFields = new ArrayList<>();
+    for (final DomainField field : fields) {
+      if (FieldUtil.getUnboxedType(field) != null) {
+        presenceFields.add(field);
+      } else if (!valuesPacked || !isPackable(field)) {
+        continue;
+      }
+      packedFields.add(field);
+      totalWidth += getWidth(field);
+    }
+
+    this.longWords = totalWidth > Integer.SIZE;
+    final int wordSize = longWords ? Long.SIZE : Integer.SIZE;
+    int shift = wordSize;
+    for (final DomainField field : packedFields) {
+      final int width = getWidth(field);
+      if (shift + width > wordSize) {
+        words.add(new ArrayList<DomainField>());
+        shift = 0;
+      }
+      words.get(words.size() - 1).add(field);
+      slots.put(field, new Slot(words.size() - 1, shift, width));
+      shift += width;
+      mutable = mutable || field.hasTrait(FieldTrait.MUTABLE);
+    }
+  }
+
+  /**
+   * @param fields Fields of the generated class
+   * @param valuesPacked Whether boolean and enum fields should be packed into the flag words
+   * @return Layout of the flag words
+   */
+  @Nonnull
+  public static PackedFlags of(@Nonnull Collection<? extends DomainField> fields, boolean valuesPacked) {
+    return new PackedFlags(fields, valuesPacked);
+  }
+
+  /**
+   * @return True, if value of the given field is stored in the flag word
+   */
+  public boolean isPacked(@Nonnull DomainField field) {
+    return slots.containsKey(field) && !presenceFields.contains(field);
+  }
+
+  /**
+   * @return True, if the given field is stored as primitive value, and its presence bit is stored in the flag word
+   */
+  public boolean hasPresenceBit(@Nonnull DomainField field) {
+    return presenceFields.contains(field);
+  }
+
+  /**
+   * @return True, if at least one of the packed fields can be modified after construction.
+   */
+  public boolean isMutable() {
+    return mutable;
+  }
+
+  @Nonnull
+  public Class<?> getWordType() {
+    return longWords ? long.class : int.class;
+  }
+
+  public int getWordCount() {
+    return words.size();
+  }
+
+  @Nonnull
+  public String getWordName(int wordIndex) {
+    return words.size() > 1 ? WORD_NAME + wordIndex : WORD_NAME;
+  }
+
+  @Nonnull
+  public String getWordName(@Nonnull DomainField field) {
+    return getWordName(getSlot(field).wordIndex);
+  }
+
+  @Nonnull
+  public List<DomainField> getWordFields(int wordIndex) {
+    return Collections.unmodifiableList(words.get(wordIndex));
+  }
+
+  /**
+   * @param field Packed enum field
+   * @return Name of the static array, that maps the packed values to the enum constants
+   */
+  @Nonnull
+  public static String getValuesName(@Nonnull DomainField field) {
+    return Names.createConstantName(field.getFieldName(), VALUES_SUFFIX);
+  }
+
+  /**
+   * @param field Packed enum field
+   * @return Number of the distinct values, that fit the bits of the given field, including null of the nullable enums
+   */
+  public int getCapacity(@Nonnull DomainField field) {
+    return 1 << getSlot(field).width;
+  }
+
+  /**
+   * @param field Packed field
+   * @return Mask literal, e.g. <code>0x1c</code>, that selects bits of the given field in its word
+   */
+  @Nonnull
+  public String getMask(@Nonnull DomainField field) {
+    final Slot slot = getSlot(field);
+    return literal(((1L << slot.width) - 1) << slot.shift);
+  }
+
+  /**
+   * @param field Packed field
+   * @param owner Expression, that refers to the instance holding the flag words, e.g. <code>this</code>
+   * @return Expression, that extracts value of the given field out of its word
+   */
+  @Nonnull
+  public String decode(@Nonnull DomainField field, @Nonnull String owner) {
+    final Slot slot = getSlot(field);
+    final String word = owner + '.' + getWordName(slot.wordIndex);
+    if (hasPresenceBit(field)) {
+      // ((this.packedFlags & 0x1) != 0 ? Integer.valueOf(this.field) : null)
+      return "((" + word + " & " + getMask(field) + ") != 0 ? " + field.getFieldTypeAsClass().getSimpleName() +
+          ".valueOf(" + owner + '.' + field.getFieldName() + ") : null)";
+    }
+    if (boolean.class.equals(field.getFieldType())) {
+      // (this.packedFlags & 0x4) != 0
+      return "(" + word + " & " + getMask(field) + ") != 0";
+    }
+
+    // VALUES[(int) ((this.packedFlags >>> 2) & 0x3)]
+    final String bits = (slot.shift > 0 ? '(' + word + " >>> " + slot.shift + ')' : word) +
+        " & " + literal((1L << slot.width) - 1);
+    return getValuesName(field) + '[' + (longWords ? "(int) (" + bits + ')' : bits) + ']';
+  }
+
+  /**
+   * @param field Packed field
+   * @param value Expression, that evaluates to the value of the given field
+   * @return Expression, that evaluates to the bits of the given value, positioned in the field's word
+   */
+  @Nonnull
+  public String encode(@Nonnull DomainField field, @Nonnull String value) {
+    final Slot slot = getSlot(field);
+    if (hasPresenceBit(field)) {
+      // (value != null ? 0x1 : 0)
+      return '(' + value + " != null ? " + getMask(field) + " : 0)";
+    }
+    if (boolean.class.equals(field.getFieldType())) {
+      // (value ? 0x4 : 0)
+      return '(' + value + " ? " + getMask(field) + " : 0)";
+    }
+
+    // nullable enums reserve zero for null: ((long) (value != null ? value.ordinal() + 1 : 0) << 2)
+    String ordinal = FieldUtil.isNullable(field) ?
+        '(' + value + " != null ? " + value + ".ordinal() + 1 : 0)" : value + ".ordinal()";
+    if (longWords) {
+      ordinal = "(long) " + ordinal;
+    }
+    if (slot.shift == 0) {
+      return longWords || !FieldUtil.isNullable(field) ? '(' + ordinal + ')' : ordinal;
+    }
+    return '(' + ordinal + " << " + slot.shift + ')';
+  }
+
+  /**
+   * @param field Packed field
+   * @param value Expression, that evaluates to the new value of the given field
+   * @return Expression, that evaluates to the field's word with the given field replaced
+   */
+  @Nonnull
+  public String replace(@Nonnull DomainField field, @Nonnull String value) {
+    // (this.packedFlags & ~0x4) | (value ? 0x4 : 0)
+    return "(this." + getWordName(field) + " & ~" + getMask(field) + ") | " + encode(field, value);
+  }
+
+  /**
+   * @param field Domain field
+   * @return Enum class of the given field or null if the field is not an enum
+   */
+  @Nullable
+  public static Class<?> getEnumClass(@Nonnull DomainField field) {
+    final Class<?> fieldClass = field.getFieldTypeAsClass();
+    return fieldClass != null && fieldClass.isEnum() ? fieldClass : null;
+  }
+
+  /**
+   * @param field Boolean or enum field or the field with the presence bit
+   * @return Number of bits, needed to hold the value of the given field, nullable enums reserve zero for null
+   */
+  static int getWidth(@Nonnull DomainField field) {
+    final Class<?> enumClass = getEnumClass(field);
+    if (enumClass == null) {
+      return 1; // boolean or presence bit
+    }
+    final int valueCount = enumClass.getEnumConstants().length + (FieldUtil.isNullable(field) ? 1 : 0);
+    return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(valueCount, 1) - 1));
+  }
+
+  //
+  // Private
+  //
+
+  private static boolean isPackable(DomainField field) {
+    if (field.hasTrait(FieldTrait.ATOMIC)) {
+      return false; // atomic field should be updated independently of the other ones
+    }
+    return boolean.class.equals(field.getFieldType()) || getEnumClass(field) != null;
+  }
+
+  private Slot getSlot(DomainField field) {
+    final Slot slot = slots.get(field);
+    if (slot == null) {
+      throw new IllegalArgumentException("Field " + field + " is not packed");
+    }
+    return slot;
+  }
+
+  private String literal(long value) {
+    return longWords ? "0x" + Long.toHexString(value) + 'L' : "0x" + Integer.toHexString((int) value);
+  }
+
+  private static final class Slot {
+    final int wordIndex;
+    final int shift;
+    final int width;
+
+    Slot(int wordIndex, int shift, int width) {
+      this.wordIndex = wordIndex;
+      this.shift = shift;
+      this.width = width;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encapsulates generation of the members, that keep the flag words of the domain class, laid out by
+ * {@link PackedFlags}: the words themselves, the tables of the packed enum values and the accessors of the presence
+ * bits. Packed fields are compared and hashed by words rather than one by one.
+ *
+ * @author Alexander Shabanov
+ */
+final class PackedFlagsImplementer extends AbstractDomainImplementer {
+  private final PackedFlags packedFlags;
+
+  PackedFlagsImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                         @Nonnull PackedFlags packedFlags) {
+    super(codeStream, domainClass);
+    this.packedFlags = packedFlags;
+  }
+
+  /**
+   * Generates static arrays, that map packed values of the enum fields to the enum constants. The arrays are filled
+   * in from the enum class loaded at runtime, so the static initializer verifies that its constants still fit the bits
+   * reserved for them at the generation time, otherwise the ordinal would silently overflow into the adjacent fields.
+   */
+  public void generateValues() {
+    final List<DomainField> fields = new ArrayList<DomainField>();
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(field) && PackedFlags.getEnumClass(field) != null) {
+        generateValues(field);
+        fields.add(field);
+      }
+    }
+    if (fields.isEmpty()) {
+      return;
+    }
+
+    // static {
+    s("static").c(' ', '{');
+    for (final DomainField field : fields) {
+      generateValuesCheck(field);
+    }
+    c('}');
+  }
+
+  public void generateWords() {
+    final List<Modifier> modifiers;
+    if (packedFlags.isMutable()) {
+      modifiers = getDomainClass().isSeqlockSupported() ? ImmutableList.of(Modifier.VOLATILE) :
+          ImmutableList.<Modifier>of();
+    } else {
+      modifiers = ImmutableList.of(Modifier.FINAL);
+    }
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      var(packedFlags.getWordType(), packedFlags.getWordName(i), modifiers).c(';');
+    }
+  }
+
+  /**
+   * Generates assignments of the flag words.
+   *
+   * @param valuePrefix Prefix of the expressions, that refer to the assigned values, e.g. <code>builder.</code>
+   */
+  public void generateAssignments(@Nonnull String valuePrefix) {
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      // this.packedFlags = {EncodedValue1} | {EncodedValue2} | ...;
+      thisDot(packedFlags.getWordName(i)).spc('=');
+      boolean next = false;
+      for (final DomainField field : packedFlags.getWordFields(i)) {
+        if (next) {
+          sps("|");
+        } else {
+          next = true;
+        }
+        s(packedFlags.encode(field, valuePrefix + field.getFieldName()));
+      }
+      c(';');
+    }
+  }
+
+  public void generateReset() {
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      // this.packedFlags = 0;
+      thisDot(packedFlags.getWordName(i)).spc('=').c('0', ';');
+    }
+  }
+
+  /**
+   * Generates accessors, that expose the unboxed field without boxing, e.g. <code>hasCount()</code> and
+   * <code>getCountAsInt()</code>.
+   */
+  public void generatePresenceGetters(@Nonnull DomainField field) {
+    // public boolean has{FieldName}() {
+    c('\n').s("public").sp().s("final").sp().t(boolean.class).sp().s(FieldUtil.getPresenceMethodName(field))
+        .c('(', ')', ' ', '{');
+    s("return").sp().c('(').thisDot(packedFlags.getWordName(field)).sps("&").s(packedFlags.getMask(field)).c(')')
+        .sps("!=").c('0', ';');
+    c('}');
+
+    // public {PrimitiveType} get{FieldName}As{PrimitiveType}() {
+    c('\n').s("public").sp().s("final").sp().t(ClassImplementer.getStorageType(field)).sp()
+        .s(FieldUtil.getUnboxedGetterName(field)).c('(', ')', ' ', '{');
+    s("return").sp().thisDot(field.getFieldName()).c(';');
+    c('}');
+  }
+
+  public void generateEqualsChecks(@Nonnull String other) {
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      // if (this.packedFlags != other.packedFlags) { return false; }
+      s("if").c(' ', '(').thisDot(packedFlags.getWordName(i)).sps("!=").dot(other, packedFlags.getWordName(i))
+          .c(')', ' ', '{').s("return").sp().s("false").c(';', '}');
+    }
+  }
+
+  public void generateHashCodeAdditions(@Nonnull String result) {
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      // result = 31 * result + this.packedFlags;
+      final String word = packedFlags.getWordName(i);
+      s(result).spc('=').s("31").spc('*').s(result).spc('+');
+      if (long.class.equals(packedFlags.getWordType())) {
+        cast(int.class).c('(').thisDot(word).spc('^').c('(').thisDot(word).sps(">>>").s("32").c(')', ')');
+      } else {
+        thisDot(word);
+      }
+      c(';');
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void generateValues(DomainField field) {
+    final Class<?> enumClass = PackedFlags.getEnumClass(field);
+    assert enumClass != null;
+    final Type valuesType = Array.newInstance(enumClass, 0).getClass();
+
+    // private static final {Enum}[] {FIELD}_VALUES = {Enum}.values();
+    s("private").sp().s("static").sp()
+        .var(valuesType, PackedFlags.getValuesName(field), ImmutableList.of(Modifier.FINAL)).spc('=');
+    if (FieldUtil.isNullable(field)) {
+      // ... = new {Enum}[{Enum}.values().length + 1]; - zero is reserved for null
+      newType(enumClass).c('[').t(enumClass).dot("values").c('(', ')').dot("length").spc('+').c('1', ']');
+    } else {
+      t(enumClass).dot("values").c('(', ')');
+    }
+    c(';');
+  }
+
+  private void generateValuesCheck(DomainField field) {
+    final Class<?> enumClass = PackedFlags.getEnumClass(field);
+    assert enumClass != null;
+    final String values = PackedFlags.getValuesName(field);
+
+    if (FieldUtil.isNullable(field)) {
+      // System.arraycopy({Enum}.values(), 0, {FIELD}_VALUES, 1, {FIELD}_VALUES.length - 1);
+      t(System.class).dot("arraycopy").c('(').t(enumClass).dot("values").c('(', ')').c(',', ' ', '0', ',', ' ')
+          .s(values).c(',', ' ', '1', ',', ' ').s(values).dot("length").spc('-').c('1', ')', ';');
+    }
+
+    // if ({FIELD}_VALUES.length > {Capacity}) { throw new IllegalStateException("..."); }
+    s("if").sp().c('(').s(values).dot("length").spc('>').val(packedFlags.getCapacity(field)).c(')', ' ', '{')
+        .s("throw").sp().newType(IllegalStateException.class).c('(')
+        .val("Constants of " + enumClass.getSimpleName() + " do not fit packed " + field.getFieldName() +
+            " bits, " + getDomainClass().getFqName().getName() + " needs to be regenerated")
+        .c(')', ';')
+        .c('}');
+  }
+}
@@ -0,0 +1,92 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.code.typed.GenClass;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+
+/**
+ * Encapsulates generation of the thread-local object pool for the mutable domain objects.
+ * Released objects are reset and kept in the bounded per-thread stack, so that the pool neither requires
+ * synchronization nor retains an unlimited amount of memory.
+ * Released objects are marked as pooled, so that releasing the same object twice fails rather than handing it
+ * out to two owners later on.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PoolImplementer extends AbstractDomainImplementer {
+  private static final String MAX_SIZE = "MAX_SIZE";
+  private static final String POOL = "POOL";
+  private static final int DEFAULT_MAX_SIZE = 16;
+
+  public PoolImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
+    super(codeStream, domainClass);
+    if (!domainClass.getGenPoolClass().isSupported()) {
+      throw new IllegalStateException("Pool class is not supported");
+    }
+  }
+
+  @Nonnull
+  public GenClass getPoolClass() {
+    return getDomainClass().getGenPoolClass();
+  }
+
+  public void generatePool() {
+    final String poolName = getPoolClass().getFqName().getName();
+    final Type dequeType = SynteticParameterizedType.from(ArrayDeque.class, getDomainClass());
+    final Type threadLocalType = SynteticParameterizedType.from(ThreadLocal.class, dequeType);
+
+    publicFinalClass().s(poolName).sp().c('{');
+
+    // private static final int MAX_SIZE = 16;
+    s("private").sp().s("static").sp().var(int.class, MAX_SIZE, ImmutableList.of(Modifier.FINAL))
+        .spc('=').val(DEFAULT_MAX_SIZE).c(';');
+
+    // private static final ThreadLocal<ArrayDeque<{TargetClass}>> POOL = new ThreadLocal<...>() {
+    s("private").sp().s("static").sp().var(threadLocalType, POOL, ImmutableList.of(Modifier.FINAL))
+        .spc('=').newType(threadLocalType).c('(', ')', ' ', '{');
+    annotate(Override.class).s("protected").sp().t(dequeType).sp().s("initialValue").c('(', ')', ' ', '{')
+        .s("return").sp().newType(dequeType).c('(').s(MAX_SIZE).c(')', ';')
+        .c('}');
+    c('}').c(';');
+
+    // private {Pool}() {} - hidden ctor
+    c('\n').s("private").sp().s(poolName).c('(', ')', ' ', '{').c('}');
+
+    // public static {TargetClass} acquire() {
+    c('\n').s("public").sp().s("static").sp().t(getDomainClass()).sp().s("acquire").c('(', ')', ' ', '{');
+    s("final").sp().t(getDomainClass()).sp().s(Names.RESULT).spc('=').s(POOL).dot("get").c('(', ')')
+        .dot("pollLast").c('(', ')', ';');
+    s("if").sp().c('(').s(Names.RESULT).sps("==").s("null").c(')', ' ', '{')
+        .s("return").sp().newType(getDomainClass()).c('(', ')', ';')
+        .c('}');
+    s(Names.RESULT).dot(Names.POOLED).spc('=').val(false).c(';');
+    s("return").sp().s(Names.RESULT).c(';');
+    c('}');
+
+    // public static void release({TargetClass} value) {
+    c('\n').s("public").sp().s("static").sp().t(void.class).sp().s("release").c('(')
+        .var(getDomainClass(), Names.VALUE).c(')', ' ', '{');
+    // released twice object would be handed out to two owners
+    s("if").sp().c('(').s(Names.VALUE).dot(Names.POOLED).c(')', ' ', '{')
+        .s("throw").sp().newType(IllegalStateException.class).c('(').val("Object has already been released")
+        .c(')', ';')
+        .c('}');
+    s(Names.VALUE).dot(Names.POOLED).spc('=').val(true).c(';');
+    s(Names.VALUE).dot("reset").c('(', ')', ';');
+    s("final").sp().t(dequeType).sp().s("pool").spc('=').s(POOL).dot("get").c('(', ')', ';');
+    s("if").sp().c('(').s("pool").dot("size").c('(', ')').sps("<").s(MAX_SIZE).c(')', ' ', '{')
+        .s("pool").dot("addLast").c('(').s(Names.VALUE).c(')', ';')
+        .c('}');
+    c('}');
+
+    c('}'); // end of pool class
+  }
+}
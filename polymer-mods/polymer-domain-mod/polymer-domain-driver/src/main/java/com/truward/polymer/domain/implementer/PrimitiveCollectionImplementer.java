@@ -0,0 +1,362 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.PrimitiveCollectionType;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Encapsulates generation of the primitive array-backed immutable collections, that are used to store
+ * fields with {@link FieldTrait#PRIMITIVE_ELEMENTS} trait.
+ * Each collection class is generated as a nested class of the domain class, so that the generated classes
+ * recognize each other's collections and share them instead of copying.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PrimitiveCollectionImplementer extends AbstractDomainImplementer {
+  private static final String ELEMENTS = Names.ELEMENTS;
+  private static final String SOURCE = "source";
+  private static final String INDEX = "index";
+
+  private final Map<Class<?>, GenDomainClass> domainTargets;
+
+  public PrimitiveCollectionImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                                        @Nonnull Map<Class<?>, GenDomainClass> domainTargets) {
+    super(codeStream, domainClass);
+    this.domainTargets = domainTargets;
+  }
+
+  /**
+   * @return Set of collection types, used by the fields of the current domain class.
+   */
+  @Nonnull
+  public Set<PrimitiveCollectionType> getCollectionTypes() {
+    final Set<PrimitiveCollectionType> result = EnumSet.noneOf(PrimitiveCollectionType.class);
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS)) {
+        result.add(getCollectionType(field));
+      }
+    }
+    return result;
+  }
+
+  public void generateInnerClasses() {
+    for (final PrimitiveCollectionType collectionType : getCollectionTypes()) {
+      c('\n');
+      if (collectionType.isSet()) {
+        generateSetClass(collectionType);
+      } else {
+        generateListClass(collectionType);
+      }
+    }
+  }
+
+  @Nonnull
+  public static PrimitiveCollectionType getCollectionType(@Nonnull DomainField field) {
+    final PrimitiveCollectionType collectionType = PrimitiveCollectionType.from(field.getFieldType());
+    if (collectionType == null) {
+      throw new IllegalStateException("Field " + field + " can not be stored in the primitive collection");
+    }
+    return collectionType;
+  }
+
+  /**
+   * Generates expression, that shares the given collection if it is created by any of the other generated classes
+   * and copies it otherwise. Own collection class is recognized by <code>copyOf</code> itself.
+   *
+   * @param field Field with {@link FieldTrait#PRIMITIVE_ELEMENTS} trait
+   * @param value Expression, that evaluates to the collection to be copied
+   */
+  public void generateCopy(@Nonnull DomainField field, @Nonnull String value) {
+    final PrimitiveCollectionType collectionType = getCollectionType(field);
+
+    // ==> value instanceof OtherImpl.IntList ? value : IntList.copyOf(value)
+    boolean first = true;
+    for (final GenDomainClass owner : getOwners(collectionType)) {
+      if (owner == getDomainClass()) {
+        continue;
+      }
+      if (!first) {
+        sps("||");
+      }
+      s(value).sps("instanceof").t(owner).dot(collectionType.getClassName());
+      first = false;
+    }
+    if (!first) {
+      spc('?').s(value).spc(':');
+    }
+    s(collectionType.getClassName()).dot("copyOf").c('(').s(value).c(')');
+  }
+
+  //
+  // Private
+  //
+
+  /**
+   * @return Domain classes, generated along with the current one, that nest the primitive collection of the given
+   * type, sorted by name to keep the generated code stable regardless of the targets order
+   */
+  @Nonnull
+  private List<GenDomainClass> getOwners(@Nonnull PrimitiveCollectionType collectionType) {
+    final List<GenDomainClass> result = new ArrayList<>();
+    for (final GenDomainClass target : domainTargets.values()) {
+      final PrimitiveCollectionImplementer implementer = new PrimitiveCollectionImplementer(getRootCodeStream(),
+          target, domainTargets);
+      if (implementer.getCollectionTypes().contains(collectionType)) {
+        result.add(target);
+      }
+    }
+    Collections.sort(result, new Comparator<GenDomainClass>() {
+      @Override
+      public int compare(GenDomainClass left, GenDomainClass right) {
+        return left.getFqName().toString().compareTo(right.getFqName().toString());
+      }
+    });
+    return result;
+  }
+
+  private void generateListClass(PrimitiveCollectionType type) {
+    final String className = type.getClassName();
+    final Class<?> primitiveClass = type.getPrimitiveClass();
+    final Class<?> boxedClass = type.getBoxedClass();
+
+    // public static final class IntList extends AbstractList<Integer> implements RandomAccess {
+    publicStaticFinalClass().s(className).sp().s("extends").sp()
+        .t(SynteticParameterizedType.from(AbstractList.class, boxedClass)).sp()
+        .s("implements").sp().t(RandomAccess.class).sp().c('{');
+
+    generateHead(type);
+
+    // public int getInt(int index) { return this.elements[index]; }
+    c('\n').s("public").sp().t(primitiveClass).sp().s("get" + type.getPrimitiveName()).c('(')
+        .var(int.class, INDEX).c(')', ' ', '{')
+        .s("return").sp().thisDot(ELEMENTS).c('[').s(INDEX).c(']', ';')
+        .c('}');
+
+    generateToArray(type);
+
+    // @Override public Integer get(int index) { return this.elements[index]; }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boxedClass).sp().s("get").c('(')
+        .var(int.class, INDEX).c(')', ' ', '{')
+        .s("return").sp().thisDot(ELEMENTS).c('[').s(INDEX).c(']', ';')
+        .c('}');
+
+    generateSize();
+
+    // @Override public boolean contains(Object o) { return indexOf(o) >= 0; }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boolean.class).sp().s("contains").c('(')
+        .var(Object.class, "o").c(')', ' ', '{')
+        .s("return").sp().s("indexOf").c('(').s("o").c(')').sps(">=").c('0', ';')
+        .c('}');
+
+    // @Override public int indexOf(Object o) { ... }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(int.class).sp().s("indexOf").c('(')
+        .var(Object.class, "o").c(')', ' ', '{');
+    s("if").sp().c('(').s("o").sps("instanceof").t(boxedClass).c(')', ' ', '{');
+    s("final").sp().t(primitiveClass).sp().s(Names.VALUE).spc('=').cast(boxedClass).sp().s("o").c(';');
+    s("for").sp().c('(').t(int.class).sp().s("i = 0; i < this.elements.length; ++i").c(')', ' ', '{');
+    s("if").sp().c('(').thisDot(ELEMENTS).s("[i]").sps("==").s(Names.VALUE).c(')', ' ', '{')
+        .s("return").sp().s("i").c(';')
+        .c('}');
+    c('}'); // end of for
+    c('}'); // end of if
+    s("return").sp().s("-1").c(';');
+    c('}');
+
+    // @Override public int hashCode() - same as in java.util.List contract, but without boxing
+    c('\n');
+    annotate(Override.class).s("public").sp().t(int.class).sp().s("hashCode").c('(', ')', ' ', '{');
+    t(int.class).sp().s(Names.RESULT).spc('=').c('1', ';');
+    generateForEachElement(type);
+    s(Names.RESULT).spc('=').s("31").spc('*').s(Names.RESULT).spc('+');
+    generateElementHashCode(type);
+    c(';');
+    c('}'); // end of for
+    s("return").sp().s(Names.RESULT).c(';');
+    c('}');
+
+    generateEquals(type);
+
+    c('}'); // end of class
+  }
+
+  private void generateSetClass(PrimitiveCollectionType type) {
+    final String className = type.getClassName();
+    final Class<?> primitiveClass = type.getPrimitiveClass();
+    final Class<?> boxedClass = type.getBoxedClass();
+    final String containsMethodName = "contains" + type.getPrimitiveName();
+
+    // public static final class IntSet extends AbstractSet<Integer> {
+    publicStaticFinalClass().s(className).sp().s("extends").sp()
+        .t(SynteticParameterizedType.from(AbstractSet.class, boxedClass)).sp().c('{');
+
+    // elements are sorted and unique
+    generateHead(type);
+
+    // public boolean containsInt(int value) { return Arrays.binarySearch(this.elements, value) >= 0; }
+    c('\n').s("public").sp().t(boolean.class).sp().s(containsMethodName).c('(')
+        .var(primitiveClass, Names.VALUE).c(')', ' ', '{')
+        .s("return").sp().t(Arrays.class).dot("binarySearch").c('(').thisDot(ELEMENTS).c(',', ' ').s(Names.VALUE)
+        .c(')').sps(">=").c('0', ';')
+        .c('}');
+
+    generateToArray(type);
+
+    // @Override public boolean contains(Object o) { return o instanceof Integer && containsInt((Integer) o); }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boolean.class).sp().s("contains").c('(')
+        .var(Object.class, "o").c(')', ' ', '{')
+        .s("return").sp().s("o").sps("instanceof").t(boxedClass).sps("&&")
+        .s(containsMethodName).c('(').cast(boxedClass).sp().s("o").c(')', ';')
+        .c('}');
+
+    // @Override public Iterator<Integer> iterator() { return new Iterator<Integer>() {...}; }
+    final Type iteratorType = SynteticParameterizedType.from(Iterator.class, boxedClass);
+    c('\n');
+    annotate(Override.class).s("public").sp().t(iteratorType).sp().s("iterator").c('(', ')', ' ', '{');
+    s("return").sp().newType(iteratorType).c('(', ')', ' ', '{');
+    s("private").sp().t(int.class).sp().s(INDEX).c(';');
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boolean.class).sp().s("hasNext").c('(', ')', ' ', '{')
+        .s("return").sp().s(INDEX).sps("<").s(ELEMENTS).dot("length").c(';')
+        .c('}');
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boxedClass).sp().s("next").c('(', ')', ' ', '{');
+    s("if").sp().c('(').s(INDEX).sps(">=").s(ELEMENTS).dot("length").c(')', ' ', '{')
+        .s("throw").sp().newType(NoSuchElementException.class).c('(', ')', ';')
+        .c('}');
+    s("return").sp().s(ELEMENTS).c('[').s(INDEX).s("++").c(']', ';');
+    c('}');
+    c('\n');
+    annotate(Override.class).s("public").sp().t(void.class).sp().s("remove").c('(', ')', ' ', '{')
+        .throwUnsupportedOperationException()
+        .c('}');
+    c('}').c(';'); // end of anonymous class
+    c('}'); // end of iterator method
+
+    generateSize();
+
+    // @Override public int hashCode() - same as in java.util.Set contract, but without boxing
+    c('\n');
+    annotate(Override.class).s("public").sp().t(int.class).sp().s("hashCode").c('(', ')', ' ', '{');
+    t(int.class).sp().s(Names.RESULT).spc('=').c('0', ';');
+    generateForEachElement(type);
+    s(Names.RESULT).sps("+=");
+    generateElementHashCode(type);
+    c(';');
+    c('}'); // end of for
+    s("return").sp().s(Names.RESULT).c(';');
+    c('}');
+
+    generateEquals(type);
+
+    c('}'); // end of class
+  }
+
+  private void generateHead(PrimitiveCollectionType type) {
+    final String className = type.getClassName();
+    final Class<?> primitiveClass = type.getPrimitiveClass();
+    final Class<?> boxedClass = type.getBoxedClass();
+    final Type arrayType = Array.newInstance(primitiveClass, 0).getClass();
+
+    // private final int[] elements;
+    s("private").sp().s("final").sp().t(arrayType).sp().s(ELEMENTS).c(';');
+
+    // private IntList(int[] elements) { this.elements = elements; }
+    c('\n').s("private").sp().s(className).c('(').var(arrayType, ELEMENTS).c(')', ' ', '{')
+        .thisDot(ELEMENTS).spc('=').s(ELEMENTS).c(';')
+        .c('}');
+
+    // static IntList copyOf(Collection<Integer> source) {
+    c('\n').s("static").sp().s(className).sp().s("copyOf").c('(')
+        .var(SynteticParameterizedType.from(Collection.class, boxedClass), SOURCE).c(')', ' ', '{');
+    // collection is immutable, no need to copy it
+    s("if").sp().c('(').s(SOURCE).sps("instanceof").s(className).c(')', ' ', '{')
+        .s("return").sp().c('(').s(className).c(')').sp().s(SOURCE).c(';')
+        .c('}');
+    // final int[] elements = new int[source.size()];
+    s("final").sp().t(arrayType).sp().s(ELEMENTS).spc('=').newType(primitiveClass)
+        .c('[').s(SOURCE).dot("size").c('(', ')', ']', ';');
+    t(int.class).sp().s(INDEX).spc('=').c('0', ';');
+    // for (final Integer element : source) { elements[index++] = element; }
+    s("for").sp().c('(').s("final").sp().t(boxedClass).sp().s(Names.ELEMENT).spc(':').s(SOURCE).c(')', ' ', '{')
+        .s(ELEMENTS).c('[').s(INDEX).s("++").c(']').spc('=').s(Names.ELEMENT).c(';')
+        .c('}');
+
+    if (type.isSet()) {
+      // sort and remove duplicates to make binary search possible
+      t(Arrays.class).dot("sort").c('(').s(ELEMENTS).c(')', ';');
+      t(int.class).sp().s("size").spc('=').c('0', ';');
+      s("for").sp().c('(').t(int.class).sp().s("i = 0; i < index; ++i").c(')', ' ', '{')
+          .s("if").sp().c('(').s("size == 0 || elements[size - 1] != elements[i]").c(')', ' ', '{')
+          .s("elements[size++] = elements[i]").c(';')
+          .c('}')
+          .c('}');
+      s("return").sp().s("new").sp().s(className).c('(')
+          .s("size == elements.length ? elements : ").t(Arrays.class).dot("copyOf").c('(').s(ELEMENTS).c(',', ' ')
+          .s("size").c(')', ')', ';');
+    } else {
+      s("return").sp().s("new").sp().s(className).c('(').s(ELEMENTS).c(')', ';');
+    }
+    c('}'); // end of copyOf
+  }
+
+  private void generateToArray(PrimitiveCollectionType type) {
+    final Type arrayType = Array.newInstance(type.getPrimitiveClass(), 0).getClass();
+
+    // public int[] toIntArray() { return this.elements.clone(); }
+    c('\n').s("public").sp().t(arrayType).sp().s("to" + type.getPrimitiveName() + "Array").c('(', ')', ' ', '{')
+        .s("return").sp().thisDot(ELEMENTS).dot("clone").c('(', ')', ';')
+        .c('}');
+  }
+
+  private void generateSize() {
+    // @Override public int size() { return this.elements.length; }
+    c('\n');
+    annotate(Override.class).s("public").sp().t(int.class).sp().s("size").c('(', ')', ' ', '{')
+        .s("return").sp().thisDot(ELEMENTS).dot("length").c(';')
+        .c('}');
+  }
+
+  private void generateForEachElement(PrimitiveCollectionType type) {
+    // for (final int element : this.elements) {
+    s("for").sp().c('(').s("final").sp().t(type.getPrimitiveClass()).sp().s(Names.ELEMENT).spc(':')
+        .thisDot(ELEMENTS).c(')', ' ', '{');
+  }
+
+  private void generateElementHashCode(PrimitiveCollectionType type) {
+    if (long.class.equals(type.getPrimitiveClass())) {
+      // (int) (element ^ (element >>> 32))
+      cast(int.class).sp().c('(').s(Names.ELEMENT).spc('^').c('(').s(Names.ELEMENT).sps(">>>").s("32").c(')', ')');
+    } else {
+      s(Names.ELEMENT);
+    }
+  }
+
+  private void generateEquals(PrimitiveCollectionType type) {
+    final String className = type.getClassName();
+
+    // @Override public boolean equals(Object o) {
+    c('\n');
+    annotate(Override.class).s("public").sp().t(boolean.class).sp().s("equals").c('(')
+        .var(Object.class, "o").c(')', ' ', '{');
+    // fast path: compare arrays directly - set elements are sorted, so that this works for sets as well
+    s("if").sp().c('(').s("o").sps("instanceof").s(className).c(')', ' ', '{')
+        .s("return").sp().t(Arrays.class).dot("equals").c('(').thisDot(ELEMENTS).c(',', ' ')
+        .c('(', '(').s(className).c(')').sp().s("o").c(')').dot(ELEMENTS).c(')', ';')
+        .c('}');
+    s("return").sp().s("super").dot("equals").c('(').s("o").c(')', ';');
+    c('}');
+  }
+}
@@ -0,0 +1,152 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Encapsulates generation of the sequence counter, that guards the mutable fields of the domain object.
+ * Updates are synchronized and make the counter odd while they are in progress, so that the snapshot reads the fields
+ * without locking and retries if it might have observed an update.
+ *
+ * @author Alexander Shabanov
+ */
+final class SeqlockImplementer extends AbstractDomainImplementer {
+  private static final String UPDATE = "update";
+  private static final String UPDATE_SEQUENCE = "updateSequence";
+  private static final String SNAPSHOT = "snapshot";
+  private static final String FROZEN = "frozen";
+
+  private final ClassImplementer classImplementer;
+
+  SeqlockImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                     @Nonnull ClassImplementer classImplementer) {
+    super(codeStream, domainClass);
+    if (!hasMutableFields()) {
+      throw new RuntimeException("Sequence counter can not be assigned to " +
+          getAnalysisResult().getOriginClass() + " as it has no mutable fields");
+    }
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.ATOMIC)) {
+        throw new RuntimeException("Field " + field + " is atomic and can not be guarded by the sequence counter");
+      }
+    }
+    this.classImplementer = classImplementer;
+  }
+
+  public void generateFields() {
+    // private volatile int updateSequence;
+    var(int.class, UPDATE_SEQUENCE, ImmutableList.of(Modifier.PRIVATE, Modifier.VOLATILE)).c(';');
+    // private volatile boolean frozen;
+    var(boolean.class, FROZEN, ImmutableList.of(Modifier.PRIVATE, Modifier.VOLATILE)).c(';');
+  }
+
+  /**
+   * Generates the beginning of the update, guarded by the sequence counter, which is odd while the update is
+   * in progress. Only one thread updates the object at a time, so that the counter does not need to be atomic.
+   * Snapshots are frozen and reject the updates.
+   */
+  public void generateUpdateBegin() {
+    // if (this.frozen) { throw new UnsupportedOperationException("Snapshot can not be modified"); }
+    s("if").sp().c('(').thisDot(FROZEN).c(')', ' ', '{');
+    s("throw").sp().newType(UnsupportedOperationException.class).c('(').val("Snapshot can not be modified")
+        .c(')', ';');
+    c('}');
+    // final int updateSequence = this.updateSequence; this.updateSequence = updateSequence + 1;
+    var(int.class, UPDATE_SEQUENCE, ImmutableList.of(Modifier.FINAL)).spc('=').thisDot(UPDATE_SEQUENCE).c(';');
+    thisDot(UPDATE_SEQUENCE).spc('=').s(UPDATE_SEQUENCE).sps("+").val(1).c(';');
+  }
+
+  public void generateUpdateEnd() {
+    // this.updateSequence = updateSequence + 2;
+    thisDot(UPDATE_SEQUENCE).spc('=').s(UPDATE_SEQUENCE).sps("+").val(2).c(';');
+  }
+
+  /**
+   * Generates the method, that updates all the mutable fields at once, so that no snapshot observes only a part
+   * of the changes.
+   */
+  public void generateUpdate() {
+    // public final synchronized void update({FieldType1} {fieldName1}, ...) {
+    c('\n');
+    s("public").sp().s("final").sp().s("synchronized").sp().t(void.class).sp().s(UPDATE).c('(');
+    boolean next = false;
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (!field.hasTrait(FieldTrait.MUTABLE)) {
+        continue;
+      }
+      if (next) {
+        c(',', ' ');
+      } else {
+        next = true;
+      }
+      var(field.getFieldType(), field.getFieldName());
+    }
+    c(')', ' ', '{');
+
+    generateUpdateBegin();
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.hasTrait(FieldTrait.MUTABLE)) {
+        classImplementer.generateFieldUpdate(field);
+      }
+    }
+    classImplementer.generateMemoizedReset();
+    generateUpdateEnd();
+    c('}');
+  }
+
+  /**
+   * Generates the method, that reads all the fields without locking and retries until no update happens meanwhile,
+   * so that the returned copy is consistent. The copy is frozen, so that it can be shared as an immutable value.
+   */
+  public void generateSnapshot() {
+    // public final {OriginClass} snapshot() {
+    c('\n');
+    s("public").sp().s("final").sp().t(getAnalysisResult().getOriginClass()).sp().s(SNAPSHOT).c('(', ')', ' ', '{');
+    // while (true) {
+    s("while").sp().c('(').val(true).c(')', ' ', '{');
+
+    // final int updateSequence = this.updateSequence;
+    var(int.class, UPDATE_SEQUENCE, ImmutableList.of(Modifier.FINAL)).spc('=').thisDot(UPDATE_SEQUENCE).c(';');
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+      if (getterName == null) {
+        throw new IllegalStateException("Field " + field + " has no getter");
+      }
+      // final {FieldType} {fieldName} = get{FieldName}();
+      var(field.getFieldType(), field.getFieldName(), ImmutableList.of(Modifier.FINAL)).spc('=')
+          .s(getterName).c('(', ')', ';');
+    }
+
+    // if ((updateSequence & 1) == 0 && updateSequence == this.updateSequence) {
+    s("if").sp().c('(', '(').s(UPDATE_SEQUENCE).sps("&").val(1).c(')').sps("==").val(0).sps("&&")
+        .s(UPDATE_SEQUENCE).sps("==").thisDot(UPDATE_SEQUENCE).c(')', ' ', '{');
+    // final {TargetClass} result = new {TargetClass}({fieldName1}, ...);
+    s("final").sp().t(getDomainClass()).sp().s(Names.RESULT).spc('=').newType(getDomainClass()).c('(');
+    boolean next = false;
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (next) {
+        c(',', ' ');
+      } else {
+        next = true;
+      }
+      s(field.getFieldName());
+    }
+    c(')', ';');
+    // result.frozen = true; return result;
+    s(Names.RESULT).dot(FROZEN).spc('=').val(true).c(';');
+    s("return").sp().s(Names.RESULT).c(';');
+    c('}');
+
+    c('}'); // end of while
+    c('}');
+  }
+}
@@ -0,0 +1,297 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.io.*;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Encapsulates generation of the serialization proxy: the generated class replaces itself with the nested
+ * {@link Externalizable} proxy, that writes values of the fields one by one, primitives are written as is, boxed
+ * primitives are preceded by the presence flag, collections are preceded by their size (or -1 for null) and
+ * written element by element, other values are written as objects.
+ * The proxy restores the object by means of the public constructor, so that the deserialized objects are checked
+ * the same way as the ones, created by the code, and the generated class rejects direct deserialization.
+ *
+ * @author Alexander Shabanov
+ */
+public final class SerializationImplementer extends AbstractDomainImplementer {
+  private static final String PROXY_CLASS_NAME = "SerializationProxy";
+  private static final String SERIAL_VERSION_UID = "serialVersionUID";
+  private static final String OUT = "out";
+  private static final String IN = "in";
+  private static final String ENTRY = "entry";
+  private static final String INDEX = "i";
+  private static final String SIZE_SUFFIX = "Size";
+
+  /**
+   * Suffixes of the {@link DataOutput} and {@link DataInput} methods, that write and read primitives
+   */
+  private static final Map<Class<?>, String> PRIMITIVE_METHOD_SUFFIXES = ImmutableMap.<Class<?>, String>builder()
+      .put(boolean.class, "Boolean")
+      .put(byte.class, "Byte")
+      .put(char.class, "Char")
+      .put(short.class, "Short")
+      .put(int.class, "Int")
+      .put(float.class, "Float")
+      .put(long.class, "Long")
+      .put(double.class, "Double")
+      .build();
+
+  public SerializationImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
+    super(codeStream, domainClass);
+  }
+
+  public void generateSerializationProxy() {
+    // private static final long serialVersionUID = 1L;
+    c('\n');
+    generateSerialVersionUid();
+
+    // private Object writeReplace() { return new SerializationProxy(this); }
+    s("private").sp().t(Object.class).sp().s("writeReplace").c('(', ')', ' ', '{')
+        .s("return").sp().s("new").sp().s(PROXY_CLASS_NAME).c('(').s("this").c(')', ';')
+        .c('}');
+
+    // private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+    c('\n').s("private").sp().t(void.class).sp().s("readObject").c('(').var(ObjectInputStream.class, "stream")
+        .c(')').sp().s("throws").sp().t(InvalidObjectException.class).sp().c('{')
+        .s("throw").sp().newType(InvalidObjectException.class).c('(').val("Serialization proxy is required")
+        .c(')', ';')
+        .c('}');
+
+    generateProxyClass();
+  }
+
+  //
+  // Private
+  //
+
+  private void generateSerialVersionUid() {
+    s("private").sp().s("static").sp().var(long.class, SERIAL_VERSION_UID, ImmutableList.of(Modifier.FINAL))
+        .spc('=').s("1L").c(';');
+  }
+
+  private void generateProxyClass() {
+    // static final class SerializationProxy implements Externalizable {
+    c('\n').s("static").sp().s("final").sp().s("class").sp().s(PROXY_CLASS_NAME).sp().s("implements").sp()
+        .t(Externalizable.class).sp().c('{');
+    generateSerialVersionUid();
+    s("private").sp().t(getDomainClass()).sp().s(Names.VALUE).c(';');
+
+    // public SerializationProxy() {} - needed by Externalizable
+    c('\n').s("public").sp().s(PROXY_CLASS_NAME).c('(', ')', ' ', '{').c('}');
+
+    // SerializationProxy({TargetClass} value) { this.value = value; }
+    c('\n').s(PROXY_CLASS_NAME).c('(').var(getDomainClass(), Names.VALUE).c(')', ' ', '{')
+        .thisDot(Names.VALUE).spc('=').s(Names.VALUE).c(';')
+        .c('}');
+
+    final List<DomainField> fields = getFieldsInStreamOrder();
+    generateWriteExternal(fields);
+    generateReadExternal(fields);
+
+    // private Object readResolve() { return value; }
+    c('\n').s("private").sp().t(Object.class).sp().s("readResolve").c('(', ')', ' ', '{')
+        .s("return").sp().s(Names.VALUE).c(';')
+        .c('}');
+
+    c('}');
+  }
+
+  private void generateWriteExternal(List<DomainField> fields) {
+    // @Override public void writeExternal(ObjectOutput out) throws IOException {
+    c('\n').annotate(Override.class).s("public").sp().t(void.class).sp().s("writeExternal").c('(')
+        .var(ObjectOutput.class, OUT).c(')').sp().s("throws").sp().t(IOException.class).sp().c('{');
+
+    for (final DomainField field : fields) {
+      final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+      if (getterName == null) {
+        throw new UnsupportedOperationException("Can't generate serialization proxy: field " + field +
+            " has no associated getter");
+      }
+      final String value = Names.VALUE + '.' + getterName + "()";
+      final Class<?> collectionClass = getCollectionClass(field);
+      if (collectionClass == null) {
+        generateWriteValue(value, field.getFieldType(), FieldUtil.isNullable(field));
+        continue;
+      }
+
+      final boolean nullable = FieldUtil.isNullable(field);
+      if (nullable) {
+        // if (value.get{FieldName}() == null) { out.writeInt(-1); } else {
+        s("if").sp().c('(').s(value).sps("==").s("null").c(')', ' ', '{')
+            .s(OUT).dot("writeInt").c('(', '-', '1', ')', ';')
+            .c('}').s("else").sp().c('{');
+      }
+
+      // out.writeInt(value.get{FieldName}().size());
+      s(OUT).dot("writeInt").c('(').s(value).dot("size").c('(', ')', ')', ';');
+      final Type[] args = ((ParameterizedType) field.getFieldType()).getActualTypeArguments();
+      // elements of the primitive collections can't be null
+      final boolean elementsNullable = !field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS);
+      if (Map.class.equals(collectionClass)) {
+        // for (final Map.Entry<{KeyType}, {ValueType}> entry : value.get{FieldName}().entrySet()) {
+        s("for").sp().c('(').s("final").sp().t(SynteticParameterizedType.from(Map.Entry.class, Arrays.asList(args)))
+            .sp().s(ENTRY).spc(':').s(value).dot("entrySet").c('(', ')', ')', ' ', '{');
+        generateWriteValue(ENTRY + ".getKey()", args[0], elementsNullable);
+        generateWriteValue(ENTRY + ".getValue()", args[1], elementsNullable);
+      } else {
+        // for (final {ElementType} element : value.get{FieldName}()) {
+        s("for").sp().c('(').s("final").sp().t(args[0]).sp().s(Names.ELEMENT).spc(':').s(value).c(')', ' ', '{');
+        generateWriteValue(Names.ELEMENT, args[0], elementsNullable);
+      }
+      c('}');
+
+      if (nullable) {
+        c('}');
+      }
+    }
+
+    c('}');
+  }
+
+  private void generateWriteValue(String value, Type type, boolean nullable) {
+    final Class<?> primitiveClass = type instanceof Class ? Primitives.unwrap((Class<?>) type) : null;
+    if (primitiveClass == null || !primitiveClass.isPrimitive()) {
+      // out.writeObject(value);
+      s(OUT).dot("writeObject").c('(').s(value).c(')', ';');
+      return;
+    }
+
+    final String writeMethod = "write" + PRIMITIVE_METHOD_SUFFIXES.get(primitiveClass);
+    if (!((Class<?>) type).isPrimitive() && nullable) {
+      // out.writeBoolean(value != null); if (value != null) { out.writeInt(value); }
+      s(OUT).dot("writeBoolean").c('(').s(value).sps("!=").s("null").c(')', ';');
+      s("if").sp().c('(').s(value).sps("!=").s("null").c(')', ' ', '{')
+          .s(OUT).dot(writeMethod).c('(').s(value).c(')', ';')
+          .c('}');
+      return;
+    }
+
+    // out.writeInt(value);
+    s(OUT).dot(writeMethod).c('(').s(value).c(')', ';');
+  }
+
+  private void generateReadExternal(List<DomainField> fields) {
+    // @Override public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+    c('\n').annotate(Override.class).s("public").sp().t(void.class).sp().s("readExternal").c('(')
+        .var(ObjectInput.class, IN).c(')').sp().s("throws").sp().t(IOException.class).c(',').sp()
+        .t(ClassNotFoundException.class).sp().c('{');
+
+    for (final DomainField field : fields) {
+      final String name = field.getFieldName();
+      final Class<?> collectionClass = getCollectionClass(field);
+      if (collectionClass == null) {
+        // final {FieldType} {fieldName} = ...;
+        s("final").sp().var(field.getFieldType(), name).spc('=');
+        generateReadValue(field.getFieldType(), FieldUtil.isNullable(field));
+        c(';');
+        continue;
+      }
+
+      // final int {fieldName}Size = in.readInt();
+      final String size = name + SIZE_SUFFIX;
+      s("final").sp().t(int.class).sp().s(size).spc('=').s(IN).dot("readInt").c('(', ')', ';');
+
+      // {FieldType} {fieldName} = null;
+      var(field.getFieldType(), name).spc('=').s("null").c(';');
+
+      // if ({fieldName}Size >= 0) { {fieldName} = new ArrayList<{ElementType}>(); for (...) {
+      final Type[] args = ((ParameterizedType) field.getFieldType()).getActualTypeArguments();
+      final boolean elementsNullable = !field.hasTrait(FieldTrait.PRIMITIVE_ELEMENTS);
+      final boolean map = Map.class.equals(collectionClass);
+      s("if").sp().c('(').s(size).sps(">=").c('0', ')', ' ', '{');
+      s(name).spc('=').newType(SynteticParameterizedType.from(getCopyClass(collectionClass), Arrays.asList(args)))
+          .c('(', ')', ';');
+      s("for").sp().c('(').t(int.class).sp().s(INDEX + " = 0; " + INDEX + " < " + size + "; ++" + INDEX)
+          .c(')', ' ', '{');
+      s(name).dot(map ? "put" : "add").c('(');
+      generateReadValue(args[0], elementsNullable);
+      if (map) {
+        c(',').sp();
+        generateReadValue(args[1], elementsNullable);
+      }
+      c(')', ';');
+      c('}'); // end of for
+      c('}'); // end of if
+    }
+
+    // this.value = new {TargetClass}({fieldName1}, ...);
+    thisDot(Names.VALUE).spc('=').newType(getDomainClass()).c('(');
+    boolean next = false;
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (next) {
+        c(',').sp();
+      } else {
+        next = true;
+      }
+      s(field.getFieldName());
+    }
+    c(')', ';');
+
+    c('}');
+  }
+
+  private void generateReadValue(Type type, boolean nullable) {
+    final Class<?> primitiveClass = type instanceof Class ? Primitives.unwrap((Class<?>) type) : null;
+    if (primitiveClass == null || !primitiveClass.isPrimitive()) {
+      // ({Type}) in.readObject()
+      cast(type).sp().s(IN).dot("readObject").c('(', ')');
+      return;
+    }
+
+    final String readMethod = "read" + PRIMITIVE_METHOD_SUFFIXES.get(primitiveClass);
+    if (((Class<?>) type).isPrimitive()) {
+      // in.readInt()
+      s(IN).dot(readMethod).c('(', ')');
+      return;
+    }
+
+    // in.readBoolean() ? Integer.valueOf(in.readInt()) : null
+    if (nullable) {
+      s(IN).dot("readBoolean").c('(', ')').spc('?');
+    }
+    t(type).dot("valueOf").c('(').s(IN).dot(readMethod).c('(', ')', ')');
+    if (nullable) {
+      spc(':').s("null");
+    }
+  }
+
+  /**
+   * @return Fields in the order of their names, so that the serialized form does not depend on the order, in which
+   * the fields are found by the analysis
+   */
+  private List<DomainField> getFieldsInStreamOrder() {
+    final List<DomainField> result = new ArrayList<>(getAnalysisResult().getStoredFields());
+    Collections.sort(result, new Comparator<DomainField>() {
+      @Override
+      public int compare(DomainField lhs, DomainField rhs) {
+        return lhs.getFieldName().compareTo(rhs.getFieldName());
+      }
+    });
+    return result;
+  }
+
+  private static Class<?> getCopyClass(Class<?> collectionClass) {
+    if (List.class.equals(collectionClass)) {
+      return ArrayList.class;
+    } else if (Set.class.equals(collectionClass)) {
+      return LinkedHashSet.class;
+    }
+    return LinkedHashMap.class;
+  }
+}
@@ -0,0 +1,306 @@
+package com.truward.polymer.domain.implementer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.code.typed.GenClass;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import javax.lang.model.element.Modifier;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Encapsulates generation of the off-heap store, that lays out domain objects as fixed-width records in
+ * the {@link ByteBuffer} and exposes them through the reusable flyweight views.
+ * Fields are placed in the record in the descending order of their widths, so that each field is aligned to its
+ * own width. Fields of the same width are ordered by name.
+ *
+ * @author Alexander Shabanov
+ */
+public final class StoreImplementer extends AbstractDomainImplementer {
+  private static final String RECORD_SIZE = "RECORD_SIZE";
+  private static final String BUFFER = "buffer";
+  private static final String CAPACITY = "capacity";
+  private static final String SIZE = "size";
+  private static final String INDEX = "index";
+  private static final String OFFSET = "offset";
+  private static final String CHECKED_OFFSET = "checkedOffset";
+  private static final String VIEW = "View";
+
+  /**
+   * Widths of the supported field types in bytes.
+   */
+  private static final Map<Class<?>, Integer> WIDTHS = ImmutableMap.<Class<?>, Integer>builder()
+      .put(boolean.class, 1)
+      .put(byte.class, 1)
+      .put(short.class, 2)
+      .put(char.class, 2)
+      .put(int.class, 4)
+      .put(float.class, 4)
+      .put(long.class, 8)
+      .put(double.class, 8)
+      .build();
+
+  private final List<DomainField> fields;
+  private final Map<DomainField, Integer> offsets = new HashMap<>();
+  private final int recordSize;
+
+  public StoreImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass) {
+    super(codeStream, domainClass);
+    if (!domainClass.getGenStoreClass().isSupported()) {
+      throw new IllegalStateException("Store class is not supported");
+    }
+
+    // sort fields by width in descending order, then by name to keep the layout independent from the order of methods
+    // returned by reflection
+    final List<DomainField> sortedFields = new ArrayList<>(getAnalysisResult().getStoredFields());
+    for (final DomainField field : sortedFields) {
+      if (!WIDTHS.containsKey(field.getFieldType())) {
+        throw new RuntimeException("Field " + field + " can not be placed in the store, only primitive fields " +
+            "are supported");
+      }
+    }
+    Collections.sort(sortedFields, new Comparator<DomainField>() {
+      @Override
+      public int compare(DomainField lhs, DomainField rhs) {
+        final int result = getWidth(rhs) - getWidth(lhs);
+        return result != 0 ? result : lhs.getFieldName().compareTo(rhs.getFieldName());
+      }
+    });
+    this.fields = ImmutableList.copyOf(sortedFields);
+
+    int offset = 0;
+    int alignment = 1;
+    for (final DomainField field : fields) {
+      offsets.put(field, offset);
+      offset += getWidth(field);
+      alignment = Math.max(alignment, getWidth(field));
+    }
+
+    // pad record to the width of the widest field to keep subsequent records aligned
+    this.recordSize = ((offset + alignment - 1) / alignment) * alignment;
+  }
+
+  @Nonnull
+  public GenClass getStoreClass() {
+    return getDomainClass().getGenStoreClass();
+  }
+
+  public int getRecordSize() {
+    return recordSize;
+  }
+
+  public void generateStore() {
+    final Class<?> originClass = getOriginClass();
+    final String storeName = getStoreClass().getFqName().getName();
+
+    publicFinalClass().s(storeName).sp().c('{');
+
+    // public static final int RECORD_SIZE = 24;
+    s("public").sp().s("static").sp().var(int.class, RECORD_SIZE, ImmutableList.of(Modifier.FINAL))
+        .spc('=').val(recordSize).c(';');
+    c('\n');
+
+    // fields
+    var(ByteBuffer.class, BUFFER, ImmutableList.of(Modifier.PRIVATE, Modifier.FINAL)).c(';');
+    var(int.class, CAPACITY, ImmutableList.of(Modifier.PRIVATE, Modifier.FINAL)).c(';');
+    var(int.class, SIZE, ImmutableList.of(Modifier.PRIVATE)).c(';');
+
+    // public OrderStore(ByteBuffer buffer, int size) {
+    c('\n').s("public").sp().s(storeName).c('(').var(ByteBuffer.class, BUFFER).c(',', ' ').var(int.class, SIZE)
+        .c(')', ' ', '{');
+    s("if").sp().c('(').s(SIZE).sps("<").c('0').sps("||").s(SIZE).sps(">").s(BUFFER).dot("capacity").c('(', ')')
+        .sps("/").s(RECORD_SIZE).c(')', ' ', '{')
+        .s("throw").sp().newType(IllegalArgumentException.class).c('(').val("Size exceeds buffer capacity")
+        .c(')', ';')
+        .c('}');
+    thisDot(BUFFER).spc('=').s(BUFFER).c(';');
+    thisDot(CAPACITY).spc('=').s(BUFFER).dot("capacity").c('(', ')').sps("/").s(RECORD_SIZE).c(';');
+    thisDot(SIZE).spc('=').s(SIZE).c(';');
+    c('}');
+
+    // public OrderStore(ByteBuffer buffer) { this(buffer, 0); }
+    c('\n').s("public").sp().s(storeName).c('(').var(ByteBuffer.class, BUFFER).c(')', ' ', '{')
+        .s("this").c('(').s(BUFFER).c(',', ' ', '0', ')', ';')
+        .c('}');
+
+    // public static OrderStore allocateDirect(int capacity) {
+    c('\n').s("public").sp().s("static").sp().s(storeName).sp().s("allocateDirect").c('(')
+        .var(int.class, CAPACITY).c(')', ' ', '{')
+        .s("return").sp().s("new").sp().s(storeName).c('(').t(ByteBuffer.class).dot("allocateDirect").c('(')
+        .s(CAPACITY).spc('*').s(RECORD_SIZE).c(')', ')', ';')
+        .c('}');
+
+    // getters
+    generateSimpleGetter(ByteBuffer.class, "getBuffer", BUFFER);
+    generateSimpleGetter(int.class, "getCapacity", CAPACITY);
+    generateSimpleGetter(int.class, "getSize", SIZE);
+
+    // public int add(Order value) {
+    c('\n').s("public").sp().t(int.class).sp().s("add").c('(').var(originClass, Names.VALUE).c(')', ' ', '{');
+    s("if").sp().c('(').thisDot(SIZE).sps(">=").thisDot(CAPACITY).c(')', ' ', '{')
+        .s("throw").sp().newType(IllegalStateException.class).c('(').val("Store is full").c(')', ';')
+        .c('}');
+    s("final").sp().t(int.class).sp().s(INDEX).spc('=').thisDot(SIZE).c(';');
+    s("write").c('(').s(INDEX).spc('*').s(RECORD_SIZE).c(',', ' ').s(Names.VALUE).c(')', ';');
+    thisDot(SIZE).spc('=').s(INDEX).sps("+").c('1', ';');
+    s("return").sp().s(INDEX).c(';');
+    c('}');
+
+    // public void set(int index, Order value) {
+    c('\n').s("public").sp().t(void.class).sp().s("set").c('(').var(int.class, INDEX).c(',', ' ')
+        .var(originClass, Names.VALUE).c(')', ' ', '{')
+        .s("write").c('(').s("offsetOf").c('(').s(INDEX).c(')', ',', ' ').s(Names.VALUE).c(')', ';')
+        .c('}');
+
+    // public View newView() { return new View(); }
+    c('\n').s("public").sp().s(VIEW).sp().s("newView").c('(', ')', ' ', '{')
+        .s("return").sp().s("new").sp().s(VIEW).c('(', ')', ';')
+        .c('}');
+
+    generateWriteMethod();
+    generateOffsetOfMethod();
+
+    c('\n');
+    generateView();
+
+    c('}'); // end of store class
+  }
+
+  //
+  // Private
+  //
+
+  private void generateSimpleGetter(Class<?> type, String getterName, String fieldName) {
+    c('\n').s("public").sp().t(type).sp().s(getterName).c('(', ')', ' ', '{')
+        .s("return").sp().thisDot(fieldName).c(';')
+        .c('}');
+  }
+
+  private void generateWriteMethod() {
+    // private void write(int offset, Order value) {
+    c('\n').s("private").sp().t(void.class).sp().s("write").c('(').var(int.class, OFFSET).c(',', ' ')
+        .var(getOriginClass(), Names.VALUE).c(')', ' ', '{');
+    for (final DomainField field : fields) {
+      final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+      if (getterName == null) {
+        throw new IllegalStateException("Field " + field + " has no getter");
+      }
+
+      generatePut(field, OFFSET, Names.VALUE + '.' + getterName + "()");
+    }
+    c('}');
+  }
+
+  private void generateOffsetOfMethod() {
+    // private int offsetOf(int index) {
+    c('\n').s("private").sp().t(int.class).sp().s("offsetOf").c('(').var(int.class, INDEX).c(')', ' ', '{');
+    s("if").sp().c('(').s(INDEX).sps("<").c('0').sps("||").s(INDEX).sps(">=").thisDot(SIZE).c(')', ' ', '{')
+        .s("throw").sp().newType(IndexOutOfBoundsException.class).c('(').val("index=").sps("+").s(INDEX)
+        .sps("+").val(", size=").sps("+").thisDot(SIZE).c(')', ';')
+        .c('}');
+    s("return").sp().s(INDEX).spc('*').s(RECORD_SIZE).c(';');
+    c('}');
+  }
+
+  private void generateView() {
+    // public final class View implements Order {
+    s("public").sp().s("final").sp().s("class").sp().s(VIEW).sp().s("implements").sp().t(getOriginClass()).sp()
+        .c('{');
+
+    // view is not positioned initially, so that any access fails until the view is moved to the record
+    var(int.class, INDEX, ImmutableList.of(Modifier.PRIVATE)).spc('=').s("-1").c(';');
+    var(int.class, OFFSET, ImmutableList.of(Modifier.PRIVATE)).spc('=').s("-1").c(';');
+
+    // private View() {}
+    c('\n').s("private").sp().s(VIEW).c('(', ')', ' ', '{').c('}');
+
+    // public View moveTo(int index) {
+    c('\n').s("public").sp().s(VIEW).sp().s("moveTo").c('(').var(int.class, INDEX).c(')', ' ', '{')
+        .thisDot(OFFSET).spc('=').s("offsetOf").c('(').s(INDEX).c(')', ';')
+        .thisDot(INDEX).spc('=').s(INDEX).c(';')
+        .s("return").sp().s("this").c(';')
+        .c('}');
+
+    // public int getIndex() { return this.index; }
+    generateSimpleGetter(int.class, "getIndex", INDEX);
+
+    // private int checkedOffset() {
+    c('\n').s("private").sp().t(int.class).sp().s(CHECKED_OFFSET).c('(', ')', ' ', '{');
+    // if (this.index < 0) { throw new IllegalStateException("View is not positioned"); }
+    s("if").sp().c('(').thisDot(INDEX).sps("<").c('0').c(')', ' ', '{')
+        .s("throw").sp().newType(IllegalStateException.class).c('(').val("View is not positioned").c(')', ';')
+        .c('}');
+    s("return").sp().thisDot(OFFSET).c(';');
+    c('}');
+
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+      if (getterName != null) {
+        c('\n');
+        annotate(Override.class).s("public").sp().t(field.getFieldType()).sp().s(getterName)
+            .c('(', ')', ' ', '{')
+            .s("return").sp();
+        generateGet(field, CHECKED_OFFSET + "()");
+        c(';').c('}');
+      }
+
+      final String setterName = FieldUtil.getMethodName(field, OriginMethodRole.SETTER);
+      if (setterName != null) {
+        c('\n');
+        annotate(Override.class).s("public").sp().t(void.class).sp().s(setterName).c('(')
+            .var(field.getFieldType(), field.getFieldName()).c(')', ' ', '{');
+        generatePut(field, CHECKED_OFFSET + "()", field.getFieldName());
+        c('}');
+      }
+    }
+
+    // calculated fields are recalculated on each access as the view moves between records
+    for (final DomainField field : getCalculatedFields()) {
+      generateCalculatedGetter(field);
+    }
+
+    c('}'); // end of view class
+  }
+
+  private void generatePut(DomainField field, String offsetVar, String valueExpr) {
+    // buffer.putInt(offset + 8, value.getQuantity());
+    final Class<?> fieldClass = (Class<?>) field.getFieldType();
+    s(BUFFER).dot("put" + getBufferMethodSuffix(fieldClass)).c('(').s(offsetVar).sps("+").val(offsets.get(field))
+        .c(',', ' ');
+    if (boolean.class.equals(fieldClass)) {
+      // (byte) (value ? 1 : 0)
+      cast(byte.class).sp().c('(').s(valueExpr).sps("?").c('1').sps(":").c('0', ')');
+    } else {
+      s(valueExpr);
+    }
+    c(')', ';');
+  }
+
+  private void generateGet(DomainField field, String offsetExpr) {
+    // buffer.getInt(checkedOffset() + 8)
+    final Class<?> fieldClass = (Class<?>) field.getFieldType();
+    s(BUFFER).dot("get" + getBufferMethodSuffix(fieldClass)).c('(').s(offsetExpr).sps("+").val(offsets.get(field))
+        .c(')');
+    if (boolean.class.equals(fieldClass)) {
+      sps("!=").c('0');
+    }
+  }
+
+  private static String getBufferMethodSuffix(Class<?> fieldClass) {
+    if (boolean.class.equals(fieldClass) || byte.class.equals(fieldClass)) {
+      return ""; // ByteBuffer.get/ByteBuffer.put
+    }
+    return Names.createPrefixedName("", fieldClass.getSimpleName());
+  }
+
+  private static int getWidth(DomainField field) {
+    return WIDTHS.get(field.getFieldType());
+  }
+}
@@ -0,0 +1,170 @@
+package com.truward.polymer.domain.implementer;
+
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encapsulates generation of the withers of the immutable domain objects. Each <code>with{FieldName}</code> method
+ * returns new object, that shares all the unchanged values with the current one, so that only the new value
+ * is checked and copied.
+ * New objects are created by the private sharing constructor, whose signature starts with the private sharing type,
+ * so that nothing but the withers of the class can call it.
+ *
+ * @author Alexander Shabanov
+ */
+final class WitherImplementer extends AbstractDomainImplementer {
+  private static final String SHARING = "Sharing";
+  private static final String SHARED = "SHARED";
+
+  private final ClassImplementer classImplementer;
+  private final PackedFlags packedFlags;
+
+  WitherImplementer(@Nonnull CodeStream codeStream, @Nonnull GenDomainClass domainClass,
+                    @Nonnull ClassImplementer classImplementer) {
+    super(codeStream, domainClass);
+    if (hasMutableFields()) {
+      throw new IllegalStateException("Withers make sense for the immutable objects only");
+    }
+    this.classImplementer = classImplementer;
+    this.packedFlags = classImplementer.getPackedFlags();
+  }
+
+  /**
+   * Generates constructor, that shares all the given values with the original object, neither checks nor copies
+   * are performed.
+   */
+  public void generateSharingConstructor() {
+    // private enum Sharing { SHARED; }
+    c('\n');
+    s("private").sp().s("enum").sp().s(SHARING).sp().c('{').s(SHARED).c(';', '}');
+
+    // private {TargetClass}(Sharing sharing, {FieldType1} {fieldName1}, ...) {
+    c('\n');
+    s("private").sp().t(getDomainClass()).c('(').s(SHARING).sp().s("sharing");
+    for (final String name : getSharedNames()) {
+      c(',', ' ').var(getSharedType(name), name);
+    }
+    c(')', ' ', '{');
+
+    for (final String name : getSharedNames()) {
+      thisDot(name).spc('=').s(name).c(';');
+    }
+
+    c('}');
+  }
+
+  public void generateWithers() {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      generateWither(field);
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void generateWither(DomainField field) {
+    final String fieldName = field.getFieldName();
+
+    // public {TargetClass} with{FieldName}({FieldType} {fieldName}) {
+    c('\n');
+    s("public").sp().t(getDomainClass()).sp().s(Names.createPrefixedName("with", fieldName)).c('(')
+        .var(field.getFieldType(), fieldName).c(')', ' ', '{');
+
+    // same value (or reference) - nothing to change
+    s("if").sp().c('(');
+    generateSameValueCondition(field);
+    c(')', ' ', '{')
+        .s("return").sp().s("this").c(';')
+        .c('}');
+
+    // only the new value is checked and copied
+    classImplementer.generateChecks(field, fieldName);
+
+    // return new {TargetClass}(Sharing.SHARED, this.{fieldName1}, {fieldName}, ...);
+    s("return").sp().newType(getDomainClass()).c('(').s(SHARING).dot(SHARED);
+    for (final DomainField other : getAnalysisResult().getStoredFields()) {
+      if (packedFlags.isPacked(other)) {
+        continue;
+      }
+      c(',', ' ');
+      if (other != field) {
+        thisDot(other.getFieldName());
+      } else {
+        classImplementer.generateValue(field, fieldName);
+      }
+    }
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      c(',', ' ');
+      if (packedFlags.getWordFields(i).contains(field)) {
+        s(packedFlags.replace(field, fieldName));
+      } else {
+        thisDot(packedFlags.getWordName(i));
+      }
+    }
+    c(')', ';');
+
+    c('}');
+  }
+
+  /**
+   * Generates condition, that is true if the given value is the same as the current one in terms of equals, so that
+   * the wither can return the current object.
+   */
+  private void generateSameValueCondition(DomainField field) {
+    final String fieldName = field.getFieldName();
+    if (packedFlags.hasPresenceBit(field)) {
+      // {fieldName} != null ? (this.has{FieldName}() && {SameValue}) : !this.has{FieldName}()
+      final String presence = FieldUtil.getPresenceMethodName(field);
+      s(fieldName).sps("!=").s("null").spc('?').c('(').thisDot(presence).c('(', ')').sps("&&");
+      generateSameValue(FieldUtil.getUnboxedType(field), "this." + fieldName, fieldName);
+      c(')').spc(':').c('!').thisDot(presence).c('(', ')');
+      return;
+    }
+    generateSameValue(field.getFieldTypeAsClass(), classImplementer.getFieldValue(field), fieldName);
+  }
+
+  private void generateSameValue(Class<?> fieldClass, String current, String value) {
+    if (float.class.equals(fieldClass) || double.class.equals(fieldClass)) {
+      // Double.compare(this.{fieldName}, {fieldName}) == 0 - the same way equals compares them
+      t(float.class.equals(fieldClass) ? Float.class : Double.class).dot("compare").c('(').s(current).c(',', ' ')
+          .s(value).c(')').sps("==").c('0');
+      return;
+    }
+    // this.{fieldName} == {fieldName}
+    s(current).sps("==").s(value);
+  }
+
+  /**
+   * @return Names of the fields, that are declared in the generated class, packed flag words come last
+   */
+  private List<String> getSharedNames() {
+    final List<String> result = new ArrayList<>();
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (!packedFlags.isPacked(field)) {
+        result.add(field.getFieldName());
+      }
+    }
+    for (int i = 0; i < packedFlags.getWordCount(); ++i) {
+      result.add(packedFlags.getWordName(i));
+    }
+    return result;
+  }
+
+  private Type getSharedType(String name) {
+    for (final DomainField field : getAnalysisResult().getStoredFields()) {
+      if (field.getFieldName().equals(name)) {
+        return ClassImplementer.getStorageType(field);
+      }
+    }
+    return packedFlags.getWordType();
+  }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -55,6 +56,68 @@ public final class DomainObjectImplementerTest {
     double getG();
   }
 
+  @SuppressWarnings("UnusedDeclaration")
+  interface Measurements {
+    List<Integer> getSamples();
+    Set<Long> getIds();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  interface Readings {
+    List<Integer> getValues();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  interface Waveform {
+    double[] getSamples();
+    String[][] getLabels();
+  }
+
+  enum Color {
+    RED,
+    GREEN,
+    BLUE
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  interface Flags {
+    boolean isVisible();
+    boolean isEnabled();
+    Color getColor();
+    Color getBackground();
+    String getLabel();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  interface Sample {
+    Integer getCount();
+    Double getWeight();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  interface Person {
+    String getFirstName();
+    String getLastName();
+    String getFullName();
+    int getNameLength();
+    String getInitials();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  public static final class PersonCalculator {
+    public static String getFullName(Person person) {
+      return person.getFirstName() + ' ' + person.getLastName();
+    }
+
+    public static int getNameLength(Person person) {
+      return getFullName(person).length();
+    }
+
+    public static String getInitials(Person person) {
+      return person.getFirstName().substring(0, 1) + person.getLastName().substring(0, 1);
+    }
+  }
+
   private DomainAnalysisContext analysisContext;
   private MemOutputStreamProvider mosp;
   private Implementer implementer;
@@ -127,6 +190,90 @@ public final class DomainObjectImplementerTest {
     assertTrue(code.contains("public Builder setBirthDate(Date"));
   }
 
+  @Test
+  public void shouldTransferBuilderCollectionsWithoutCopying() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final Employee employee = domainObjectSpecifier.domainObject(Employee.class);
+    domainObjectSpecifier.target(employee).assignBuilder(employee);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("private EmployeeImpl(Builder builder) {"));
+    assertTrue(code.contains("this.responsibilities = new FrozenList<String>(builder.responsibilities);"));
+    assertTrue(code.contains("final EmployeeImpl result = new EmployeeImpl(this);"));
+    assertTrue(code.contains("this.collectionsShared = true;"));
+    assertTrue(code.contains("this.responsibilities = new ArrayList<String>(this.responsibilities);"));
+  }
+
+  @Test
+  public void shouldCopyBuilderCollectionsInGuavaStyle() throws IOException {
+    settings.setDefensiveCopyStyle(DefensiveCopyStyle.GUAVA);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final Employee employee = domainObjectSpecifier.domainObject(Employee.class);
+    domainObjectSpecifier.target(employee).assignBuilder(employee);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("this.responsibilities = ImmutableList.copyOf(builder.responsibilities);"));
+    assertFalse(code.contains("Collections.unmodifiableList(builder.responsibilities)"));
+  }
+
+  @Test
+  public void shouldGenerateReusableBuilder() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final Employee employee = domainObjectSpecifier.domainObject(Employee.class);
+    domainObjectSpecifier.target(employee)
+        .assignBuilder(employee)
+        .hasExpectedSize(employee.getResponsibilities(), 16);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("this.responsibilities = new ArrayList<String>(16);"));
+    assertTrue("Copy should take the size of the original",
+        code.contains("this.responsibilities = new ArrayList<String>(this.responsibilities);"));
+    assertTrue(code.contains("public Builder reset() {"));
+    assertTrue(code.contains("this.age = 0;"));
+    assertTrue(code.contains("this.name = null;"));
+    assertTrue(code.contains("this.responsibilities.clear();"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotAssignExpectedSizeToNonCollection() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).hasExpectedSize(user.getName(), 16);
+  }
+
+  @Test
+  public void shouldGenerateBatchFactory() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final Employee employee = domainObjectSpecifier.domainObject(Employee.class);
+    domainObjectSpecifier.target(employee)
+        .assignBatchFactory(employee)
+        .isNonNegative(employee.getAge());
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("public static EmployeeImpl[] newBatch("));
+    assertTrue(code.contains("int[] age"));
+    assertTrue(code.contains("String[] name"));
+    assertTrue(code.contains("List<List<String>> responsibilities"));
+    assertTrue(code.contains("' has unexpected size\");"));
+    assertTrue(code.contains("if (age[index] < 0) {"));
+    assertTrue(code.contains("if (name[index] == null) {"));
+    assertTrue(code.contains("if (responsibilities.get(index) == null) {"));
+    assertTrue(code.contains("int[] ageColumn, "));
+    assertTrue(code.contains("List<List<String>> responsibilitiesColumn, "));
+    assertTrue(code.contains("final List<String> responsibilities = responsibilitiesColumn.get(index);"));
+    assertTrue(code.contains(", int index) {"));
+    assertFalse(code.contains("Void"));
+  }
+
   @Test
   public void shouldGenerateCustomPackage() throws IOException {
     final String packageName = "com.mysite.generated";
@@ -141,6 +288,610 @@ public final class DomainObjectImplementerTest {
     assertTrue(code.contains("class DefaultPrimitiveImplementation"));
   }
 
+  @Test
+  public void shouldCacheHashCode() throws IOException {
+    settings.setHashCodeCachingEnabled(true);
+
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("private int cachedHashCode;"));
+    assertTrue(code.contains("int result = this.cachedHashCode;"));
+    assertTrue(code.contains("this.cachedHashCode = result;"));
+  }
+
+  @Test
+  public void shouldCompareCheapFieldsFirst() throws IOException {
+    settings.setHashCodeCachingEnabled(true);
+
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    final int primitiveComparison = code.indexOf("if (this.wage != other.wage) {");
+    final int hashCodeGuard = code.indexOf("if (this.cachedHashCode != 0 && other.cachedHashCode != 0 && " +
+        "this.cachedHashCode != other.cachedHashCode) {");
+    final int stringComparison = code.indexOf("if (!this.name.equals(other.name)) {");
+    final int dateComparison = code.indexOf("if (!this.birthDate.equals(other.birthDate)) {");
+    final int listComparison = code.indexOf("if (!this.responsibilities.equals(other.responsibilities)) {");
+    assertTrue(primitiveComparison > 0);
+    assertTrue(primitiveComparison < hashCodeGuard);
+    assertTrue(hashCodeGuard < stringComparison);
+    assertTrue(stringComparison < dateComparison);
+    assertTrue(dateComparison < listComparison);
+  }
+
+  @Test
+  public void shouldCompareFloatingPointFields() throws IOException {
+    generateCode(Primitive.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("if (Float.compare(this.f, other.f) != 0) {"));
+    assertTrue(code.contains("if (Double.compare(this.g, other.g) != 0) {"));
+  }
+
+  @Test
+  public void shouldGenerateAppendTo() throws IOException {
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("public void appendTo(StringBuilder builder) {"));
+    assertTrue(code.contains("appendTo(result);"));
+    assertFalse("String builder should be pre-sized", code.contains("new StringBuilder()"));
+    assertTrue(code.contains("for (final String element : this.responsibilities) {"));
+  }
+
+  @Test
+  public void shouldGenerateWithers() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).assignWithers(user);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("private enum Sharing {"));
+    assertTrue(code.contains("private UserImpl(Sharing sharing, "));
+    assertTrue(code.contains("return new UserImpl(Sharing.SHARED, "));
+    assertTrue(code.contains("public UserImpl withAge(int age) {"));
+    assertTrue(code.contains("public UserImpl withName(String name) {"));
+    assertTrue(code.contains("public UserImpl withBirthDate(Date birthDate) {"));
+  }
+
+  @Test
+  public void shouldNotCacheHashCodeByDefault() throws IOException {
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    assertFalse(code.contains("cachedHashCode"));
+  }
+
+  @Test
+  public void shouldGeneratePrimitiveCollections() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Measurements measurements = domainObjectSpecifier.domainObject(Measurements.class);
+    domainObjectSpecifier
+        .target(measurements)
+        .hasPrimitiveElements(measurements.getSamples())
+        .hasPrimitiveElements(measurements.getIds());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("this.samples = IntList.copyOf(samples);"));
+    assertTrue(code.contains("this.ids = LongSet.copyOf(ids);"));
+    assertTrue(code.contains("public static final class IntList extends AbstractList<Integer> implements RandomAccess {"));
+    assertTrue(code.contains("public static final class LongSet extends AbstractSet<Long> {"));
+    assertFalse(code.contains("class IntSet"));
+    assertFalse(code.contains("class LongList"));
+  }
+
+  @Test
+  public void shouldShareImmutableCollections() throws IOException {
+    settings.setDefensiveCopyStyle(DefensiveCopyStyle.JDK);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Measurements measurements = domainObjectSpecifier.domainObject(Measurements.class);
+    domainObjectSpecifier
+        .target(measurements)
+        .hasPrimitiveElements(measurements.getSamples())
+        .hasPrimitiveElements(measurements.getIds());
+    final Readings readings = domainObjectSpecifier.domainObject(Readings.class);
+    domainObjectSpecifier.target(readings).hasPrimitiveElements(readings.getValues());
+    domainObjectSpecifier.target(domainObjectSpecifier.domainObject(Employee.class));
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String employeeCode = getContent(mosp, "EmployeeImpl");
+    assertTrue(employeeCode.contains("this.responsibilities = responsibilities instanceof FrozenList || " +
+        "isImmutable(responsibilities) ? responsibilities : " +
+        "new FrozenList<String>(new ArrayList<String>(responsibilities));"));
+    assertTrue(employeeCode.contains("public static final class FrozenList<E> extends AbstractList<E>"));
+    assertTrue(employeeCode.contains("Collections.emptyList().getClass(), Collections.singletonList(null).getClass(), " +
+        "findClass(\"com.google.common.collect.ImmutableCollection\")"));
+    assertTrue(employeeCode.contains("private static boolean isImmutable(Object value) {"));
+
+    final String readingsCode = getContent(mosp, "ReadingsImpl");
+    assertTrue(readingsCode.contains("this.values = values instanceof MeasurementsImpl.IntList ? values : " +
+        "IntList.copyOf(values);"));
+    assertFalse(readingsCode.contains("class FrozenList"));
+  }
+
+  @Test
+  public void shouldGenerateArrayValueSemantics() throws IOException {
+    generateCode(Waveform.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("this.samples = samples.clone();"));
+    assertTrue(code.contains("return this.samples.clone();"));
+    assertTrue(code.contains("builder.append(Arrays.toString(this.samples));"));
+    assertTrue(code.contains("result = 31 * result + Arrays.hashCode(this.samples);"));
+    assertTrue(code.contains("if (!Arrays.equals(this.samples, other.samples)) {"));
+    // nested arrays are compared deeply
+    assertTrue(code.contains("if (!Arrays.deepEquals(this.labels, other.labels)) {"));
+    assertTrue(code.contains("result = 31 * result + Arrays.deepHashCode(this.labels);"));
+  }
+
+  @Test
+  public void shouldGenerateDispatch() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    domainObjectSpecifier.targets(User.class, Employee.class);
+    domainObjectSpecifier.assignDispatch(domainObjectSpecifier.domainObject(User.class));
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String employeeCode = getContent(mosp, "EmployeeImpl");
+    assertTrue(employeeCode.contains("implements Employee, UserDispatch.Typed {"));
+    assertTrue(employeeCode.contains("public static final int TYPE_ID = 0;"));
+    assertTrue(employeeCode.contains("public int typeId() {"));
+    assertTrue(getContent(mosp, "UserImpl").contains("public static final int TYPE_ID = 1;"));
+
+    final String dispatchCode = getContent(mosp, "UserDispatch");
+    assertTrue(dispatchCode.contains("R visitEmployee(Employee value);"));
+    assertTrue(dispatchCode.contains("switch (typeId(value)) {"));
+    assertTrue(dispatchCode.contains("case EmployeeImpl.TYPE_ID: return visitor.visitEmployee((Employee) value);"));
+    // subtypes are checked before their parents
+    assertTrue(dispatchCode.indexOf("if (value instanceof Employee) {") <
+        dispatchCode.indexOf("if (value instanceof User) {"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldRejectDispatchWithoutTargets() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+    domainObjectSpecifier.targets(Primitive.class);
+    domainObjectSpecifier.assignDispatch(domainObjectSpecifier.domainObject(User.class));
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+  }
+
+  @Test
+  public void shouldGenerateStore() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Primitive primitive = domainObjectSpecifier.domainObject(Primitive.class);
+    domainObjectSpecifier.target(primitive).assignStore(primitive);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final Map<String, String> contentMap = mosp.getContentMap();
+    assertEquals(2, contentMap.size());
+    final String code = contentMap.get("generated/PrimitiveStore.java");
+    assertNotNull("Store should be generated next to the implementation class", code);
+    assertTrue(code.contains("public final class PrimitiveStore {"));
+    // 8 + 8 + 4 + 4 + 2 + 2 + 1 = 29 bytes, padded to 32
+    assertTrue(code.contains("public static final int RECORD_SIZE = 32;"));
+    assertTrue(code.contains("public final class View implements"));
+    assertTrue(code.contains("return buffer.getLong(checkedOffset() + 0);"));
+    assertTrue(code.contains("buffer.putLong(offset + 0, value.getE());"));
+    assertTrue(code.contains("return buffer.get(checkedOffset() + 28);"));
+    assertTrue(code.contains("throw new IllegalStateException(\"View is not positioned\");"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotGenerateStoreForNonPrimitiveFields() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).assignStore(user);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+  }
+
+  @Test
+  public void shouldGeneratePool() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user)
+        .isMutable(user.getAge())
+        .isMutable(user.getName())
+        .isMutable(user.getBirthDate())
+        .assignPool(user);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final Map<String, String> contentMap = mosp.getContentMap();
+    assertEquals(2, contentMap.size());
+    final String code = contentMap.get("generated/UserImpl.java");
+    assertTrue("Recycling constructor should be package-private", code.contains("\n  UserImpl() {"));
+    assertTrue(code.contains("public final void setAge(int age) {"));
+    assertTrue(code.contains("public void reset() {"));
+    assertTrue(code.contains("this.age = 0;"));
+    assertTrue(code.contains("this.name = null;"));
+
+    final String pool = contentMap.get("generated/UserPool.java");
+    assertNotNull("Pool should be generated next to the implementation class", pool);
+    assertTrue(pool.contains("public final class UserPool {"));
+    assertTrue(pool.contains("public static UserImpl acquire() {"));
+    assertTrue(pool.contains("public static void release(UserImpl value) {"));
+    assertTrue(code.contains("transient boolean pooled;"));
+    assertTrue(pool.contains("if (value.pooled) {"));
+    assertTrue(pool.contains("result.pooled = false;"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotGeneratePoolForImmutableFields() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).isMutable(user.getAge()).assignPool(user);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotStoreNullablePrimitiveElements() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Measurements measurements = domainObjectSpecifier.domainObject(Measurements.class);
+    domainObjectSpecifier.target(measurements)
+        .isNullable(measurements.getSamples())
+        .hasPrimitiveElements(measurements.getSamples());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotStoreMutablePrimitiveElements() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Measurements measurements = domainObjectSpecifier.domainObject(Measurements.class);
+    domainObjectSpecifier.target(measurements)
+        .hasPrimitiveElements(measurements.getIds())
+        .isMutable(measurements.getIds());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+  }
+
+  @Test
+  public void shouldGenerateAtomicUpdates() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user)
+        .isMutable(user.getAge())
+        .isAtomic(user.getAge())
+        .isMutable(user.getName())
+        .isAtomic(user.getName())
+        .isMutable(user.getBirthDate());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("volatile int age;"));
+    assertTrue(code.contains("volatile String name;"));
+    assertFalse(code.contains("volatile Date birthDate;"));
+    assertTrue(code.contains("private static final AtomicIntegerFieldUpdater<UserImpl> AGE_UPDATER = " +
+        "AtomicIntegerFieldUpdater.newUpdater(UserImpl.class, \"age\");"));
+    assertTrue(code.contains("private static final AtomicReferenceFieldUpdater<UserImpl, String> NAME_UPDATER = " +
+        "AtomicReferenceFieldUpdater.newUpdater(UserImpl.class, String.class, \"name\");"));
+    assertTrue(code.contains("public final boolean compareAndSetAge(int expect, int update) {"));
+    assertTrue(code.contains("return AGE_UPDATER.compareAndSet(this, expect, update);"));
+    assertTrue(code.contains("public final int getAndAddAge(int delta) {"));
+    assertTrue(code.contains("public final int addAndGetAge(int delta) {"));
+    assertTrue(code.contains("public final String getAndSetName(String value) {"));
+    assertFalse(code.contains("getAndAddName"));
+    assertFalse(code.contains("compareAndSetBirthDate"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotAssignAtomicToImmutableField() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).isAtomic(user.getAge());
+  }
+
+  @Test
+  public void shouldGenerateSeqlock() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user)
+        .isMutable(user.getAge())
+        .isMutable(user.getName())
+        .assignSeqlock(user);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("volatile int age;"));
+    assertTrue(code.contains("volatile String name;"));
+    assertTrue(code.contains("final Date birthDate;"));
+    assertTrue(code.contains("private volatile int updateSequence;"));
+    assertTrue(code.contains("public final synchronized void setAge(int age) {"));
+    assertTrue(code.contains("public final synchronized void update(int age, String name) {") ||
+        code.contains("public final synchronized void update(String name, int age) {"));
+    assertTrue(code.contains("final int updateSequence = this.updateSequence;"));
+    assertTrue(code.contains("this.updateSequence = updateSequence + 1;"));
+    assertTrue(code.contains("this.updateSequence = updateSequence + 2;"));
+    assertTrue(code.contains("public final User snapshot() {"));
+    assertTrue(code.contains("if ((updateSequence & 1) == 0 && updateSequence == this.updateSequence) {"));
+    assertTrue(code.contains("final Date birthDate = getBirthDate();"));
+    assertTrue(code.contains("final UserImpl result = new UserImpl("));
+    assertTrue(code.contains("result.frozen = true;"));
+    assertTrue(code.contains("private volatile boolean frozen;"));
+    assertTrue(code.contains("if (this.frozen) {\n      throw new UnsupportedOperationException(\"Snapshot can not be " +
+        "modified\");"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotGuardAtomicFieldsBySeqlock() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user)
+        .isMutable(user.getAge())
+        .isAtomic(user.getAge())
+        .assignSeqlock(user);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+  }
+
+  @Test
+  public void shouldPackFlags() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Flags flags = domainObjectSpecifier.domainObject(Flags.class);
+    domainObjectSpecifier.target(flags)
+        .isNullable(flags.getBackground())
+        .isMutable(flags.isEnabled())
+        .assignPackedFlags(flags);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    // 1 + 1 + 2 + 2 bits fit into one int
+    assertTrue(code.contains("  int packedFlags;"));
+    assertFalse(code.contains("boolean visible;"));
+    assertFalse(code.contains("Color color;"));
+    assertTrue(code.contains("final String label;"));
+    assertTrue(code.contains("private static final Color[] COLOR_VALUES = Color.values();"));
+    assertTrue("Zero should be reserved for null",
+        code.contains("private static final Color[] BACKGROUND_VALUES = new Color[Color.values().length + 1];"));
+    assertTrue(code.contains("System.arraycopy(Color.values(), 0, BACKGROUND_VALUES, 1, BACKGROUND_VALUES.length - 1);"));
+    assertTrue("Enum constants added after generation should not overflow into the adjacent fields",
+        code.contains("if (COLOR_VALUES.length > 4) {"));
+    assertTrue(code.contains("this.packedFlags = (this.packedFlags & ~"));
+    assertTrue(code.contains("if (this.packedFlags != other.packedFlags) {"));
+    assertTrue(code.contains("result = 31 * result + this.packedFlags;"));
+  }
+
+  @Test
+  public void shouldStoreUnboxedFields() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Sample sample = domainObjectSpecifier.domainObject(Sample.class);
+    domainObjectSpecifier.target(sample)
+        .isUnboxed(sample.getCount())
+        .isUnboxed(sample.getWeight());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("final int count;"));
+    assertTrue(code.contains("final double weight;"));
+    assertTrue(code.contains("final int packedFlags;"));
+    assertTrue(code.contains("this.count = count != null ? count : 0;"));
+    assertTrue(code.contains("public final boolean hasCount() {"));
+    assertTrue(code.contains("public final int getCountAsInt() {"));
+    assertTrue(code.contains("public final double getWeightAsDouble() {"));
+    assertFalse("Unboxed fields should not be null-checked", code.contains("Parameter 'count' is null"));
+  }
+
+  @Test
+  public void shouldCanonicalizeLowCardinalityFields() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).isLowCardinality(user.getName());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("private static final ConcurrentMap<String,String> DICTIONARY = " +
+        "new ConcurrentHashMap<String,String>();"));
+    assertTrue(code.contains("this.name = canonicalize(name);"));
+    assertTrue(code.contains("private static String canonicalize(String value) {"));
+    assertTrue(code.contains("if (this.name != other.name && !this.name.equals(other.name)) {"));
+  }
+
+  @Test
+  public void shouldGenerateComparatorAndSortKey() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Flags flags = domainObjectSpecifier.domainObject(Flags.class);
+    domainObjectSpecifier.target(flags)
+        .isNullable(flags.getLabel())
+        .isSortKey(flags.getColor())
+        .isSortKey(flags.isVisible())
+        .isSortKey(flags.getLabel());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("public static final Comparator<Flags> COMPARATOR = new Comparator<Flags>() {"));
+    assertTrue(code.contains("result = lhs.getColor().compareTo(rhs.getColor());"));
+    assertTrue(code.contains("result = Boolean.compare(lhs.isVisible(), rhs.isVisible());"));
+    assertTrue("Nullable keys should be compared nulls first", code.contains("if (lhsLabel == null) {"));
+    // color takes 2 bits, visible takes 1 bit, label can not be packed
+    assertTrue(code.contains("public long sortKey() {"));
+    assertTrue(code.contains("result |= ((long) getColor().ordinal()) << 62;"));
+    assertTrue(code.contains("result |= (isVisible() ? 1L : 0L) << 61;"));
+    assertTrue(code.contains("return result ^ Long.MIN_VALUE;"));
+  }
+
+  @Test
+  public void shouldTruncateSortKey() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Primitive primitive = domainObjectSpecifier.domainObject(Primitive.class);
+    domainObjectSpecifier.target(primitive)
+        .isSortKey(primitive.getD())
+        .isSortKey(primitive.getG())
+        .isSortKey(primitive.getA());
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("result |= ((long) getD() - Integer.MIN_VALUE) << 32;"));
+    assertTrue(code.contains("final long gBits = Double.doubleToLongBits(getG());"));
+    assertTrue(code.contains("result |= (gBits ^ (gBits >> 63 | Long.MIN_VALUE)) >>> 32;"));
+    assertFalse("Keys after the truncated one should not be packed", code.contains("getA() - Byte.MIN_VALUE"));
+  }
+
+  @Test
+  public void shouldEstimateRetainedBytes() throws IOException {
+    settings.setFootprintEstimationEnabled(true);
+
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("public long estimatedRetainedBytes() {"));
+    assertTrue(code.contains("result += 24 + ((16 + 2L * this.name.length() + 7) & ~7L);"));
+    assertTrue(code.contains("result += 40 + ((16 + 4L * this.responsibilities.size() + 7) & ~7L);"));
+    assertTrue(code.contains("for (final String element : this.responsibilities) {"));
+  }
+
+  @Test
+  public void shouldEstimateShallowSizeAtGenerationTime() throws IOException {
+    settings.setFootprintEstimationEnabled(true);
+
+    generateCode(Primitive.class);
+    final String code = getOneContent(mosp);
+    // 12-byte header and 29 bytes of fields, aligned to 8 bytes
+    assertTrue(code.contains("long result = 48L;"));
+    assertTrue(code.contains("return result;"));
+  }
+
+  @Test
+  public void shouldGenerateSerializationProxy() throws IOException {
+    settings.setSerializationProxyEnabled(true);
+
+    generateCode(Employee.class);
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("implements Employee, Serializable {"));
+    assertTrue(code.contains("private Object writeReplace() {"));
+    assertTrue(code.contains("throw new InvalidObjectException(\"Serialization proxy is required\");"));
+    assertTrue(code.contains("static final class SerializationProxy implements Externalizable {"));
+    assertTrue(code.contains("out.writeInt(value.getAge());"));
+    assertTrue(code.contains("out.writeObject(value.getName());"));
+    assertTrue(code.contains("out.writeInt(value.getResponsibilities().size());"));
+    assertTrue(code.contains("final int age = in.readInt();"));
+    assertTrue(code.contains("final String name = (String) in.readObject();"));
+    assertTrue(code.contains("for (int i = 0; i < responsibilitiesSize; ++i) {"));
+    assertTrue(code.contains("responsibilities.add((String) in.readObject());"));
+
+    // fields are written in alphabetical order
+    assertTrue(code.indexOf("out.writeInt(value.getAge());") < code.indexOf("out.writeObject(value.getName());"));
+    assertTrue(code.indexOf("out.writeObject(value.getName());") < code.indexOf("out.writeInt(value.getWage());"));
+  }
+
+  @Test
+  public void shouldGenerateCalculatedFields() throws IOException {
+    settings.setSerializationProxyEnabled(true);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Person person = domainObjectSpecifier.domainObject(Person.class);
+    domainObjectSpecifier.target(person)
+        .isCalculated(person.getFullName(), PersonCalculator.class)
+        .isMemoized(person.getFullName())
+        .isCalculated(person.getNameLength(), PersonCalculator.class)
+        .isMemoized(person.getNameLength())
+        .isCalculated(person.getInitials(), PersonCalculator.class);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    // declared methods are reflected in no particular order
+    assertTrue(code.contains("public PersonImpl(String firstName, String lastName) {") ||
+        code.contains("public PersonImpl(String lastName, String firstName) {"));
+    assertTrue(code.contains("private transient volatile String fullName;"));
+    assertTrue(code.contains("private transient volatile int nameLength;"));
+    assertTrue(code.contains("private transient volatile boolean nameLengthCalculated;"));
+    assertTrue(code.contains("result = PersonCalculator.getFullName(this);"));
+    assertTrue(code.contains("final int result = PersonCalculator.getNameLength(this);"));
+    assertTrue(code.contains("this.nameLength = result;"));
+    assertFalse("Immutable object needs no memo stamp", code.contains("memoStamp"));
+    assertTrue(code.contains("return PersonCalculator.getInitials(this);"));
+    assertFalse("Calculated fields should not be compared", code.contains("other.fullName"));
+    assertFalse("Calculated fields should not be serialized", code.contains("value.getInitials()"));
+  }
+
+  @Test
+  public void shouldStampMemoizedFieldsOfMutableObject() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final Person person = domainObjectSpecifier.domainObject(Person.class);
+    domainObjectSpecifier.target(person)
+        .isMutable(person.getFirstName())
+        .isAtomic(person.getFirstName())
+        .isCalculated(person.getFullName(), PersonCalculator.class)
+        .isMemoized(person.getFullName())
+        .isCalculated(person.getNameLength(), PersonCalculator.class)
+        .isMemoized(person.getNameLength())
+        .isCalculated(person.getInitials(), PersonCalculator.class);
+
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+    implementer.generateImplementations();
+
+    final String code = getOneContent(mosp);
+    assertTrue(code.contains("private static final AtomicIntegerFieldUpdater<PersonImpl> MEMO_STAMP_UPDATER = " +
+        "AtomicIntegerFieldUpdater.newUpdater(PersonImpl.class, \"memoStamp\");"));
+    assertTrue(code.contains("private transient volatile int memoStamp;"));
+    assertTrue(code.contains("final int memoStamp = this.memoStamp;"));
+    assertTrue(code.contains("if (memoStamp != this.memoStamp) {\n        this.fullName = null;"));
+    assertTrue(code.contains("if (memoStamp != this.memoStamp) {\n        this.nameLengthCalculated = false;"));
+
+    // the stamp is advanced before the memoized values are discarded
+    final String update = "final boolean result = FIRST_NAME_UPDATER.compareAndSet(this, expect, update);";
+    assertTrue(code.contains(update));
+    final int stampIndex = code.indexOf("MEMO_STAMP_UPDATER.incrementAndGet(this);", code.indexOf(update));
+    assertTrue(stampIndex > 0);
+    assertTrue(stampIndex < code.indexOf("this.fullName = null;", code.indexOf(update)));
+    // failed compare-and-set keeps the memoized values
+    assertTrue(code.contains(update + "\n    if (result) {\n      MEMO_STAMP_UPDATER.incrementAndGet(this);"));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotCalculateFieldWithoutCalculatorMethod() throws IOException {
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.RECORDING);
+
+    final User user = domainObjectSpecifier.domainObject(User.class);
+    domainObjectSpecifier.target(user).isCalculated(user.getName(), PersonCalculator.class);
+  }
+
   //
   // Private
   //
@@ -156,4 +907,13 @@ public final class DomainObjectImplementerTest {
     assertEquals(1, contentMap.size());
     return contentMap.values().iterator().next();
   }
+
+  private String getContent(MemOutputStreamProvider provider, String className) {
+    for (final String content : provider.getContentMap().values()) {
+      if (content.contains("class " + className + " ")) {
+        return content;
+      }
+    }
+    throw new AssertionError("No content for " + className);
+  }
 }
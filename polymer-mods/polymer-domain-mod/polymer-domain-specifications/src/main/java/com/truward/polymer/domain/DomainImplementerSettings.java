@@ -17,4 +17,39 @@ public interface DomainImplementerSettings {
   void setImplClassPrefix(@Nonnull String prefix);
 
   void setImplClassSuffix(@Nonnull String suffix);
+
+  /**
+   * Enables caching of the hash code in the generated classes that have no mutable fields.
+   * The hash code is lazily calculated on the first call and then stored in the non-volatile field,
+   * which is safe as long as the fields are effectively immutable (racy single-check idiom).
+   * Disabled by default.
+   *
+   * @param enabled Whether hash code caching is enabled or not.
+   */
+  void setHashCodeCachingEnabled(boolean enabled);
+
+  /**
+   * Enables generation of the <code>estimatedRetainedBytes()</code> method, that estimates number of bytes, retained
+   * by the object, including its strings, collections and nested generated objects, so that the caches can evict
+   * their entries by size without the instrumentation agent.
+   * The estimate assumes 64-bit JVM with compressed references, strings, that take two bytes per character,
+   * and the object graph without cycles. Enums and canonicalized low cardinality strings are shared, so that they
+   * are not counted.
+   * Disabled by default.
+   *
+   * @param enabled Whether footprint estimation is enabled or not.
+   */
+  void setFootprintEstimationEnabled(boolean enabled);
+
+  /**
+   * Makes the generated classes serializable via the serialization proxy, that writes the field values explicitly
+   * instead of relying on the reflective default serialization, and restores the objects through the public
+   * constructor, so that the deserialized objects pass the same checks as the ones, that are created by the code.
+   * The fields are written in the alphabetical order of their names, nested objects, other than strings and
+   * boxed primitives, are written by means of the default serialization, so that they should be serializable too.
+   * Disabled by default.
+   *
+   * @param enabled Whether serialization proxy is enabled or not.
+   */
+  void setSerializationProxyEnabled(boolean enabled);
 }
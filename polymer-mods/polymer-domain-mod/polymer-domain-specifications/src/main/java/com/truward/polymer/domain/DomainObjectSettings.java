@@ -13,5 +13,17 @@ import javax.annotation.Nonnull;
 public interface DomainObjectSettings {
   DomainObjectBuilderSettings assignBuilder();
 
+  void assignStore();
+
+  void assignWithers();
+
+  void assignPool();
+
+  void assignPackedFlags();
+
+  void assignBatchFactory();
+
+  void assignSeqlock();
+
   void setTargetName(@Nonnull FqName implementationName);
 }
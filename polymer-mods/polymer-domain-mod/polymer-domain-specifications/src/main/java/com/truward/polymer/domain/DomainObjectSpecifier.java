@@ -4,6 +4,7 @@ import com.truward.polymer.annotation.SpecificatorInvocation;
 import com.truward.polymer.naming.FqName;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 
 /**
  * Specification service for configuring domain object generation for the given classes.
@@ -31,6 +32,90 @@ public interface DomainObjectSpecifier {
   @Nonnull
   DomainObjectSpecifier assignBuilder(@Nonnull Object domainObjectInstance);
 
+  /**
+   * Assigns off-heap store to the given domain object instance, previously created by
+   * {@link #targets(Class[])} call.
+   * The generated store keeps domain objects as fixed-width records in the {@link java.nio.ByteBuffer} and
+   * exposes them through the reusable flyweight views, that implement the domain object interface.
+   * Only domain objects with primitive fields can have a store.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignStore(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Assigns withers to the given domain object instance, previously created by {@link #targets(Class[])} call.
+   * Each wither, e.g. <code>withName(String name)</code>, returns a copy of the object with the given field
+   * replaced. The copy shares all the other fields with the original object, so that they are neither copied nor
+   * verified again.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignWithers(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Assigns object pool to the given domain object instance, previously created by {@link #targets(Class[])} call.
+   * The generated thread-local pool, e.g. <code>UserPool.acquire()</code> and <code>UserPool.release(user)</code>,
+   * makes it possible to reuse short-living objects instead of allocating them.
+   * All the fields of the pooled object are expected to be mutable, see {@link #isMutable(Object)}.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignPool(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Packs boolean and enum fields of the given domain object instance, previously created by
+   * {@link #targets(Class[])} call, into the <code>int</code> or <code>long</code> flag words.
+   * Each boolean takes one bit and each enum takes as many bits as needed to hold its ordinal, so that the
+   * objects with many flags take less memory. Packed fields are compared and hashed by words.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignPackedFlags(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Assigns batch factory to the given domain object instance, previously created by {@link #targets(Class[])} call.
+   * The generated static factory, e.g. <code>UserImpl.newBatch(long[] id, String[] name)</code>, creates as many
+   * objects as there are values in each of the given columns. Values are checked column by column before any object
+   * is created, so that the data, that is already held in the columnar form, is not reshuffled into the individual
+   * constructor calls.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignBatchFactory(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Guards mutable fields of the given domain object instance, previously created by {@link #targets(Class[])} call,
+   * by the sequence counter, so that the objects updated by one thread can be consistently read by many others
+   * without locking the readers.
+   * Writers, i.e. setters and the generated <code>update(...)</code> method, that assigns all the mutable fields at
+   * once, are synchronized and make the counter odd while the fields are being modified.
+   * The generated <code>snapshot()</code> method reads all the fields and retries until the counter stays the same
+   * and even, and then returns the consistent copy of the object.
+   * Atomic fields, see {@link #isAtomic(Object)}, bypass the counter and can not be combined with it.
+   *
+   * @param domainObjectInstance Instance of the domain object.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignSeqlock(@Nonnull Object domainObjectInstance);
+
+  /**
+   * Assigns type dispatch to the hierarchy of the domain objects, rooted at the given domain object instance,
+   * that is created by {@link #domainObject(Class)} call. The root itself does not have to be a target.
+   * Each generated class of the hierarchy gets compact integer type id, e.g. <code>UserImpl.TYPE_ID</code>, and
+   * the generated <code>UserDispatch</code> class dispatches visitors by switching over type ids of the given objects
+   * instead of probing them with the chain of <code>instanceof</code> checks.
+   *
+   * @param hierarchyRoot Instance of the domain object, that is the common parent of the dispatched targets.
+   */
+  @Nonnull
+  DomainObjectSpecifier assignDispatch(@Nonnull Object hierarchyRoot);
+
   @Nonnull
   DomainObjectSpecifier setTargetName(@Nonnull Object domainObjectInstance, @Nonnull FqName targetName);
 
@@ -59,15 +144,125 @@ public interface DomainObjectSpecifier {
   @Nonnull
   DomainObjectSpecifier isNullable(@SpecificatorInvocation Object invocationResult);
 
+  /**
+   * Designates nullable boxed primitive field, e.g. <code>Integer</code> or <code>Long</code>, to be stored as
+   * the primitive value and the presence bit rather than the reference to the boxed object.
+   * Unboxed field is nullable, the primitive value is also exposed by the generated class,
+   * e.g. <code>hasCount()</code> and <code>getCountAsInt()</code>.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isUnboxed(@SpecificatorInvocation Object invocationResult);
+
   @Nonnull
   DomainObjectSpecifier isNonNull(@SpecificatorInvocation Object invocationResult);
 
   @Nonnull
   DomainObjectSpecifier hasLength(@SpecificatorInvocation String invocationResult);
 
+  /**
+   * Specifies, that the given string field has few distinct values, e.g. country code or status name.
+   * Values of such fields are canonicalized by the generated class via the bounded concurrent dictionary, so that
+   * the instances with equal values share the same string and compare it by reference.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isLowCardinality(@SpecificatorInvocation String invocationResult);
+
+  /**
+   * Appends the given field to the sort keys of the current domain object, sort keys are compared in the order
+   * they were specified in.
+   * The generated class exposes the static <code>COMPARATOR</code>, that compares sort keys without boxing, and
+   * <code>long sortKey()</code> method, that packs the leading numeric, boolean and enum sort keys into
+   * the single value suitable for radix sorting.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isSortKey(@SpecificatorInvocation Object invocationResult);
+
+  /**
+   * Specifies, that the given field is not kept in the domain object, but calculated from its other fields by
+   * the public static method of the given class, that has the same name as the getter and takes the domain object,
+   * e.g. <code>public static String getFullName(User user)</code>.
+   * Calculated fields take no part in construction, <code>equals</code>, <code>hashCode</code> and marshalling of
+   * the domain objects.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @param calculatorClass Class, that has static method, that calculates value of the field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isCalculated(@SpecificatorInvocation Object invocationResult,
+                                     @Nonnull Class<?> calculatorClass);
+
+  /**
+   * Specifies, that the value of the given calculated field, see {@link #isCalculated(Object, Class)}, should be
+   * calculated on first access and then kept in the transient field of the domain object.
+   * The kept value is safely published, so that the immutable domain objects can be shared between threads.
+   * Setters of the mutable domain objects discard the kept values.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isMemoized(@SpecificatorInvocation Object invocationResult);
+
   @Nonnull
   DomainObjectSpecifier isNonNegative(@SpecificatorInvocation int invocationResult);
 
+  /**
+   * Specifies, that the given field can be modified after construction.
+   * Setter is generated for the mutable field if the origin interface has no one.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isMutable(@SpecificatorInvocation Object invocationResult);
+
+  /**
+   * Specifies, that the given mutable field can be updated atomically, so that the domain object can be shared
+   * between threads without locking. Field is kept in the volatile field and the generated class gets
+   * <code>compareAndSet{FieldName}</code> and <code>getAndSet{FieldName}</code> methods as well as
+   * <code>getAndAdd{FieldName}</code> and <code>addAndGet{FieldName}</code> ones for <code>int</code> and
+   * <code>long</code> fields.
+   * Field should be specified as mutable first, see {@link #isMutable(Object)}.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier isAtomic(@SpecificatorInvocation Object invocationResult);
+
+  /**
+   * Specifies, that the given collection of boxed numbers, i.e. <code>List&lt;Integer&gt;</code>,
+   * <code>List&lt;Long&gt;</code>, <code>Set&lt;Integer&gt;</code> or <code>Set&lt;Long&gt;</code>, should be stored
+   * in the generated primitive array-backed immutable collection.
+   * Such a collection takes several times less memory than the boxed one and is not allowed to contain nulls.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier hasPrimitiveElements(@SpecificatorInvocation Collection<?> invocationResult);
+
+  /**
+   * Specifies the typical number of elements in the given list, set or map field, so that the builder creates
+   * collections, that can hold that many elements without growing.
+   *
+   * @param invocationResult Getter invocation that triggers information about the corresponding field
+   * @param expectedSize Typical number of elements, positive
+   * @return Current specifier, provided for convenience such that the user is able to chain calls.
+   */
+  @Nonnull
+  DomainObjectSpecifier hasExpectedSize(@SpecificatorInvocation Object invocationResult, int expectedSize);
+
   @Nonnull
   DomainObjectSettings getObjectSettings(@Nonnull Class<?> clazz);
 
@@ -0,0 +1,24 @@
+package com.truward.polymer.marshal.binary.analysis;
+
+import com.truward.polymer.domain.analysis.DomainField;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Holds numbers of the fields, that identify them in the binary representation of the domain objects.
+ *
+ * @author Alexander Shabanov
+ */
+public interface BinaryFieldRegistry {
+
+  /**
+   * Maximum field number, such that the field tag, i.e. number and wire type, fits into positive int
+   */
+  int MAX_FIELD_NUMBER = (1 << 28) - 1;
+
+  @Nullable
+  Integer getFieldNumber(@Nonnull DomainField domainField);
+
+  void putFieldNumber(@Nonnull DomainField domainField, int fieldNumber);
+}
@@ -0,0 +1,20 @@
+package com.truward.polymer.marshal.binary.spi;
+
+import com.truward.di.InjectionContext;
+import com.truward.polymer.core.driver.spi.SpecificationDriver;
+import com.truward.polymer.marshal.binary.support.DefaultBinaryMarshallingSpecifier;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Binary marshalling driver that registers binary marshalling specifier in the global dependency injection context.
+ *
+ * @author Alexander Shabanov
+ */
+public final class BinaryMarshallingDriver implements SpecificationDriver {
+
+  @Override
+  public void join(@Nonnull InjectionContext context) {
+    context.registerBean(DefaultBinaryMarshallingSpecifier.class);
+  }
+}
@@ -0,0 +1,780 @@
+package com.truward.polymer.marshal.binary.support;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+import com.truward.polymer.core.code.builder.CodeStream;
+import com.truward.polymer.core.code.builder.CodeStreamSupport;
+import com.truward.polymer.core.types.DefaultValues;
+import com.truward.polymer.core.types.SynteticParameterizedType;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.FieldTrait;
+import com.truward.polymer.domain.analysis.FieldUtil;
+import com.truward.polymer.domain.analysis.OriginMethodRole;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
+import com.truward.polymer.domain.implementer.AbstractDomainImplementer;
+import com.truward.polymer.marshal.binary.analysis.BinaryFieldRegistry;
+import com.truward.polymer.naming.FqName;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.lang.model.element.Modifier;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.truward.polymer.util.Assert.nonNull;
+
+/**
+ * Contains implementer of the binary serialization/deserialization code.
+ * Each object is written as the sequence of the tagged fields, terminated by zero tag. Tag holds field number and
+ * the wire type, that tells the reader how to skip the value of the unknown field. Collections are written as
+ * the repeated fields, one tag per element. Fields, that hold null, zero integers and false are not written.
+ * Enum constants are written as ordinals, so that the order of constants is the part of the schema: new constants
+ * can only be appended. Readers, that don't know the written constant, read it as null and skip it in collections.
+ *
+ * @author Alexander Shabanov
+ */
+final class BinaryCodecGenerator extends CodeStreamSupport {
+  // wire types
+  private static final int VARINT = 0;
+  private static final int FIXED64 = 1;
+  private static final int LENGTH_DELIMITED = 2;
+  private static final int FIXED32 = 5;
+
+  private static final int WIRE_TYPE_BITS = 3;
+  private static final int END_TAG = 0;
+
+  private static final String OUT = "out";
+  private static final String IN = "in";
+  private static final String TAG = "fieldTag";
+  private static final String LENGTH = "length";
+  private static final String BYTES = "bytes";
+  private static final String VALUES_SUFFIX = "_VALUES";
+  private static final String VIEW_SUFFIX = "View";
+  private static final String OFFSET_SUFFIX = "Offset";
+  private static final String BUFFER = "buffer";
+  private static final String RESULT = "result";
+
+  private final FqName fqName;
+  private final CodeStream codeStream;
+  private final Collection<GenDomainClass> targets;
+  private final Collection<GenDomainClass> flyweightTargets;
+  private final BinaryFieldRegistry fieldRegistry;
+  private final Map<Class<?>, String> enumValueNames = new LinkedHashMap<>();
+
+  public BinaryCodecGenerator(@Nonnull FqName fqName, @Nonnull CodeStream codeStream,
+                              @Nonnull Collection<GenDomainClass> targets,
+                              @Nonnull Collection<GenDomainClass> flyweightTargets,
+                              @Nonnull BinaryFieldRegistry fieldRegistry) {
+    this.fqName = fqName;
+    this.codeStream = codeStream;
+    this.targets = targets;
+    this.flyweightTargets = flyweightTargets;
+    this.fieldRegistry = fieldRegistry;
+  }
+
+  @Nonnull
+  @Override
+  protected CodeStream getRootCodeStream() {
+    return codeStream;
+  }
+
+  public void generate() {
+    publicFinalClass().s(fqName.getName()).sp().c('{');
+
+    // enum constants are written as ordinals
+    for (final GenDomainClass target : targets) {
+      for (final DomainField field : target.getOrigin().getStoredFields()) {
+        final Class<?> elementClass = getElementClass(field);
+        if (elementClass.isEnum() && !enumValueNames.containsKey(elementClass)) {
+          generateEnumValues(elementClass);
+        }
+      }
+    }
+
+    // private {Marshaller}() {} - hidden ctor
+    c('\n').s("private").sp().s(fqName.getName()).c('(', ')', ' ', '{').c('}');
+
+    for (final GenDomainClass target : targets) {
+      generateWriter(target, DataOutput.class);
+      generateWriter(target, ByteBuffer.class);
+      generateReader(target, DataInput.class);
+      generateReader(target, ByteBuffer.class);
+      if (flyweightTargets.contains(target)) {
+        generateFlyweight(target);
+      }
+    }
+
+    generateWriteHelpers(DataOutput.class);
+    generateWriteHelpers(ByteBuffer.class);
+    generateReadHelpers(DataInput.class);
+    generateReadHelpers(ByteBuffer.class);
+    generateZigZagHelpers();
+    if (!enumValueNames.isEmpty()) {
+      generateEnumHelpers();
+    }
+
+    c('}').eol(); // class body end
+  }
+
+  //
+  // Writer
+  //
+
+  private void generateWriter(GenDomainClass target, Class<?> sinkClass) {
+    final Class<?> originClass = target.getOrigin().getOriginClass();
+
+    // public static void write{DomainClass}({DomainClass} value, {Sink} out) throws IOException {
+    c('\n').s("public").sp().s("static").sp().t(void.class).sp().s("write" + originClass.getSimpleName()).c('(')
+        .var(originClass, Names.VALUE).c(',', ' ').var(sinkClass, OUT).c(')');
+    throwsIfNeeded(sinkClass).c('{');
+
+    for (final DomainField field : getFieldsInNumberOrder(target)) {
+      generateWriteField(field);
+    }
+
+    // writeVarLong(out, 0);
+    s("writeVarLong").c('(').s(OUT).c(',', ' ').val(END_TAG).c(')', ';');
+    c('}');
+  }
+
+  private void generateWriteField(DomainField field) {
+    final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+    if (getterName == null) {
+      throw new UnsupportedOperationException("Can't generate binary writer: field " + field +
+          " has no associated getter");
+    }
+    final String getterCall = Names.VALUE + '.' + getterName + "()";
+    final Class<?> elementClass = getElementClass(field);
+    final int tag = getTag(field, elementClass);
+
+    if (AbstractDomainImplementer.getCollectionClass(field) != null) {
+      // for (final {ElementType} element : value.get{FieldName}()) { writeVarLong(out, {Tag}); ... }
+      final boolean nullable = FieldUtil.isNullable(field);
+      if (nullable) {
+        s("if").sp().c('(').s(getterCall).sps("!=").s("null").c(')', ' ', '{');
+      }
+      s("for").sp().c('(').s("final").sp().t(elementClass).sp().s(Names.ELEMENT).spc(':').s(getterCall)
+          .c(')', ' ', '{');
+      generateWriteValue(tag, elementClass, Names.ELEMENT);
+      c('}');
+      if (nullable) {
+        c('}');
+      }
+      return;
+    }
+
+    final Class<?> fieldClass = nonNull(field.getFieldTypeAsClass(), "Field class");
+    if (!fieldClass.isPrimitive()) {
+      if (FieldUtil.isNullable(field)) {
+        // if (value.get{FieldName}() != null) {
+        s("if").sp().c('(').s(getterCall).sps("!=").s("null").c(')', ' ', '{');
+        generateWriteValue(tag, elementClass, getterCall);
+        c('}');
+      } else {
+        generateWriteValue(tag, elementClass, getterCall);
+      }
+    } else if (boolean.class.equals(fieldClass)) {
+      // if (value.is{FieldName}()) {
+      s("if").sp().c('(').s(getterCall).c(')', ' ', '{');
+      generateWriteValue(tag, elementClass, getterCall);
+      c('}');
+    } else if (float.class.equals(fieldClass) || double.class.equals(fieldClass)) {
+      // negative zero and NaNs should be preserved, so that floating point values are always written
+      generateWriteValue(tag, elementClass, getterCall);
+    } else {
+      // if (value.get{FieldName}() != 0) {
+      s("if").sp().c('(').s(getterCall).sps("!=").c('0', ')', ' ', '{');
+      generateWriteValue(tag, elementClass, getterCall);
+      c('}');
+    }
+  }
+
+  private void generateWriteValue(int tag, Class<?> valueClass, String value) {
+    // writeVarLong(out, {Tag});
+    s("writeVarLong").c('(').s(OUT).c(',', ' ').val(tag).c(')', ';');
+
+    final Class<?> primitiveClass = Primitives.unwrap(valueClass);
+    if (boolean.class.equals(primitiveClass)) {
+      // writeVarLong(out, value ? 1 : 0);
+      s("writeVarLong").c('(').s(OUT).c(',', ' ').s(value).spc('?').c('1').spc(':').c('0').c(')', ';');
+    } else if (char.class.equals(primitiveClass)) {
+      s("writeVarLong").c('(').s(OUT).c(',', ' ').s(value).c(')', ';');
+    } else if (float.class.equals(primitiveClass)) {
+      s("writeFixed32").c('(').s(OUT).c(',', ' ').t(Float.class).dot("floatToIntBits").c('(').s(value).c(')', ')', ';');
+    } else if (double.class.equals(primitiveClass)) {
+      s("writeFixed64").c('(').s(OUT).c(',', ' ').t(Double.class).dot("doubleToLongBits").c('(').s(value)
+          .c(')', ')', ';');
+    } else if (primitiveClass.isPrimitive()) {
+      // signed numbers are zigzag-encoded, so that small negative numbers take few bytes
+      s("writeVarLong").c('(').s(OUT).c(',', ' ').s("zigZag").c('(').s(value).c(')', ')', ';');
+    } else if (String.class.equals(valueClass)) {
+      s("writeString").c('(').s(OUT).c(',', ' ').s(value).c(')', ';');
+    } else {
+      // enum
+      s("writeVarLong").c('(').s(OUT).c(',', ' ').s(value).dot("ordinal").c('(', ')', ')', ';');
+    }
+  }
+
+  //
+  // Reader
+  //
+
+  private void generateReader(GenDomainClass target, Class<?> sourceClass) {
+    final Class<?> originClass = target.getOrigin().getOriginClass();
+    final List<DomainField> fields = target.getOrigin().getStoredFields();
+
+    // public static {DomainClass} read{DomainClass}({Source} in) throws IOException {
+    c('\n').s("public").sp().s("static").sp().t(originClass).sp().s("read" + originClass.getSimpleName()).c('(')
+        .var(sourceClass, IN).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+
+    for (final DomainField field : fields) {
+      generateReaderVariable(field);
+    }
+
+    // for (;;) { final int fieldTag = (int) readVarLong(in); switch (fieldTag) {
+    s("for").sp().c('(').s(";;").c(')', ' ', '{');
+    s("final").sp().t(int.class).sp().s(TAG).spc('=').cast(int.class).sp().s("readVarLong").c('(').s(IN)
+        .c(')', ';');
+    s("switch").sp().c('(').s(TAG).c(')', ' ', '{');
+
+    // case 0: return new {TargetClass}({fieldName1}, ...);
+    s("case").sp().val(END_TAG).c(':', ' ');
+    s("return").sp().newType(target).c('(');
+    boolean next = false;
+    for (final DomainField field : fields) {
+      if (next) {
+        c(',', ' ');
+      } else {
+        next = true;
+      }
+      s(field.getFieldName());
+    }
+    c(')', ';');
+
+    for (final DomainField field : getFieldsInNumberOrder(target)) {
+      final Class<?> elementClass = getElementClass(field);
+      // case {Tag}: {fieldName} = ...; break;
+      s("case").sp().val(getTag(field, elementClass)).c(':', ' ');
+      if (AbstractDomainImplementer.getCollectionClass(field) != null) {
+        generateAddValue(field.getFieldName(), elementClass);
+      } else {
+        s(field.getFieldName()).spc('=');
+        generateReadValue(elementClass);
+        c(';');
+      }
+      s("break").c(';');
+    }
+
+    // default: skipField(in, fieldTag);
+    s("default").c(':', ' ').s("skipField").c('(').s(IN).c(',', ' ').s(TAG).c(')', ';');
+
+    c('}'); // end of switch
+    c('}'); // end of for
+    c('}');
+  }
+
+  private void generateReaderVariable(DomainField field) {
+    final Class<?> collectionClass = AbstractDomainImplementer.getCollectionClass(field);
+    if (collectionClass != null) {
+      // final List<{ElementType}> {fieldName} = new ArrayList<{ElementType}>();
+      final Class<?> elementClass = getElementClass(field);
+      s("final").sp().var(field.getFieldType(), field.getFieldName()).spc('=')
+          .newType(SynteticParameterizedType.from(List.class.equals(collectionClass) ? ArrayList.class :
+              LinkedHashSet.class, elementClass)).c('(', ')', ';');
+      return;
+    }
+
+    // {FieldType} {fieldName} = {DefaultValue};
+    final Class<?> fieldClass = nonNull(field.getFieldTypeAsClass(), "Field class");
+    var(fieldClass, field.getFieldName()).spc('=');
+    if (boolean.class.equals(fieldClass)) {
+      val(false);
+    } else if (fieldClass.isPrimitive()) {
+      c('0');
+    } else {
+      s("null");
+    }
+    c(';');
+  }
+
+  private void generateReadValue(Class<?> valueClass) {
+    final Class<?> primitiveClass = Primitives.unwrap(valueClass);
+    final boolean boxed = !valueClass.isPrimitive() && primitiveClass.isPrimitive();
+    if (boxed) {
+      // boxed values are only created for the fields, that are present: {BoxedType}.valueOf(...)
+      t(valueClass).dot("valueOf").c('(');
+    }
+
+    if (boolean.class.equals(primitiveClass)) {
+      s("readVarLong").c('(').s(IN).c(')').sps("!=").c('0');
+    } else if (char.class.equals(primitiveClass)) {
+      cast(char.class).sp().s("readVarLong").c('(').s(IN).c(')');
+    } else if (float.class.equals(primitiveClass)) {
+      t(Float.class).dot("intBitsToFloat").c('(').s("readFixed32").c('(').s(IN).c(')', ')');
+    } else if (double.class.equals(primitiveClass)) {
+      t(Double.class).dot("longBitsToDouble").c('(').s("readFixed64").c('(').s(IN).c(')', ')');
+    } else if (primitiveClass.isPrimitive()) {
+      if (!long.class.equals(primitiveClass)) {
+        cast(primitiveClass).sp();
+      }
+      s("unZigZag").c('(').s("readVarLong").c('(').s(IN).c(')', ')');
+    } else if (String.class.equals(valueClass)) {
+      s("readString").c('(').s(IN).c(')');
+    } else {
+      // enumValue({ENUM}_VALUES, readVarLong(in))
+      s("enumValue").c('(').s(enumValueNames.get(valueClass)).c(',', ' ').s("readVarLong").c('(').s(IN)
+          .c(')', ')');
+    }
+
+    if (boxed) {
+      c(')');
+    }
+  }
+
+  private void generateAddValue(String collection, Class<?> elementClass) {
+    // {collection}.add(...); or addKnown({collection}, ...); - unknown enum constants are skipped
+    if (elementClass.isEnum()) {
+      s("addKnown").c('(').s(collection).c(',', ' ');
+    } else {
+      s(collection).dot("add").c('(');
+    }
+    generateReadValue(elementClass);
+    c(')', ';');
+  }
+
+  //
+  // Flyweight
+  //
+
+  private void generateFlyweight(GenDomainClass target) {
+    final Class<?> originClass = target.getOrigin().getOriginClass();
+    final String viewName = originClass.getSimpleName() + VIEW_SUFFIX;
+    final List<DomainField> fields = getFieldsInNumberOrder(target);
+
+    // public static {DomainClass} wrap{DomainClass}(ByteBuffer in) {
+    c('\n').s("public").sp().s("static").sp().t(originClass).sp().s("wrap" + originClass.getSimpleName()).c('(')
+        .var(ByteBuffer.class, IN).c(')', ' ', '{');
+    s("return").sp().s("new").sp().s(viewName).c('(').s(IN).c(')', ';');
+    c('}');
+
+    // private static final class {DomainClass}View implements {DomainClass} {
+    c('\n').s("private").sp().s("static").sp().s("final").sp().s("class").sp().s(viewName).sp().s("implements").sp()
+        .t(originClass).sp().c('{');
+
+    // offset table: positions of the field values, negative if the field is absent
+    s("private").sp().var(ByteBuffer.class, BUFFER, ImmutableList.of(Modifier.FINAL)).c(';');
+    for (final DomainField field : fields) {
+      s("private").sp().var(int.class, getOffsetName(field), ImmutableList.of(Modifier.FINAL)).c(';');
+    }
+
+    generateFlyweightConstructor(viewName, fields);
+
+    for (final DomainField field : fields) {
+      generateFlyweightGetter(field);
+    }
+
+    for (final DomainField field : target.getOrigin().getFields()) {
+      if (field.hasTrait(FieldTrait.CALCULATED)) {
+        generateCalculatedGetter(target, field);
+      }
+    }
+
+    c('}');
+  }
+
+  private void generateCalculatedGetter(GenDomainClass target, DomainField field) {
+    final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+
+    // @Override public {FieldType} get{FieldName}() { return {Calculator}.get{FieldName}(this); }
+    c('\n').annotate(Override.class).s("public").sp().t(field.getFieldType()).sp().s(getterName)
+        .c('(', ')', ' ', '{');
+    s("return").sp().t(target.getCalculator(field)).dot(getterName).c('(').s("this").c(')', ';');
+    c('}');
+  }
+
+  private void generateFlyweightConstructor(String viewName, List<DomainField> fields) {
+    // {DomainClass}View(ByteBuffer in) {
+    c('\n').s(viewName).c('(').var(ByteBuffer.class, IN).c(')', ' ', '{');
+    s("this").dot(BUFFER).spc('=').s(IN).dot("duplicate").c('(', ')', ';');
+    for (final DomainField field : fields) {
+      t(int.class).sp().s(getOffsetName(field)).spc('=').c('-', '1', ';');
+    }
+
+    // for (int fieldTag = (int) readVarLong(in); fieldTag != 0; fieldTag = (int) readVarLong(in)) {
+    s("for").sp().c('(').t(int.class).sp().s(TAG).spc('=').cast(int.class).sp().s("readVarLong(in)")
+        .s("; " + TAG + " != " + END_TAG + "; " + TAG + " = ").cast(int.class).sp().s("readVarLong(in)")
+        .c(')', ' ', '{');
+    s("switch").sp().c('(').s(TAG).c(')', ' ', '{');
+    for (final DomainField field : fields) {
+      // case {Tag}: {fieldName}Offset = in.position(); break;
+      final String offsetName = getOffsetName(field);
+      s("case").sp().val(getTag(field, getElementClass(field))).c(':', ' ');
+      if (AbstractDomainImplementer.getCollectionClass(field) != null) {
+        // collection elements are read starting from the first one
+        s("if").sp().c('(').s(offsetName).sps("<").c('0', ')', ' ', '{');
+        s(offsetName).spc('=').s(IN).dot("position").c('(', ')', ';');
+        c('}');
+      } else {
+        s(offsetName).spc('=').s(IN).dot("position").c('(', ')', ';');
+      }
+      s("break").c(';');
+    }
+    c('}'); // end of switch
+    s("skipField").c('(').s(IN).c(',', ' ').s(TAG).c(')', ';');
+    c('}'); // end of for
+
+    for (final DomainField field : fields) {
+      final String offsetName = getOffsetName(field);
+      if (AbstractDomainImplementer.getCollectionClass(field) == null && !field.isPrimitive() &&
+          !FieldUtil.isNullable(field)) {
+        // if ({fieldName}Offset < 0) { throw new IllegalStateException("Missing {fieldName}"); }
+        s("if").sp().c('(').s(offsetName).sps("<").c('0', ')', ' ', '{');
+        s("throw").sp().newType(IllegalStateException.class).c('(').val("Missing " + field.getFieldName())
+            .c(')', ';');
+        c('}');
+      }
+      s("this").dot(offsetName).spc('=').s(offsetName).c(';');
+    }
+    c('}');
+  }
+
+  private void generateFlyweightGetter(DomainField field) {
+    final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
+    if (getterName == null || FieldUtil.getMethodName(field, OriginMethodRole.SETTER) != null) {
+      throw new UnsupportedOperationException("Can't generate flyweight reader: field " + field +
+          " should only have getter");
+    }
+    final String offsetName = getOffsetName(field);
+    final Class<?> elementClass = getElementClass(field);
+    final Class<?> collectionClass = AbstractDomainImplementer.getCollectionClass(field);
+
+    // @Override public {FieldType} get{FieldName}() {
+    c('\n').annotate(Override.class).s("public").sp().t(field.getFieldType()).sp().s(getterName)
+        .c('(', ')', ' ', '{');
+
+    if (collectionClass != null) {
+      // final List<{ElementType}> result = new ArrayList<{ElementType}>();
+      s("final").sp().var(field.getFieldType(), RESULT).spc('=')
+          .newType(SynteticParameterizedType.from(List.class.equals(collectionClass) ? ArrayList.class :
+              LinkedHashSet.class, elementClass)).c('(', ')', ';');
+      s("if").sp().c('(').s(offsetName).sps(">=").c('0', ')', ' ', '{');
+      generateFlyweightBufferAt(offsetName);
+      generateAddValue(RESULT, elementClass);
+
+      // the rest of the elements follow the first one, possibly interleaved with the other fields
+      final int tag = getTag(field, elementClass);
+      s("for").sp().c('(').t(int.class).sp().s(TAG).spc('=').cast(int.class).sp().s("readVarLong(in)")
+          .s("; " + TAG + " != " + END_TAG + "; " + TAG + " = ").cast(int.class).sp().s("readVarLong(in)")
+          .c(')', ' ', '{');
+      s("if").sp().c('(').s(TAG).sps("==").val(tag).c(')', ' ', '{');
+      generateAddValue(RESULT, elementClass);
+      c('}').sp().s("else").sp().c('{');
+      s("skipField").c('(').s(IN).c(',', ' ').s(TAG).c(')', ';');
+      c('}');
+      c('}'); // end of for
+      c('}');
+
+      // return Collections.unmodifiableList(result);
+      s("return").sp().t(Collections.class)
+          .dot(List.class.equals(collectionClass) ? "unmodifiableList" : "unmodifiableSet").c('(').s(RESULT)
+          .c(')', ';');
+      c('}');
+      return;
+    }
+
+    // if ({fieldName}Offset < 0) { return {DefaultValue}; }
+    final Class<?> fieldClass = nonNull(field.getFieldTypeAsClass(), "Field class");
+    s("if").sp().c('(').s(offsetName).sps("<").c('0', ')', ' ', '{');
+    s("return").sp();
+    if (boolean.class.equals(fieldClass)) {
+      val(false);
+    } else if (fieldClass.isPrimitive()) {
+      c('0');
+    } else {
+      s("null");
+    }
+    c(';');
+    c('}');
+
+    generateFlyweightBufferAt(offsetName);
+    s("return").sp();
+    generateReadValue(elementClass);
+    c(';');
+    c('}');
+  }
+
+  private void generateFlyweightBufferAt(String offsetName) {
+    // duplicates share the content, but have their own position, so that views can be read concurrently
+    s("final").sp().var(ByteBuffer.class, IN).spc('=').s("this").dot(BUFFER).dot("duplicate").c('(', ')', ';');
+    s(IN).dot("position").c('(').s(offsetName).c(')', ';');
+  }
+
+  private static String getOffsetName(DomainField field) {
+    return field.getFieldName() + OFFSET_SUFFIX;
+  }
+
+  //
+  // Helpers
+  //
+
+  private void generateEnumValues(Class<?> enumClass) {
+    String name = enumClass.getSimpleName().toUpperCase() + VALUES_SUFFIX;
+    if (enumValueNames.containsValue(name)) {
+      name = enumClass.getSimpleName().toUpperCase() + enumValueNames.size() + VALUES_SUFFIX;
+    }
+    enumValueNames.put(enumClass, name);
+
+    // private static final {Enum}[] {ENUM}_VALUES = {Enum}.values();
+    s("private").sp().s("static").sp()
+        .var(Array.newInstance(enumClass, 0).getClass(), name, ImmutableList.of(Modifier.FINAL)).spc('=')
+        .t(enumClass).dot("values").c('(', ')', ';');
+  }
+
+  private void generateWriteHelpers(Class<?> sinkClass) {
+    final boolean buffer = ByteBuffer.class.equals(sinkClass);
+
+    // private static void writeVarLong({Sink} out, long value) {
+    helperHeader(void.class, "writeVarLong", sinkClass, OUT).c(',', ' ').var(long.class, Names.VALUE).c(')');
+    throwsIfNeeded(sinkClass).c('{');
+    s("while").sp().c('(').s("(value & ~0x7fL) != 0").c(')', ' ', '{');
+    s(buffer ? "out.put((byte) ((value & 0x7f) | 0x80))" : "out.writeByte((int) (value & 0x7f) | 0x80)").c(';');
+    s("value >>>= 7").c(';');
+    c('}');
+    s(buffer ? "out.put((byte) value)" : "out.writeByte((int) value)").c(';');
+    c('}');
+
+    // private static void writeFixed32({Sink} out, int value) {
+    helperHeader(void.class, "writeFixed32", sinkClass, OUT).c(',', ' ').var(int.class, Names.VALUE).c(')');
+    throwsIfNeeded(sinkClass).c('{');
+    if (buffer) {
+      // fixed width values are always big-endian, as the ones written by DataOutput
+      s("out.putInt(out.order() ==").sp().t(ByteOrder.class).s(".BIG_ENDIAN ? value : Integer.reverseBytes(value))")
+          .c(';');
+    } else {
+      s("out.writeInt(value)").c(';');
+    }
+    c('}');
+
+    // private static void writeFixed64({Sink} out, long value) {
+    helperHeader(void.class, "writeFixed64", sinkClass, OUT).c(',', ' ').var(long.class, Names.VALUE).c(')');
+    throwsIfNeeded(sinkClass).c('{');
+    if (buffer) {
+      s("out.putLong(out.order() ==").sp().t(ByteOrder.class).s(".BIG_ENDIAN ? value : Long.reverseBytes(value))")
+          .c(';');
+    } else {
+      s("out.writeLong(value)").c(';');
+    }
+    c('}');
+
+    // private static void writeString({Sink} out, String value) {
+    helperHeader(void.class, "writeString", sinkClass, OUT).c(',', ' ').var(String.class, Names.VALUE).c(')');
+    throwsIfNeeded(sinkClass).c('{');
+    s("final").sp().t(byte[].class).sp().s(BYTES).spc('=').s("value.getBytes(").t(StandardCharsets.class)
+        .s(".UTF_8)").c(';');
+    s("writeVarLong(out, bytes.length)").c(';');
+    s(buffer ? "out.put(bytes)" : "out.write(bytes)").c(';');
+    c('}');
+  }
+
+  private void generateReadHelpers(Class<?> sourceClass) {
+    final boolean buffer = ByteBuffer.class.equals(sourceClass);
+
+    // private static long readVarLong({Source} in) {
+    helperHeader(long.class, "readVarLong", sourceClass, IN).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    s("long result = 0").c(';');
+    s("for").sp().c('(').s("int shift = 0; shift < 64; shift += 7").c(')', ' ', '{');
+    s(buffer ? "final byte b = in.get()" : "final byte b = in.readByte()").c(';');
+    s("result |= (long) (b & 0x7f) << shift").c(';');
+    s("if").sp().c('(').s("(b & 0x80) == 0").c(')', ' ', '{').s("return result").c(';').c('}');
+    c('}');
+    s("throw").sp().newType(IllegalStateException.class).c('(').val("Malformed varint").c(')', ';');
+    c('}');
+
+    // private static int readFixed32({Source} in) {
+    helperHeader(int.class, "readFixed32", sourceClass, IN).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    if (buffer) {
+      s("final int result = in.getInt()").c(';');
+      s("return in.order() ==").sp().t(ByteOrder.class).s(".BIG_ENDIAN ? result : Integer.reverseBytes(result)")
+          .c(';');
+    } else {
+      s("return in.readInt()").c(';');
+    }
+    c('}');
+
+    // private static long readFixed64({Source} in) {
+    helperHeader(long.class, "readFixed64", sourceClass, IN).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    if (buffer) {
+      s("final long result = in.getLong()").c(';');
+      s("return in.order() ==").sp().t(ByteOrder.class).s(".BIG_ENDIAN ? result : Long.reverseBytes(result)")
+          .c(';');
+    } else {
+      s("return in.readLong()").c(';');
+    }
+    c('}');
+
+    // private static String readString({Source} in) {
+    helperHeader(String.class, "readString", sourceClass, IN).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    s("final int length = (int) readVarLong(in)").c(';');
+    if (buffer) {
+      // heap buffers are decoded in place
+      s("if").sp().c('(').s("in.hasArray()").c(')', ' ', '{');
+      s("final String result = new String(in.array(), in.arrayOffset() + in.position(), length, ")
+          .t(StandardCharsets.class).s(".UTF_8)").c(';');
+      s("in.position(in.position() + length)").c(';');
+      s("return result").c(';');
+      c('}');
+    }
+    s("final").sp().t(byte[].class).sp().s(BYTES).spc('=').s("new byte[length]").c(';');
+    s(buffer ? "in.get(bytes)" : "in.readFully(bytes)").c(';');
+    s("return new String(bytes, ").t(StandardCharsets.class).s(".UTF_8)").c(';');
+    c('}');
+
+    // private static void skipField({Source} in, int fieldTag) {
+    helperHeader(void.class, "skipField", sourceClass, IN).c(',', ' ').var(int.class, TAG).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    s("switch").sp().c('(').s(TAG + " & " + ((1 << WIRE_TYPE_BITS) - 1)).c(')', ' ', '{');
+    s("case").sp().val(VARINT).c(':', ' ').s("readVarLong(in)").c(';').s("break").c(';');
+    s("case").sp().val(FIXED64).c(':', ' ').s("skipBytes(in, 8)").c(';').s("break").c(';');
+    s("case").sp().val(LENGTH_DELIMITED).c(':', ' ').s("skipBytes(in, (int) readVarLong(in))").c(';')
+        .s("break").c(';');
+    s("case").sp().val(FIXED32).c(':', ' ').s("skipBytes(in, 4)").c(';').s("break").c(';');
+    s("default").c(':', ' ').s("throw").sp().newType(IllegalStateException.class).c('(')
+        .val("Unsupported wire type of tag ").sps("+").s(TAG).c(')', ';');
+    c('}');
+    c('}');
+
+    // private static void skipBytes({Source} in, int length) {
+    helperHeader(void.class, "skipBytes", sourceClass, IN).c(',', ' ').var(int.class, LENGTH).c(')');
+    throwsIfNeeded(sourceClass).c('{');
+    if (buffer) {
+      s("in.position(in.position() + length)").c(';');
+    } else {
+      s("if").sp().c('(').s("in.skipBytes(length) != length").c(')', ' ', '{');
+      s("throw").sp().newType(EOFException.class).c('(', ')', ';');
+      c('}');
+    }
+    c('}');
+  }
+
+  private void generateZigZagHelpers() {
+    // private static long zigZag(long value) {
+    c('\n').s("private").sp().s("static").sp().t(long.class).sp().s("zigZag").c('(').var(long.class, Names.VALUE)
+        .c(')', ' ', '{');
+    s("return (value << 1) ^ (value >> 63)").c(';');
+    c('}');
+
+    // private static long unZigZag(long value) {
+    c('\n').s("private").sp().s("static").sp().t(long.class).sp().s("unZigZag").c('(').var(long.class, Names.VALUE)
+        .c(')', ' ', '{');
+    s("return (value >>> 1) ^ -(value & 1)").c(';');
+    c('}');
+  }
+
+  private void generateEnumHelpers() {
+    // private static <E> E enumValue(E[] values, long ordinal) {
+    c('\n').s("private").sp().s("static").sp().s("<E>").sp().s("E").sp().s("enumValue").c('(').s("E[]").sp()
+        .s("values").c(',', ' ').var(long.class, "ordinal").c(')', ' ', '{');
+    // constants, written by the newer writer, are unknown to this reader
+    s("return ordinal >= 0 && ordinal < values.length ? values[(int) ordinal] : null").c(';');
+    c('}');
+
+    // private static <E> void addKnown(Collection<E> values, E value) {
+    c('\n').s("private").sp().s("static").sp().s("<E>").sp().t(void.class).sp().s("addKnown").c('(')
+        .t(Collection.class).s("<E>").sp().s("values").c(',', ' ').s("E").sp().s(Names.VALUE).c(')', ' ', '{');
+    s("if").sp().c('(').s(Names.VALUE).sps("!=").s("null").c(')', ' ', '{');
+    s("values").dot("add").c('(').s(Names.VALUE).c(')', ';');
+    c('}');
+    c('}');
+  }
+
+  private CodeStreamSupport helperHeader(Class<?> returnType, String name, Class<?> streamClass, String streamName) {
+    // private static {ReturnType} {name}({Stream} {streamName}, ...
+    return c('\n').s("private").sp().s("static").sp().t(returnType).sp().s(name).c('(').var(streamClass, streamName);
+  }
+
+  private CodeStreamSupport throwsIfNeeded(Class<?> streamClass) {
+    if (ByteBuffer.class.equals(streamClass)) {
+      return sp();
+    }
+    return sp().s("throws").sp().t(IOException.class).sp();
+  }
+
+  //
+  // Analysis
+  //
+
+  private int getTag(DomainField field, Class<?> elementClass) {
+    final int number = nonNull(fieldRegistry.getFieldNumber(field), "Field number");
+    return (number << WIRE_TYPE_BITS) | getWireType(elementClass);
+  }
+
+  private List<DomainField> getFieldsInNumberOrder(GenDomainClass target) {
+    final List<DomainField> result = new ArrayList<>(target.getOrigin().getStoredFields());
+    Collections.sort(result, new Comparator<DomainField>() {
+      @Override
+      public int compare(DomainField lhs, DomainField rhs) {
+        return nonNull(fieldRegistry.getFieldNumber(lhs), "Field number") -
+            nonNull(fieldRegistry.getFieldNumber(rhs), "Field number");
+      }
+    });
+    return result;
+  }
+
+  private static int getWireType(Class<?> valueClass) {
+    final Class<?> primitiveClass = Primitives.unwrap(valueClass);
+    if (float.class.equals(primitiveClass)) {
+      return FIXED32;
+    } else if (double.class.equals(primitiveClass)) {
+      return FIXED64;
+    } else if (String.class.equals(valueClass)) {
+      return LENGTH_DELIMITED;
+    }
+    return VARINT;
+  }
+
+  /**
+   * @return Class of the field or class of its elements if the field is a collection
+   */
+  @Nonnull
+  private static Class<?> getElementClass(DomainField field) {
+    final Class<?> collectionClass = AbstractDomainImplementer.getCollectionClass(field);
+    Type elementType = field.getFieldType();
+    if (collectionClass != null && !Map.class.equals(collectionClass)) {
+      elementType = ((ParameterizedType) field.getFieldType()).getActualTypeArguments()[0];
+    }
+
+    final Class<?> elementClass = getSupportedClass(elementType);
+    if (elementClass == null || (collectionClass != null && elementClass.isPrimitive())) {
+      throw new UnsupportedOperationException("Field " + field + " can't be written in binary format");
+    }
+    return elementClass;
+  }
+
+  @Nullable
+  private static Class<?> getSupportedClass(Type type) {
+    if (!(type instanceof Class)) {
+      return null;
+    }
+    final Class<?> clazz = (Class<?>) type;
+    if (clazz.isPrimitive() || DefaultValues.BOXED_PRIMITIVES.contains(clazz) || String.class.equals(clazz) ||
+        clazz.isEnum()) {
+      return clazz;
+    }
+    return null;
+  }
+}
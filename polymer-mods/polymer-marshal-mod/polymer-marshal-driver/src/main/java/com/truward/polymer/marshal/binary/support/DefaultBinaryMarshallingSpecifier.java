@@ -0,0 +1,194 @@
+package com.truward.polymer.marshal.binary.support;
+
+import com.truward.polymer.core.code.builder.ModuleBuilder;
+import com.truward.polymer.core.code.builder.TypeManager;
+import com.truward.polymer.core.code.printer.CodePrinter;
+import com.truward.polymer.core.driver.Implementer;
+import com.truward.polymer.core.driver.SpecificationState;
+import com.truward.polymer.core.driver.SpecificationStateAware;
+import com.truward.polymer.core.support.code.DefaultModuleBuilder;
+import com.truward.polymer.core.support.code.DefaultTypeManager;
+import com.truward.polymer.core.support.code.printer.DefaultCodePrinter;
+import com.truward.polymer.domain.analysis.DomainAnalysisContext;
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.domain.analysis.DomainImplementationTargetSink;
+import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.freezable.FreezableSupport;
+import com.truward.polymer.marshal.binary.BinaryMarshallingSpecifier;
+import com.truward.polymer.marshal.binary.analysis.BinaryFieldRegistry;
+import com.truward.polymer.marshal.binary.support.analysis.DefaultBinaryFieldRegistry;
+import com.truward.polymer.naming.FqName;
+import com.truward.polymer.output.OutputStreamProvider;
+import com.truward.polymer.output.StandardFileTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.*;
+
+/**
+ * @author Alexander Shabanov
+ */
+public final class DefaultBinaryMarshallingSpecifier extends FreezableSupport
+    implements BinaryMarshallingSpecifier, Implementer, SpecificationStateAware {
+  private final Logger log = LoggerFactory.getLogger(getClass());
+
+  @Resource
+  private DomainImplementationTargetSink implementationTargetSink;
+
+  @Resource
+  private DomainAnalysisContext analysisContext;
+
+  @Resource
+  private OutputStreamProvider outputStreamProvider;
+
+  private final BinaryFieldRegistry fieldRegistry = new DefaultBinaryFieldRegistry();
+  private final Set<GenDomainClass> targets = new LinkedHashSet<>();
+  private final Set<GenDomainClass> flyweightTargets = new HashSet<>();
+  private FqName targetClassName;
+
+  @Nonnull
+  @Override
+  public BinaryMarshallingSpecifier setTargetClassName(@Nonnull FqName targetClassName) {
+    checkNonFrozen();
+    this.targetClassName = targetClassName;
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public BinaryMarshallingSpecifier addDomainEntity(@Nonnull Class<?> entityClass) {
+    checkNonFrozen();
+    if (!targets.add(getDomainClass(entityClass))) {
+      log.info("Duplicate submission of domain class {}", entityClass);
+    }
+    return this;
+  }
+
+  @Nonnull
+  @Override
+  public BinaryMarshallingSpecifier setFieldNumber(@Nonnull Class<?> entityClass, @Nonnull String fieldName,
+                                                   int fieldNumber) {
+    checkNonFrozen();
+    for (final DomainField field : getDomainClass(entityClass).getOrigin().getStoredFields()) {
+      if (field.getFieldName().equals(fieldName)) {
+        fieldRegistry.putFieldNumber(field, fieldNumber);
+        return this;
+      }
+    }
+    throw new IllegalArgumentException("Class " + entityClass + " has no field " + fieldName);
+  }
+
+  @Nonnull
+  @Override
+  public BinaryMarshallingSpecifier addFlyweightReader(@Nonnull Class<?> entityClass) {
+    checkNonFrozen();
+    final GenDomainClass domainClass = getDomainClass(entityClass);
+    if (!targets.contains(domainClass)) {
+      throw new IllegalStateException("Domain class " + entityClass + " should be added before enabling its " +
+          "flyweight reader");
+    }
+    flyweightTargets.add(domainClass);
+    return this;
+  }
+
+  @Override
+  public void setState(@Nonnull SpecificationState state) {
+    if (state == SpecificationState.COMPLETED) {
+      if (targetClassName == null) {
+        targetClassName = FqName.valueOf("generated.BinaryMarshaller");
+      }
+
+      checkNonFrozen();
+
+      finalizeAnalysis();
+      freeze();
+    }
+  }
+
+  @Override
+  public void generateImplementations() {
+    if (targets.isEmpty()) {
+      log.debug("Skipping generation: marshallers will not be generated, no input");
+      return;
+    }
+
+    try {
+      log.info("Generating file for {}", targetClassName);
+
+      final TypeManager typeManager = new DefaultTypeManager();
+      final ModuleBuilder moduleBuilder = new DefaultModuleBuilder(targetClassName, typeManager);
+      new BinaryCodecGenerator(targetClassName, moduleBuilder.getStream(), targets, flyweightTargets, fieldRegistry)
+          .generate();
+      moduleBuilder.freeze();
+
+      try (final OutputStream stream = outputStreamProvider.createStreamForFile(targetClassName, StandardFileTypes.JAVA)) {
+        try (final OutputStreamWriter writer = new OutputStreamWriter(stream, OutputStreamProvider.DEFAULT_CHARSET)) {
+          final CodePrinter codePrinter = new DefaultCodePrinter(writer, typeManager);
+          codePrinter.print(moduleBuilder.getStream());
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    log.debug("Done with binary marshallers generation");
+  }
+
+  //
+  // Private
+  //
+
+  @Nonnull
+  private GenDomainClass getDomainClass(@Nonnull Class<?> entityClass) {
+    final GenDomainClass domainClass = implementationTargetSink.getTarget(analysisContext.analyze(entityClass));
+    if (domainClass == null) {
+      throw new IllegalStateException("Can't generate binary marshaller for class that has no implementation " +
+          "target: " + entityClass);
+    }
+    return domainClass;
+  }
+
+  /**
+   * Numbers the fields, that have no explicit numbers, and verifies, that the numbers are unique within each entity.
+   */
+  private void finalizeAnalysis() {
+    for (final GenDomainClass target : targets) {
+      final List<DomainField> unnumbered = new ArrayList<>();
+      int maxNumber = 0;
+      for (final DomainField field : target.getOrigin().getStoredFields()) {
+        final Integer number = fieldRegistry.getFieldNumber(field);
+        if (number != null) {
+          maxNumber = Math.max(maxNumber, number);
+        } else {
+          unnumbered.add(field);
+        }
+      }
+
+      // field order is not stable, so that the default numbers are assigned in the alphabetical order
+      Collections.sort(unnumbered, new Comparator<DomainField>() {
+        @Override
+        public int compare(DomainField lhs, DomainField rhs) {
+          return lhs.getFieldName().compareTo(rhs.getFieldName());
+        }
+      });
+      for (final DomainField field : unnumbered) {
+        fieldRegistry.putFieldNumber(field, ++maxNumber);
+      }
+
+      final Map<Integer, DomainField> numberedFields = new HashMap<>();
+      for (final DomainField field : target.getOrigin().getStoredFields()) {
+        final DomainField prev = numberedFields.put(fieldRegistry.getFieldNumber(field), field);
+        if (prev != null) {
+          throw new IllegalStateException("Fields " + prev + " and " + field + " have the same number");
+        }
+      }
+    }
+
+    log.info("Binary marshaller analysis has been completed");
+  }
+}
@@ -0,0 +1,37 @@
+package com.truward.polymer.marshal.binary.support.analysis;
+
+import com.truward.polymer.domain.analysis.DomainField;
+import com.truward.polymer.marshal.binary.analysis.BinaryFieldRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Alexander Shabanov
+ */
+public final class DefaultBinaryFieldRegistry implements BinaryFieldRegistry {
+  private final Map<DomainField, Integer> fieldNumbers = new HashMap<>();
+
+  @Nullable
+  @Override
+  public Integer getFieldNumber(@Nonnull DomainField domainField) {
+    return fieldNumbers.get(domainField);
+  }
+
+  @Override
+  public void putFieldNumber(@Nonnull DomainField domainField, int fieldNumber) {
+    if (fieldNumber <= 0 || fieldNumber > MAX_FIELD_NUMBER) {
+      throw new IllegalArgumentException("Field number " + fieldNumber + " of " + domainField + " is out of range");
+    }
+
+    final Integer prev = fieldNumbers.get(domainField);
+    if (prev != null && prev != fieldNumber) {
+      throw new IllegalStateException("Detected clash with previous number of field " + domainField + ": " + prev +
+          ", current: " + fieldNumber);
+    }
+
+    fieldNumbers.put(domainField, fieldNumber);
+  }
+}
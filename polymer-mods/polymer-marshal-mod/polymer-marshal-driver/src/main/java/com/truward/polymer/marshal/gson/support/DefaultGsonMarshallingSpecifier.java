@@ -172,7 +172,7 @@ public final class DefaultGsonMarshallingSpecifier extends AbstractJsonMarshalle
 
     private void generateTypeAdapterWriteObjectBody(String out, String value, JsonTarget target) {
       dot(out, "beginObject").c('(', ')', ';');
-      for (final DomainField field : target.getDomainAnalysisResult().getFields()) {
+      for (final DomainField field : target.getDomainAnalysisResult().getStoredFields()) {
         final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
         if (getterName == null) {
           throw new UnsupportedOperationException("Can't generate writeObject: field " + field +
@@ -16,6 +16,7 @@ import com.truward.polymer.domain.analysis.DomainField;
 import com.truward.polymer.domain.analysis.FieldUtil;
 import com.truward.polymer.domain.analysis.OriginMethodRole;
 import com.truward.polymer.domain.analysis.support.GenDomainClass;
+import com.truward.polymer.domain.analysis.support.Names;
 import com.truward.polymer.marshal.json.analysis.JsonFieldRegistry;
 import com.truward.polymer.marshal.json.analysis.JsonTarget;
 import com.truward.polymer.naming.FqName;
@@ -45,6 +46,9 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
   private static final GenClass T_JSON_GENERATOR = GenClassReference.from("com.fasterxml.jackson.core.JsonGenerator");
   private static final GenClass T_JSON_SERIALIZER = GenClassReference.from("com.fasterxml.jackson.databind.JsonSerializer");
   private static final GenClass T_SERIALIZER_PROVIDER = GenClassReference.from("com.fasterxml.jackson.databind.SerializerProvider");
+  private static final GenClass T_SERIALIZED_STRING = GenClassReference.from("com.fasterxml.jackson.core.io.SerializedString");
+
+  private static final String NAME_SUFFIX = "_NAME";
 
   // jackson deserializer classes
   private static final GenClass T_JSON_PARSER = GenClassReference.from("com.fasterxml.jackson.core.JsonParser");
@@ -115,6 +119,14 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     return fieldRegistry.getJsonName(field);
   }
 
+  /**
+   * @return Name of the serializer's constant, that holds pre-encoded JSON name of the given field
+   */
+  @Nonnull
+  private static String getNameConstant(@Nonnull DomainField field) {
+    return Names.createConstantName(field.getFieldName(), NAME_SUFFIX);
+  }
+
   //
   // Attach Method (Binds Models to Marshallers)
   //
@@ -175,6 +187,14 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     // class body
     c('{');
 
+    // field names are quoted and encoded once rather than on each write
+    // private static final SerializedString {FIELD_NAME}_NAME = new SerializedString("{jsonName}");
+    for (final DomainField field : target.getDomainAnalysisResult().getStoredFields()) {
+      s("private").sp().s("static").sp().s("final").sp().t(T_SERIALIZED_STRING).sp().s(getNameConstant(field))
+          .spc('=').newType(T_SERIALIZED_STRING).c('(').val(getJsonName(field)).c(')', ';');
+    }
+    eol();
+
     // @Override public void serialize({DomainClass} value, JsonGenerator jsonGenerator, SerializerProvider provider) throws IOException
     annotate(Override.class).s("public").sp().t(void.class).sp().s("serialize");
     c('(').t(originDomainClass).sp().s(v.value).commaSp().t(T_JSON_GENERATOR).sp().s(v.jsonGenerator).commaSp();
@@ -198,11 +218,68 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
   }
 
   private void generateWriteMethodBody(JsonTarget target) {
-    for (final DomainField field : target.getDomainAnalysisResult().getFields()) {
+    final List<DomainField> fields = target.getDomainAnalysisResult().getStoredFields();
+    boolean implRequired = false;
+    for (final DomainField field : fields) {
+      implRequired = implRequired || isUnboxed(field);
+    }
+
+    if (implRequired) {
+      // unboxed fields are read directly from the generated class
+      // final {TargetClass} impl = value instanceof {TargetClass} ? ({TargetClass}) value : null;
+      final GenDomainClass genDomainClass = domainClassToJsonTarget.inverse().get(target);
+      s("final").sp().t(genDomainClass).sp().s(v.impl).spc('=').s(v.value).sps("instanceof").t(genDomainClass)
+          .spc('?').cast(genDomainClass).sp().s(v.value).spc(':').s("null").c(';');
+    }
+
+    for (final DomainField field : fields) {
+      if (!isUnboxed(field)) {
+        generateFieldEntry(field);
+        continue;
+      }
+
+      // if (impl != null) {
+      s("if").sp().c('(').s(v.impl).sps("!=").s("null").c(')', ' ', '{');
+      generateWriteUnboxedField(field);
+      c('}').s("else").sp().c('{');
       generateFieldEntry(field);
+      c('}');
     }
   }
 
+  private void generateWriteUnboxedField(DomainField field) {
+    final Class<?> unboxedType = nonNull(FieldUtil.getUnboxedType(field), "Unboxed type");
+
+    generateWriteFieldName(field);
+    // if (impl.has{FieldName}()) { jg.write{Number|Boolean}(impl.get{FieldName}As{Type}()); }
+    s("if").sp().c('(').dot(v.impl, FieldUtil.getPresenceMethodName(field)).c('(', ')', ')', ' ', '{');
+    if (char.class.equals(unboxedType)) {
+      // jg.writeString(String.valueOf(impl.get{FieldName}AsChar()));
+      dot(v.jsonGenerator, "writeString").c('(').t(String.class).dot("valueOf").c('(')
+          .dot(v.impl, FieldUtil.getUnboxedGetterName(field)).c('(', ')', ')', ')', ';');
+    } else {
+      dot(v.jsonGenerator, boolean.class.equals(unboxedType) ? "writeBoolean" : "writeNumber").c('(')
+          .dot(v.impl, FieldUtil.getUnboxedGetterName(field)).c('(', ')', ')', ';');
+    }
+    // } else { jg.writeNull(); }
+    c('}').s("else").sp().c('{');
+    dot(v.jsonGenerator, "writeNull").c('(', ')', ';');
+    c('}');
+  }
+
+  private void generateWriteFieldName(DomainField field) {
+    // jg.writeFieldName({FIELD_NAME}_NAME);
+    dot(v.jsonGenerator, "writeFieldName").c('(').s(getNameConstant(field)).c(')', ';');
+  }
+
+  /**
+   * @return True, if the given field is stored as primitive value and its presence bit in the generated class,
+   * and the marshaller can read and write the primitive value directly.
+   */
+  private static boolean isUnboxed(DomainField field) {
+    return FieldUtil.getUnboxedType(field) != null;
+  }
+
   private GenInlineBlock newGetterCall(DomainField field) {
     final String getterName = FieldUtil.getMethodName(field, OriginMethodRole.GETTER);
     if (getterName == null) {
@@ -216,8 +293,8 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
 
   private void generateFieldEntry(final DomainField field) {
     final GenInlineBlock getterCall = newGetterCall(field);
-    final String jsonName = getJsonName(field);
 
+    generateWriteFieldName(field);
     TypeVisitor.apply(new TypeVisitor<Void>() {
       @Override
       public Void visitType(@Nonnull Type sourceType) {
@@ -226,52 +303,47 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
 
       @Override
       public Void visitArray(@Nonnull Type sourceType, @Nonnull Type elementType) {
-        generateWriteFieldForCollection(jsonName, getterCall, elementType);
+        generateWriteArray(getterCall, elementType);
         return null;
       }
 
       @Override
       public Void visitClass(@Nonnull Type sourceType, @Nonnull Class<?> clazz) {
-        generateWriteFieldForClass(jsonName, getterCall, clazz);
+        generateWriteClass(getterCall, clazz);
         return null;
       }
 
       @Override
       public Void visitGenClass(@Nonnull Type sourceType, @Nonnull GenClass genClass) {
         // TODO: find deserializer by gen class
-        generateWriteFieldAsObject(jsonName, getterCall);
+        generateWriteAsObject(getterCall);
         return null;
       }
 
       @Override
       public Void visitGenericType(@Nonnull Type sourceType, @Nonnull Type rawType, @Nonnull List<? extends Type> args) {
-        generateWriteFieldForGeneric(jsonName, getterCall, rawType, args);
+        generateWriteGeneric(getterCall, rawType, args);
         return null;
       }
     }, field.getFieldType());
   }
 
-  private void generateWriteFieldAsObject(String jsonName, GenObject var) {
-    dot(v.jsonGenerator, "writeObjectField").c('(').val(jsonName).c(',', ' ').obj(var).c(')', ';');
+  private void generateWriteAsObject(GenObject var) {
+    dot(v.jsonGenerator, "writeObject").c('(').obj(var).c(')', ';');
   }
 
-  private void generateWriteFieldForGeneric(String jsonName, GenObject var, Type rawType, List<? extends Type> args) {
+  private void generateWriteGeneric(GenObject var, Type rawType, List<? extends Type> args) {
     if (rawType instanceof Class) {
       final Class<?> clazz = (Class<?>) rawType;
       if (Iterable.class.isAssignableFrom(clazz)) {
         Assert.state(args.size() == 1, "Iterable should have one argument");
-        generateWriteFieldForCollection(jsonName, var, args.get(0));
+        generateWriteArray(var, args.get(0));
         return;
       }
     }
 
     // fallback: write as object
-    dot(v.jsonGenerator, "writeObjectField").c('(').val(jsonName).c(',', ' ').obj(var).c(')', ';');
-  }
-
-  private void generateWriteFieldForCollection(String jsonName, GenObject var, Type elementType) {
-    dot(v.jsonGenerator, "writeArrayFieldStart").c('(').val(jsonName).c(')', ';');
-    generateWriteCollectionLoop(var, elementType);
+    generateWriteAsObject(var);
   }
 
   private void generateWriteCollectionLoop(GenObject var, Type type) {
@@ -284,32 +356,18 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     dot(v.jsonGenerator, "writeEndArray").c('(').c(')', ';');
   }
 
-  private void generateWriteFieldForClass(String jsonName, GenObject var, Class<?> clazz) {
-    Assert.state(!clazz.isArray(), "Array class for field");
-    if (DefaultValues.NUMERIC_PRIMITIVES.contains(clazz) || BigDecimal.class.equals(clazz)) {
-      dot(v.jsonGenerator, "writeNumberField").c('(').val(jsonName).c(',', ' ').obj(var).c(')', ';');
-      return;
-    }
-
-    if (clazz.isPrimitive()) {
-      throw new UnsupportedOperationException("Field " + clazz + " : " + jsonName + " can't be written as JSON");
-    }
-
-    if (String.class.equals(clazz)) {
-      dot(v.jsonGenerator, "writeStringField").c('(').val(jsonName).c(',', ' ').obj(var).c(')', ';');
-      return;
-    }
-
-    // write as object (assuming jackson can deal with it)
-    generateWriteFieldAsObject(jsonName, var);
-  }
-
   private void generateWriteArray(GenObject var, Type elementType) {
-    dot(v.jsonGenerator, "writeArrayStart").c('(', ')', ';');
+    dot(v.jsonGenerator, "writeStartArray").c('(', ')', ';');
     generateWriteCollectionLoop(var, elementType);
   }
 
   private void generateWriteClass(GenObject var, Class<?> clazz) {
+    if (char.class.equals(clazz)) {
+      // characters are written as one-character strings, the same way as jackson writes them
+      dot(v.jsonGenerator, "writeString").c('(').t(String.class).dot("valueOf").c('(').obj(var).c(')', ')', ';');
+      return;
+    }
+
     if (DefaultValues.NUMERIC_PRIMITIVES.contains(clazz) || BigDecimal.class.equals(clazz) ||
         BigInteger.class.equals(clazz)) {
       dot(v.jsonGenerator, "writeNumber").c('(').obj(var).c(')', ';');
@@ -326,7 +384,7 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     }
 
     // write as object (assuming jackson can deal with it)
-    dot(v.jsonGenerator, "writeObject").c('(').obj(var).c(')', ';');
+    generateWriteAsObject(var);
   }
 
   private void generateWriteObject(final GenObject var, Type type) {
@@ -353,7 +411,7 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
       public Void visitGenClass(@Nonnull Type sourceType, @Nonnull GenClass genClass) {
         // TODO: find static writer - avoid unnecessary dispatching by jackson
         // write as object (assuming jackson can deal with it)
-        dot(v.jsonGenerator, "writeObject").c('(').obj(var).c(')', ';');
+        generateWriteAsObject(var);
         return null;
       }
     }, type);
@@ -411,21 +469,34 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     // TODO: remove temp stub -- return null
     s("return").sp().newType(genDomainClass).c('(');
     boolean next = false;
-    for (final DomainField field : target.getDomainAnalysisResult().getFields()) {
+    for (final DomainField field : target.getDomainAnalysisResult().getStoredFields()) {
       if (next) {
-        nextParam(field.getFieldName());
+        c(',', ' ');
       } else {
-        s(field.getFieldName());
         next = true;
       }
+
+      if (isUnboxed(field)) {
+        // has{FieldName} ? {BoxedType}.valueOf({fieldName}) : null
+        s(FieldUtil.getPresenceMethodName(field)).spc('?').t(field.getFieldType()).dot("valueOf").c('(')
+            .s(field.getFieldName()).c(')').spc(':').s("null");
+      } else {
+        s(field.getFieldName());
+      }
     }
     c(')', ';');
   }
 
   private void generateInitializerFields(@Nonnull JsonTarget target) {
-    for (final DomainField field : target.getDomainAnalysisResult().getFields()) {
-      t(field.getFieldType()).sp().s(field.getFieldName()).spc('=');
-      final Class<?> maybeClass = field.getFieldTypeAsClass();
+    for (final DomainField field : target.getDomainAnalysisResult().getStoredFields()) {
+      final Class<?> unboxedType = isUnboxed(field) ? FieldUtil.getUnboxedType(field) : null;
+      if (unboxedType != null) {
+        // boolean has{FieldName} = false;
+        t(boolean.class).sp().s(FieldUtil.getPresenceMethodName(field)).spc('=').val(false).c(';');
+      }
+
+      t(unboxedType != null ? unboxedType : field.getFieldType()).sp().s(field.getFieldName()).spc('=');
+      final Class<?> maybeClass = unboxedType != null ? unboxedType : field.getFieldTypeAsClass();
       if (maybeClass != null && maybeClass.isPrimitive()) {
         if (boolean.class.equals(maybeClass)) {
           val(false); // boolean primitive
@@ -442,7 +513,7 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
 
   private void generateReaderLoop(@Nonnull JsonTarget target) {
     final DomainAnalysisResult analysisResult = target.getDomainAnalysisResult();
-    final List<DomainField> fields = analysisResult.getFields();
+    final List<DomainField> fields = analysisResult.getStoredFields();
     if (fields.isEmpty()) {
       log.warn("{} has no deserializable fields", analysisResult.getOriginClass());
       return; // there is no point in reading any properties - object has no properties
@@ -486,8 +557,15 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
       }
 
       sp().c('(').val(getJsonName(field)).dot("equals").c('(').s(v.fieldName).c(')', ')').sp().c('{');
+      if (isUnboxed(field)) {
+        generateUnboxedFieldAssignment(field);
+        continue;
+      }
+      if (char.class.equals(field.getFieldType())) {
+        generateCharCheck();
+      }
       s(field.getFieldName()).spc('=');
-      generateFieldAssignment(field);
+      generateFieldAssignment(field.getFieldType());
       c(';');
     }
     //      } else {
@@ -501,7 +579,32 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
     eol();
   }
 
-  private void generateFieldAssignment(@Nonnull DomainField field) {
+  private void generateUnboxedFieldAssignment(@Nonnull DomainField field) {
+    final Class<?> unboxedType = nonNull(FieldUtil.getUnboxedType(field), "Unboxed type");
+    final String presence = FieldUtil.getPresenceMethodName(field);
+
+    // has{FieldName} = jp.getCurrentToken() != JsonToken.VALUE_NULL;
+    s(presence).spc('=').dot(v.jsonParser, "getCurrentToken").c('(', ')').sps("!=").t(T_JSON_TOKEN)
+        .dot("VALUE_NULL").c(';');
+    // if (has{FieldName}) { {fieldName} = jp.get{Type}Value(); }
+    s("if").sp().c('(').s(presence).c(')', ' ', '{');
+    if (char.class.equals(unboxedType)) {
+      generateCharCheck();
+    }
+    s(field.getFieldName()).spc('=');
+    generateFieldAssignment(unboxedType);
+    c(';', '}');
+  }
+
+  private void generateCharCheck() {
+    // if (jp.getTextLength() != 1) { throw ctxt.mappingException("Single character expected"); }
+    s("if").sp().c('(').dot(v.jsonParser, "getTextLength").c('(', ')').sps("!=").val(1).c(')', ' ', '{');
+    s("throw").sp().dot(v.deserializationContext, "mappingException").c('(').val("Single character expected")
+        .c(')', ';');
+    c('}');
+  }
+
+  private void generateFieldAssignment(@Nonnull Type fieldType) {
     s(v.jsonParser);
     TypeVisitor.apply(new TypeVisitor<CodeStreamSupport>() { // parameterized w/ CodeStreamSupport to simplify implementation
       @Override
@@ -515,8 +618,10 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
       public CodeStreamSupport visitClass(@Nonnull Type sourceType, @Nonnull Class<?> clazz) {
         // primitive types case
         if (clazz.isPrimitive()) {
-          // TODO: no support for char type at the moment, fallback to object case
-          if (boolean.class.equals(clazz)) {
+          if (char.class.equals(clazz)) {
+            // one-character string, its length is checked by the caller
+            return dot("getTextCharacters").c('(', ')').c('[').dot(v.jsonParser, "getTextOffset").c('(', ')', ']');
+          } else if (boolean.class.equals(clazz)) {
             return dot("getBooleanValue").c('(', ')');
           } else if (byte.class.equals(clazz)) {
             return dot("getByteValue").c('(', ')');
@@ -551,6 +656,6 @@ final class JacksonBinderGenerator extends CodeStreamSupport {
         //    jp.readValueAs({Class[]}.class)
         return dot("readValueAs").c('(').t(elementType).dot("class").c(')');
       }
-    }, field.getFieldType());
+    }, fieldType);
   }
 }
@@ -15,6 +15,7 @@ public final class JacksonMarshallerVars {
   public final String jsonGenerator;
   public final String jsonParser;
   public final String value = Names.VALUE;
+  public final String impl; // value, casted to the generated class
   public final String writeBody; // writeBody method name
   public final String attachMarshallersTo;
   public final String mapper;
@@ -27,6 +28,7 @@ public final class JacksonMarshallerVars {
   public JacksonMarshallerVars(@Nonnull CodeFactory codeFactory) {
     this.jsonGenerator = "jg"; // jg = json generator
     this.jsonParser = "jp"; // jp = json parser
+    this.impl = "impl";
     this.writeBody = "writeBody";
     this.attachMarshallersTo = "attachMarshallersTo";
     this.mapper = "mapper";
@@ -10,6 +10,8 @@ import com.truward.polymer.core.driver.spi.SpecificationDriver;
 import com.truward.polymer.output.OutputStreamProvider;
 import com.truward.polymer.core.support.PolymerModule;
 import com.truward.polymer.domain.driver.spi.DomainSpecificationDriver;
+import com.truward.polymer.marshal.binary.BinaryMarshallingSpecifier;
+import com.truward.polymer.marshal.binary.spi.BinaryMarshallingDriver;
 import com.truward.polymer.marshal.gson.spi.GsonMarshallingDriver;
 import com.truward.polymer.marshal.jackson.spi.JacksonMarshallingDriver;
 import com.truward.polymer.marshal.json.GsonMarshallingSpecifier;
@@ -36,7 +38,8 @@ public final class MarshallingDriversServiceLocatorTest {
     final ServiceLoader<SpecificationDriver> driverServiceLoader = ServiceLoader.load(SpecificationDriver.class);
     final List<SpecificationDriver> drivers = ImmutableList.copyOf(driverServiceLoader);
     assertEquals(
-        ImmutableSet.of(DomainSpecificationDriver.class, GsonMarshallingDriver.class, JacksonMarshallingDriver.class, RestExposureDriver.class),
+        ImmutableSet.of(DomainSpecificationDriver.class, GsonMarshallingDriver.class, JacksonMarshallingDriver.class, RestExposureDriver.class,
+            BinaryMarshallingDriver.class),
         ImmutableSet.copyOf(Lists.transform(drivers, new Function<SpecificationDriver, Class<?>>() {
           @Override
           public Class<?> apply(SpecificationDriver input) {
@@ -60,8 +63,9 @@ public final class MarshallingDriversServiceLocatorTest {
 
     assertNotNull(context.getBean(JacksonMarshallingSpecifier.class));
     assertNotNull(context.getBean(GsonMarshallingSpecifier.class));
+    assertNotNull(context.getBean(BinaryMarshallingSpecifier.class));
 
     // Verify implementers count
-    assertEquals(3, context.getBeans(Implementer.class).size());
+    assertEquals(4, context.getBeans(Implementer.class).size());
   }
 }
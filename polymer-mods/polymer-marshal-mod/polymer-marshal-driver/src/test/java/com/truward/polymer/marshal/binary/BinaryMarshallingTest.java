@@ -0,0 +1,179 @@
+package com.truward.polymer.marshal.binary;
+
+import com.truward.di.InjectionContext;
+import com.truward.di.support.DefaultInjectionContext;
+import com.truward.polymer.annotation.Specification;
+import com.truward.polymer.core.driver.*;
+import com.truward.polymer.core.support.driver.DefaultSpecificationHandler;
+import com.truward.polymer.domain.DomainObject;
+import com.truward.polymer.domain.DomainObjectSpecifier;
+import com.truward.polymer.domain.driver.spi.DomainSpecificationDriver;
+import com.truward.polymer.marshal.binary.spi.BinaryMarshallingDriver;
+import com.truward.polymer.marshal.binary.support.DefaultBinaryMarshallingSpecifier;
+import com.truward.polymer.naming.FqName;
+import com.truward.polymer.output.MemOutputStreamProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alexander Shabanov
+ */
+public final class BinaryMarshallingTest {
+
+  private MemOutputStreamProvider mosp;
+  private Implementer binaryMarshallerImplementer;
+  private SpecificationHandler specificationHandler;
+  private List<SpecificationStateAware> specificationStateAwareBeans;
+
+  @Before
+  public void setup() {
+    final InjectionContext injectionContext = new DefaultInjectionContext();
+
+    mosp = new MemOutputStreamProvider();
+
+    // common contexts
+    injectionContext.registerBean(mosp);
+    injectionContext.registerBean(DefaultSpecificationHandler.class);
+
+    new DomainSpecificationDriver().join(injectionContext);
+    new BinaryMarshallingDriver().join(injectionContext);
+
+    specificationHandler = injectionContext.getBean(SpecificationHandler.class);
+    specificationStateAwareBeans = injectionContext.getBeans(SpecificationStateAware.class);
+    binaryMarshallerImplementer = injectionContext.getBean(DefaultBinaryMarshallingSpecifier.class);
+  }
+
+  @Test
+  public void shouldGenerateTarget() throws IOException {
+    specificationHandler.parseClass(FooSpecification.class);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+
+    binaryMarshallerImplementer.generateImplementations();
+
+    final String code = getOneContent();
+    assertTrue(code.contains("public final class BinaryMarshallers"));
+    assertTrue(code.contains("public static void writeFoo(Foo value, DataOutput out) throws IOException {"));
+    assertTrue(code.contains("public static void writeFoo(Foo value, ByteBuffer out) {"));
+    assertTrue(code.contains("public static Foo readFoo(DataInput in) throws IOException {"));
+    assertTrue(code.contains("public static Foo readFoo(ByteBuffer in) {"));
+    assertTrue(code.contains("private static final Kind[] KIND_VALUES = Kind.values();"));
+
+    // explicit number: 10 << 3 | varint, alphabetically numbered after it: age = 11, kind = 12, name = 13, tags = 14
+    assertTrue(code.contains("writeVarLong(out, 80);"));
+    assertTrue(code.contains("if (value.getId() != null) {"));
+    assertTrue(code.contains("id = Long.valueOf(unZigZag(readVarLong(in)));"));
+    assertTrue(code.contains("age = (int) unZigZag(readVarLong(in));"));
+    assertTrue(code.contains("kind = enumValue(KIND_VALUES, readVarLong(in));"));
+    assertTrue(code.contains("return ordinal >= 0 && ordinal < values.length ? values[(int) ordinal] : null;"));
+    assertTrue(code.contains("case 106: name = readString(in);"));
+    assertTrue(code.contains("case 114: tags.add(readString(in));"));
+    assertTrue(code.contains("default: skipField(in, fieldTag);"));
+
+    // flyweight reader
+    assertTrue(code.contains("public static Foo wrapFoo(ByteBuffer in) {"));
+    assertTrue(code.contains("private static final class FooView implements Foo {"));
+    assertTrue(code.contains("case 106: nameOffset = in.position();"));
+    assertTrue(code.contains("throw new IllegalStateException(\"Missing name\");"));
+    assertTrue(code.contains("if (tagsOffset < 0) {"));
+    assertTrue(code.contains("return Collections.unmodifiableList(result);"));
+  }
+
+  @Test
+  public void shouldRejectUnsupportedField() throws IOException {
+    specificationHandler.parseClass(BarSpecification.class);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+
+    try {
+      binaryMarshallerImplementer.generateImplementations();
+      fail("Map fields should not be supported");
+    } catch (UnsupportedOperationException ignored) {
+      // ok
+    }
+  }
+
+  //
+  // Test data
+  //
+
+  public enum Kind {
+    SMALL,
+    LARGE
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  public interface Foo {
+    Long getId();
+    int getAge();
+    Kind getKind();
+    String getName();
+    List<String> getTags();
+  }
+
+  @SuppressWarnings("UnusedDeclaration")
+  public interface Bar {
+    Map<String, String> getProperties();
+  }
+
+  public static final class FooSpecification {
+    @Resource
+    private DomainObjectSpecifier domainObjectSpecifier;
+
+    @Resource
+    private BinaryMarshallingSpecifier binaryMarshallingSpecifier;
+
+    @Specification(ordinal = 1)
+    public void specifyDomainObject() {
+      domainObjectSpecifier.targets(Foo.class);
+    }
+
+    @Specification
+    public void specifyFooFieldTraits(@DomainObject Foo foo) {
+      domainObjectSpecifier.isNullable(foo.getId());
+    }
+
+    @Specification(ordinal = 2)
+    public void specifyBinarySerialization() {
+      binaryMarshallingSpecifier
+          .setTargetClassName(FqName.valueOf("generated.BinaryMarshallers"))
+          .addDomainEntity(Foo.class)
+          .setFieldNumber(Foo.class, "id", 10)
+          .addFlyweightReader(Foo.class);
+    }
+  }
+
+  public static final class BarSpecification {
+    @Resource
+    private DomainObjectSpecifier domainObjectSpecifier;
+
+    @Resource
+    private BinaryMarshallingSpecifier binaryMarshallingSpecifier;
+
+    @Specification(ordinal = 1)
+    public void specifyDomainObject() {
+      domainObjectSpecifier.targets(Bar.class);
+    }
+
+    @Specification(ordinal = 2)
+    public void specifyBinarySerialization() {
+      binaryMarshallingSpecifier.addDomainEntity(Bar.class);
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private String getOneContent() {
+    assertEquals(1, mosp.getContentMap().size());
+    return mosp.getContentMap().values().iterator().next();
+  }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -64,6 +65,53 @@ public final class JacksonMarshallingTest {
     assertTrue(code.contains("package generated;"));
   }
 
+  @Test
+  public void shouldPreEncodeFieldNames() throws IOException {
+    specificationHandler.parseClass(FooSpecification.class);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+
+    jsonMarshallerImplementer.generateImplementations();
+
+    final String code = getOneContent();
+    assertTrue(code.contains("private static final SerializedString AGE_NAME = new SerializedString(\"age\");"));
+    assertTrue(code.contains("private static final SerializedString TAGS_NAME = new SerializedString(\"tags\");"));
+    assertTrue(code.contains("jg.writeFieldName(AGE_NAME);\n      jg.writeNumber(value.getAge());"));
+    assertTrue(code.contains("jg.writeFieldName(NAME_NAME);\n      jg.writeString(value.getName());"));
+    assertTrue(code.contains("jg.writeFieldName(TAGS_NAME);\n      jg.writeStartArray();"));
+    assertFalse("Field names should not be written as literals", code.contains("Field(\""));
+  }
+
+  @Test
+  public void shouldReadAndWriteUnboxedFields() throws IOException {
+    specificationHandler.parseClass(BarSpecification.class);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+
+    jsonMarshallerImplementer.generateImplementations();
+
+    final String code = getOneContent();
+    assertTrue(code.contains("final BarImpl impl = value instanceof BarImpl ? (BarImpl) value : null;"));
+    assertTrue(code.contains("if (impl.hasId()) {"));
+    assertTrue(code.contains("jg.writeFieldName(ID_NAME);"));
+    assertTrue(code.contains("jg.writeNumber(impl.getIdAsLong());"));
+    assertTrue(code.contains("jg.writeNull();"));
+    assertTrue(code.contains("long id = 0;"));
+    assertTrue(code.contains("id = jp.getLongValue();"));
+    assertTrue(code.contains("hasId ? Long.valueOf(id) : null"));
+  }
+
+  @Test
+  public void shouldReadAndWriteUnboxedCharAsString() throws IOException {
+    specificationHandler.parseClass(BarSpecification.class);
+    SpecificationUtil.notifyState(specificationStateAwareBeans, SpecificationState.COMPLETED);
+
+    jsonMarshallerImplementer.generateImplementations();
+
+    final String code = getOneContent();
+    assertTrue(code.contains("jg.writeString(String.valueOf(impl.getGradeAsChar()));"));
+    assertTrue(code.contains("if (jp.getTextLength() != 1) {"));
+    assertTrue(code.contains("grade = jp.getTextCharacters()[jp.getTextOffset()];"));
+    assertTrue(code.contains("hasGrade ? Character.valueOf(grade) : null"));
+  }
 
   //
   // Test data
@@ -102,6 +150,38 @@ public final class JacksonMarshallingTest {
     }
   }
 
+  @SuppressWarnings("UnusedDeclaration")
+  public interface Bar {
+    Long getId();
+    Character getGrade();
+  }
+
+  public static final class BarSpecification {
+    @Resource
+    private DomainObjectSpecifier domainObjectSpecifier;
+
+    @Resource
+    private JacksonMarshallingSpecifier jsonMarshallingSpecifier;
+
+    @Specification(ordinal = 1)
+    public void specifyDomainObject() {
+      domainObjectSpecifier.targets(Bar.class);
+    }
+
+    @Specification
+    public void specifyBarFieldTraits(@DomainObject Bar bar) {
+      domainObjectSpecifier.isUnboxed(bar.getId());
+      domainObjectSpecifier.isUnboxed(bar.getGrade());
+    }
+
+    @Specification(ordinal = 2)
+    public void specifyJsonSerialization() {
+      jsonMarshallingSpecifier
+          .setTargetClassName(FqName.valueOf("generated.JacksonMarshallers"))
+          .addDomainEntity(Bar.class);
+    }
+  }
+
   //
   // Private
   //
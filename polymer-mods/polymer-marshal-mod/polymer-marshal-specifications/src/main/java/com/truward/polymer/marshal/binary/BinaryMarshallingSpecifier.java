@@ -0,0 +1,52 @@
+package com.truward.polymer.marshal.binary;
+
+import com.truward.polymer.naming.FqName;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Specifier for the compact binary marshallers.
+ * The generated class has static methods, that write the domain objects to {@link java.io.DataOutput} or
+ * {@link java.nio.ByteBuffer} and read them back without reflection.
+ * Each field is written as the numbered tag followed by the value: numbers are written as varints, floating point
+ * numbers have fixed width and strings are prefixed by their length. Readers skip unknown tags, so that the fields
+ * can be added or removed without breaking compatibility as long as their numbers are not reused.
+ *
+ * @author Alexander Shabanov
+ */
+public interface BinaryMarshallingSpecifier {
+
+  @Nonnull
+  BinaryMarshallingSpecifier setTargetClassName(@Nonnull FqName targetClassName);
+
+  @Nonnull
+  BinaryMarshallingSpecifier addDomainEntity(@Nonnull Class<?> entityClass);
+
+  /**
+   * Assigns number to the given field of the domain entity. Fields with no explicit numbers are numbered in
+   * the alphabetical order of their names after the explicitly numbered ones, so new fields should be given explicit
+   * numbers to keep compatibility with the previously written data.
+   *
+   * @param entityClass Domain entity class, previously added by {@link #addDomainEntity(Class)}
+   * @param fieldName Name of the field
+   * @param fieldNumber Positive field number, unique within the entity
+   * @return Current specifier
+   */
+  @Nonnull
+  BinaryMarshallingSpecifier setFieldNumber(@Nonnull Class<?> entityClass, @Nonnull String fieldName,
+                                            int fieldNumber);
+
+  /**
+   * Enables generation of the read-only view of the encoded domain entity, that implements the domain interface and
+   * decodes each field on demand, so that the code, that inspects only a few fields of the record, does not pay for
+   * decoding of the others. Wrapping the record takes one pass over its tags, that records offsets of the known
+   * fields without decoding their values.
+   * The view shares content of the wrapped buffer, so that the buffer should not be modified while the view is in use.
+   * Views have identity-based equality, they can be converted to the regular domain objects by their builders.
+   *
+   * @param entityClass Domain entity class, previously added by {@link #addDomainEntity(Class)}
+   * @return Current specifier
+   */
+  @Nonnull
+  BinaryMarshallingSpecifier addFlyweightReader(@Nonnull Class<?> entityClass);
+}